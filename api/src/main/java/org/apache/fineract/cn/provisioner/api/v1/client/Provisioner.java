@@ -22,9 +22,12 @@ import org.apache.fineract.cn.provisioner.api.v1.domain.Application;
 import org.apache.fineract.cn.provisioner.api.v1.domain.AssignedApplication;
 import org.apache.fineract.cn.provisioner.api.v1.domain.AuthenticationResponse;
 import org.apache.fineract.cn.provisioner.api.v1.domain.Client;
+import org.apache.fineract.cn.provisioner.api.v1.domain.DatabaseConnectionInfo;
 import org.apache.fineract.cn.provisioner.api.v1.domain.IdentityManagerInitialization;
 import org.apache.fineract.cn.provisioner.api.v1.domain.PasswordPolicy;
+import org.apache.fineract.cn.provisioner.api.v1.domain.ProvisioningTrace;
 import org.apache.fineract.cn.provisioner.api.v1.domain.Tenant;
+import org.apache.fineract.cn.provisioner.api.v1.domain.TenantDeletion;
 import java.util.List;
 import javax.validation.Valid;
 import org.apache.fineract.cn.api.annotation.ThrowsException;
@@ -57,6 +60,16 @@ public interface Provisioner {
                                       @RequestParam("username") final String username,
                                       @RequestParam("password") final String password);
 
+  @RequestMapping(
+      value = "/auth/token?grant_type=refresh_token",
+      method = RequestMethod.POST,
+      produces = {MediaType.ALL_VALUE},
+      consumes = {MediaType.APPLICATION_JSON_VALUE}
+  )
+  @ThrowsException(status = HttpStatus.NOT_FOUND, exception = InvalidProvisionerCredentialsException.class)
+  AuthenticationResponse refresh(@RequestParam("client_id") final String clientId,
+                                 @RequestParam("refresh_token") final String refreshToken);
+
 
   @RequestMapping(
       value = "/auth/user/{useridentifier}/password",
@@ -142,6 +155,25 @@ public interface Provisioner {
   void deleteTenant(@PathVariable("tenantidentifier") final String tenantIdentifier);
 
 
+  @RequestMapping(
+      value = "/tenants/{tenantidentifier}/database",
+      method = RequestMethod.PUT,
+      produces = {MediaType.APPLICATION_JSON_VALUE},
+      consumes = {MediaType.APPLICATION_JSON_VALUE}
+  )
+  void relocateTenantDatabase(@PathVariable("tenantidentifier") final String tenantIdentifier,
+                              @RequestBody final DatabaseConnectionInfo databaseConnectionInfo);
+
+
+  @RequestMapping(
+      value = "/tenants",
+      method = RequestMethod.DELETE,
+      produces = {MediaType.ALL_VALUE},
+      consumes = {MediaType.APPLICATION_JSON_VALUE}
+  )
+  List<TenantDeletion> deleteTenants(@RequestParam("identifier") final List<String> tenantIdentifiers);
+
+
   @RequestMapping(
       value = "/applications",
       method = RequestMethod.POST,
@@ -205,4 +237,13 @@ public interface Provisioner {
   )
   List<AssignedApplication> getAssignedApplications(
       @PathVariable("tenantidentifier") final String tenantIdentifier);
-}
\ No newline at end of file
+
+  @RequestMapping(
+      value = "tenants/{tenantidentifier}/provisioning-traces",
+      method = RequestMethod.GET,
+      produces = {MediaType.ALL_VALUE},
+      consumes = {MediaType.APPLICATION_JSON_VALUE}
+  )
+  List<ProvisioningTrace> getProvisioningTraces(
+      @PathVariable("tenantidentifier") final String tenantIdentifier);
+}
@@ -23,11 +23,20 @@ public class AuthenticationResponse {
 
   private final String token;
   private final String accessTokenExpiration;
+  private final String refreshToken;
+  private final String refreshTokenExpiration;
 
   public AuthenticationResponse(final String token, final String accessTokenExpiration) {
+    this(token, accessTokenExpiration, null, null);
+  }
+
+  public AuthenticationResponse(final String token, final String accessTokenExpiration,
+                                final String refreshToken, final String refreshTokenExpiration) {
     super();
     this.token = token;
     this.accessTokenExpiration = accessTokenExpiration;
+    this.refreshToken = refreshToken;
+    this.refreshTokenExpiration = refreshTokenExpiration;
   }
 
   public String getToken() {
@@ -37,4 +46,12 @@ public class AuthenticationResponse {
   public String getAccessTokenExpiration() {
     return accessTokenExpiration;
   }
+
+  public String getRefreshToken() {
+    return refreshToken;
+  }
+
+  public String getRefreshTokenExpiration() {
+    return refreshTokenExpiration;
+  }
 }
@@ -18,12 +18,21 @@
  */
 package org.apache.fineract.cn.provisioner.api.v1.domain;
 
+import java.util.Objects;
 import javax.annotation.Nonnull;
 import javax.validation.constraints.NotNull;
 
 @SuppressWarnings({"unused", "WeakerAccess"})
 public final class CassandraConnectionInfo {
 
+  //The tenant gets a keyspace of its own.  This is the default.
+  public static final String KEYSPACE_MODE_DEDICATED = "Dedicated";
+  //The tenant is packed into a keyspace shared with other tenants, and the partition key of its command_source rows
+  //is (tenant_identifier, source, bucket) rather than (source, bucket).  Meant for small tenants, so that a cluster
+  //can host many more of them, whose services key their commands by tenant.  Only accepted if
+  //provisioner.shared-keyspaces.enabled is set.
+  public static final String KEYSPACE_MODE_SHARED = "Shared";
+
   @NotNull
   private String clusterName;
   @NotNull
@@ -34,6 +43,8 @@ public final class CassandraConnectionInfo {
   private String replicationType;
   @NotNull
   private String replicas;
+  private TableOptions commandSourceTableOptions;
+  private String keyspaceMode;
 
   public CassandraConnectionInfo() {
     super();
@@ -84,6 +95,22 @@ public final class CassandraConnectionInfo {
     this.replicas = replicas;
   }
 
+  public TableOptions getCommandSourceTableOptions() {
+    return commandSourceTableOptions;
+  }
+
+  public void setCommandSourceTableOptions(final TableOptions commandSourceTableOptions) {
+    this.commandSourceTableOptions = commandSourceTableOptions;
+  }
+
+  public String getKeyspaceMode() {
+    return keyspaceMode;
+  }
+
+  public void setKeyspaceMode(final String keyspaceMode) {
+    this.keyspaceMode = keyspaceMode;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -95,7 +122,9 @@ public final class CassandraConnectionInfo {
         && contactPoints.equals(that.contactPoints)
         && keyspace.equals(that.keyspace)
         && replicationType.equals(that.replicationType)
-        && replicas.equals(that.replicas);
+        && replicas.equals(that.replicas)
+        && Objects.equals(commandSourceTableOptions, that.commandSourceTableOptions)
+        && Objects.equals(keyspaceMode, that.keyspaceMode);
 
   }
 
@@ -106,6 +135,8 @@ public final class CassandraConnectionInfo {
     result = 31 * result + keyspace.hashCode();
     result = 31 * result + replicationType.hashCode();
     result = 31 * result + replicas.hashCode();
+    result = 31 * result + Objects.hashCode(commandSourceTableOptions);
+    result = 31 * result + Objects.hashCode(keyspaceMode);
     return result;
   }
 
@@ -117,6 +148,8 @@ public final class CassandraConnectionInfo {
         ", keyspace='" + keyspace + '\'' +
         ", replicationType='" + replicationType + '\'' +
         ", replicas='" + replicas + '\'' +
+        ", commandSourceTableOptions=" + commandSourceTableOptions +
+        ", keyspaceMode='" + keyspaceMode + '\'' +
         '}';
   }
 }
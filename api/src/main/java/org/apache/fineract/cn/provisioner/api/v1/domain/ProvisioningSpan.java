@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.api.v1.domain;
+
+import java.util.Map;
+
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class ProvisioningSpan {
+
+  private String name;
+  private Long startOffsetInMillis;
+  private Long durationInMillis;
+  private Map<String, String> attributes;
+
+  public ProvisioningSpan() {
+    super();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public Long getStartOffsetInMillis() {
+    return startOffsetInMillis;
+  }
+
+  public void setStartOffsetInMillis(Long startOffsetInMillis) {
+    this.startOffsetInMillis = startOffsetInMillis;
+  }
+
+  public Long getDurationInMillis() {
+    return durationInMillis;
+  }
+
+  public void setDurationInMillis(Long durationInMillis) {
+    this.durationInMillis = durationInMillis;
+  }
+
+  public Map<String, String> getAttributes() {
+    return attributes;
+  }
+
+  public void setAttributes(Map<String, String> attributes) {
+    this.attributes = attributes;
+  }
+
+  @Override
+  public String toString() {
+    return "ProvisioningSpan{" +
+        "name='" + name + '\'' +
+        ", startOffsetInMillis=" + startOffsetInMillis +
+        ", durationInMillis=" + durationInMillis +
+        ", attributes=" + attributes +
+        '}';
+  }
+}
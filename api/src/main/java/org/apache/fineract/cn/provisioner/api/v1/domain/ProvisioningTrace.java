@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.api.v1.domain;
+
+import java.util.List;
+
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class ProvisioningTrace {
+
+  private String identifier;
+  private String tenantIdentifier;
+  private String operation;
+  private String startedOn;
+  private Long durationInMillis;
+  private List<ProvisioningSpan> spans;
+
+  public ProvisioningTrace() {
+    super();
+  }
+
+  public String getIdentifier() {
+    return identifier;
+  }
+
+  public void setIdentifier(String identifier) {
+    this.identifier = identifier;
+  }
+
+  public String getTenantIdentifier() {
+    return tenantIdentifier;
+  }
+
+  public void setTenantIdentifier(String tenantIdentifier) {
+    this.tenantIdentifier = tenantIdentifier;
+  }
+
+  public String getOperation() {
+    return operation;
+  }
+
+  public void setOperation(String operation) {
+    this.operation = operation;
+  }
+
+  public String getStartedOn() {
+    return startedOn;
+  }
+
+  public void setStartedOn(String startedOn) {
+    this.startedOn = startedOn;
+  }
+
+  public Long getDurationInMillis() {
+    return durationInMillis;
+  }
+
+  public void setDurationInMillis(Long durationInMillis) {
+    this.durationInMillis = durationInMillis;
+  }
+
+  public List<ProvisioningSpan> getSpans() {
+    return spans;
+  }
+
+  public void setSpans(List<ProvisioningSpan> spans) {
+    this.spans = spans;
+  }
+
+  @Override
+  public String toString() {
+    return "ProvisioningTrace{" +
+        "identifier='" + identifier + '\'' +
+        ", tenantIdentifier='" + tenantIdentifier + '\'' +
+        ", operation='" + operation + '\'' +
+        ", startedOn='" + startedOn + '\'' +
+        ", durationInMillis=" + durationInMillis +
+        ", spans=" + spans +
+        '}';
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.api.v1.domain;
+
+import java.util.Objects;
+
+/**
+ * Storage options of a tenant table.  Options left empty keep the defaults of Cassandra.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class TableOptions {
+
+  //One of SizeTiered, Leveled, or TimeWindow.
+  private String compactionStrategy;
+  //One of MINUTES, HOURS, or DAYS, only for TimeWindow compaction.
+  private String compactionWindowUnit;
+  private Integer compactionWindowSize;
+  //Seconds, zero keeps rows forever.
+  private Integer defaultTimeToLive;
+  //One of LZ4, Snappy, Deflate, or None.
+  private String compression;
+  //One of All, KeysOnly, or None.
+  private String caching;
+
+  public TableOptions() {
+    super();
+  }
+
+  public String getCompactionStrategy() {
+    return compactionStrategy;
+  }
+
+  public void setCompactionStrategy(String compactionStrategy) {
+    this.compactionStrategy = compactionStrategy;
+  }
+
+  public String getCompactionWindowUnit() {
+    return compactionWindowUnit;
+  }
+
+  public void setCompactionWindowUnit(String compactionWindowUnit) {
+    this.compactionWindowUnit = compactionWindowUnit;
+  }
+
+  public Integer getCompactionWindowSize() {
+    return compactionWindowSize;
+  }
+
+  public void setCompactionWindowSize(Integer compactionWindowSize) {
+    this.compactionWindowSize = compactionWindowSize;
+  }
+
+  public Integer getDefaultTimeToLive() {
+    return defaultTimeToLive;
+  }
+
+  public void setDefaultTimeToLive(Integer defaultTimeToLive) {
+    this.defaultTimeToLive = defaultTimeToLive;
+  }
+
+  public String getCompression() {
+    return compression;
+  }
+
+  public void setCompression(String compression) {
+    this.compression = compression;
+  }
+
+  public String getCaching() {
+    return caching;
+  }
+
+  public void setCaching(String caching) {
+    this.caching = caching;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    TableOptions that = (TableOptions) o;
+    return Objects.equals(compactionStrategy, that.compactionStrategy) &&
+        Objects.equals(compactionWindowUnit, that.compactionWindowUnit) &&
+        Objects.equals(compactionWindowSize, that.compactionWindowSize) &&
+        Objects.equals(defaultTimeToLive, that.defaultTimeToLive) &&
+        Objects.equals(compression, that.compression) &&
+        Objects.equals(caching, that.caching);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(compactionStrategy, compactionWindowUnit, compactionWindowSize, defaultTimeToLive, compression, caching);
+  }
+
+  @Override
+  public String toString() {
+    return "TableOptions{" +
+        "compactionStrategy='" + compactionStrategy + '\'' +
+        ", compactionWindowUnit='" + compactionWindowUnit + '\'' +
+        ", compactionWindowSize=" + compactionWindowSize +
+        ", defaultTimeToLive=" + defaultTimeToLive +
+        ", compression='" + compression + '\'' +
+        ", caching='" + caching + '\'' +
+        '}';
+  }
+}
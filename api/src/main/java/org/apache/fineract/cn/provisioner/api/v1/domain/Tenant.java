@@ -29,9 +29,8 @@ public final class Tenant {
   @NotNull
   private String name;
   private String description;
-  @NotNull
+  //Left out, the provisioner places the tenant on one of its configured clusters and servers.
   private CassandraConnectionInfo cassandraConnectionInfo;
-  @NotNull
   private DatabaseConnectionInfo databaseConnectionInfo;
 
   public Tenant() {
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.api.v1.domain;
+
+/**
+ * Outcome of deleting one tenant in a bulk deletion.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final class TenantDeletion {
+
+  private String identifier;
+  private Boolean deleted;
+  private String failure;
+
+  public TenantDeletion() {
+    super();
+  }
+
+  public TenantDeletion(final String identifier, final Boolean deleted, final String failure) {
+    super();
+    this.identifier = identifier;
+    this.deleted = deleted;
+    this.failure = failure;
+  }
+
+  public String getIdentifier() {
+    return identifier;
+  }
+
+  public void setIdentifier(String identifier) {
+    this.identifier = identifier;
+  }
+
+  public Boolean getDeleted() {
+    return deleted;
+  }
+
+  public void setDeleted(Boolean deleted) {
+    this.deleted = deleted;
+  }
+
+  public String getFailure() {
+    return failure;
+  }
+
+  public void setFailure(String failure) {
+    this.failure = failure;
+  }
+
+  @Override
+  public String toString() {
+    return "TenantDeletion{" +
+        "identifier='" + identifier + '\'' +
+        ", deleted=" + deleted +
+        ", failure='" + failure + '\'' +
+        '}';
+  }
+}
@@ -59,6 +59,12 @@ public class TenantTest extends ValidationTest<Tenant> {
     ret.add(new ValidationTestCase<Tenant>("invalidIdentifier")
             .adjustment(x -> x.setIdentifier(RandomStringUtils.randomAlphanumeric(33)))
             .valid(false));
+    ret.add(new ValidationTestCase<Tenant>("withoutConnectionInfo")
+            .adjustment(x -> {
+              x.setCassandraConnectionInfo(null);
+              x.setDatabaseConnectionInfo(null);
+            })
+            .valid(true));
     return ret;
   }
 
@@ -27,6 +27,13 @@ import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
 import org.apache.fineract.cn.api.context.AutoSeshat;
 import org.apache.fineract.cn.api.util.ApiConstants;
 import org.apache.fineract.cn.api.util.NotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -34,6 +41,7 @@ import org.junit.Test;
 
 public class TestApplications extends AbstractServiceTest {
 
+  private String token;
   private AutoSeshat autoSeshat;
 
   public TestApplications() {
@@ -46,7 +54,8 @@ public class TestApplications extends AbstractServiceTest {
   {
     final AuthenticationResponse authentication = provisioner.authenticate(
             this.getClientId(), ApiConstants.SYSTEM_SU, ProvisionerConstants.INITIAL_PWD);
-    autoSeshat = new AutoSeshat(authentication.getToken());
+    token = authentication.getToken();
+    autoSeshat = new AutoSeshat(token);
   }
 
   @After
@@ -87,6 +96,38 @@ public class TestApplications extends AbstractServiceTest {
     provisioner.createApplication(Fixture.getApplication());
   }
 
+  @Test
+  public void shouldCreateConcurrentDuplicatesOnlyOnce() throws Exception {
+    final int creators = 8;
+    final ExecutorService executor = Executors.newFixedThreadPool(creators);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      final List<Future<Boolean>> creations = new ArrayList<>();
+      for (int i = 0; i < creators; i++) {
+        creations.add(executor.submit(() -> {
+          try (final AutoSeshat ignored = new AutoSeshat(token)) {
+            start.await();
+            provisioner.createApplication(Fixture.getApplication());
+            return true;
+          } catch (final DuplicateIdentifierException ex) {
+            return false;
+          }
+        }));
+      }
+      start.countDown();
+
+      int created = 0;
+      for (final Future<Boolean> creation : creations) {
+        if (creation.get(30, TimeUnit.SECONDS)) {
+          created++;
+        }
+      }
+      Assert.assertEquals(1, created);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   @Test(expected = NotFoundException.class)
   public void shouldFailFindUnknown() {
     provisioner.getApplication("unknown");
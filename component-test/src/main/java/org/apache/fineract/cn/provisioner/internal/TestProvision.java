@@ -23,6 +23,11 @@ import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
 
 import org.apache.fineract.cn.provisioner.AbstractServiceTest;
+import org.apache.fineract.cn.provisioner.internal.repository.ProvisionerInitializer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
 import org.apache.fineract.cn.cassandra.util.CassandraConnectorConstants;
 import org.junit.Assert;
@@ -38,6 +43,9 @@ public class TestProvision extends AbstractServiceTest {
   @Autowired
   protected CassandraSessionProvider cassandraSessionProvider;
 
+  @Autowired
+  protected ProvisionerInitializer provisionerInitializer;
+
   @Test
   public void dataModelExists() throws Exception {
     try (final Session session = cassandraSessionProvider.getAdminSession()) {
@@ -63,4 +71,53 @@ public class TestProvision extends AbstractServiceTest {
       Assert.assertNotNull(clientResultSet.one());
     }
   }
+
+  @Test
+  public void coldStartIsMeasured() {
+    final Map<String, Long> phaseDurations = provisionerInitializer.getPhaseDurations();
+
+    Assert.assertTrue(phaseDurations.containsKey("cassandra"));
+    Assert.assertTrue(phaseDurations.containsKey("postgresql.database"));
+    Assert.assertTrue(phaseDurations.containsKey("postgresql.schema"));
+    Assert.assertTrue(phaseDurations.containsKey("total"));
+
+    //Cassandra and PostgreSQL are bootstrapped in parallel, so the total is driven by the slower of the two stores.
+    final long slowestStore = Math.max(phaseDurations.get("cassandra"),
+        phaseDurations.get("postgresql.database") + phaseDurations.get("postgresql.schema"));
+    Assert.assertTrue(phaseDurations.get("total") >= slowestStore);
+    phaseDurations.forEach((phase, duration) ->
+        Assert.assertTrue("Phase " + phase + " has a negative duration.", duration >= 0L));
+  }
+
+  @Test
+  public void bootstrapIsIdempotent() throws Exception {
+    final Session session = cassandraSessionProvider.getAdminSession();
+    final String findSecret = "SELECT secret FROM " + CassandraConnectorConstants.KEYSPACE_PROP_DEFAULT
+        + ".config WHERE name = 'org.apache.fineract.cn.provisioner.internal'";
+    final String findClients = "SELECT * FROM " + CassandraConnectorConstants.KEYSPACE_PROP_DEFAULT + ".clients";
+
+    final Object secretBefore = session.execute(findSecret).one().getBytes("secret");
+    final int clientsBefore = session.execute(findClients).all().size();
+
+    provisionerInitializer.initialize();
+
+    Assert.assertEquals(secretBefore, session.execute(findSecret).one().getBytes("secret"));
+    Assert.assertEquals(clientsBefore, session.execute(findClients).all().size());
+  }
+
+  @Test
+  public void schemaVersionsAreRecorded() {
+    final Session session = cassandraSessionProvider.getAdminSession();
+    final List<Integer> appliedVersions = session.execute("SELECT version FROM "
+        + CassandraConnectorConstants.KEYSPACE_PROP_DEFAULT + ".schema_version").all().stream()
+        .map(row -> row.getInt("version"))
+        .sorted()
+        .collect(Collectors.toList());
+    Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), appliedVersions);
+
+    //A second run finds nothing pending and must not record anything again.
+    provisionerInitializer.initialize();
+    Assert.assertEquals(appliedVersions.size(), session.execute("SELECT version FROM "
+        + CassandraConnectorConstants.KEYSPACE_PROP_DEFAULT + ".schema_version").all().size());
+  }
 }
@@ -55,4 +55,28 @@ public class TestAuthentication extends AbstractServiceTest {
   public void shouldFailLoginWrongPassword() {
     provisioner.authenticate(this.getClientId(), ApiConstants.SYSTEM_SU, Base64Utils.encodeToString("wrong-pwd".getBytes()));
   }
+
+  @Test
+  public void shouldRefreshAdminToken() {
+    final AuthenticationResponse authenticate
+        = provisioner.authenticate(this.getClientId(), ApiConstants.SYSTEM_SU, ProvisionerConstants.INITIAL_PWD);
+    Assert.assertNotNull(authenticate.getRefreshToken());
+    Assert.assertNotNull(authenticate.getRefreshTokenExpiration());
+
+    final AuthenticationResponse refreshed = provisioner.refresh(this.getClientId(), authenticate.getRefreshToken());
+    Assert.assertNotNull(refreshed.getToken());
+    Assert.assertEquals(authenticate.getRefreshToken(), refreshed.getRefreshToken());
+  }
+
+  @Test(expected = InvalidProvisionerCredentialsException.class)
+  public void shouldFailRefreshWrongClientId() {
+    final AuthenticationResponse authenticate
+        = provisioner.authenticate(this.getClientId(), ApiConstants.SYSTEM_SU, ProvisionerConstants.INITIAL_PWD);
+    provisioner.refresh("wrong-client", authenticate.getRefreshToken());
+  }
+
+  @Test(expected = InvalidProvisionerCredentialsException.class)
+  public void shouldFailRefreshInvalidToken() {
+    provisioner.refresh(this.getClientId(), "invalid-refresh-token");
+  }
 }
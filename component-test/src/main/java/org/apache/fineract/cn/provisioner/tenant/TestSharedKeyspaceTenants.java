@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.tenant;
+
+import org.apache.fineract.cn.api.context.AutoSeshat;
+import org.apache.fineract.cn.api.util.ApiConstants;
+import org.apache.fineract.cn.provisioner.AbstractServiceTest;
+import org.apache.fineract.cn.provisioner.api.v1.domain.AuthenticationResponse;
+import org.apache.fineract.cn.provisioner.api.v1.domain.CassandraConnectionInfo;
+import org.apache.fineract.cn.provisioner.api.v1.domain.Tenant;
+import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+//Shared keyspaces are off in the other tests, and only turned on for the tests of this class.  The property is
+//switched on the running service rather than in a context of its own, which couldn't bind the same port.
+public class TestSharedKeyspaceTenants extends AbstractServiceTest {
+
+  @SuppressWarnings("SpringAutowiredFieldsWarningInspection")
+  @Autowired
+  private ProvisionerProperties provisionerProperties;
+
+  private AutoSeshat autoSeshat;
+
+  public TestSharedKeyspaceTenants() {
+    super();
+  }
+
+  @Before
+  public void before()
+  {
+    this.provisionerProperties.getSharedKeyspaces().setEnabled(true);
+    final AuthenticationResponse authentication = provisioner.authenticate(
+        this.getClientId(), ApiConstants.SYSTEM_SU, ProvisionerConstants.INITIAL_PWD);
+    autoSeshat = new AutoSeshat(authentication.getToken());
+  }
+
+  @After
+  public void after() throws InterruptedException {
+    autoSeshat.close();
+    this.provisionerProperties.getSharedKeyspaces().setEnabled(false);
+  }
+
+  @Test
+  public void shouldPackSharedKeyspaceTenantsTogether() {
+    final Tenant first = Fixture.getCompTestTenant();
+    first.getCassandraConnectionInfo().setKeyspaceMode(CassandraConnectionInfo.KEYSPACE_MODE_SHARED);
+    final Tenant second = Fixture.getCompTestTenant();
+    second.getCassandraConnectionInfo().setKeyspaceMode(CassandraConnectionInfo.KEYSPACE_MODE_SHARED);
+    second.getCassandraConnectionInfo().setClusterName(first.getCassandraConnectionInfo().getClusterName());
+    provisioner.createTenant(first);
+    provisioner.createTenant(second);
+
+    final Tenant firstCreated = provisioner.getTenant(first.getIdentifier());
+    final Tenant secondCreated = provisioner.getTenant(second.getIdentifier());
+    Assert.assertEquals(CassandraConnectionInfo.KEYSPACE_MODE_SHARED, firstCreated.getCassandraConnectionInfo().getKeyspaceMode());
+    Assert.assertEquals(firstCreated.getCassandraConnectionInfo().getKeyspace(),
+        secondCreated.getCassandraConnectionInfo().getKeyspace());
+
+    //Deleting one tenant leaves the keyspace to the other.
+    provisioner.deleteTenant(first.getIdentifier());
+    Assert.assertEquals(secondCreated, provisioner.getTenant(second.getIdentifier()));
+  }
+}
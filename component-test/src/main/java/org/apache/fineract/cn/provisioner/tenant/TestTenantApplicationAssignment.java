@@ -31,11 +31,14 @@ import org.apache.fineract.cn.provisioner.api.v1.domain.Application;
 import org.apache.fineract.cn.provisioner.api.v1.domain.AssignedApplication;
 import org.apache.fineract.cn.provisioner.api.v1.domain.AuthenticationResponse;
 import org.apache.fineract.cn.provisioner.api.v1.domain.IdentityManagerInitialization;
+import org.apache.fineract.cn.provisioner.api.v1.domain.ProvisioningTrace;
 import org.apache.fineract.cn.provisioner.api.v1.domain.Tenant;
 import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
 import org.apache.fineract.cn.provisioner.config.ProvisionerServiceConfig;
 import org.apache.fineract.cn.provisioner.internal.listener.IdentityListener;
 import org.apache.fineract.cn.provisioner.internal.service.applications.ApplicationCallContextProvider;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
 import org.apache.fineract.cn.provisioner.internal.util.TokenProvider;
 import java.math.BigInteger;
 import java.util.Arrays;
@@ -110,9 +113,11 @@ public class TestTenantApplicationAssignment {
     @Bean()
     public ApplicationCallContextProvider applicationCallContextProvider(
             final ApiFactory apiFactory,
-            final @Qualifier("tokenProviderSpy") TokenProvider tokenProviderSpy)
+            final @Qualifier("tokenProviderSpy") TokenProvider tokenProviderSpy,
+            final ProvisionerMetrics provisionerMetrics,
+            final ProvisioningTracer provisioningTracer)
     {
-      return Mockito.spy(new ApplicationCallContextProvider(apiFactory, tokenProviderSpy));
+      return Mockito.spy(new ApplicationCallContextProvider(apiFactory, tokenProviderSpy, provisionerMetrics, provisioningTracer));
     }
 
     @Bean(name = "tokenProviderSpy")
@@ -532,5 +537,10 @@ public class TestTenantApplicationAssignment {
     Assert.assertTrue(verifyIsisSetApplicationSignature.isValidSecurityContext());
     Assert.assertEquals(4, verifyIsisCreateApplicationPermission.getCallCount());
     Assert.assertTrue(verifyIsisCreateApplicationPermission.isValidSecurityContext());
+
+    final List<ProvisioningTrace> provisioningTraces = provisioner.getProvisioningTraces(tenant.getIdentifier());
+    Assert.assertTrue(provisioningTraces.stream().anyMatch(x -> x.getOperation().equals("create_tenant")));
+    Assert.assertTrue(provisioningTraces.stream().anyMatch(x -> x.getOperation().equals("assign_applications")
+        && x.getSpans().stream().anyMatch(span -> span.getName().equals("initialize_resources"))));
   }
 }
@@ -22,6 +22,8 @@ package org.apache.fineract.cn.provisioner.tenant;
 import org.apache.fineract.cn.provisioner.AbstractServiceTest;
 import org.apache.fineract.cn.provisioner.api.v1.client.DuplicateIdentifierException;
 import org.apache.fineract.cn.provisioner.api.v1.domain.AuthenticationResponse;
+import org.apache.fineract.cn.provisioner.api.v1.domain.CassandraConnectionInfo;
+import org.apache.fineract.cn.provisioner.api.v1.domain.TableOptions;
 import org.apache.fineract.cn.provisioner.api.v1.domain.Tenant;
 import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
 import java.util.List;
@@ -70,6 +72,23 @@ public class TestTenants extends AbstractServiceTest {
 
   }
 
+  @Test
+  public void shouldCreateTenantWithCommandSourceTableOptions() {
+    final Tenant tenant = Fixture.getCompTestTenant();
+    final TableOptions commandSourceTableOptions = new TableOptions();
+    commandSourceTableOptions.setCompactionStrategy("TimeWindow");
+    commandSourceTableOptions.setCompactionWindowUnit("DAYS");
+    commandSourceTableOptions.setCompactionWindowSize(1);
+    commandSourceTableOptions.setDefaultTimeToLive(2592000);
+    commandSourceTableOptions.setCompression("LZ4");
+    commandSourceTableOptions.setCaching("KeysOnly");
+    tenant.getCassandraConnectionInfo().setCommandSourceTableOptions(commandSourceTableOptions);
+    provisioner.createTenant(tenant);
+
+    final Tenant tenantCreated = provisioner.getTenant(tenant.getIdentifier());
+    Assert.assertEquals(commandSourceTableOptions, tenantCreated.getCassandraConnectionInfo().getCommandSourceTableOptions());
+  }
+
   @Test(expected = DuplicateIdentifierException.class)
   public void shouldFailCreateDuplicate() {
     final Tenant tenant = Fixture.getCompTestTenant();
@@ -29,13 +29,18 @@ public class ProvisionerActiveMQProperties {
   final public static String ACTIVEMQ_BROKER_URL_PROP = "activemq.brokerUrl";
   @SuppressWarnings("unused")
   final public static String ACTIVEMQ_CONCURRENCY_PROP = "activemq.concurrency";
+  @SuppressWarnings("unused")
+  final public static String ACTIVEMQ_TOPIC_PREFETCH_PROP = "activemq.topicPrefetch";
   @SuppressWarnings("WeakerAccess")
   final public static String ACTIVEMQ_BROKER_URL_DEFAULT = "vm://localhost?broker.persistent=false";
   @SuppressWarnings("WeakerAccess")
   final public static String ACTIVEMQ_CONCURRENCY_DEFAULT = "3-10";
+  @SuppressWarnings("WeakerAccess")
+  final public static int ACTIVEMQ_TOPIC_PREFETCH_DEFAULT = 100;
 
   private String brokerUrl = ACTIVEMQ_BROKER_URL_DEFAULT;
   private String concurrency = ACTIVEMQ_CONCURRENCY_DEFAULT;
+  private int topicPrefetch = ACTIVEMQ_TOPIC_PREFETCH_DEFAULT;
 
   public ProvisionerActiveMQProperties() {
   }
@@ -55,4 +60,12 @@ public class ProvisionerActiveMQProperties {
   public void setConcurrency(String concurrency) {
     this.concurrency = concurrency;
   }
+
+  public int getTopicPrefetch() {
+    return topicPrefetch;
+  }
+
+  public void setTopicPrefetch(int topicPrefetch) {
+    this.topicPrefetch = topicPrefetch;
+  }
 }
@@ -25,4 +25,11 @@ public interface ProvisionerConstants {
   String CONFIG_INTERNAL = "org.apache.fineract.cn.provisioner.internal";
   int ITERATION_COUNT = 4096;
   int HASH_LENGTH = 256;
+  String CLIENT_CHANGE_DESTINATION = "provisioner-v1-client-changes";
+  String APPLICATION_CHANGE_DESTINATION = "provisioner-v1-application-changes";
+  String ORIGIN_NODE_HEADER = "originNode";
+  String EXECUTOR_NAME = "provisioner-executor";
+  String RELOCATION_EXECUTOR_NAME = "provisioner-relocation-executor";
+  String SINGLE_CONSUMER_CONTAINER_FACTORY_NAME = "singleConsumerJmsListenerContainerFactory";
+  String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 }
@@ -19,9 +19,13 @@
 package org.apache.fineract.cn.provisioner.config;
 
 import org.apache.fineract.cn.provisioner.internal.util.DataStoreOption;
+import org.hibernate.validator.constraints.NotEmpty;
+import org.hibernate.validator.constraints.Range;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import javax.validation.Valid;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Myrle Krantz
@@ -31,6 +35,628 @@ public class ProvisionerProperties {
   @Valid
   private DataStoreOption dataStoreOption = DataStoreOption.ALL;
 
+  @Valid
+  private final NegativeCache negativeCache = new NegativeCache();
+
+  public static class NegativeCache {
+    @Range(min = 0)
+    private int ttl = 30;
+
+    @Range(min = 1)
+    private int maximumSize = 10000;
+
+    public int getTtl() {
+      return ttl;
+    }
+
+    public void setTtl(int ttl) {
+      this.ttl = ttl;
+    }
+
+    public int getMaximumSize() {
+      return maximumSize;
+    }
+
+    public void setMaximumSize(int maximumSize) {
+      this.maximumSize = maximumSize;
+    }
+
+  }
+
+  @Valid
+  private final Expectations expectations = new Expectations();
+
+  public static class Expectations {
+    //Seconds an identity event expectation is kept before it is reaped.
+    @Range(min = 1)
+    private int ttl = 60;
+
+    public int getTtl() {
+      return ttl;
+    }
+
+    public void setTtl(int ttl) {
+      this.ttl = ttl;
+    }
+  }
+
+  @Valid
+  private final Traces traces = new Traces();
+
+  public static class Traces {
+    //Number of completed provisioning traces kept in memory per tenant.
+    @Range(min = 0)
+    private int capacityPerTenant = 20;
+
+    //Number of tenants whose traces are kept in memory; the least recently traced tenant is dropped first.
+    @Range(min = 1)
+    private int tenantCapacity = 1000;
+
+    public int getCapacityPerTenant() {
+      return capacityPerTenant;
+    }
+
+    public void setCapacityPerTenant(int capacityPerTenant) {
+      this.capacityPerTenant = capacityPerTenant;
+    }
+
+    public int getTenantCapacity() {
+      return tenantCapacity;
+    }
+
+    public void setTenantCapacity(int tenantCapacity) {
+      this.tenantCapacity = tenantCapacity;
+    }
+  }
+
+  @Valid
+  private final Executor executor = new Executor();
+
+  public static class Executor {
+    //Threads shared by the provisioning work which is fanned out, for example tenant deletion.
+    @Range(min = 1)
+    private int poolSize = 8;
+
+    public int getPoolSize() {
+      return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+      this.poolSize = poolSize;
+    }
+  }
+
+  @Valid
+  private final Deletion deletion = new Deletion();
+
+  public static class Deletion {
+    //Tenants deleted at the same time on one Cassandra cluster during a bulk deletion.
+    @Range(min = 1)
+    private int parallelismPerCluster = 2;
+
+    public int getParallelismPerCluster() {
+      return parallelismPerCluster;
+    }
+
+    public void setParallelismPerCluster(int parallelismPerCluster) {
+      this.parallelismPerCluster = parallelismPerCluster;
+    }
+  }
+
+  @Valid
+  private final Template template = new Template();
+
+  public static class Template {
+    //Copy tenant databases from a pre-migrated template database instead of creating them empty.
+    private boolean enabled = false;
+
+    //Database kept migrated to the latest schemas of the tenant services, copied into the template.
+    private String sourceDatabase = "";
+
+    //Changing the version makes the provisioner copy a new template from the source database.
+    private String version = "1";
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public String getSourceDatabase() {
+      return sourceDatabase;
+    }
+
+    public void setSourceDatabase(String sourceDatabase) {
+      this.sourceDatabase = sourceDatabase;
+    }
+
+    public String getVersion() {
+      return version;
+    }
+
+    public void setVersion(String version) {
+      this.version = version;
+    }
+  }
+
+  @Valid
+  private final WarmPool warmPool = new WarmPool();
+
+  public static class WarmPool {
+    //Keep spare keyspaces and databases ready, which tenant creation claims instead of creating its own.
+    private boolean enabled = false;
+
+    //Spares kept ready per data store.
+    @Range(min = 0)
+    private int size = 2;
+
+    //Spares created per data store in one refill run.
+    @Range(min = 1)
+    private int refillBatchSize = 1;
+
+    //Spare keyspaces are created on the cluster of the provisioner, and only claimed by tenants asking for the
+    //same contact points and replication.
+    private String replicationType = "Simple";
+
+    private String replicas = "3";
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getSize() {
+      return size;
+    }
+
+    public void setSize(int size) {
+      this.size = size;
+    }
+
+    public int getRefillBatchSize() {
+      return refillBatchSize;
+    }
+
+    public void setRefillBatchSize(int refillBatchSize) {
+      this.refillBatchSize = refillBatchSize;
+    }
+
+    public String getReplicationType() {
+      return replicationType;
+    }
+
+    public void setReplicationType(String replicationType) {
+      this.replicationType = replicationType;
+    }
+
+    public String getReplicas() {
+      return replicas;
+    }
+
+    public void setReplicas(String replicas) {
+      this.replicas = replicas;
+    }
+  }
+
+  @Valid
+  private final SchemaChanges schemaChanges = new SchemaChanges();
+
+  public static class SchemaChanges {
+    //Tenants whose keyspace changes are pipelined between two waits for schema agreement.
+    @Range(min = 1)
+    private int maximumBatchSize = 16;
+
+    //Milliseconds to wait for schema agreement before going on regardless.
+    @Range(min = 0)
+    private int agreementTimeout = 10000;
+
+    //Milliseconds between the first two schema agreement checks, doubled after every further check.
+    @Range(min = 1)
+    private int initialBackoff = 50;
+
+    @Range(min = 1)
+    private int maximumBackoff = 1000;
+
+    public int getMaximumBatchSize() {
+      return maximumBatchSize;
+    }
+
+    public void setMaximumBatchSize(int maximumBatchSize) {
+      this.maximumBatchSize = maximumBatchSize;
+    }
+
+    public int getAgreementTimeout() {
+      return agreementTimeout;
+    }
+
+    public void setAgreementTimeout(int agreementTimeout) {
+      this.agreementTimeout = agreementTimeout;
+    }
+
+    public int getInitialBackoff() {
+      return initialBackoff;
+    }
+
+    public void setInitialBackoff(int initialBackoff) {
+      this.initialBackoff = initialBackoff;
+    }
+
+    public int getMaximumBackoff() {
+      return maximumBackoff;
+    }
+
+    public void setMaximumBackoff(int maximumBackoff) {
+      this.maximumBackoff = maximumBackoff;
+    }
+  }
+
+  @Valid
+  private final Permittables permittables = new Permittables();
+
+  public static class Permittables {
+    //Seconds the permittables and permission requirements of an application are reused across tenants.
+    @Range(min = 0)
+    private int ttl = 300;
+
+    //Applications whose permittables and permission requirements are kept at the same time.
+    @Range(min = 1)
+    private int maximumSize = 1000;
+
+    public int getTtl() {
+      return ttl;
+    }
+
+    public void setTtl(int ttl) {
+      this.ttl = ttl;
+    }
+
+    public int getMaximumSize() {
+      return maximumSize;
+    }
+
+    public void setMaximumSize(int maximumSize) {
+      this.maximumSize = maximumSize;
+    }
+  }
+
+  @Valid
+  private final Identity identity = new Identity();
+
+  public static class Identity {
+    //Permittable groups posted to one identity service instance at the same time.
+    @Range(min = 1)
+    private int concurrency = 4;
+
+    public int getConcurrency() {
+      return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+      this.concurrency = concurrency;
+    }
+  }
+
+  @Valid
+  private final Idempotency idempotency = new Idempotency();
+
+  public static class Idempotency {
+    //Seconds the result of a request carrying an idempotency key is replayed to repeated requests.
+    @Range(min = 0)
+    private int ttl = 60;
+
+    //Requests which are executing or whose results are kept at the same time.
+    @Range(min = 1)
+    private int maximumSize = 10000;
+
+    public int getTtl() {
+      return ttl;
+    }
+
+    public void setTtl(int ttl) {
+      this.ttl = ttl;
+    }
+
+    public int getMaximumSize() {
+      return maximumSize;
+    }
+
+    public void setMaximumSize(int maximumSize) {
+      this.maximumSize = maximumSize;
+    }
+  }
+
+  @Valid
+  private final Placement placement = new Placement();
+
+  public static class Placement {
+    //PostgreSQL servers a tenant created without database connection info is placed on.
+    @Valid
+    private List<DatabaseServer> databaseServers = new ArrayList<>();
+
+    //Cassandra clusters a tenant created without Cassandra connection info is placed on.
+    @Valid
+    private List<CassandraCluster> cassandraClusters = new ArrayList<>();
+
+    public static class DatabaseServer {
+      private String driverClass = "org.postgresql.Driver";
+
+      @NotEmpty
+      private String host;
+
+      @NotEmpty
+      private String port = "5432";
+
+      private String user;
+
+      private String password;
+
+      //Role creating the databases of tenants placed on this server, which has to be allowed to CREATE DATABASE.
+      private String adminUser;
+
+      private String adminPassword;
+
+      //Database the admin user connects to, since the database of the tenant doesn't exist yet.
+      @NotEmpty
+      private String maintenanceDatabase = "postgres";
+
+      //Share of tenants placed on this server, relative to the weights of the other servers.
+      @Range(min = 1)
+      private int weight = 1;
+
+      public String getDriverClass() {
+        return driverClass;
+      }
+
+      public void setDriverClass(String driverClass) {
+        this.driverClass = driverClass;
+      }
+
+      public String getHost() {
+        return host;
+      }
+
+      public void setHost(String host) {
+        this.host = host;
+      }
+
+      public String getPort() {
+        return port;
+      }
+
+      public void setPort(String port) {
+        this.port = port;
+      }
+
+      public String getUser() {
+        return user;
+      }
+
+      public void setUser(String user) {
+        this.user = user;
+      }
+
+      public String getPassword() {
+        return password;
+      }
+
+      public void setPassword(String password) {
+        this.password = password;
+      }
+
+      public String getAdminUser() {
+        return adminUser;
+      }
+
+      public void setAdminUser(String adminUser) {
+        this.adminUser = adminUser;
+      }
+
+      public String getAdminPassword() {
+        return adminPassword;
+      }
+
+      public void setAdminPassword(String adminPassword) {
+        this.adminPassword = adminPassword;
+      }
+
+      public String getMaintenanceDatabase() {
+        return maintenanceDatabase;
+      }
+
+      public void setMaintenanceDatabase(String maintenanceDatabase) {
+        this.maintenanceDatabase = maintenanceDatabase;
+      }
+
+      public int getWeight() {
+        return weight;
+      }
+
+      public void setWeight(int weight) {
+        this.weight = weight;
+      }
+    }
+
+    public static class CassandraCluster {
+      private String clusterName;
+
+      @NotEmpty
+      private String contactPoints;
+
+      private String replicationType = "Simple";
+
+      private String replicas = "3";
+
+      //Share of tenants placed on this cluster, relative to the weights of the other clusters.
+      @Range(min = 1)
+      private int weight = 1;
+
+      public String getClusterName() {
+        return clusterName;
+      }
+
+      public void setClusterName(String clusterName) {
+        this.clusterName = clusterName;
+      }
+
+      public String getContactPoints() {
+        return contactPoints;
+      }
+
+      public void setContactPoints(String contactPoints) {
+        this.contactPoints = contactPoints;
+      }
+
+      public String getReplicationType() {
+        return replicationType;
+      }
+
+      public void setReplicationType(String replicationType) {
+        this.replicationType = replicationType;
+      }
+
+      public String getReplicas() {
+        return replicas;
+      }
+
+      public void setReplicas(String replicas) {
+        this.replicas = replicas;
+      }
+
+      public int getWeight() {
+        return weight;
+      }
+
+      public void setWeight(int weight) {
+        this.weight = weight;
+      }
+    }
+
+    public List<DatabaseServer> getDatabaseServers() {
+      return databaseServers;
+    }
+
+    public void setDatabaseServers(List<DatabaseServer> databaseServers) {
+      this.databaseServers = databaseServers;
+    }
+
+    public List<CassandraCluster> getCassandraClusters() {
+      return cassandraClusters;
+    }
+
+    public void setCassandraClusters(List<CassandraCluster> cassandraClusters) {
+      this.cassandraClusters = cassandraClusters;
+    }
+  }
+
+  @Valid
+  private final Relocation relocation = new Relocation();
+
+  public static class Relocation {
+    //Executables dumping a tenant database from its server, and restoring the dump on the new server.
+    @NotEmpty
+    private String pgDump = "pg_dump";
+
+    @NotEmpty
+    private String pgRestore = "pg_restore";
+
+    //Drop the database on the old server once the tenant points to the new one.
+    private boolean dropSource = false;
+
+    //Relocations copying at the same time, on threads of their own, so that they don't hold up other provisioning.
+    @Range(min = 1)
+    private int concurrency = 2;
+
+    //Relocations waiting for a thread; more are rejected.
+    @Range(min = 0)
+    private int queueCapacity = 8;
+
+    public String getPgDump() {
+      return pgDump;
+    }
+
+    public void setPgDump(String pgDump) {
+      this.pgDump = pgDump;
+    }
+
+    public String getPgRestore() {
+      return pgRestore;
+    }
+
+    public void setPgRestore(String pgRestore) {
+      this.pgRestore = pgRestore;
+    }
+
+    public boolean isDropSource() {
+      return dropSource;
+    }
+
+    public void setDropSource(boolean dropSource) {
+      this.dropSource = dropSource;
+    }
+
+    public int getConcurrency() {
+      return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+      this.concurrency = concurrency;
+    }
+
+    public int getQueueCapacity() {
+      return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+    }
+  }
+
+  @Valid
+  private final SharedKeyspaces sharedKeyspaces = new SharedKeyspaces();
+
+  public static class SharedKeyspaces {
+    //Accept tenants in keyspace mode Shared; off by default, since a shared keyspace mixes the data of its tenants,
+    //and its command_source table is keyed by tenant, which only tenant services written for it read and write.
+    private boolean enabled = false;
+
+    //Tenants packed into one shared keyspace before another one is started.
+    @Range(min = 1)
+    private int tenantsPerKeyspace = 1000;
+
+    //Shared keyspaces are named after the prefix, a hash of their cluster and replication, and a sequence number.
+    @NotEmpty
+    private String keyspaceNamePrefix = "shared_";
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getTenantsPerKeyspace() {
+      return tenantsPerKeyspace;
+    }
+
+    public void setTenantsPerKeyspace(int tenantsPerKeyspace) {
+      this.tenantsPerKeyspace = tenantsPerKeyspace;
+    }
+
+    public String getKeyspaceNamePrefix() {
+      return keyspaceNamePrefix;
+    }
+
+    public void setKeyspaceNamePrefix(String keyspaceNamePrefix) {
+      this.keyspaceNamePrefix = keyspaceNamePrefix;
+    }
+  }
+
   public DataStoreOption getDataStoreOption() {
     return dataStoreOption;
   }
@@ -38,4 +664,60 @@ public class ProvisionerProperties {
   public void setDataStoreOption(DataStoreOption dataStoreOption) {
     this.dataStoreOption = dataStoreOption;
   }
+
+  public NegativeCache getNegativeCache() {
+    return negativeCache;
+  }
+
+  public Expectations getExpectations() {
+    return expectations;
+  }
+
+  public Traces getTraces() {
+    return traces;
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  public Deletion getDeletion() {
+    return deletion;
+  }
+
+  public Template getTemplate() {
+    return template;
+  }
+
+  public WarmPool getWarmPool() {
+    return warmPool;
+  }
+
+  public SchemaChanges getSchemaChanges() {
+    return schemaChanges;
+  }
+
+  public Permittables getPermittables() {
+    return permittables;
+  }
+
+  public Identity getIdentity() {
+    return identity;
+  }
+
+  public Idempotency getIdempotency() {
+    return idempotency;
+  }
+
+  public Placement getPlacement() {
+    return placement;
+  }
+
+  public Relocation getRelocation() {
+    return relocation;
+  }
+
+  public SharedKeyspaces getSharedKeyspaces() {
+    return sharedKeyspaces;
+  }
 }
@@ -18,7 +18,12 @@
  */
 package org.apache.fineract.cn.provisioner.config;
 
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
+import org.apache.fineract.cn.provisioner.internal.util.RefreshTokenSigner;
+import org.apache.fineract.cn.provisioner.internal.util.RequestCoalescer;
 import org.apache.fineract.cn.provisioner.internal.util.TokenProvider;
+import org.apache.activemq.ActiveMQPrefetchPolicy;
 import org.apache.activemq.jms.pool.PooledConnectionFactory;
 import org.apache.activemq.spring.ActiveMQConnectionFactory;
 import org.apache.fineract.cn.anubis.config.EnableAnubis;
@@ -30,6 +35,16 @@ import org.apache.fineract.cn.crypto.config.EnableCrypto;
 import org.apache.fineract.cn.lang.config.EnableApplicationName;
 import org.apache.fineract.cn.lang.config.EnableServiceException;
 import org.apache.fineract.cn.postgresql.config.EnablePostgreSQL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -40,6 +55,8 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
 import org.springframework.jms.config.JmsListenerContainerFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.servlet.config.annotation.PathMatchConfigurer;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
@@ -59,6 +76,7 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter
 @EnableCassandra
 @EnableServiceException
 @EnableApplicationName
+@EnableScheduling
 @EnableConfigurationProperties({ProvisionerActiveMQProperties.class, ProvisionerProperties.class, SystemProperties.class})
 public class ProvisionerServiceConfig extends WebMvcConfigurerAdapter {
 
@@ -71,16 +89,75 @@ public class ProvisionerServiceConfig extends WebMvcConfigurerAdapter {
     return LoggerFactory.getLogger(ProvisionerConstants.LOGGER_NAME);
   }
 
+  @Bean
+  public ProvisionerMetrics provisionerMetrics() {
+    return new ProvisionerMetrics();
+  }
+
+  @Bean
+  public ProvisioningTracer provisioningTracer(final ProvisionerProperties provisionerProperties) {
+    return new ProvisioningTracer(provisionerProperties.getTraces().getCapacityPerTenant(),
+        provisionerProperties.getTraces().getTenantCapacity());
+  }
+
+  @Bean
+  public RequestCoalescer requestCoalescer(final ProvisionerProperties provisionerProperties,
+                                           final ProvisionerMetrics provisionerMetrics) {
+    final ProvisionerProperties.Idempotency idempotency = provisionerProperties.getIdempotency();
+    return new RequestCoalescer(idempotency.getTtl(), TimeUnit.SECONDS, idempotency.getMaximumSize(), provisionerMetrics);
+  }
+
+  @Bean(name = ProvisionerConstants.EXECUTOR_NAME, destroyMethod = "shutdown")
+  public ExecutorService provisionerExecutor(final ProvisionerProperties provisionerProperties) {
+    final AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newFixedThreadPool(provisionerProperties.getExecutor().getPoolSize(), runnable -> {
+      final Thread thread = new Thread(runnable, "provisioner-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  @Bean(name = ProvisionerConstants.RELOCATION_EXECUTOR_NAME, destroyMethod = "shutdown")
+  public ExecutorService relocationExecutor(final ProvisionerProperties provisionerProperties) {
+    final ProvisionerProperties.Relocation relocation = provisionerProperties.getRelocation();
+    final AtomicInteger threadCount = new AtomicInteger();
+    //Bounded, and rejecting once full, since every relocation holds its thread for the whole copy.
+    return new ThreadPoolExecutor(relocation.getConcurrency(), relocation.getConcurrency(), 0L, TimeUnit.MILLISECONDS,
+        relocation.getQueueCapacity() > 0
+            ? new ArrayBlockingQueue<>(relocation.getQueueCapacity())
+            : new SynchronousQueue<>(),
+        runnable -> {
+          final Thread thread = new Thread(runnable, "provisioner-relocation-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.AbortPolicy());
+  }
+
   @Bean(name = "tokenProvider")
   public TokenProvider tokenProvider(final SystemProperties systemProperties,
                                      @SuppressWarnings("SpringJavaAutowiringInspection") final SystemAccessTokenSerializer tokenSerializer,
-                                     @Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger) {
+                                     @Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
+                                     final ProvisionerMetrics provisionerMetrics) {
     final String timestamp = systemProperties.getPublicKey().getTimestamp();
     logger.info("Provisioner key timestamp: " + timestamp);
 
     return new TokenProvider( timestamp,
         systemProperties.getPrivateKey().getModulus(),
-        systemProperties.getPrivateKey().getExponent(), tokenSerializer);
+        systemProperties.getPrivateKey().getExponent(), tokenSerializer, provisionerMetrics);
+  }
+
+  @Bean
+  public RefreshTokenSigner refreshTokenSigner(final SystemProperties systemProperties) {
+    try {
+      //Derived from the private key so that all instances sharing the key accept each other's refresh tokens.
+      final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+      messageDigest.update("refresh-token".getBytes(StandardCharsets.UTF_8));
+      messageDigest.update(systemProperties.getPrivateKey().getExponent().toByteArray());
+      return new RefreshTokenSigner(messageDigest.digest());
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException("Could not derive refresh token key!", e);
+    }
   }
 
   @Bean
@@ -98,6 +175,10 @@ public class ProvisionerServiceConfig extends WebMvcConfigurerAdapter {
     final PooledConnectionFactory pooledConnectionFactory = new PooledConnectionFactory();
     final ActiveMQConnectionFactory activeMQConnectionFactory = new ActiveMQConnectionFactory();
     activeMQConnectionFactory.setBrokerURL(activeMQProperties.getBrokerUrl());
+    final ActiveMQPrefetchPolicy prefetchPolicy = new ActiveMQPrefetchPolicy();
+    prefetchPolicy.setTopicPrefetch(activeMQProperties.getTopicPrefetch());
+    prefetchPolicy.setDurableTopicPrefetch(activeMQProperties.getTopicPrefetch());
+    activeMQConnectionFactory.setPrefetchPolicy(prefetchPolicy);
     pooledConnectionFactory.setConnectionFactory(activeMQConnectionFactory);
 
     return pooledConnectionFactory;
@@ -112,4 +193,22 @@ public class ProvisionerServiceConfig extends WebMvcConfigurerAdapter {
     factory.setConcurrency(activeMQProperties.getConcurrency());
     return factory;
   }
+
+  //Every consumer of a topic receives every message, so listeners which handle each message once per node
+  //must have exactly one.
+  @Bean(name = ProvisionerConstants.SINGLE_CONSUMER_CONTAINER_FACTORY_NAME)
+  public JmsListenerContainerFactory singleConsumerJmsListenerContainerFactory(final PooledConnectionFactory jmsFactory) {
+    final DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+    factory.setPubSubDomain(true);
+    factory.setConnectionFactory(jmsFactory);
+    factory.setConcurrency("1");
+    return factory;
+  }
+
+  @Bean
+  public JmsTemplate jmsTemplate(final PooledConnectionFactory jmsFactory) {
+    final JmsTemplate jmsTemplate = new JmsTemplate(jmsFactory);
+    jmsTemplate.setPubSubDomain(true);
+    return jmsTemplate;
+  }
 }
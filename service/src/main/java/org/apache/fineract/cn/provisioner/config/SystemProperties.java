@@ -48,6 +48,9 @@ public class SystemProperties {
     @Range(min = 1)
     private int ttl = 60;
 
+    @Range(min = 1)
+    private int refreshTtl = 1440;
+
     public int getTtl() {
       return ttl;
     }
@@ -55,6 +58,14 @@ public class SystemProperties {
     public void setTtl(int ttl) {
       this.ttl = ttl;
     }
+
+    public int getRefreshTtl() {
+      return refreshTtl;
+    }
+
+    public void setRefreshTtl(int refreshTtl) {
+      this.refreshTtl = refreshTtl;
+    }
   }
 
   public static class PublicKey {
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.listener;
+
+import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
+import org.apache.fineract.cn.provisioner.internal.service.ApplicationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jms.annotation.JmsListener;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reloads the application catalog when another provisioner node creates or deletes an application.
+ */
+@Component
+public class ApplicationListener {
+  private final ApplicationService applicationService;
+
+  @Autowired
+  public ApplicationListener(final ApplicationService applicationService) {
+    this.applicationService = applicationService;
+  }
+
+  //One consumer, so that a change reloads the catalog once per node rather than once per consumer.
+  @JmsListener(
+          destination = ProvisionerConstants.APPLICATION_CHANGE_DESTINATION,
+          containerFactory = ProvisionerConstants.SINGLE_CONSUMER_CONTAINER_FACTORY_NAME
+  )
+  public void onApplicationChanged(
+          @Header(value = ProvisionerConstants.ORIGIN_NODE_HEADER, required = false) final String originNodeIdentifier,
+          final String applicationName) {
+    applicationService.reloadAfterChange(originNodeIdentifier == null ? "" : originNodeIdentifier, applicationName);
+  }
+}
@@ -22,15 +22,23 @@ import static org.apache.fineract.cn.identity.api.v1.events.EventConstants.OPERA
 import static org.apache.fineract.cn.identity.api.v1.events.EventConstants.OPERATION_PUT_APPLICATION_SIGNATURE;
 
 import com.google.gson.Gson;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.apache.fineract.cn.identity.api.v1.events.ApplicationSignatureEvent;
 import org.apache.fineract.cn.identity.api.v1.events.EventConstants;
 import org.apache.fineract.cn.lang.config.TenantHeaderFilter;
 import org.apache.fineract.cn.lang.listening.EventExpectation;
 import org.apache.fineract.cn.lang.listening.EventKey;
-import org.apache.fineract.cn.lang.listening.TenantedEventListener;
+import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.support.JmsHeaders;
 import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 /**
@@ -39,49 +47,125 @@ import org.springframework.stereotype.Component;
 @Component
 public class IdentityListener {
   private final Gson gson;
-  private final TenantedEventListener eventListener = new TenantedEventListener();
+  private final Logger logger;
+  private final PendingEventExpectations pendingEventExpectations;
+  private final ProvisionerMetrics provisionerMetrics;
 
   @Autowired
-  public IdentityListener(final Gson gson) {
+  public IdentityListener(final Gson gson,
+                          @Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
+                          final ProvisionerProperties provisionerProperties,
+                          final ProvisionerMetrics provisionerMetrics) {
     this.gson = gson;
+    this.logger = logger;
+    this.pendingEventExpectations = new PendingEventExpectations(
+        TimeUnit.SECONDS.toNanos(provisionerProperties.getExpectations().getTtl()));
+    this.provisionerMetrics = provisionerMetrics;
+    this.provisionerMetrics.gauge("provisioner_identity_expectations_pending", pendingEventExpectations::size);
+    this.provisionerMetrics.gauges("provisioner_identity_expectations_pending_by_tenant", "tenant", pendingEventExpectations::countByTenant);
   }
 
+  //A single subscription without a selector: the broker doesn't have to evaluate selectors per message, and
+  //the few identity events provisioning waits for are dispatched here by their operation.  It has one consumer,
+  //since every consumer of the topic would receive every event.
   @JmsListener(
           subscription = EventConstants.DESTINATION,
           destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_POST_PERMITTABLE_GROUP
+          containerFactory = ProvisionerConstants.SINGLE_CONSUMER_CONTAINER_FACTORY_NAME
   )
+  public void onIdentityEvent(
+          @Header(value = EventConstants.OPERATION_HEADER, required = false) final String operation,
+          @Header(value = TenantHeaderFilter.TENANT_HEADER, required = false) final String tenantIdentifier,
+          @Header(value = JmsHeaders.TIMESTAMP, required = false) final Long publishedOn,
+          final String payload) {
+    if (operation == null || tenantIdentifier == null) {
+      return;
+    }
+
+    final long pendingNanos;
+    switch (operation) {
+      case OPERATION_POST_PERMITTABLE_GROUP:
+        pendingNanos = notifyPermittableGroupCreated(tenantIdentifier, payload);
+        break;
+      case OPERATION_PUT_APPLICATION_SIGNATURE:
+        pendingNanos = notifyApplicationSignatureSet(tenantIdentifier, payload);
+        break;
+      default:
+        return;
+    }
+
+    if (pendingNanos == PendingEventExpectations.NOT_EXPECTED) {
+      return;
+    }
+
+    provisionerMetrics.record("provisioner_identity_event_wait", pendingNanos, "operation", operation);
+    if (publishedOn != null && publishedOn != 0L) {
+      provisionerMetrics.record("provisioner_identity_event_delivery",
+          TimeUnit.MILLISECONDS.toNanos(Math.max(0L, System.currentTimeMillis() - publishedOn)), "operation", operation);
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("Identity event {} for tenant {} woke its waiter {} ms after the expectation was registered, and {} ms after it was published.",
+          operation, tenantIdentifier,
+          TimeUnit.NANOSECONDS.toMillis(pendingNanos),
+          publishedOn == null || publishedOn == 0L ? "?" : System.currentTimeMillis() - publishedOn);
+    }
+  }
+
   public void onCreatePermittableGroup(
-          @Header(TenantHeaderFilter.TENANT_HEADER)final String tenantIdentifier,
+          final String tenantIdentifier,
           final String payload) throws Exception {
-    eventListener.notify(new EventKey(tenantIdentifier, OPERATION_POST_PERMITTABLE_GROUP, payload));
+    notifyPermittableGroupCreated(tenantIdentifier, payload);
   }
 
-  @JmsListener(
-          subscription = EventConstants.DESTINATION,
-          destination = EventConstants.DESTINATION,
-          selector = EventConstants.SELECTOR_PUT_APPLICATION_SIGNATURE
-  )
   public void onSetApplicationSignature(
-          @Header(TenantHeaderFilter.TENANT_HEADER)final String tenantIdentifier,
+          final String tenantIdentifier,
           final String payload) throws Exception {
+    notifyApplicationSignatureSet(tenantIdentifier, payload);
+  }
+
+  private long notifyPermittableGroupCreated(final String tenantIdentifier, final String payload) {
+    return pendingEventExpectations.notify(new EventKey(tenantIdentifier, OPERATION_POST_PERMITTABLE_GROUP, payload));
+  }
+
+  private long notifyApplicationSignatureSet(final String tenantIdentifier, final String payload) {
     final ApplicationSignatureEvent event = gson.fromJson(payload, ApplicationSignatureEvent.class);
-    eventListener.notify(new EventKey(tenantIdentifier, OPERATION_PUT_APPLICATION_SIGNATURE, event));
+    return pendingEventExpectations.notify(new EventKey(tenantIdentifier, OPERATION_PUT_APPLICATION_SIGNATURE, event));
   }
 
   public EventExpectation expectPermittableGroupCreation(final String tenantIdentifier,
                                                          final String permittableGroupIdentifier) {
-    return eventListener.expect(new EventKey(tenantIdentifier, OPERATION_POST_PERMITTABLE_GROUP, permittableGroupIdentifier));
+    return pendingEventExpectations.expect(tenantIdentifier, new EventKey(tenantIdentifier, OPERATION_POST_PERMITTABLE_GROUP, permittableGroupIdentifier));
   }
 
   public EventExpectation expectApplicationSignatureSet(final String tenantIdentifier,
                                                         final String applicationIdentifier,
                                                         final String keyTimestamp) {
     final ApplicationSignatureEvent expectedEvent = new ApplicationSignatureEvent(applicationIdentifier, keyTimestamp);
-    return eventListener.expect(new EventKey(tenantIdentifier, OPERATION_PUT_APPLICATION_SIGNATURE, expectedEvent));
+    return pendingEventExpectations.expect(tenantIdentifier, new EventKey(tenantIdentifier, OPERATION_PUT_APPLICATION_SIGNATURE, expectedEvent));
   }
 
   public void withdrawExpectation(final EventExpectation eventExpectation) {
-    eventListener.withdrawExpectation(eventExpectation);
+    pendingEventExpectations.withdraw(eventExpectation);
+  }
+
+  //Waiters normally withdraw their expectation when they give up, this catches the ones that don't.
+  @Scheduled(
+      initialDelayString = "${provisioner.expectations.reapInterval:30000}",
+      fixedDelayString = "${provisioner.expectations.reapInterval:30000}")
+  public void reapExpiredExpectations() {
+    final int reaped = pendingEventExpectations.reap();
+    provisionerMetrics.increment("provisioner_identity_expectations_reaped", reaped);
+    if (reaped > 0) {
+      logger.warn("Withdrew {} identity event expectations which outlived their deadline, {} still pending by tenant: {}.",
+          reaped, pendingEventExpectations.size(), pendingEventExpectations.countByTenant());
+    }
+  }
+
+  public int getPendingExpectationCount() {
+    return pendingEventExpectations.size();
+  }
+
+  public Map<String, Long> getPendingExpectationCountsByTenant() {
+    return pendingEventExpectations.countByTenant();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.listener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import org.apache.fineract.cn.lang.listening.EventExpectation;
+import org.apache.fineract.cn.lang.listening.EventKey;
+import org.apache.fineract.cn.lang.listening.TenantedEventListener;
+
+/**
+ * The expectations provisioning is currently waiting on, keyed by the identity event which fulfills them.  Signaling is
+ * delegated to {@link TenantedEventListener}; this class additionally gives each expectation a deadline, so that
+ * expectations for events which never arrive can be reaped instead of being kept forever.
+ */
+class PendingEventExpectations {
+
+  private static class PendingEventExpectation {
+    final String tenantIdentifier;
+    final EventExpectation eventExpectation;
+    final long expectedAtNanos;
+    final long deadlineNanos;
+
+    PendingEventExpectation(final String tenantIdentifier,
+                            final EventExpectation eventExpectation,
+                            final long expectedAtNanos,
+                            final long deadlineNanos) {
+      this.tenantIdentifier = tenantIdentifier;
+      this.eventExpectation = eventExpectation;
+      this.expectedAtNanos = expectedAtNanos;
+      this.deadlineNanos = deadlineNanos;
+    }
+  }
+
+  static final long NOT_EXPECTED = -1L;
+
+  private final TenantedEventListener eventListener = new TenantedEventListener();
+  private final Map<EventKey, PendingEventExpectation> pending = new ConcurrentHashMap<>();
+  private final long timeToLiveNanos;
+  private final LongSupplier nanoClock;
+
+  PendingEventExpectations(final long timeToLiveNanos) {
+    this(timeToLiveNanos, System::nanoTime);
+  }
+
+  PendingEventExpectations(final long timeToLiveNanos, final LongSupplier nanoClock) {
+    super();
+    this.timeToLiveNanos = timeToLiveNanos;
+    this.nanoClock = nanoClock;
+  }
+
+  EventExpectation expect(final String tenantIdentifier, final EventKey eventKey) {
+    final EventExpectation eventExpectation = this.eventListener.expect(eventKey);
+    final long now = this.nanoClock.getAsLong();
+    this.pending.put(eventKey, new PendingEventExpectation(tenantIdentifier, eventExpectation, now, now + this.timeToLiveNanos));
+    return eventExpectation;
+  }
+
+  /**
+   * @return the nanoseconds the fulfilled expectation was pending, or {@link #NOT_EXPECTED} if nobody was waiting
+   * for the event.
+   */
+  long notify(final EventKey eventKey) {
+    final PendingEventExpectation pendingEventExpectation = this.pending.remove(eventKey);
+    this.eventListener.notify(eventKey);
+    return pendingEventExpectation == null ? NOT_EXPECTED : this.nanoClock.getAsLong() - pendingEventExpectation.expectedAtNanos;
+  }
+
+  void withdraw(final EventExpectation eventExpectation) {
+    //Only withdraw from the event listener if the expectation is still pending, since the event listener withdraws
+    //by key, and might otherwise drop a newer expectation for the same event.
+    if (this.pending.values().removeIf(x -> x.eventExpectation == eventExpectation)) {
+      this.eventListener.withdrawExpectation(eventExpectation);
+    }
+  }
+
+  /**
+   * Withdraws all expectations whose deadline has passed.  Their waiters are released as if they had been
+   * withdrawn explicitly.
+   *
+   * @return the number of expectations reaped.
+   */
+  int reap() {
+    final long now = this.nanoClock.getAsLong();
+    int reaped = 0;
+    for (final Map.Entry<EventKey, PendingEventExpectation> entry : this.pending.entrySet()) {
+      final PendingEventExpectation pendingEventExpectation = entry.getValue();
+      if (now - pendingEventExpectation.deadlineNanos >= 0
+          && this.pending.remove(entry.getKey(), pendingEventExpectation)) {
+        this.eventListener.withdrawExpectation(pendingEventExpectation.eventExpectation);
+        reaped++;
+      }
+    }
+    return reaped;
+  }
+
+  int size() {
+    return this.pending.size();
+  }
+
+  Map<String, Long> countByTenant() {
+    return this.pending.values().stream()
+        .collect(Collectors.groupingBy(x -> x.tenantIdentifier, Collectors.counting()));
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.schemabuilder.Create;
+import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+
+/**
+ * Records applied migrations in the schema_version table of the meta keyspace.  Nodes serialize on a
+ * lightweight transaction over a single row of the schema_lock table.  The lock row expires, so a node which
+ * dies while migrating does not block the others forever.
+ */
+final class CassandraSchemaVersionStore implements SchemaVersionStore {
+
+  static final String VERSION_TABLE_NAME = "schema_version";
+  static final String LOCK_TABLE_NAME = "schema_lock";
+  private static final String LOCK_NAME = "meta";
+  private static final int LOCK_TTL_IN_SECONDS = 300;
+  //Waiting longer than the lock lives means a waiter always outlasts the lock of a node which died mid-migration.
+  private static final long LOCK_TIMEOUT_IN_MILLIS = TimeUnit.SECONDS.toMillis(2 * LOCK_TTL_IN_SECONDS);
+  private static final long LOCK_RETRY_INTERVAL_IN_MILLIS = 500L;
+
+  private final Logger logger;
+  private final Session session;
+  private final String keyspaceName;
+  private final String owner;
+
+  CassandraSchemaVersionStore(final Logger logger, final Session session, final String keyspaceName) {
+    super();
+    this.logger = logger;
+    this.session = session;
+    this.keyspaceName = keyspaceName;
+    this.owner = UUID.randomUUID().toString();
+  }
+
+  @Override
+  public String getName() {
+    return "keyspace " + this.keyspaceName;
+  }
+
+  @Override
+  public void initialize() {
+    final KeyspaceMetadata keyspace = this.session.getCluster().getMetadata().getKeyspace(this.keyspaceName);
+
+    this.createTableIfNotExists(keyspace, VERSION_TABLE_NAME,
+        SchemaBuilder.createTable(VERSION_TABLE_NAME).ifNotExists()
+            .addPartitionKey("version", DataType.cint())
+            .addColumn("description", DataType.text())
+            .addColumn("applied_on", DataType.timestamp())
+            .addColumn("duration_in_millis", DataType.bigint()));
+
+    this.createTableIfNotExists(keyspace, LOCK_TABLE_NAME,
+        SchemaBuilder.createTable(LOCK_TABLE_NAME).ifNotExists()
+            .addPartitionKey("name", DataType.text())
+            .addColumn("owner", DataType.text())
+            .addColumn("locked_on", DataType.timestamp()));
+  }
+
+  @Override
+  public Set<Integer> getAppliedVersions() {
+    final Set<Integer> appliedVersions = new HashSet<>();
+    for (final Row row : this.session.execute("SELECT version FROM " + VERSION_TABLE_NAME)) {
+      appliedVersions.add(row.getInt("version"));
+    }
+    return appliedVersions;
+  }
+
+  @Override
+  public void lock() throws InterruptedException {
+    final BoundStatement lockStatement = this.session.prepare(
+        "INSERT INTO " + LOCK_TABLE_NAME + " (name, owner, locked_on) VALUES (?, ?, ?) IF NOT EXISTS USING TTL " + LOCK_TTL_IN_SECONDS).bind();
+    lockStatement.setString("name", LOCK_NAME);
+    lockStatement.setString("owner", this.owner);
+
+    final long deadline = System.currentTimeMillis() + LOCK_TIMEOUT_IN_MILLIS;
+    while (true) {
+      lockStatement.setTimestamp("locked_on", new Date());
+      final Row lockResult = this.session.execute(lockStatement).one();
+      if (lockResult.getBool("[applied]")) {
+        return;
+      }
+      if (System.currentTimeMillis() > deadline) {
+        throw new IllegalStateException("Timed out waiting for the schema lock of " + this.getName()
+            + ", held by " + lockResult.getString("owner") + ".");
+      }
+      this.logger.info("Waiting for the schema lock of {}, held by {}.", this.getName(), lockResult.getString("owner"));
+      Thread.sleep(LOCK_RETRY_INTERVAL_IN_MILLIS);
+    }
+  }
+
+  @Override
+  public void unlock() {
+    final BoundStatement unlockStatement =
+        this.session.prepare("DELETE FROM " + LOCK_TABLE_NAME + " WHERE name = ? IF owner = ?").bind();
+    unlockStatement.setString("name", LOCK_NAME);
+    unlockStatement.setString("owner", this.owner);
+    this.session.execute(unlockStatement);
+  }
+
+  @Override
+  public void recordApplied(final SchemaMigration schemaMigration, final long durationInMillis) {
+    final BoundStatement recordStatement = this.session.prepare(
+        "INSERT INTO " + VERSION_TABLE_NAME + " (version, description, applied_on, duration_in_millis) VALUES (?, ?, ?, ?)").bind();
+    recordStatement.setInt("version", schemaMigration.getVersion());
+    recordStatement.setString("description", schemaMigration.getDescription());
+    recordStatement.setTimestamp("applied_on", new Date());
+    recordStatement.setLong("duration_in_millis", durationInMillis);
+    this.session.execute(recordStatement);
+  }
+
+  private void createTableIfNotExists(final KeyspaceMetadata keyspace, final String tableName, final Create createTableStatement) {
+    if (keyspace.getTable(tableName) == null) {
+      this.logger.info("Creating table {} in keyspace {}.", tableName, this.keyspaceName);
+      this.session.execute(createTableStatement.buildInternal());
+    }
+  }
+}
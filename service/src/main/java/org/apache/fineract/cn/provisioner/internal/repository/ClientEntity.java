@@ -88,6 +88,22 @@ public class ClientEntity {
     this.homepage = homepage;
   }
 
+  /**
+   * @return false if a client of the same name already exists.
+   */
+  public boolean insertIfNotExists(final LightweightTransactions lightweightTransactions) {
+    return lightweightTransactions.insertIfNotExists(TABLE_NAME,
+        new String[]{NAME_COLUMN, DESCRIPTION_COLUMN, REDIRECT_URI_COLUMN, VENDOR_COLUMN, HOMEPAGE_COLUMN},
+        this.name, this.description, this.redirectUri, this.vendor, this.homepage);
+  }
+
+  /**
+   * Removes the client conditionally, since it was written conditionally.
+   */
+  public static void deleteIfExists(final LightweightTransactions lightweightTransactions, final String name) {
+    lightweightTransactions.deleteIfExists(TABLE_NAME, NAME_COLUMN, name);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
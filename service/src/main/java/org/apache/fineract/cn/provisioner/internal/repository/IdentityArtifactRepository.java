@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Content hashes of the permittable groups, application permissions and call endpoint sets which are in place
+ * in the identity service of a tenant.  The hashes of a tenant are forgotten whenever its identity service is
+ * initialized anew.
+ */
+@Component
+public class IdentityArtifactRepository {
+
+  static final String TABLE_NAME = "identity_artifacts";
+  static final String TENANT_IDENTIFIER_COLUMN = "tenant_identifier";
+  static final String ARTIFACT_KEY_COLUMN = "artifact_key";
+  static final String CONTENT_HASH_COLUMN = "content_hash";
+
+  private final CassandraSessionProvider cassandraSessionProvider;
+
+  @Autowired
+  public IdentityArtifactRepository(final @Nonnull CassandraSessionProvider cassandraSessionProvider) {
+    super();
+    this.cassandraSessionProvider = cassandraSessionProvider;
+  }
+
+  public Map<String, String> findHashes(final @Nonnull String tenantIdentifier) {
+    final Map<String, String> hashes = new HashMap<>();
+    for (final Row row : this.getSession().execute("SELECT " + ARTIFACT_KEY_COLUMN + ", " + CONTENT_HASH_COLUMN
+        + " FROM " + TABLE_NAME + " WHERE " + TENANT_IDENTIFIER_COLUMN + " = ?", tenantIdentifier)) {
+      hashes.put(row.getString(ARTIFACT_KEY_COLUMN), row.getString(CONTENT_HASH_COLUMN));
+    }
+    return hashes;
+  }
+
+  public void rememberHash(final @Nonnull String tenantIdentifier,
+                           final @Nonnull String artifactKey,
+                           final @Nonnull String contentHash) {
+    this.getSession().execute("INSERT INTO " + TABLE_NAME + " (" + TENANT_IDENTIFIER_COLUMN + ", "
+        + ARTIFACT_KEY_COLUMN + ", " + CONTENT_HASH_COLUMN + ") VALUES (?, ?, ?)",
+        tenantIdentifier, artifactKey, contentHash);
+  }
+
+  public void forgetAll(final @Nonnull String tenantIdentifier) {
+    this.getSession().execute("DELETE FROM " + TABLE_NAME + " WHERE " + TENANT_IDENTIFIER_COLUMN + " = ?",
+        tenantIdentifier);
+  }
+
+  private Session getSession() {
+    return this.cassandraSessionProvider.getAdminSession();
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Conditional writes to the meta data tables in the admin keyspace.  An insert which only applies if the row
+ * doesn't exist yet both writes the row and reports a conflict in one round trip, and unlike a read followed by a
+ * write it can't be raced by another provisioner node.  Rows written this way are also removed conditionally,
+ * since a plain delete isn't ordered against the Paxos rounds of conditional writes to the same row.  The
+ * statements are prepared once and reused for the lifetime of this bean.
+ */
+@Component
+public class LightweightTransactions {
+
+  private final CassandraSessionProvider cassandraSessionProvider;
+  private final Map<String, PreparedStatement> preparedStatements = new ConcurrentHashMap<>();
+
+  @Autowired
+  public LightweightTransactions(final CassandraSessionProvider cassandraSessionProvider) {
+    super();
+    this.cassandraSessionProvider = cassandraSessionProvider;
+  }
+
+  /**
+   * @return false if a row with the same primary key already exists, in which case nothing was written.
+   */
+  public boolean insertIfNotExists(final String tableName,
+                                   final String[] columnNames,
+                                   final Object... values) {
+    final String insert = "INSERT INTO " + tableName + " (" + String.join(", ", columnNames) + ") VALUES ("
+        + String.join(", ", Collections.nCopies(columnNames.length, "?")) + ") IF NOT EXISTS";
+    return this.execute(insert, values);
+  }
+
+  /**
+   * @return false if no row with the given key exists, in which case nothing was deleted.
+   */
+  public boolean deleteIfExists(final String tableName,
+                                final String keyColumnName,
+                                final Object key) {
+    return this.execute("DELETE FROM " + tableName + " WHERE " + keyColumnName + " = ? IF EXISTS", key);
+  }
+
+  private boolean execute(final String cql, final Object... values) {
+    final Session session = this.cassandraSessionProvider.getAdminSession();
+    final PreparedStatement preparedStatement = this.preparedStatements.computeIfAbsent(cql, session::prepare);
+    return session.execute(preparedStatement.bind(values)).wasApplied();
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records applied migrations in the schema_version table of the provisioner database.  Nodes serialize on a
+ * session level advisory lock, which PostgreSQL releases on its own if the connection of a node is lost.
+ */
+@SuppressWarnings({"SqlNoDataSourceInspection", "SqlDialectInspection"})
+final class PostgreSQLSchemaVersionStore implements SchemaVersionStore {
+
+  static final String VERSION_TABLE_NAME = "schema_version";
+  //Arbitrary, but must be the same on all nodes.
+  private static final long ADVISORY_LOCK_KEY = 0x70726f7673696f6eL;
+
+  private final Connection connection;
+  private final String databaseName;
+
+  PostgreSQLSchemaVersionStore(final Connection connection, final String databaseName) {
+    super();
+    this.connection = connection;
+    this.databaseName = databaseName;
+  }
+
+  @Override
+  public String getName() {
+    return "database " + this.databaseName;
+  }
+
+  @Override
+  public void initialize() throws SQLException {
+    if (this.versionTableExists()) {
+      return;
+    }
+
+    //Concurrent CREATE TABLE IF NOT EXISTS statements can still collide in PostgreSQL, so create under the lock.
+    this.lock();
+    try (final Statement statement = this.connection.createStatement()) {
+      statement.execute("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE_NAME + " (version INTEGER NOT NULL, description VARCHAR(256) NOT NULL, applied_on TIMESTAMP NOT NULL, duration_in_millis BIGINT NOT NULL, PRIMARY KEY (version))");
+    } finally {
+      this.unlock();
+    }
+  }
+
+  @Override
+  public Set<Integer> getAppliedVersions() throws SQLException {
+    final Set<Integer> appliedVersions = new HashSet<>();
+    try (
+        final Statement statement = this.connection.createStatement();
+        final ResultSet resultSet = statement.executeQuery("SELECT version FROM " + VERSION_TABLE_NAME)
+    ) {
+      while (resultSet.next()) {
+        appliedVersions.add(resultSet.getInt(1));
+      }
+    }
+    return appliedVersions;
+  }
+
+  @Override
+  public void lock() throws SQLException {
+    this.executeAdvisoryLockFunction("pg_advisory_lock");
+  }
+
+  @Override
+  public void unlock() throws SQLException {
+    this.executeAdvisoryLockFunction("pg_advisory_unlock");
+  }
+
+  @Override
+  public void recordApplied(final SchemaMigration schemaMigration, final long durationInMillis) throws SQLException {
+    try (final PreparedStatement statement = this.connection.prepareStatement(
+        "INSERT INTO " + VERSION_TABLE_NAME + " (version, description, applied_on, duration_in_millis) VALUES (?, ?, ?, ?)")) {
+      statement.setInt(1, schemaMigration.getVersion());
+      statement.setString(2, schemaMigration.getDescription());
+      statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+      statement.setLong(4, durationInMillis);
+      statement.executeUpdate();
+    }
+  }
+
+  private boolean versionTableExists() throws SQLException {
+    try (final PreparedStatement statement = this.connection.prepareStatement("SELECT to_regclass(?)")) {
+      statement.setString(1, VERSION_TABLE_NAME);
+      try (final ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() && resultSet.getString(1) != null;
+      }
+    }
+  }
+
+  private void executeAdvisoryLockFunction(final String function) throws SQLException {
+    try (final PreparedStatement statement = this.connection.prepareStatement("SELECT " + function + "(?)")) {
+      statement.setLong(1, ADVISORY_LOCK_KEY);
+      statement.executeQuery().close();
+    }
+  }
+}
@@ -20,17 +20,32 @@ package org.apache.fineract.cn.provisioner.internal.repository;
 
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.schemabuilder.Create;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
+import com.datastax.driver.core.utils.Bytes;
 import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
 import org.apache.fineract.cn.provisioner.internal.util.DataSourceUtils;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
 import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
 
 import org.apache.commons.lang.StringUtils;
@@ -59,13 +74,21 @@ public class ProvisionerInitializer {
   private final SaltGenerator saltGenerator;
   private final HashGenerator hashGenerator;
   private final String initialClientId;
+  private final ProvisionerMetrics provisionerMetrics;
+  private final Map<String, Long> phaseDurations = Collections.synchronizedMap(new LinkedHashMap<>());
   private String metaKeySpaceName;
 
+  @FunctionalInterface
+  private interface BootstrapPhase {
+    void run() throws Exception;
+  }
+
   @Autowired
   public ProvisionerInitializer(final Environment environment, @Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
                                 final CassandraSessionProvider cassandraSessionProvider,
                                 final SaltGenerator saltGenerator, final HashGenerator hashGenerator,
-                                @Value("${system.initialclientid}") final String initialClientId) {
+                                @Value("${system.initialclientid}") final String initialClientId,
+                                final ProvisionerMetrics provisionerMetrics) {
     super();
     this.environment = environment;
     this.logger = logger;
@@ -73,122 +96,223 @@ public class ProvisionerInitializer {
     this.saltGenerator = saltGenerator;
     this.hashGenerator = hashGenerator;
     this.initialClientId = initialClientId;
+    this.provisionerMetrics = provisionerMetrics;
   }
 
   @PostConstruct
   public void initialize() {
-    try {
-      metaKeySpaceName = this.environment.getProperty(
-          CassandraConnectorConstants.KEYSPACE_PROP,
-          CassandraConnectorConstants.KEYSPACE_PROP_DEFAULT);
+    this.provisionerMetrics.gauges("provisioner_bootstrap_phase_milliseconds", "phase", this::getPhaseDurations);
+
+    metaKeySpaceName = this.environment.getProperty(
+        CassandraConnectorConstants.KEYSPACE_PROP,
+        CassandraConnectorConstants.KEYSPACE_PROP_DEFAULT);
 
-      this.initializeCassandra();
-      this.initializeDatabase(PostgreSQLConstants.POSTGRESQL_DATABASE_NAME_DEFAULT);
-      this.createTableTenants();
+    //The Cassandra and PostgreSQL meta data stores are independent of each other, so bootstrap them side by side.
+    final ExecutorService bootstrapExecutor = Executors.newFixedThreadPool(2);
+    try {
+      this.timed("total", () -> {
+        final CompletableFuture<Void> cassandraBootstrap = CompletableFuture.runAsync(
+            () -> this.timed("cassandra", this::initializeCassandra), bootstrapExecutor);
+        final CompletableFuture<Void> postgreSQLBootstrap = CompletableFuture.runAsync(() -> {
+          this.timed("postgresql.database", () -> this.initializeDatabase(PostgreSQLConstants.POSTGRESQL_DATABASE_NAME_DEFAULT));
+          this.timed("postgresql.schema", this::migrateDatabase);
+        }, bootstrapExecutor);
+        CompletableFuture.allOf(cassandraBootstrap, postgreSQLBootstrap).join();
+      });
+    } catch (final CompletionException ex) {
+      throw new IllegalStateException("Could not initialize service!", ex.getCause());
     } catch (final Exception ex) {
       throw new IllegalStateException("Could not initialize service!", ex);
+    } finally {
+      bootstrapExecutor.shutdown();
+    }
+
+    this.logger.info("Provisioner bootstrap phases took {} (milliseconds).", this.getPhaseDurations());
+  }
+
+  public Map<String, Long> getPhaseDurations() {
+    synchronized (this.phaseDurations) {
+      return Collections.unmodifiableMap(new LinkedHashMap<>(this.phaseDurations));
     }
+  }
 
+  private void timed(final String phase, final BootstrapPhase bootstrapPhase) {
+    final long start = System.nanoTime();
+    try {
+      bootstrapPhase.run();
+    } catch (final RuntimeException ex) {
+      throw ex;
+    } catch (final Exception ex) {
+      throw new CompletionException(ex);
+    } finally {
+      final long durationInMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      this.phaseDurations.put(phase, durationInMillis);
+      this.logger.info("Provisioner bootstrap phase {} took {} ms.", phase, durationInMillis);
+    }
   }
 
   private void initializeCassandra() throws Exception {
     final Session session = this.cassandraSessionProvider.getAdminSession();
+    SchemaMigrator.migrate(this.logger,
+        new CassandraSchemaVersionStore(this.logger, session, metaKeySpaceName),
+        this.cassandraMigrations(session));
+  }
+
+  private List<SchemaMigration> cassandraMigrations(final Session session) {
+    //Append new migrations with the next version; never change or remove a migration once it has been released.
+    return Arrays.asList(
+        new SchemaMigration(1, "Create meta data tables, secret, super user and initial client",
+            () -> this.createMetaData(session)),
+        new SchemaMigration(2, "Index tenant applications by assigned application",
+            () -> session.execute("CREATE INDEX IF NOT EXISTS " + TenantApplicationEntity.ASSIGNED_APPLICATIONS_INDEX_NAME
+                + " ON " + TenantApplicationEntity.TABLE_NAME + " (" + TenantApplicationEntity.ASSIGNED_APPLICATIONS_COLUMN + ")")),
+        new SchemaMigration(3, "Create spare keyspaces table of the warm pool",
+            () -> session.execute(SchemaBuilder.createTable(SpareKeyspaceRepository.LEGACY_TABLE_NAME).ifNotExists()
+                .addPartitionKey(SpareKeyspaceRepository.KEYSPACE_NAME_COLUMN, DataType.text())
+                .addColumn(SpareKeyspaceRepository.CLUSTER_NAME_COLUMN, DataType.text())
+                .addColumn(SpareKeyspaceRepository.CONTACT_POINTS_COLUMN, DataType.text())
+                .addColumn(SpareKeyspaceRepository.REPLICATION_TYPE_COLUMN, DataType.text())
+                .addColumn(SpareKeyspaceRepository.REPLICAS_COLUMN, DataType.text())
+                .addColumn(SpareKeyspaceRepository.CREATED_ON_COLUMN, DataType.timestamp()))),
+        new SchemaMigration(4, "Add command source table options to tenants", () -> {
+          this.addColumnIfNotExists(session, TenantEntity.TABLE_NAME, TenantEntity.COMMAND_SOURCE_COMPACTION_STRATEGY_COLUMN, DataType.text());
+          this.addColumnIfNotExists(session, TenantEntity.TABLE_NAME, TenantEntity.COMMAND_SOURCE_COMPACTION_WINDOW_UNIT_COLUMN, DataType.text());
+          this.addColumnIfNotExists(session, TenantEntity.TABLE_NAME, TenantEntity.COMMAND_SOURCE_COMPACTION_WINDOW_SIZE_COLUMN, DataType.cint());
+          this.addColumnIfNotExists(session, TenantEntity.TABLE_NAME, TenantEntity.COMMAND_SOURCE_DEFAULT_TIME_TO_LIVE_COLUMN, DataType.cint());
+          this.addColumnIfNotExists(session, TenantEntity.TABLE_NAME, TenantEntity.COMMAND_SOURCE_COMPRESSION_COLUMN, DataType.text());
+          this.addColumnIfNotExists(session, TenantEntity.TABLE_NAME, TenantEntity.COMMAND_SOURCE_CACHING_COLUMN, DataType.text());
+        }),
+        new SchemaMigration(5, "Create identity artifacts table of content hashes",
+            () -> session.execute(SchemaBuilder.createTable(IdentityArtifactRepository.TABLE_NAME).ifNotExists()
+                .addPartitionKey(IdentityArtifactRepository.TENANT_IDENTIFIER_COLUMN, DataType.text())
+                .addClusteringColumn(IdentityArtifactRepository.ARTIFACT_KEY_COLUMN, DataType.text())
+                .addColumn(IdentityArtifactRepository.CONTENT_HASH_COLUMN, DataType.text()))),
+        new SchemaMigration(6, "Add keyspace mode to tenants and create shared keyspaces table", () -> {
+          this.addColumnIfNotExists(session, TenantEntity.TABLE_NAME, TenantEntity.KEYSPACE_MODE_COLUMN, DataType.text());
+          session.execute(SchemaBuilder.createTable(SharedKeyspaceRepository.TABLE_NAME).ifNotExists()
+              .addPartitionKey(SharedKeyspaceRepository.PLACEMENT_COLUMN, DataType.text())
+              .addClusteringColumn(SharedKeyspaceRepository.KEYSPACE_NAME_COLUMN, DataType.text())
+              .addColumn(SharedKeyspaceRepository.TENANT_COUNT_COLUMN, DataType.cint()));
+        }),
+        new SchemaMigration(7, "Partition spare keyspaces of the warm pool by contact points and replication",
+            () -> this.partitionSpareKeyspaces(session)),
+        new SchemaMigration(8, "Create shared keyspace names table, so that names are unique across placements",
+            () -> this.createSharedKeyspaceNames(session))
+    );
+  }
+
+  private void createSharedKeyspaceNames(final Session session) {
+    session.execute(SchemaBuilder.createTable(SharedKeyspaceRepository.NAMES_TABLE_NAME).ifNotExists()
+        .addPartitionKey(SharedKeyspaceRepository.KEYSPACE_NAME_COLUMN, DataType.text())
+        .addColumn(SharedKeyspaceRepository.PLACEMENT_COLUMN, DataType.text()));
+
+    //Names of existing shared keyspaces are claimed for their placements, so that no other placement reuses them.
+    for (final Row sharedKeyspace : session.execute("SELECT " + SharedKeyspaceRepository.PLACEMENT_COLUMN + ", "
+        + SharedKeyspaceRepository.KEYSPACE_NAME_COLUMN + " FROM " + SharedKeyspaceRepository.TABLE_NAME)) {
+      session.execute("INSERT INTO " + SharedKeyspaceRepository.NAMES_TABLE_NAME + " ("
+              + SharedKeyspaceRepository.KEYSPACE_NAME_COLUMN + ", " + SharedKeyspaceRepository.PLACEMENT_COLUMN
+              + ") VALUES (?, ?) IF NOT EXISTS",
+          sharedKeyspace.getString(SharedKeyspaceRepository.KEYSPACE_NAME_COLUMN),
+          sharedKeyspace.getString(SharedKeyspaceRepository.PLACEMENT_COLUMN));
+    }
+  }
+
+  private void partitionSpareKeyspaces(final Session session) {
+    session.execute(SchemaBuilder.createTable(SpareKeyspaceRepository.TABLE_NAME).ifNotExists()
+        .addPartitionKey(SpareKeyspaceRepository.POOL_COLUMN, DataType.text())
+        .addClusteringColumn(SpareKeyspaceRepository.KEYSPACE_NAME_COLUMN, DataType.text())
+        .addColumn(SpareKeyspaceRepository.CLUSTER_NAME_COLUMN, DataType.text())
+        .addColumn(SpareKeyspaceRepository.CONTACT_POINTS_COLUMN, DataType.text())
+        .addColumn(SpareKeyspaceRepository.REPLICATION_TYPE_COLUMN, DataType.text())
+        .addColumn(SpareKeyspaceRepository.REPLICAS_COLUMN, DataType.text())
+        .addColumn(SpareKeyspaceRepository.CREATED_ON_COLUMN, DataType.timestamp()));
+
+    //Spares still unclaimed are moved over once, so that their keyspaces aren't orphaned.
+    if (session.getCluster().getMetadata().getKeyspace(metaKeySpaceName)
+        .getTable(SpareKeyspaceRepository.LEGACY_TABLE_NAME) == null) {
+      return;
+    }
+    for (final Row spare : session.execute("SELECT * FROM " + SpareKeyspaceRepository.LEGACY_TABLE_NAME)) {
+      final TenantEntity keyspace = new TenantEntity();
+      keyspace.setKeyspaceName(spare.getString(SpareKeyspaceRepository.KEYSPACE_NAME_COLUMN));
+      keyspace.setClusterName(spare.getString(SpareKeyspaceRepository.CLUSTER_NAME_COLUMN));
+      keyspace.setContactPoints(spare.getString(SpareKeyspaceRepository.CONTACT_POINTS_COLUMN));
+      keyspace.setReplicationType(spare.getString(SpareKeyspaceRepository.REPLICATION_TYPE_COLUMN));
+      keyspace.setReplicas(spare.getString(SpareKeyspaceRepository.REPLICAS_COLUMN));
+      SpareKeyspaceRepository.insert(session, keyspace);
+    }
+    session.execute(SchemaBuilder.dropTable(SpareKeyspaceRepository.LEGACY_TABLE_NAME).ifExists());
+  }
+
+  private void createMetaData(final Session session) {
+    final KeyspaceMetadata keyspace = session.getCluster().getMetadata().getKeyspace(metaKeySpaceName);
+
+    //Every table is created on its own, so that a partially created schema gets repaired on the next start.
+    final boolean clientsTableExisted = keyspace.getTable(ClientEntity.TABLE_NAME) != null;
+
+    //create config family
+    this.createTableIfNotExists(session, keyspace, ConfigEntity.TABLE_NAME,
+        SchemaBuilder.createTable(ConfigEntity.TABLE_NAME).ifNotExists()
+            .addPartitionKey(ConfigEntity.NAME_COLUMN, DataType.text())
+            .addColumn(ConfigEntity.SECRET_COLUMN, DataType.blob()));
+
+    final byte[] secret = this.findOrCreateSecret(session);
+
+    //create users family
+    this.createTableIfNotExists(session, keyspace, UserEntity.TABLE_NAME,
+        SchemaBuilder.createTable(UserEntity.TABLE_NAME).ifNotExists()
+            .addPartitionKey(UserEntity.NAME_COLUMN, DataType.text())
+            .addColumn(UserEntity.PASSWORD_COLUMN, DataType.blob())
+            .addColumn(UserEntity.SALT_COLUMN, DataType.blob())
+            .addColumn(UserEntity.ITERATION_COUNT_COLUMN, DataType.cint())
+            .addColumn(UserEntity.EXPIRES_IN_DAYS_COLUMN, DataType.cint())
+            .addColumn(UserEntity.PASSWORD_RESET_ON_COLUMN, DataType.timestamp()));
+
+    this.createSuperUserIfNotExists(session, secret);
+
+    //create tenants family
+    this.createTableIfNotExists(session, keyspace, TenantEntity.TABLE_NAME,
+        SchemaBuilder.createTable(TenantEntity.TABLE_NAME).ifNotExists()
+            .addPartitionKey(TenantEntity.IDENTIFIER_COLUMN, DataType.text())
+            .addColumn(TenantEntity.CLUSTER_NAME_COLUMN, DataType.text())
+            .addColumn(TenantEntity.CONTACT_POINTS_COLUMN, DataType.text())
+            .addColumn(TenantEntity.KEYSPACE_NAME_COLUMN, DataType.text())
+            .addColumn(TenantEntity.REPLICATION_TYPE_COLUMN, DataType.text())
+            .addColumn(TenantEntity.REPLICAS_COLUMN, DataType.text())
+            .addColumn(TenantEntity.NAME_COLUMN, DataType.text())
+            .addColumn(TenantEntity.DESCRIPTION_COLUMN, DataType.text())
+            .addColumn(TenantEntity.IDENTITY_MANAGER_APPLICATION_NAME_COLUMN, DataType.text())
+            .addColumn(TenantEntity.IDENTITY_MANAGER_APPLICATION_URI_COLUMN, DataType.text()));
 
-    if (session.getCluster().getMetadata().getKeyspace(metaKeySpaceName).getTable(ConfigEntity.TABLE_NAME) == null) {
-      //create config family
-      final String createConfigTableStatement = SchemaBuilder.createTable(ConfigEntity.TABLE_NAME)
-          .addPartitionKey(ConfigEntity.NAME_COLUMN, DataType.text())
-          .addColumn(ConfigEntity.SECRET_COLUMN, DataType.blob())
-          .buildInternal();
-
-      session.execute(createConfigTableStatement);
-
-      final byte[] secret = this.saltGenerator.createRandomSalt();
-      final BoundStatement configBoundStatement = session.prepare("INSERT INTO config (name, secret) VALUES (?, ?)").bind();
-      configBoundStatement.setString("name", ProvisionerConstants.CONFIG_INTERNAL);
-      configBoundStatement.setBytes("secret", ByteBuffer.wrap(secret));
-      session.execute(configBoundStatement);
-
-      //create users family
-      final String createUsersTableStatement = SchemaBuilder.createTable(UserEntity.TABLE_NAME)
-          .addPartitionKey(UserEntity.NAME_COLUMN, DataType.text())
-          .addColumn(UserEntity.PASSWORD_COLUMN, DataType.blob())
-          .addColumn(UserEntity.SALT_COLUMN, DataType.blob())
-          .addColumn(UserEntity.ITERATION_COUNT_COLUMN, DataType.cint())
-          .addColumn(UserEntity.EXPIRES_IN_DAYS_COLUMN, DataType.cint())
-          .addColumn(UserEntity.PASSWORD_RESET_ON_COLUMN, DataType.timestamp())
-          .buildInternal();
-
-      session.execute(createUsersTableStatement);
-
-      final String username = ApiConstants.SYSTEM_SU;
-      final byte[] hashedPassword = Base64Utils.decodeFromString(ProvisionerConstants.INITIAL_PWD);
-      final byte[] variableSalt = this.saltGenerator.createRandomSalt();
-      final BoundStatement userBoundStatement =
-          session.prepare("INSERT INTO users (name, passwordWord, salt, iteration_count, password_reset_on) VALUES (?, ?, ?, ?, ?)").bind();
-      userBoundStatement.setString("name", username);
-      userBoundStatement.setBytes("passwordWord", ByteBuffer.wrap(
-          this.hashGenerator.hash(Base64Utils.encodeToString(hashedPassword), EncodingUtils.concatenate(variableSalt, secret),
-              ProvisionerConstants.ITERATION_COUNT, ProvisionerConstants.HASH_LENGTH)));
-      userBoundStatement.setBytes("salt", ByteBuffer.wrap(variableSalt));
-      userBoundStatement.setInt("iteration_count", ProvisionerConstants.ITERATION_COUNT);
-      userBoundStatement.setTimestamp("password_reset_on", new Date());
-      session.execute(userBoundStatement);
-
-      //create tenants family
-      final String createTenantsTableStatement = SchemaBuilder.createTable(TenantEntity.TABLE_NAME)
-          .addPartitionKey(TenantEntity.IDENTIFIER_COLUMN, DataType.text())
-          .addColumn(TenantEntity.CLUSTER_NAME_COLUMN, DataType.text())
-          .addColumn(TenantEntity.CONTACT_POINTS_COLUMN, DataType.text())
-          .addColumn(TenantEntity.KEYSPACE_NAME_COLUMN, DataType.text())
-          .addColumn(TenantEntity.REPLICATION_TYPE_COLUMN, DataType.text())
-          .addColumn(TenantEntity.REPLICAS_COLUMN, DataType.text())
-          .addColumn(TenantEntity.NAME_COLUMN, DataType.text())
-          .addColumn(TenantEntity.DESCRIPTION_COLUMN, DataType.text())
-          .addColumn(TenantEntity.IDENTITY_MANAGER_APPLICATION_NAME_COLUMN, DataType.text())
-          .addColumn(TenantEntity.IDENTITY_MANAGER_APPLICATION_URI_COLUMN, DataType.text())
-          .buildInternal();
-
-      session.execute(createTenantsTableStatement);
-
-
-      //create services family
-      final String createApplicationsTableStatement =
-          SchemaBuilder.createTable(ApplicationEntity.TABLE_NAME)
-              .addPartitionKey(ApplicationEntity.NAME_COLUMN, DataType.text())
-              .addColumn(ApplicationEntity.DESCRIPTION_COLUMN, DataType.text())
-              .addColumn(ApplicationEntity.VENDOR_COLUMN, DataType.text())
-              .addColumn(ApplicationEntity.HOMEPAGE_COLUMN, DataType.text())
-              .buildInternal();
-
-      session.execute(createApplicationsTableStatement);
-
-
-      //create org.apache.fineract.cn.provisioner.tenant services family
-      final String createTenantApplicationsTableStatement =
-          SchemaBuilder.createTable(TenantApplicationEntity.TABLE_NAME)
-              .addPartitionKey(TenantApplicationEntity.TENANT_IDENTIFIER_COLUMN, DataType.text())
-              .addColumn(TenantApplicationEntity.ASSIGNED_APPLICATIONS_COLUMN, DataType.set(DataType.text()))
-              .buildInternal();
-
-      session.execute(createTenantApplicationsTableStatement);
-
-
-      //create clients family
-      final String createClientsTableStatement =
-          SchemaBuilder.createTable(ClientEntity.TABLE_NAME)
-              .addPartitionKey(ClientEntity.NAME_COLUMN, DataType.text())
-              .addColumn(ClientEntity.DESCRIPTION_COLUMN, DataType.text())
-              .addColumn(ClientEntity.REDIRECT_URI_COLUMN, DataType.text())
-              .addColumn(ClientEntity.VENDOR_COLUMN, DataType.text())
-              .addColumn(ClientEntity.HOMEPAGE_COLUMN, DataType.text())
-              .buildInternal();
-      session.execute(createClientsTableStatement);
+    //create services family
+    this.createTableIfNotExists(session, keyspace, ApplicationEntity.TABLE_NAME,
+        SchemaBuilder.createTable(ApplicationEntity.TABLE_NAME).ifNotExists()
+            .addPartitionKey(ApplicationEntity.NAME_COLUMN, DataType.text())
+            .addColumn(ApplicationEntity.DESCRIPTION_COLUMN, DataType.text())
+            .addColumn(ApplicationEntity.VENDOR_COLUMN, DataType.text())
+            .addColumn(ApplicationEntity.HOMEPAGE_COLUMN, DataType.text()));
+
+    //create org.apache.fineract.cn.provisioner.tenant services family
+    this.createTableIfNotExists(session, keyspace, TenantApplicationEntity.TABLE_NAME,
+        SchemaBuilder.createTable(TenantApplicationEntity.TABLE_NAME).ifNotExists()
+            .addPartitionKey(TenantApplicationEntity.TENANT_IDENTIFIER_COLUMN, DataType.text())
+            .addColumn(TenantApplicationEntity.ASSIGNED_APPLICATIONS_COLUMN, DataType.set(DataType.text())));
+
+    //create clients family
+    this.createTableIfNotExists(session, keyspace, ClientEntity.TABLE_NAME,
+        SchemaBuilder.createTable(ClientEntity.TABLE_NAME).ifNotExists()
+            .addPartitionKey(ClientEntity.NAME_COLUMN, DataType.text())
+            .addColumn(ClientEntity.DESCRIPTION_COLUMN, DataType.text())
+            .addColumn(ClientEntity.REDIRECT_URI_COLUMN, DataType.text())
+            .addColumn(ClientEntity.VENDOR_COLUMN, DataType.text())
+            .addColumn(ClientEntity.HOMEPAGE_COLUMN, DataType.text()));
+
+    //The initial client is only created together with its table, so that a deleted initial client stays deleted.
+    if (!clientsTableExisted) {
       final String clientId = StringUtils.isEmpty(initialClientId) ? UUID.randomUUID().toString() : initialClientId;
       this.logger.info(clientId);
 
-
-      final BoundStatement clientBoundStatement = session.prepare("INSERT INTO clients (name, description, vendor, homepage) VALUES (?, ?, ?, ?)").bind();
+      final BoundStatement clientBoundStatement = session.prepare("INSERT INTO clients (name, description, vendor, homepage) VALUES (?, ?, ?, ?) IF NOT EXISTS").bind();
       clientBoundStatement.setString("name", clientId);
       clientBoundStatement.setString("description", "REST Console");
       clientBoundStatement.setString("vendor", "The Apache Software Foundation");
@@ -197,6 +321,68 @@ public class ProvisionerInitializer {
     }
   }
 
+  private void createTableIfNotExists(final Session session, final KeyspaceMetadata keyspace,
+                                      final String tableName, final Create createTableStatement) {
+    //Skip the round trip and the schema agreement wait for tables which are already known to exist.
+    if (keyspace.getTable(tableName) == null) {
+      this.logger.info("Creating table {} in keyspace {}.", tableName, metaKeySpaceName);
+      session.execute(createTableStatement.buildInternal());
+    }
+  }
+
+  private void addColumnIfNotExists(final Session session, final String tableName,
+                                    final String columnName, final DataType dataType) {
+    //Cassandra has no ADD COLUMN IF NOT EXISTS, and a partially applied migration is run again.
+    final TableMetadata table = session.getCluster().getMetadata().getKeyspace(metaKeySpaceName).getTable(tableName);
+    if (table.getColumn(columnName) == null) {
+      this.logger.info("Adding column {} to table {} in keyspace {}.", columnName, tableName, metaKeySpaceName);
+      session.execute(SchemaBuilder.alterTable(tableName).addColumn(columnName).type(dataType));
+    }
+  }
+
+  private byte[] findOrCreateSecret(final Session session) {
+    final BoundStatement findSecretStatement = session.prepare("SELECT secret FROM config WHERE name = ?").bind();
+    findSecretStatement.setString("name", ProvisionerConstants.CONFIG_INTERNAL);
+    final Row existingSecret = session.execute(findSecretStatement).one();
+    if (existingSecret != null) {
+      return Bytes.getArray(existingSecret.getBytes(0));
+    }
+
+    final byte[] secret = this.saltGenerator.createRandomSalt();
+    final BoundStatement configBoundStatement = session.prepare("INSERT INTO config (name, secret) VALUES (?, ?) IF NOT EXISTS").bind();
+    configBoundStatement.setString("name", ProvisionerConstants.CONFIG_INTERNAL);
+    configBoundStatement.setBytes("secret", ByteBuffer.wrap(secret));
+    final Row insertResult = session.execute(configBoundStatement).one();
+    if (insertResult.getBool("[applied]")) {
+      return secret;
+    }
+
+    //Another node created the secret first.
+    return Bytes.getArray(insertResult.getBytes("secret"));
+  }
+
+  private void createSuperUserIfNotExists(final Session session, final byte[] secret) {
+    final String username = ApiConstants.SYSTEM_SU;
+    final BoundStatement findUserStatement = session.prepare("SELECT name FROM users WHERE name = ?").bind();
+    findUserStatement.setString("name", username);
+    if (session.execute(findUserStatement).one() != null) {
+      return;
+    }
+
+    final byte[] hashedPassword = Base64Utils.decodeFromString(ProvisionerConstants.INITIAL_PWD);
+    final byte[] variableSalt = this.saltGenerator.createRandomSalt();
+    final BoundStatement userBoundStatement =
+        session.prepare("INSERT INTO users (name, passwordWord, salt, iteration_count, password_reset_on) VALUES (?, ?, ?, ?, ?) IF NOT EXISTS").bind();
+    userBoundStatement.setString("name", username);
+    userBoundStatement.setBytes("passwordWord", ByteBuffer.wrap(
+        this.hashGenerator.hash(Base64Utils.encodeToString(hashedPassword), EncodingUtils.concatenate(variableSalt, secret),
+            ProvisionerConstants.ITERATION_COUNT, ProvisionerConstants.HASH_LENGTH)));
+    userBoundStatement.setBytes("salt", ByteBuffer.wrap(variableSalt));
+    userBoundStatement.setInt("iteration_count", ProvisionerConstants.ITERATION_COUNT);
+    userBoundStatement.setTimestamp("password_reset_on", new Date());
+    session.execute(userBoundStatement);
+  }
+
   private void initializeDatabase(String metaDatabaseName) throws Exception {
 
     this.logger.info("Creating meta database {} ", metaDatabaseName);
@@ -222,33 +408,39 @@ public class ProvisionerInitializer {
     }
   }
 
-  private void createTableTenants() throws SQLException {
+  private void migrateDatabase() throws Exception {
     final String databaseName = PostgreSQLConstants.POSTGRESQL_DATABASE_NAME_DEFAULT;
+    try (final Connection provisionerConnection = DataSourceUtils.createProvisionerConnection(this.environment, databaseName)) {
+      SchemaMigrator.migrate(this.logger,
+          new PostgreSQLSchemaVersionStore(provisionerConnection, databaseName),
+          this.postgreSQLMigrations(provisionerConnection));
+    }
+  }
 
-    this.logger.info("Create tenants table in database {} if it does not exists", databaseName);
-    try (
-            final Connection provisionerConnection = DataSourceUtils.createProvisionerConnection(this.environment, databaseName);
-            final Statement testStatement = provisionerConnection.createStatement();
-            final Statement findSeshatStatement = provisionerConnection.createStatement()
-    ) {
-      final ResultSet validityQuery = testStatement.executeQuery("SELECT 1");
-      if (validityQuery.next()) {
-        this.logger.info("Connection to database {} established", databaseName);
-        final ResultSet resultSet = findSeshatStatement.executeQuery("SELECT datname FROM pg_database where datname = '"+ databaseName +"'");
-        if (resultSet.next()) {
-          this.logger.info("Database {} exists !", databaseName);
-          this.logger.info("Creating table tenants now");
-          findSeshatStatement.execute("CREATE TABLE IF NOT EXISTS tenants (identifier VARCHAR(32) NOT NULL, driver_class VARCHAR(255) NOT NULL, database_name VARCHAR(32) NOT NULL, host VARCHAR(512) NOT NULL, port VARCHAR(5) NOT NULL, a_user VARCHAR(32) NOT NULL, pwd VARCHAR(32) NOT NULL, PRIMARY KEY (identifier))");
-        } else {
-          this.logger.warn("Database {} does not exists !", databaseName);
+  private List<SchemaMigration> postgreSQLMigrations(final Connection connection) {
+    //Append new migrations with the next version; never change or remove a migration once it has been released.
+    return Arrays.asList(
+        new SchemaMigration(1, "Create tenants table", () -> {
+          try (final Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS tenants (identifier VARCHAR(32) NOT NULL, driver_class VARCHAR(255) NOT NULL, database_name VARCHAR(32) NOT NULL, host VARCHAR(512) NOT NULL, port VARCHAR(5) NOT NULL, a_user VARCHAR(32) NOT NULL, pwd VARCHAR(32) NOT NULL, PRIMARY KEY (identifier))");
           }
-      } else {
-        this.logger.warn("Could not connect to database seshat");
-        throw new IllegalMonitorStateException("Could not connect to database seshat");
-      }
-    } catch (SQLException sqlex) {
-      this.logger.error(sqlex.getMessage(), sqlex);
-      throw new IllegalStateException("Could not create table tenants");
-    }
+        }),
+        new SchemaMigration(2, "Create template databases table", () -> {
+          try (final Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + TemplateDatabaseDAO.TABLE_NAME + " (version VARCHAR(32) NOT NULL, database_name VARCHAR(63) NOT NULL, source_database_name VARCHAR(63) NOT NULL, created_on TIMESTAMP NOT NULL, PRIMARY KEY (version))");
+          }
+        }),
+        new SchemaMigration(3, "Create spare databases table of the warm pool", () -> {
+          try (final Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + SpareDatabaseDAO.TABLE_NAME + " (database_name VARCHAR(63) NOT NULL, created_on TIMESTAMP NOT NULL, PRIMARY KEY (database_name))");
+          }
+        }),
+        new SchemaMigration(4, "Add name and description to tenants", () -> {
+          //Without Cassandra, the tenants table is the only place a tenant's name and description are kept.
+          try (final Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE tenants ADD COLUMN IF NOT EXISTS name VARCHAR(256), ADD COLUMN IF NOT EXISTS description VARCHAR(2048)");
+          }
+        })
+    );
   }
 }
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import com.datastax.driver.core.AuthProvider;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PlainTextAuthProvider;
+import com.datastax.driver.core.Session;
+import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.util.CompletableFutures;
+import org.apache.fineract.cn.provisioner.internal.util.ContactPointUtils;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.PreDestroy;
+import org.apache.fineract.cn.cassandra.util.CassandraConnectorConstants;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Executes the schema changes of tenant keyspaces one cluster at a time, on a session kept per cluster.  Changes
+ * queued while a batch is executed are pipelined into the next batch: the first statement of every change is
+ * executed, then schema agreement is awaited once, then the second statement of every change, and so on.
+ * Schema agreement is checked explicitly with exponential backoff, instead of every statement waiting on its own.
+ */
+@Component
+public class SchemaChangeScheduler {
+
+  public static final class SchemaStatement {
+    private final String operation;
+    private final String cql;
+
+    public SchemaStatement(final String operation, final String cql) {
+      super();
+      this.operation = operation;
+      this.cql = cql;
+    }
+
+    String getOperation() {
+      return operation;
+    }
+
+    String getCql() {
+      return cql;
+    }
+  }
+
+  private static final class PendingChange {
+    private final String keyspaceName;
+    private final List<SchemaStatement> statements;
+    private final long submittedNanos = System.nanoTime();
+    private final CompletableFuture<Long> agreementWaitNanos = new CompletableFuture<>();
+    private long accumulatedAgreementWaitNanos;
+    private RuntimeException failure;
+
+    private PendingChange(final String keyspaceName, final List<SchemaStatement> statements) {
+      super();
+      this.keyspaceName = keyspaceName;
+      this.statements = statements;
+    }
+  }
+
+  private final class ClusterLane {
+    private final String clusterName;
+    private final Cluster cluster;
+    private final Session session;
+    private final Queue<PendingChange> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final ExecutorService executor;
+
+    private ClusterLane(final String clusterName, final Cluster cluster) {
+      super();
+      this.clusterName = clusterName;
+      this.cluster = cluster;
+      try {
+        this.session = cluster.connect();
+      } catch (final RuntimeException ex) {
+        cluster.close();
+        throw ex;
+      }
+      this.executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "provisioner-schema-" + clusterName);
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    private void submit(final PendingChange pendingChange) {
+      this.pendingChanges.add(pendingChange);
+      this.executor.execute(this::drain);
+    }
+
+    private void drain() {
+      final List<PendingChange> batch = new ArrayList<>();
+      final int maximumBatchSize = provisionerProperties.getSchemaChanges().getMaximumBatchSize();
+      PendingChange pendingChange;
+      while (batch.size() < maximumBatchSize && (pendingChange = this.pendingChanges.poll()) != null) {
+        batch.add(pendingChange);
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+
+      try {
+        final int steps = batch.stream().mapToInt(x -> x.statements.size()).max().orElse(0);
+        for (int step = 0; step < steps; step++) {
+          final List<PendingChange> executed = new ArrayList<>();
+          for (final PendingChange change : batch) {
+            if (change.failure == null && step < change.statements.size()) {
+              this.executeStatement(change, change.statements.get(step));
+              executed.add(change);
+            }
+          }
+          if (!executed.isEmpty()) {
+            final long waitedNanos = this.awaitSchemaAgreement();
+            executed.forEach(x -> x.accumulatedAgreementWaitNanos += waitedNanos);
+          }
+        }
+      } catch (final RuntimeException ex) {
+        batch.stream().filter(x -> x.failure == null).forEach(x -> x.failure = ex);
+      }
+
+      batch.forEach(change -> {
+        provisionerMetrics.record("provisioner_schema_change", System.nanoTime() - change.submittedNanos,
+            "keyspace", change.keyspaceName, "outcome", change.failure == null ? "success" : "failure");
+        if (change.failure == null) {
+          change.agreementWaitNanos.complete(change.accumulatedAgreementWaitNanos);
+        } else {
+          change.agreementWaitNanos.completeExceptionally(change.failure);
+        }
+      });
+    }
+
+    private void executeStatement(final PendingChange change, final SchemaStatement statement) {
+      try (final ProvisionerMetrics.Timing ignored = provisionerMetrics.start("provisioner_store_operation",
+          "store", "cassandra", "operation", statement.getOperation())) {
+        this.session.execute(statement.getCql());
+      } catch (final RuntimeException ex) {
+        //Only this change fails, its later statements are skipped.
+        change.failure = ex;
+      }
+    }
+
+    private long awaitSchemaAgreement() {
+      final ProvisionerProperties.SchemaChanges schemaChanges = provisionerProperties.getSchemaChanges();
+      final long start = System.nanoTime();
+      final long deadline = start + TimeUnit.MILLISECONDS.toNanos(schemaChanges.getAgreementTimeout());
+      long backoff = schemaChanges.getInitialBackoff();
+      try {
+        while (!this.cluster.getMetadata().checkSchemaAgreement()) {
+          if (System.nanoTime() >= deadline) {
+            logger.warn("No schema agreement on cluster {} after {} milliseconds, going on regardless.",
+                this.clusterName, schemaChanges.getAgreementTimeout());
+            break;
+          }
+          Thread.sleep(backoff);
+          backoff = Math.min(backoff * 2, schemaChanges.getMaximumBackoff());
+        }
+      } catch (final InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+      final long waitedNanos = System.nanoTime() - start;
+      provisionerMetrics.record("provisioner_schema_agreement_wait", waitedNanos);
+      return waitedNanos;
+    }
+
+    private void close() {
+      this.executor.shutdownNow();
+      this.cluster.close();
+    }
+  }
+
+  private final Logger logger;
+  private final Environment environment;
+  private final ProvisionerProperties provisionerProperties;
+  private final ProvisionerMetrics provisionerMetrics;
+  private final ProvisioningTracer provisioningTracer;
+  private final Map<String, CompletableFuture<ClusterLane>> lanes = new ConcurrentHashMap<>();
+
+  @Autowired
+  public SchemaChangeScheduler(@Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
+                               final Environment environment,
+                               final ProvisionerProperties provisionerProperties,
+                               final ProvisionerMetrics provisionerMetrics,
+                               final ProvisioningTracer provisioningTracer) {
+    super();
+    this.logger = logger;
+    this.environment = environment;
+    this.provisionerProperties = provisionerProperties;
+    this.provisionerMetrics = provisionerMetrics;
+    this.provisioningTracer = provisioningTracer;
+
+    this.provisionerMetrics.gauge("provisioner_schema_changes_queued",
+        this::queuedChanges);
+  }
+
+  /**
+   * Executes the statements in order on the cluster of the keyspace, and waits till they are done.  A statement
+   * failing skips the rest, and its exception is rethrown.
+   */
+  public void execute(final @Nonnull TenantEntity keyspace, final SchemaStatement... statements) {
+    final PendingChange pendingChange = new PendingChange(keyspace.getKeyspaceName(), Arrays.asList(statements));
+    this.getLane(keyspace).submit(pendingChange);
+    final long agreementWaitNanos = CompletableFutures.join(pendingChange.agreementWaitNanos);
+
+    this.provisioningTracer.recordSpan("schema_change", pendingChange.submittedNanos,
+        System.nanoTime() - pendingChange.submittedNanos,
+        "keyspace", keyspace.getKeyspaceName(),
+        "agreement_wait_milliseconds", String.valueOf(TimeUnit.NANOSECONDS.toMillis(agreementWaitNanos)));
+  }
+
+  /**
+   * @return the session kept for the cluster of the keyspace, for statements other than schema changes.
+   */
+  public Session getSession(final @Nonnull TenantEntity keyspace) {
+    return this.getLane(keyspace).session;
+  }
+
+  @PreDestroy
+  public void close() {
+    this.connectedLanes().forEach(ClusterLane::close);
+    this.lanes.clear();
+  }
+
+  int queuedChanges() {
+    return this.connectedLanes().stream().mapToInt(x -> x.pendingChanges.size()).sum();
+  }
+
+  private List<ClusterLane> connectedLanes() {
+    final List<ClusterLane> connectedLanes = new ArrayList<>();
+    this.lanes.values().stream()
+        .filter(x -> x.isDone() && !x.isCompletedExceptionally())
+        .forEach(x -> connectedLanes.add(x.join()));
+    return connectedLanes;
+  }
+
+  private ClusterLane getLane(final TenantEntity keyspace) {
+    //Connecting takes a while, so it must not happen inside computeIfAbsent, which would block every other
+    //lookup hashing to the same bin.  The first caller connects, concurrent callers for the cluster wait for it.
+    final String key = keyspace.getClusterName() + "/" + keyspace.getContactPoints();
+    final CompletableFuture<ClusterLane> connectingLane = new CompletableFuture<>();
+    final CompletableFuture<ClusterLane> lane = this.lanes.putIfAbsent(key, connectingLane);
+    if (lane != null) {
+      return CompletableFutures.join(lane);
+    }
+
+    try {
+      connectingLane.complete(new ClusterLane(keyspace.getClusterName(), this.buildCluster(keyspace)));
+    } catch (final RuntimeException ex) {
+      //The next caller tries again.
+      this.lanes.remove(key, connectingLane);
+      connectingLane.completeExceptionally(ex);
+    }
+    return CompletableFutures.join(connectingLane);
+  }
+
+  Cluster buildCluster(final TenantEntity keyspace) {
+    final Cluster.Builder clusterBuilder = Cluster
+        .builder()
+        .withClusterName(keyspace.getClusterName())
+        //Schema agreement is awaited once per batch, so keep the wait of the driver after every statement short.
+        .withMaxSchemaAgreementWaitSeconds(1);
+
+    if (this.environment.containsProperty(CassandraConnectorConstants.CLUSTER_USER_PROP)) {
+      final String user = this.environment.getProperty(CassandraConnectorConstants.CLUSTER_USER_PROP);
+      final String pwd = this.environment.getProperty(CassandraConnectorConstants.CLUSTER_PASSWORD_PROP);
+
+      final AuthProvider authProvider = new PlainTextAuthProvider(user, pwd);
+      clusterBuilder.withAuthProvider(authProvider);
+    }
+    ContactPointUtils.process(clusterBuilder, keyspace.getContactPoints());
+
+    return clusterBuilder.build();
+  }
+}
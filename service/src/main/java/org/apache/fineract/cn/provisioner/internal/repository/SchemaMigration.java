@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+/**
+ * One versioned, forward-only change to the provisioner's own schema.  Steps should be written so that
+ * they can be repeated safely, because a node may fail after applying a step but before recording it.
+ */
+final class SchemaMigration {
+
+  @FunctionalInterface
+  interface Step {
+    void apply() throws Exception;
+  }
+
+  private final int version;
+  private final String description;
+  private final Step step;
+
+  SchemaMigration(final int version, final String description, final Step step) {
+    super();
+    this.version = version;
+    this.description = description;
+    this.step = step;
+  }
+
+  int getVersion() {
+    return version;
+  }
+
+  String getDescription() {
+    return description;
+  }
+
+  void apply() throws Exception {
+    this.step.apply();
+  }
+
+  @Override
+  public String toString() {
+    return "SchemaMigration{" +
+        "version=" + version +
+        ", description='" + description + '\'' +
+        '}';
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+
+/**
+ * Applies the pending schema migrations of one data store in version order.  When the store is up to date
+ * only the applied versions are read, so the common case at boot costs a single query and takes no lock.
+ */
+final class SchemaMigrator {
+
+  private SchemaMigrator() {
+    super();
+  }
+
+  static int migrate(final Logger logger,
+                     final SchemaVersionStore schemaVersionStore,
+                     final List<SchemaMigration> schemaMigrations) throws Exception {
+    schemaVersionStore.initialize();
+    if (pending(schemaVersionStore.getAppliedVersions(), schemaMigrations).isEmpty()) {
+      logger.info("Schema of {} is up to date.", schemaVersionStore.getName());
+      return 0;
+    }
+
+    schemaVersionStore.lock();
+    try {
+      //Another node may have applied some or all of the migrations while this node waited for the lock.
+      final List<SchemaMigration> pendingMigrations = pending(schemaVersionStore.getAppliedVersions(), schemaMigrations);
+      for (final SchemaMigration schemaMigration : pendingMigrations) {
+        logger.info("Applying {} to {}.", schemaMigration, schemaVersionStore.getName());
+        final long start = System.nanoTime();
+        schemaMigration.apply();
+        final long durationInMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        schemaVersionStore.recordApplied(schemaMigration, durationInMillis);
+        logger.info("Applied {} to {} in {} ms.", schemaMigration, schemaVersionStore.getName(), durationInMillis);
+      }
+      return pendingMigrations.size();
+    } finally {
+      schemaVersionStore.unlock();
+    }
+  }
+
+  private static List<SchemaMigration> pending(final Set<Integer> appliedVersions,
+                                               final List<SchemaMigration> schemaMigrations) {
+    return schemaMigrations.stream()
+        .filter(schemaMigration -> !appliedVersions.contains(schemaMigration.getVersion()))
+        .sorted(Comparator.comparingInt(SchemaMigration::getVersion))
+        .collect(Collectors.toList());
+  }
+}
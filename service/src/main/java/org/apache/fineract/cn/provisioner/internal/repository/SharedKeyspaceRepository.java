@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keyspaces shared by small tenants, with the number of tenants in each.  Keyspaces are grouped by the cluster
+ * and replication they were created with, and a tenant only joins a keyspace of its own group.  Counts are changed
+ * with lightweight transactions, so that concurrent creators never pack more tenants into a keyspace than
+ * provisioner.shared-keyspaces.tenants-per-keyspace.  Keyspaces left empty are kept for later tenants.
+ * Every keyspace name is claimed in a table of its own before it's used, so that no two groups ever share a keyspace.
+ */
+@Component
+public class SharedKeyspaceRepository {
+
+  static final String TABLE_NAME = "shared_keyspaces";
+  static final String PLACEMENT_COLUMN = "placement";
+  static final String KEYSPACE_NAME_COLUMN = "keyspace_name";
+  static final String TENANT_COUNT_COLUMN = "tenant_count";
+  static final String NAMES_TABLE_NAME = "shared_keyspace_names";
+  //Contention only comes from tenants created at the same moment, so a few rounds are enough.
+  private static final int MAXIMUM_ATTEMPTS = 10;
+
+  private final CassandraSessionProvider cassandraSessionProvider;
+  private final ProvisionerProperties provisionerProperties;
+
+  @Autowired
+  public SharedKeyspaceRepository(final @Nonnull CassandraSessionProvider cassandraSessionProvider,
+                                  final @Nonnull ProvisionerProperties provisionerProperties) {
+    super();
+    this.cassandraSessionProvider = cassandraSessionProvider;
+    this.provisionerProperties = provisionerProperties;
+  }
+
+  /**
+   * Counts the tenant against a shared keyspace with room left, recording a new keyspace if all are full.
+   *
+   * @return the name of the keyspace, which the caller creates if it doesn't exist yet.
+   */
+  public String join(final @Nonnull TenantEntity tenant) {
+    final ProvisionerProperties.SharedKeyspaces sharedKeyspaces = this.provisionerProperties.getSharedKeyspaces();
+    final Session session = this.getSession();
+    final String placement = placementOf(tenant);
+
+    for (int attempt = 0; attempt < MAXIMUM_ATTEMPTS; attempt++) {
+      final List<Row> keyspaces = session.execute("SELECT " + KEYSPACE_NAME_COLUMN + ", " + TENANT_COUNT_COLUMN
+          + " FROM " + TABLE_NAME + " WHERE " + PLACEMENT_COLUMN + " = ?", placement).all();
+      for (final Row keyspace : keyspaces) {
+        final int tenantCount = keyspace.getInt(TENANT_COUNT_COLUMN);
+        if (tenantCount < sharedKeyspaces.getTenantsPerKeyspace()
+            && this.changeCount(session, placement, keyspace.getString(KEYSPACE_NAME_COLUMN), tenantCount, tenantCount + 1)) {
+          return keyspace.getString(KEYSPACE_NAME_COLUMN);
+        }
+      }
+
+      final String keyspaceName = this.claimKeyspaceName(session, placement, keyspaces);
+      if (session.execute("INSERT INTO " + TABLE_NAME + " (" + PLACEMENT_COLUMN + ", " + KEYSPACE_NAME_COLUMN + ", "
+          + TENANT_COUNT_COLUMN + ") VALUES (?, ?, 1) IF NOT EXISTS", placement, keyspaceName).wasApplied()) {
+        return keyspaceName;
+      }
+    }
+    throw new IllegalStateException("Could not join a shared keyspace for tenant " + tenant.getIdentifier() + "!");
+  }
+
+  public void leave(final @Nonnull TenantEntity tenant) {
+    final Session session = this.getSession();
+    final String placement = placementOf(tenant);
+
+    for (int attempt = 0; attempt < MAXIMUM_ATTEMPTS; attempt++) {
+      final Row keyspace = session.execute("SELECT " + TENANT_COUNT_COLUMN + " FROM " + TABLE_NAME + " WHERE "
+          + PLACEMENT_COLUMN + " = ? AND " + KEYSPACE_NAME_COLUMN + " = ?", placement, tenant.getKeyspaceName()).one();
+      if (keyspace == null || keyspace.getInt(TENANT_COUNT_COLUMN) <= 0) {
+        return;
+      }
+      final int tenantCount = keyspace.getInt(TENANT_COUNT_COLUMN);
+      if (this.changeCount(session, placement, tenant.getKeyspaceName(), tenantCount, tenantCount - 1)) {
+        return;
+      }
+    }
+    throw new IllegalStateException("Could not leave shared keyspace " + tenant.getKeyspaceName() + "!");
+  }
+
+  /**
+   * Claims the first name of the group which no keyspace of the group uses yet.  Names are numbered per group, so
+   * that concurrent creators of the same group agree on the name; a name already claimed by another group, whose
+   * hash is the same, is skipped.
+   */
+  private String claimKeyspaceName(final Session session, final String placement, final List<Row> keyspaces) {
+    final Set<String> keyspaceNames = keyspaces.stream()
+        .map(keyspace -> keyspace.getString(KEYSPACE_NAME_COLUMN))
+        .collect(Collectors.toSet());
+    final String prefix = this.provisionerProperties.getSharedKeyspaces().getKeyspaceNamePrefix()
+        + Integer.toHexString(placement.hashCode()) + "_";
+
+    for (int sequenceNumber = 1; ; sequenceNumber++) {
+      final String keyspaceName = prefix + sequenceNumber;
+      if (keyspaceNames.contains(keyspaceName)) {
+        continue;
+      }
+      final ResultSet claim = session.execute("INSERT INTO " + NAMES_TABLE_NAME + " (" + KEYSPACE_NAME_COLUMN + ", "
+          + PLACEMENT_COLUMN + ") VALUES (?, ?) IF NOT EXISTS", keyspaceName, placement);
+      //A rejected insert returns the existing row, which is ours if a concurrent creator of the group claimed it.
+      if (claim.wasApplied() || placement.equals(claim.one().getString(PLACEMENT_COLUMN))) {
+        return keyspaceName;
+      }
+    }
+  }
+
+  private boolean changeCount(final Session session, final String placement, final String keyspaceName,
+                              final int expected, final int changed) {
+    return session.execute("UPDATE " + TABLE_NAME + " SET " + TENANT_COUNT_COLUMN + " = ? WHERE " + PLACEMENT_COLUMN
+            + " = ? AND " + KEYSPACE_NAME_COLUMN + " = ? IF " + TENANT_COUNT_COLUMN + " = ?",
+        changed, placement, keyspaceName, expected).wasApplied();
+  }
+
+  static String placementOf(final TenantEntity tenant) {
+    return tenant.getClusterName() + "/" + tenant.getContactPoints() + "/"
+        + tenant.getReplicationType().toLowerCase() + "/" + tenant.getReplicas();
+  }
+
+  private Session getSession() {
+    return this.cassandraSessionProvider.getAdminSession();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Optional;
+
+/**
+ * Spare tenant databases of the warm pool.  Claiming skips rows locked by concurrent claims, so that every
+ * spare is handed out at most once without nodes waiting on each other.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public class SpareDatabaseDAO {
+
+  static final String TABLE_NAME = "spare_databases";
+  private static final String COUNT_STMT = " SELECT COUNT(*) FROM " + SpareDatabaseDAO.TABLE_NAME;
+  private static final String INSERT_STMT = " INSERT INTO " + SpareDatabaseDAO.TABLE_NAME +
+      " (database_name, created_on) " +
+      " values " +
+      " (?, ?) ";
+  private static final String CLAIM_STMT = " DELETE FROM " + SpareDatabaseDAO.TABLE_NAME +
+      " WHERE database_name = (SELECT database_name FROM " + SpareDatabaseDAO.TABLE_NAME +
+      " ORDER BY created_on LIMIT 1 FOR UPDATE SKIP LOCKED) RETURNING database_name ";
+
+  private SpareDatabaseDAO() {
+    super();
+  }
+
+  public static long count(final Connection connection) throws SQLException {
+    try (
+        final Statement countStatement = connection.createStatement();
+        final ResultSet resultSet = countStatement.executeQuery(SpareDatabaseDAO.COUNT_STMT)
+    ) {
+      return resultSet.next() ? resultSet.getLong(1) : 0L;
+    }
+  }
+
+  public static void insert(final Connection connection, final String databaseName) throws SQLException {
+    try (final PreparedStatement insertStatement = connection.prepareStatement(SpareDatabaseDAO.INSERT_STMT)) {
+      insertStatement.setString(1, databaseName);
+      insertStatement.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+      insertStatement.execute();
+    }
+  }
+
+  public static Optional<String> claim(final Connection connection) throws SQLException {
+    try (
+        final Statement claimStatement = connection.createStatement();
+        final ResultSet resultSet = claimStatement.executeQuery(SpareDatabaseDAO.CLAIM_STMT)
+    ) {
+      return resultSet.next() ? Optional.of(resultSet.getString(1)) : Optional.empty();
+    }
+  }
+}
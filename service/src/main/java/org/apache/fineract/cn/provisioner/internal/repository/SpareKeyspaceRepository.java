@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Spare tenant keyspaces of the warm pool, complete with their command source table.  Spares are partitioned by
+ * the contact points and replication they were created with, so that counting and claiming the spares a tenant
+ * can use reads a single partition.  A spare is claimed by deleting its row with a lightweight transaction, so
+ * that every spare is handed out at most once.
+ */
+@Component
+public class SpareKeyspaceRepository {
+
+  static final String TABLE_NAME = "spare_keyspace_pools";
+  //Unpartitioned table of migration 3, replaced by TABLE_NAME in migration 7.
+  static final String LEGACY_TABLE_NAME = "spare_keyspaces";
+  static final String POOL_COLUMN = "pool";
+  static final String KEYSPACE_NAME_COLUMN = "keyspace_name";
+  static final String CLUSTER_NAME_COLUMN = "cluster_name";
+  static final String CONTACT_POINTS_COLUMN = "contact_points";
+  static final String REPLICATION_TYPE_COLUMN = "replication_type";
+  static final String REPLICAS_COLUMN = "replicas";
+  static final String CREATED_ON_COLUMN = "created_on";
+  private static final String KEYSPACE_NAME_PREFIX = "spare_";
+  //Claimers contend for the same rows, so each one tries a few candidates of the partition in random order.
+  private static final int CLAIM_CANDIDATES = 8;
+
+  private final CassandraSessionProvider cassandraSessionProvider;
+  private final TenantCassandraRepository tenantCassandraRepository;
+
+  @Autowired
+  public SpareKeyspaceRepository(final @Nonnull CassandraSessionProvider cassandraSessionProvider,
+                                 final @Nonnull TenantCassandraRepository tenantCassandraRepository) {
+    super();
+    this.cassandraSessionProvider = cassandraSessionProvider;
+    this.tenantCassandraRepository = tenantCassandraRepository;
+  }
+
+  public String create(final @Nonnull String clusterName,
+                       final @Nonnull String contactPoints,
+                       final @Nonnull String replicationType,
+                       final @Nonnull String replicas) {
+    final TenantEntity keyspace = new TenantEntity();
+    keyspace.setClusterName(clusterName);
+    keyspace.setContactPoints(contactPoints);
+    keyspace.setKeyspaceName(KEYSPACE_NAME_PREFIX + UUID.randomUUID().toString().replace("-", ""));
+    keyspace.setReplicationType(replicationType);
+    keyspace.setReplicas(replicas);
+    this.tenantCassandraRepository.createKeyspace(keyspace);
+
+    //Recorded only once the keyspace is complete, so that a half created keyspace is never claimed.
+    this.release(keyspace);
+    return keyspace.getKeyspaceName();
+  }
+
+  /**
+   * Puts a spare back into the pool, e.g. because the tenant it was claimed for could not be bound to it.
+   */
+  public void release(final @Nonnull TenantEntity keyspace) {
+    insert(this.getSession(), keyspace);
+  }
+
+  static void insert(final Session session, final TenantEntity keyspace) {
+    session.execute("INSERT INTO " + TABLE_NAME + " (" + POOL_COLUMN + ", " + KEYSPACE_NAME_COLUMN + ", "
+            + CLUSTER_NAME_COLUMN + ", " + CONTACT_POINTS_COLUMN + ", " + REPLICATION_TYPE_COLUMN + ", "
+            + REPLICAS_COLUMN + ", " + CREATED_ON_COLUMN + ") VALUES (?, ?, ?, ?, ?, ?, ?)",
+        pool(keyspace.getContactPoints(), keyspace.getReplicationType(), keyspace.getReplicas()),
+        keyspace.getKeyspaceName(), keyspace.getClusterName(), keyspace.getContactPoints(),
+        keyspace.getReplicationType(), keyspace.getReplicas(), new Date());
+  }
+
+  public long count(final @Nonnull String contactPoints,
+                    final @Nonnull String replicationType,
+                    final @Nonnull String replicas) {
+    final Row row = this.getSession().execute("SELECT COUNT(*) FROM " + TABLE_NAME + " WHERE " + POOL_COLUMN + " = ?",
+        pool(contactPoints, replicationType, replicas)).one();
+    return row == null ? 0L : row.getLong(0);
+  }
+
+  public Optional<String> claim(final @Nonnull String contactPoints,
+                                final @Nonnull String replicationType,
+                                final @Nonnull String replicas) {
+    final Session session = this.getSession();
+    final String pool = pool(contactPoints, replicationType, replicas);
+    final List<String> candidates = session.execute("SELECT " + KEYSPACE_NAME_COLUMN + " FROM " + TABLE_NAME
+        + " WHERE " + POOL_COLUMN + " = ? LIMIT " + CLAIM_CANDIDATES, pool).all().stream()
+        .map(row -> row.getString(KEYSPACE_NAME_COLUMN))
+        .collect(Collectors.toList());
+    Collections.shuffle(candidates);
+    for (final String keyspaceName : candidates) {
+      final ResultSet claimed = session.execute("DELETE FROM " + TABLE_NAME + " WHERE " + POOL_COLUMN + " = ? AND "
+          + KEYSPACE_NAME_COLUMN + " = ? IF EXISTS", pool, keyspaceName);
+      if (claimed.wasApplied()) {
+        return Optional.of(keyspaceName);
+      }
+    }
+    return Optional.empty();
+  }
+
+  static String pool(final String contactPoints, final String replicationType, final String replicas) {
+    return contactPoints + "/" + replicationType.toLowerCase(Locale.ROOT) + "/" + replicas;
+  }
+
+  private Session getSession() {
+    return this.cassandraSessionProvider.getAdminSession();
+  }
+}
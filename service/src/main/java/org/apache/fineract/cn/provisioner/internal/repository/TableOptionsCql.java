@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders the table options of a tenant table as the WITH clause of its CREATE TABLE statement.
+ */
+final class TableOptionsCql {
+
+  private TableOptionsCql() {
+    super();
+  }
+
+  /**
+   * @return the WITH clause including its leading blank, or an empty string if all options are empty.
+   * @throws IllegalArgumentException if an option has a value which isn't supported.
+   */
+  static String withClause(final String compactionStrategy,
+                           final String compactionWindowUnit,
+                           final Integer compactionWindowSize,
+                           final Integer defaultTimeToLive,
+                           final String compression,
+                           final String caching) {
+    final List<String> options = new ArrayList<>();
+
+    if (compactionStrategy != null) {
+      options.add("compaction = " + compaction(compactionStrategy, compactionWindowUnit, compactionWindowSize));
+    } else if (compactionWindowUnit != null || compactionWindowSize != null) {
+      throw new IllegalArgumentException("Compaction windows are only supported by the TimeWindow compaction strategy.");
+    }
+
+    if (defaultTimeToLive != null) {
+      if (defaultTimeToLive < 0) {
+        throw new IllegalArgumentException("Default time to live must not be negative.");
+      }
+      options.add("default_time_to_live = " + defaultTimeToLive);
+    }
+
+    if (compression != null) {
+      options.add("compression = " + compression(compression));
+    }
+
+    if (caching != null) {
+      options.add("caching = " + caching(caching));
+    }
+
+    return options.isEmpty() ? "" : " WITH " + String.join(" AND ", options);
+  }
+
+  private static String compaction(final String compactionStrategy,
+                                   final String compactionWindowUnit,
+                                   final Integer compactionWindowSize) {
+    switch (compactionStrategy.toLowerCase(Locale.ROOT)) {
+      case "sizetiered":
+        return windowless(compactionWindowUnit, compactionWindowSize, "{'class': 'SizeTieredCompactionStrategy'}");
+      case "leveled":
+        return windowless(compactionWindowUnit, compactionWindowSize, "{'class': 'LeveledCompactionStrategy'}");
+      case "timewindow":
+        final StringBuilder compaction = new StringBuilder("{'class': 'TimeWindowCompactionStrategy'");
+        if (compactionWindowUnit != null) {
+          final String unit = compactionWindowUnit.toUpperCase(Locale.ROOT);
+          if (!unit.equals("MINUTES") && !unit.equals("HOURS") && !unit.equals("DAYS")) {
+            throw new IllegalArgumentException("Unsupported compaction window unit " + compactionWindowUnit + ".");
+          }
+          compaction.append(", 'compaction_window_unit': '").append(unit).append("'");
+        }
+        if (compactionWindowSize != null) {
+          if (compactionWindowSize < 1) {
+            throw new IllegalArgumentException("Compaction window size must be positive.");
+          }
+          compaction.append(", 'compaction_window_size': ").append(compactionWindowSize);
+        }
+        return compaction.append("}").toString();
+      default:
+        throw new IllegalArgumentException("Unsupported compaction strategy " + compactionStrategy + ".");
+    }
+  }
+
+  private static String windowless(final String compactionWindowUnit,
+                                   final Integer compactionWindowSize,
+                                   final String compaction) {
+    if (compactionWindowUnit != null || compactionWindowSize != null) {
+      throw new IllegalArgumentException("Compaction windows are only supported by the TimeWindow compaction strategy.");
+    }
+    return compaction;
+  }
+
+  private static String compression(final String compression) {
+    switch (compression.toLowerCase(Locale.ROOT)) {
+      case "lz4":
+        return "{'class': 'LZ4Compressor'}";
+      case "snappy":
+        return "{'class': 'SnappyCompressor'}";
+      case "deflate":
+        return "{'class': 'DeflateCompressor'}";
+      case "none":
+        return "{'enabled': 'false'}";
+      default:
+        throw new IllegalArgumentException("Unsupported compression " + compression + ".");
+    }
+  }
+
+  private static String caching(final String caching) {
+    switch (caching.toLowerCase(Locale.ROOT)) {
+      case "all":
+        return "{'keys': 'ALL', 'rows_per_partition': 'ALL'}";
+      case "keysonly":
+        return "{'keys': 'ALL', 'rows_per_partition': 'NONE'}";
+      case "none":
+        return "{'keys': 'NONE', 'rows_per_partition': 'NONE'}";
+      default:
+        throw new IllegalArgumentException("Unsupported caching " + caching + ".");
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pre-migrated database from which tenant databases are copied, one per template version.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public class TemplateDatabaseDAO {
+
+  private static final int INDEX_VERSION = 1;
+  private static final int INDEX_DATABASE_NAME = 2;
+  private static final int INDEX_SOURCE_DATABASE_NAME = 3;
+  private static final int INDEX_CREATED_ON = 4;
+
+  static final String TABLE_NAME = "template_databases";
+  private static final String FETCH_ALL_STMT = " SELECT * FROM " + TemplateDatabaseDAO.TABLE_NAME;
+  private static final String INSERT_STMT = " INSERT INTO " + TemplateDatabaseDAO.TABLE_NAME +
+      " (version, database_name, source_database_name, created_on) " +
+      " values " +
+      " (?, ?, ?, ?) ";
+  private static final String DELETE_STMT = " DELETE FROM " + TemplateDatabaseDAO.TABLE_NAME + " WHERE version = ? ";
+  private static final String EXISTS_STMT = " SELECT 1 FROM pg_database WHERE datname = ? ";
+
+  private String version;
+  private String databaseName;
+  private String sourceDatabaseName;
+  private Timestamp createdOn;
+
+  public TemplateDatabaseDAO() {
+    super();
+  }
+
+  public static List<TemplateDatabaseDAO> fetchAll(final Connection connection) throws SQLException {
+    final ArrayList<TemplateDatabaseDAO> templateDatabaseDAOs = new ArrayList<>();
+    try (
+        final Statement fetchAllStatement = connection.createStatement();
+        final ResultSet resultSet = fetchAllStatement.executeQuery(TemplateDatabaseDAO.FETCH_ALL_STMT)
+    ) {
+      while (resultSet.next()) {
+        final TemplateDatabaseDAO templateDatabaseDAO = new TemplateDatabaseDAO();
+        templateDatabaseDAO.setVersion(resultSet.getString("version"));
+        templateDatabaseDAO.setDatabaseName(resultSet.getString("database_name"));
+        templateDatabaseDAO.setSourceDatabaseName(resultSet.getString("source_database_name"));
+        templateDatabaseDAO.setCreatedOn(resultSet.getTimestamp("created_on"));
+        templateDatabaseDAOs.add(templateDatabaseDAO);
+      }
+    }
+    return templateDatabaseDAOs;
+  }
+
+  public static void delete(final Connection connection, final String version) throws SQLException {
+    try (final PreparedStatement deleteStatement = connection.prepareStatement(TemplateDatabaseDAO.DELETE_STMT)) {
+      deleteStatement.setString(INDEX_VERSION, version);
+      deleteStatement.execute();
+    }
+  }
+
+  public static boolean databaseExists(final Connection connection, final String databaseName) throws SQLException {
+    try (final PreparedStatement existsStatement = connection.prepareStatement(TemplateDatabaseDAO.EXISTS_STMT)) {
+      existsStatement.setString(1, databaseName);
+      try (final ResultSet resultSet = existsStatement.executeQuery()) {
+        return resultSet.next();
+      }
+    }
+  }
+
+  public void insert(final Connection connection) throws SQLException {
+    try (final PreparedStatement insertStatement = connection.prepareStatement(TemplateDatabaseDAO.INSERT_STMT)) {
+      insertStatement.setString(INDEX_VERSION, this.getVersion());
+      insertStatement.setString(INDEX_DATABASE_NAME, this.getDatabaseName());
+      insertStatement.setString(INDEX_SOURCE_DATABASE_NAME, this.getSourceDatabaseName());
+      insertStatement.setTimestamp(INDEX_CREATED_ON, this.getCreatedOn());
+      insertStatement.execute();
+    }
+  }
+
+  public String getVersion() {
+    return version;
+  }
+
+  public void setVersion(String version) {
+    this.version = version;
+  }
+
+  public String getDatabaseName() {
+    return databaseName;
+  }
+
+  public void setDatabaseName(String databaseName) {
+    this.databaseName = databaseName;
+  }
+
+  public String getSourceDatabaseName() {
+    return sourceDatabaseName;
+  }
+
+  public void setSourceDatabaseName(String sourceDatabaseName) {
+    this.sourceDatabaseName = sourceDatabaseName;
+  }
+
+  public Timestamp getCreatedOn() {
+    return createdOn;
+  }
+
+  public void setCreatedOn(Timestamp createdOn) {
+    this.createdOn = createdOn;
+  }
+}
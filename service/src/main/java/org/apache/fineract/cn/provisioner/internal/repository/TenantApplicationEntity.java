@@ -30,6 +30,7 @@ public class TenantApplicationEntity {
   static final String TABLE_NAME = "tenant_applications";
   static final String TENANT_IDENTIFIER_COLUMN = "tenant_identifier";
   static final String ASSIGNED_APPLICATIONS_COLUMN = "assigned_applications";
+  static final String ASSIGNED_APPLICATIONS_INDEX_NAME = "tenant_applications_by_application";
 
   @PartitionKey
   @Column(name = TENANT_IDENTIFIER_COLUMN)
@@ -18,28 +18,27 @@
  */
 package org.apache.fineract.cn.provisioner.internal.repository;
 
-import com.datastax.driver.core.AuthProvider;
-import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.DataType;
-import com.datastax.driver.core.PlainTextAuthProvider;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.exceptions.AlreadyExistsException;
 import com.datastax.driver.core.schemabuilder.SchemaBuilder;
 import com.datastax.driver.mapping.Mapper;
 import com.datastax.driver.mapping.MappingManager;
 import com.datastax.driver.mapping.Result;
-import org.apache.fineract.cn.provisioner.internal.util.ContactPointUtils;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
 import javax.annotation.Nonnull;
 import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
 import org.apache.fineract.cn.cassandra.core.ReplicationStrategyResolver;
-import org.apache.fineract.cn.cassandra.util.CassandraConnectorConstants;
 import org.apache.fineract.cn.lang.ServiceException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
 /**
@@ -47,17 +46,26 @@ import org.springframework.stereotype.Component;
  */
 @Component
 public class TenantCassandraRepository {
-  private final Environment environment;
+  private static final String COMMAND_SOURCE_TABLE = "command_source";
+  private static final String TENANT_IDENTIFIER_COLUMN = "tenant_identifier";
+
   private final CassandraSessionProvider cassandraSessionProvider;
+  private final SchemaChangeScheduler schemaChangeScheduler;
+  private final SharedKeyspaceRepository sharedKeyspaceRepository;
+  private final LightweightTransactions lightweightTransactions;
   private MappingManager mappingManager;
 
   @Autowired
   public TenantCassandraRepository(
-      final Environment environment,
-      final @Nonnull CassandraSessionProvider cassandraSessionProvider) {
+      final @Nonnull CassandraSessionProvider cassandraSessionProvider,
+      final @Nonnull SchemaChangeScheduler schemaChangeScheduler,
+      final @Nonnull SharedKeyspaceRepository sharedKeyspaceRepository,
+      final @Nonnull LightweightTransactions lightweightTransactions) {
     super();
-    this.environment = environment;
     this.cassandraSessionProvider = cassandraSessionProvider;
+    this.schemaChangeScheduler = schemaChangeScheduler;
+    this.sharedKeyspaceRepository = sharedKeyspaceRepository;
+    this.lightweightTransactions = lightweightTransactions;
   }
 
   public Optional<TenantEntity> get(final @Nonnull String tenantIdentifier) {
@@ -89,34 +97,92 @@ public class TenantCassandraRepository {
     final Mapper<TenantEntity> tenantEntityMapper = this.getMappingManager().mapper(TenantEntity.class);
     final TenantEntity tenantEntity = tenantEntityMapper.get(identifier);
     if (tenantEntity != null) {
-      final Session session = this.getCluster(tenantEntity).connect();
+      if (tenantEntity.isInSharedKeyspace()) {
+        //Other tenants still live in the keyspace, so only the partitions of this tenant go.
+        this.deleteSharedPartitions(tenantEntity);
+        this.deleteClaim(tenantEntity);
+        this.sharedKeyspaceRepository.leave(tenantEntity);
+        return;
+      }
 
       // drop org.apache.fineract.cn.provisioner.tenant keyspace
-      session.execute("DROP KEYSPACE " + tenantEntity.getKeyspaceName());
-      session.close();
+      this.schemaChangeScheduler.execute(tenantEntity,
+          new SchemaChangeScheduler.SchemaStatement("drop_keyspace", "DROP KEYSPACE " + tenantEntity.getKeyspaceName()));
 
-      tenantEntityMapper.delete(identifier);
+      this.deleteClaim(tenantEntity);
     }
   }
 
   public void create(final @Nonnull TenantEntity tenant) {
-    final Mapper<TenantEntity> tenantEntityMapper = this.getMappingManager().mapper(TenantEntity.class);
-    if (tenantEntityMapper.get(tenant.getIdentifier()) != null) {
+    if (tenant.isInSharedKeyspace()) {
+      this.createInSharedKeyspace(tenant);
+      return;
+    }
+
+    //The row claims the identifier before the keyspace is created, so that no two nodes create the tenant.
+    if (!tenant.insertIfNotExists(this.lightweightTransactions)) {
       throw ServiceException.conflict("Tenant {0} already exists!", tenant.getIdentifier());
     }
-    final Session session = this.getCluster(tenant).connect();
+
     try {
-      session.execute("CREATE KEYSPACE " + tenant.getKeyspaceName() + " WITH REPLICATION = " +
-              ReplicationStrategyResolver.replicationStrategy(
-                      tenant.getReplicationType(),
-                      tenant.getReplicas()));
+      this.createKeyspace(tenant);
+    } catch (final RuntimeException ex) {
+      this.deleteClaim(tenant);
+      throw ex;
     }
-    catch (final AlreadyExistsException e) {
-      throw ServiceException.badRequest("Tenant keyspace {0} already exists!", tenant.getKeyspaceName());
+  }
+
+  /**
+   * Records a tenant whose keyspace has already been created, for example a spare keyspace of the warm pool.
+   */
+  public void bind(final @Nonnull TenantEntity tenant) {
+    if (!tenant.insertIfNotExists(this.lightweightTransactions)) {
+      throw ServiceException.conflict("Tenant {0} already exists!", tenant.getIdentifier());
     }
+  }
+
+  private void createInSharedKeyspace(final @Nonnull TenantEntity tenant) {
+    tenant.setKeyspaceName(this.sharedKeyspaceRepository.join(tenant));
+    if (!tenant.insertIfNotExists(this.lightweightTransactions)) {
+      this.sharedKeyspaceRepository.leave(tenant);
+      throw ServiceException.conflict("Tenant {0} already exists!", tenant.getIdentifier());
+    }
+
+    try {
+      this.createSharedKeyspaceIfMissing(tenant);
+    } catch (final RuntimeException ex) {
+      this.deleteClaim(tenant);
+      this.sharedKeyspaceRepository.leave(tenant);
+      throw ex;
+    }
+  }
+
+  private void deleteClaim(final @Nonnull TenantEntity tenant) {
+    //The row was written conditionally, so a plain delete might not be ordered against it, and a tenant created
+    //again right after could be shadowed by the delete.
+    this.lightweightTransactions.deleteIfExists(TenantEntity.TABLE_NAME, TenantEntity.IDENTIFIER_COLUMN,
+        tenant.getIdentifier());
+  }
+
+  private void createSharedKeyspaceIfMissing(final @Nonnull TenantEntity tenant) {
+    //Only the first tenant of a shared keyspace changes the schema, the others don't wait for schema agreement.
+    final KeyspaceMetadata keyspace = this.schemaChangeScheduler.getSession(tenant).getCluster().getMetadata()
+        .getKeyspace(tenant.getKeyspaceName());
+    if (keyspace != null && keyspace.getTable(COMMAND_SOURCE_TABLE) != null) {
+      return;
+    }
+
+    final String createKeyspace = "CREATE KEYSPACE IF NOT EXISTS " + tenant.getKeyspaceName() + " WITH REPLICATION = " +
+            ReplicationStrategyResolver.replicationStrategy(
+                    tenant.getReplicationType(),
+                    tenant.getReplicas());
 
+    //The table of a dedicated keyspace, with the tenant leading its partition key, so that the partitions stay as
+    //small as a dedicated keyspace's.  Tenant services read and write a shared keyspace's command source with the
+    //tenant identifier in every statement; one which doesn't can't be given a shared keyspace.
     final String createCommandSourceTable =
-            SchemaBuilder.createTable(tenant.getKeyspaceName(), "command_source")
+            SchemaBuilder.createTable(tenant.getKeyspaceName(), COMMAND_SOURCE_TABLE).ifNotExists()
+                    .addPartitionKey(TENANT_IDENTIFIER_COLUMN, DataType.text())
                     .addPartitionKey("source", DataType.text())
                     .addPartitionKey("bucket", DataType.text())
                     .addClusteringColumn("created_on", DataType.timestamp())
@@ -125,27 +191,74 @@ public class TenantCassandraRepository {
                     .addColumn("failed", DataType.cboolean())
                     .addColumn("failure_message", DataType.text())
                     .buildInternal();
-    session.execute(createCommandSourceTable);
-    session.close();
 
-    tenantEntityMapper.save(tenant);
+    this.schemaChangeScheduler.execute(tenant,
+        new SchemaChangeScheduler.SchemaStatement("create_shared_keyspace", createKeyspace),
+        new SchemaChangeScheduler.SchemaStatement("create_shared_command_source", createCommandSourceTable));
+  }
+
+  private void deleteSharedPartitions(final @Nonnull TenantEntity tenant) {
+    final Session session = this.schemaChangeScheduler.getSession(tenant);
+    final KeyspaceMetadata keyspace = session.getCluster().getMetadata().getKeyspace(tenant.getKeyspaceName());
+    if (keyspace == null || keyspace.getTable(COMMAND_SOURCE_TABLE) == null) {
+      return;
+    }
+
+    //The partition key can't be restricted to the tenant alone, so the partition keys of all tenants of the keyspace
+    //are paged through to find the tenant's.  This grows with the keyspace, but only deletions pay for it.
+    final String table = tenant.getKeyspaceName() + "." + COMMAND_SOURCE_TABLE;
+    final Statement findPartitions = new SimpleStatement(
+        "SELECT DISTINCT " + TENANT_IDENTIFIER_COLUMN + ", source, bucket FROM " + table).setFetchSize(1000);
+    final PreparedStatement deletePartition = session.prepare(
+        "DELETE FROM " + table + " WHERE " + TENANT_IDENTIFIER_COLUMN + " = ? AND source = ? AND bucket = ?");
+    for (final Row partition : session.execute(findPartitions)) {
+      if (tenant.getIdentifier().equals(partition.getString(TENANT_IDENTIFIER_COLUMN))) {
+        session.execute(deletePartition.bind(
+            tenant.getIdentifier(), partition.getString("source"), partition.getString("bucket")));
+      }
+    }
   }
 
-  private Cluster getCluster(final @Nonnull TenantEntity tenantEntity) {
-    final Cluster.Builder clusterBuilder = Cluster
-            .builder()
-            .withClusterName(tenantEntity.getClusterName());
+  void createKeyspace(final @Nonnull TenantEntity tenant) {
+    final String createKeyspace = "CREATE KEYSPACE " + tenant.getKeyspaceName() + " WITH REPLICATION = " +
+            ReplicationStrategyResolver.replicationStrategy(
+                    tenant.getReplicationType(),
+                    tenant.getReplicas());
 
-    if (this.environment.containsProperty(CassandraConnectorConstants.CLUSTER_USER_PROP)) {
-      final String user = this.environment.getProperty(CassandraConnectorConstants.CLUSTER_USER_PROP);
-      final String pwd = this.environment.getProperty(CassandraConnectorConstants.CLUSTER_PASSWORD_PROP);
+    final String createCommandSourceTable =
+            SchemaBuilder.createTable(tenant.getKeyspaceName(), "command_source")
+                    .addPartitionKey("source", DataType.text())
+                    .addPartitionKey("bucket", DataType.text())
+                    .addClusteringColumn("created_on", DataType.timestamp())
+                    .addColumn("command", DataType.text())
+                    .addColumn("processed", DataType.cboolean())
+                    .addColumn("failed", DataType.cboolean())
+                    .addColumn("failure_message", DataType.text())
+                    .buildInternal() + this.commandSourceTableOptions(tenant);
 
-      final AuthProvider authProvider = new PlainTextAuthProvider(user, pwd);
-      clusterBuilder.withAuthProvider(authProvider);
+    //The command source table is only created if the keyspace was, so it can't exist already.
+    try {
+      this.schemaChangeScheduler.execute(tenant,
+          new SchemaChangeScheduler.SchemaStatement("create_keyspace", createKeyspace),
+          new SchemaChangeScheduler.SchemaStatement("create_command_source", createCommandSourceTable));
     }
-    ContactPointUtils.process(clusterBuilder, tenantEntity.getContactPoints());
+    catch (final AlreadyExistsException e) {
+      throw ServiceException.badRequest("Tenant keyspace {0} already exists!", tenant.getKeyspaceName());
+    }
+  }
 
-    return clusterBuilder.build();
+  private String commandSourceTableOptions(final TenantEntity tenant) {
+    try {
+      return TableOptionsCql.withClause(
+          tenant.getCommandSourceCompactionStrategy(),
+          tenant.getCommandSourceCompactionWindowUnit(),
+          tenant.getCommandSourceCompactionWindowSize(),
+          tenant.getCommandSourceDefaultTimeToLive(),
+          tenant.getCommandSourceCompression(),
+          tenant.getCommandSourceCaching());
+    } catch (final IllegalArgumentException ex) {
+      throw ServiceException.badRequest("Invalid command source table options: {0}", ex.getMessage());
+    }
   }
 
   private MappingManager getMappingManager() {
@@ -52,6 +52,8 @@ public class TenantDAO {
         tenantDAO.setPort(this.resultSet.getString("port"));
         tenantDAO.setUser(this.resultSet.getString("a_user"));
         tenantDAO.setPassword(this.resultSet.getString("pwd"));
+        tenantDAO.setName(this.resultSet.getString("name"));
+        tenantDAO.setDescription(this.resultSet.getString("description"));
         return Optional.of(tenantDAO);
       } else {
         return Optional.empty();
@@ -70,6 +72,8 @@ public class TenantDAO {
         tenantDAO.setPort(this.resultSet.getString("port"));
         tenantDAO.setUser(this.resultSet.getString("a_user"));
         tenantDAO.setPassword(this.resultSet.getString("pwd"));
+        tenantDAO.setName(this.resultSet.getString("name"));
+        tenantDAO.setDescription(this.resultSet.getString("description"));
       }
       return tenantDAOs;
     }
@@ -82,14 +86,20 @@ public class TenantDAO {
   private static final int INDEX_PORT = 5;
   private static final int INDEX_USER = 6;
   private static final int INDEX_PASSWORD = 7;
+  private static final int INDEX_NAME = 8;
+  private static final int INDEX_DESCRIPTION = 9;
 
   private static final String TABLE_NAME = "tenants";
   private static final String FETCH_ALL_STMT = " SELECT * FROM " + TenantDAO.TABLE_NAME;
   private static final String FIND_ONE_STMT = " SELECT * FROM " + TenantDAO.TABLE_NAME + " WHERE identifier = ?";
-  private static final String INSERT_STMT = " INSERT INTO " + TenantDAO.TABLE_NAME +
-      " (identifier, driver_class, database_name, host, port, a_user, pwd) " +
+  private static final String INSERT_IF_ABSENT_STMT = " INSERT INTO " + TenantDAO.TABLE_NAME +
+      " (identifier, driver_class, database_name, host, port, a_user, pwd, name, description) " +
       " values " +
-      " (?, ?, ?, ?, ?, ?, ?) ";
+      " (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+      " ON CONFLICT (identifier) DO NOTHING RETURNING identifier ";
+  private static final String RELOCATE_STMT = " UPDATE " + TenantDAO.TABLE_NAME +
+      " SET driver_class = ?, database_name = ?, host = ?, port = ?, a_user = ?, pwd = ? " +
+      " WHERE identifier = ? AND database_name = ? AND host = ? AND port = ? ";
   private static final String DELETE_STMT = " DELETE FROM " + TenantDAO.TABLE_NAME + " WHERE identifier = ? ";
 
   private String identifier;
@@ -99,6 +109,8 @@ public class TenantDAO {
   private String port;
   private String user;
   private String password;
+  private String name;
+  private String description;
 
   public TenantDAO() {
     super();
@@ -132,8 +144,14 @@ public class TenantDAO {
     }
   }
 
-  public void insert(final Connection connection) throws SQLException {
-    try (final PreparedStatement insertTenantStatement = connection.prepareStatement(TenantDAO.INSERT_STMT)) {
+  /**
+   * Inserts the tenant unless a tenant with the same identifier exists, in one round trip which can't be raced by
+   * a concurrent insert.
+   *
+   * @return false if the tenant already existed, in which case nothing was inserted.
+   */
+  public boolean insertIfAbsent(final Connection connection) throws SQLException {
+    try (final PreparedStatement insertTenantStatement = connection.prepareStatement(TenantDAO.INSERT_IF_ABSENT_STMT)) {
       insertTenantStatement.setString(INDEX_IDENTIFIER, this.getIdentifier());
       insertTenantStatement.setString(INDEX_DRIVER_CLASS, this.getDriverClass());
       insertTenantStatement.setString(INDEX_DATABASE_NAME, this.getDatabaseName());
@@ -141,7 +159,36 @@ public class TenantDAO {
       insertTenantStatement.setString(INDEX_PORT, this.getPort());
       insertTenantStatement.setString(INDEX_USER, this.getUser());
       insertTenantStatement.setString(INDEX_PASSWORD, this.getPassword());
-      insertTenantStatement.execute();
+      insertTenantStatement.setString(INDEX_NAME, this.getName());
+      insertTenantStatement.setString(INDEX_DESCRIPTION, this.getDescription());
+      try (final ResultSet resultSet = insertTenantStatement.executeQuery()) {
+        return resultSet.next();
+      }
+    }
+  }
+
+  /**
+   * Points the tenant at another database, in one statement, so that readers see either the old or the new
+   * location.  The tenant is only changed if it still is at the expected location.
+   *
+   * @return false if the tenant wasn't at the expected location, in which case nothing was changed.
+   */
+  public static boolean relocate(final Connection connection,
+                                 final String identifier,
+                                 final DatabaseConnectionInfo expected,
+                                 final DatabaseConnectionInfo relocated) throws SQLException {
+    try (final PreparedStatement relocateTenantStatement = connection.prepareStatement(TenantDAO.RELOCATE_STMT)) {
+      relocateTenantStatement.setString(1, relocated.getDriverClass());
+      relocateTenantStatement.setString(2, relocated.getDatabaseName());
+      relocateTenantStatement.setString(3, relocated.getHost());
+      relocateTenantStatement.setString(4, relocated.getPort());
+      relocateTenantStatement.setString(5, relocated.getUser());
+      relocateTenantStatement.setString(6, relocated.getPassword());
+      relocateTenantStatement.setString(7, identifier);
+      relocateTenantStatement.setString(8, expected.getDatabaseName());
+      relocateTenantStatement.setString(9, expected.getHost());
+      relocateTenantStatement.setString(10, expected.getPort());
+      return relocateTenantStatement.executeUpdate() == 1;
     }
   }
 
@@ -211,4 +258,20 @@ public class TenantDAO {
   public void setPassword(String password) {
     this.password = password;
   }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription(String description) {
+    this.description = description;
+  }
 }
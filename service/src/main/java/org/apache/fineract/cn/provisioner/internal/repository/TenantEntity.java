@@ -21,6 +21,7 @@ package org.apache.fineract.cn.provisioner.internal.repository;
 import com.datastax.driver.mapping.annotations.Column;
 import com.datastax.driver.mapping.annotations.PartitionKey;
 import com.datastax.driver.mapping.annotations.Table;
+import org.apache.fineract.cn.provisioner.api.v1.domain.CassandraConnectionInfo;
 
 @Table(name = TenantEntity.TABLE_NAME)
 public class TenantEntity {
@@ -36,6 +37,13 @@ public class TenantEntity {
   static final String DESCRIPTION_COLUMN = "description";
   static final String IDENTITY_MANAGER_APPLICATION_NAME_COLUMN = "identity_manager_application_name";
   static final String IDENTITY_MANAGER_APPLICATION_URI_COLUMN = "identity_manager_application_uri";
+  static final String COMMAND_SOURCE_COMPACTION_STRATEGY_COLUMN = "command_source_compaction_strategy";
+  static final String COMMAND_SOURCE_COMPACTION_WINDOW_UNIT_COLUMN = "command_source_compaction_window_unit";
+  static final String COMMAND_SOURCE_COMPACTION_WINDOW_SIZE_COLUMN = "command_source_compaction_window_size";
+  static final String COMMAND_SOURCE_DEFAULT_TIME_TO_LIVE_COLUMN = "command_source_default_time_to_live";
+  static final String COMMAND_SOURCE_COMPRESSION_COLUMN = "command_source_compression";
+  static final String COMMAND_SOURCE_CACHING_COLUMN = "command_source_caching";
+  static final String KEYSPACE_MODE_COLUMN = "keyspace_mode";
 
   @PartitionKey
   @Column(name = IDENTIFIER_COLUMN)
@@ -58,6 +66,20 @@ public class TenantEntity {
   private String identityManagerApplicationName;
   @Column(name = IDENTITY_MANAGER_APPLICATION_URI_COLUMN)
   private String identityManagerApplicationUri;
+  @Column(name = COMMAND_SOURCE_COMPACTION_STRATEGY_COLUMN)
+  private String commandSourceCompactionStrategy;
+  @Column(name = COMMAND_SOURCE_COMPACTION_WINDOW_UNIT_COLUMN)
+  private String commandSourceCompactionWindowUnit;
+  @Column(name = COMMAND_SOURCE_COMPACTION_WINDOW_SIZE_COLUMN)
+  private Integer commandSourceCompactionWindowSize;
+  @Column(name = COMMAND_SOURCE_DEFAULT_TIME_TO_LIVE_COLUMN)
+  private Integer commandSourceDefaultTimeToLive;
+  @Column(name = COMMAND_SOURCE_COMPRESSION_COLUMN)
+  private String commandSourceCompression;
+  @Column(name = COMMAND_SOURCE_CACHING_COLUMN)
+  private String commandSourceCaching;
+  @Column(name = KEYSPACE_MODE_COLUMN)
+  private String keyspaceMode;
 
   public TenantEntity() {
     super();
@@ -143,6 +165,88 @@ public class TenantEntity {
     this.identityManagerApplicationUri = identityManagerApplicationUri;
   }
 
+  public String getCommandSourceCompactionStrategy() {
+    return commandSourceCompactionStrategy;
+  }
+
+  public void setCommandSourceCompactionStrategy(String commandSourceCompactionStrategy) {
+    this.commandSourceCompactionStrategy = commandSourceCompactionStrategy;
+  }
+
+  public String getCommandSourceCompactionWindowUnit() {
+    return commandSourceCompactionWindowUnit;
+  }
+
+  public void setCommandSourceCompactionWindowUnit(String commandSourceCompactionWindowUnit) {
+    this.commandSourceCompactionWindowUnit = commandSourceCompactionWindowUnit;
+  }
+
+  public Integer getCommandSourceCompactionWindowSize() {
+    return commandSourceCompactionWindowSize;
+  }
+
+  public void setCommandSourceCompactionWindowSize(Integer commandSourceCompactionWindowSize) {
+    this.commandSourceCompactionWindowSize = commandSourceCompactionWindowSize;
+  }
+
+  public Integer getCommandSourceDefaultTimeToLive() {
+    return commandSourceDefaultTimeToLive;
+  }
+
+  public void setCommandSourceDefaultTimeToLive(Integer commandSourceDefaultTimeToLive) {
+    this.commandSourceDefaultTimeToLive = commandSourceDefaultTimeToLive;
+  }
+
+  public String getCommandSourceCompression() {
+    return commandSourceCompression;
+  }
+
+  public void setCommandSourceCompression(String commandSourceCompression) {
+    this.commandSourceCompression = commandSourceCompression;
+  }
+
+  public String getCommandSourceCaching() {
+    return commandSourceCaching;
+  }
+
+  public void setCommandSourceCaching(String commandSourceCaching) {
+    this.commandSourceCaching = commandSourceCaching;
+  }
+
+  public String getKeyspaceMode() {
+    return keyspaceMode;
+  }
+
+  public void setKeyspaceMode(String keyspaceMode) {
+    this.keyspaceMode = keyspaceMode;
+  }
+
+  /**
+   * @return true if the tenant lives in a keyspace shared with other tenants.
+   */
+  public boolean isInSharedKeyspace() {
+    return CassandraConnectionInfo.KEYSPACE_MODE_SHARED.equals(this.keyspaceMode);
+  }
+
+  /**
+   * @return false if a tenant with the same identifier already exists.
+   */
+  public boolean insertIfNotExists(final LightweightTransactions lightweightTransactions) {
+    return lightweightTransactions.insertIfNotExists(TABLE_NAME,
+        new String[]{IDENTIFIER_COLUMN, CLUSTER_NAME_COLUMN, CONTACT_POINTS_COLUMN, KEYSPACE_NAME_COLUMN,
+            REPLICATION_TYPE_COLUMN, REPLICAS_COLUMN, NAME_COLUMN, DESCRIPTION_COLUMN,
+            IDENTITY_MANAGER_APPLICATION_NAME_COLUMN, IDENTITY_MANAGER_APPLICATION_URI_COLUMN,
+            COMMAND_SOURCE_COMPACTION_STRATEGY_COLUMN, COMMAND_SOURCE_COMPACTION_WINDOW_UNIT_COLUMN,
+            COMMAND_SOURCE_COMPACTION_WINDOW_SIZE_COLUMN, COMMAND_SOURCE_DEFAULT_TIME_TO_LIVE_COLUMN,
+            COMMAND_SOURCE_COMPRESSION_COLUMN, COMMAND_SOURCE_CACHING_COLUMN, KEYSPACE_MODE_COLUMN},
+        this.identifier, this.clusterName, this.contactPoints, this.keyspaceName,
+        this.replicationType, this.replicas, this.name, this.description,
+        this.identityManagerApplicationName, this.identityManagerApplicationUri,
+        this.commandSourceCompactionStrategy, this.commandSourceCompactionWindowUnit,
+        this.commandSourceCompactionWindowSize, this.commandSourceDefaultTimeToLive,
+        this.commandSourceCompression, this.commandSourceCaching, this.keyspaceMode);
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
@@ -23,49 +23,75 @@ import com.datastax.driver.mapping.Mapper;
 import com.datastax.driver.mapping.Result;
 import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
 import org.apache.fineract.cn.provisioner.internal.repository.ApplicationEntity;
+import org.apache.fineract.cn.provisioner.internal.repository.LightweightTransactions;
+import org.apache.fineract.cn.provisioner.internal.service.applications.ApplicationPermittablesCache;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
 import org.apache.fineract.cn.lang.ServiceException;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+/**
+ * Serves application lookups from an immutable in-memory catalog of the applications table.  The catalog
+ * is replaced as a whole on every change made through this service.  Changes are announced to the other
+ * provisioner nodes, which reload their catalogs; the periodic reload catches announcements which were lost.  Reads of the table that feed the catalog are serialized with
+ * the writes of this service, so a slow reload cannot bring back an application deleted in the meantime.
+ */
 @Component
 public class ApplicationService {
 
   private final Logger logger;
   private final CassandraSessionProvider cassandraSessionProvider;
+  private final LightweightTransactions lightweightTransactions;
   private final TenantApplicationService tenantApplicationService;
+  private final ApplicationPermittablesCache applicationPermittablesCache;
+  private final JmsTemplate jmsTemplate;
+  private final String nodeIdentifier = UUID.randomUUID().toString();
+  private volatile Map<String, ApplicationEntity> applications;
 
   @Autowired
   public ApplicationService(@Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
                             final CassandraSessionProvider cassandraSessionProvider,
-                            final TenantApplicationService tenantApplicationService) {
+                            final LightweightTransactions lightweightTransactions,
+                            final TenantApplicationService tenantApplicationService,
+                            final ApplicationPermittablesCache applicationPermittablesCache,
+                            final JmsTemplate jmsTemplate) {
     super();
     this.logger = logger;
     this.cassandraSessionProvider = cassandraSessionProvider;
+    this.lightweightTransactions = lightweightTransactions;
     this.tenantApplicationService = tenantApplicationService;
+    this.applicationPermittablesCache = applicationPermittablesCache;
+    this.jmsTemplate = jmsTemplate;
   }
 
   public void create(final ApplicationEntity applicationEntity) {
-    final Mapper<ApplicationEntity> applicationEntityMapper =
-        this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(ApplicationEntity.class);
+    synchronized (this) {
+      if (!applicationEntity.insertIfNotExists(this.lightweightTransactions)) {
+        this.logger.warn("Tried to create duplicate application {}!", applicationEntity.getName());
+        throw ServiceException.conflict("Application {0} already exists!", applicationEntity.getName());
+      }
 
-    if (applicationEntityMapper.get(applicationEntity.getName()) != null) {
-      this.logger.warn("Tried to create duplicate application {}!", applicationEntity.getName());
-      throw ServiceException.conflict("Application {0} already exists!", applicationEntity.getName());
+      this.catalogPut(applicationEntity);
     }
-
-    applicationEntityMapper.save(applicationEntity);
+    this.applicationPermittablesCache.invalidate(applicationEntity.getName());
+    this.announceChange(applicationEntity.getName());
   }
 
   public ApplicationEntity find(final String name) {
-    final Mapper<ApplicationEntity> applicationEntityMapper =
-        this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(ApplicationEntity.class);
-
-    final ApplicationEntity applicationEntity = applicationEntityMapper.get(name);
+    final ApplicationEntity applicationEntity = this.lookup(name);
     if (applicationEntity == null) {
       this.logger.warn("Tried to find unknown application {}!", name);
       throw ServiceException.notFound("Application {0} not found!", name);
@@ -74,28 +100,117 @@ public class ApplicationService {
     return applicationEntity;
   }
 
-  public List<ApplicationEntity> fetchAll() {
-    final ArrayList<ApplicationEntity> applicationEntities = new ArrayList<>();
+  public List<ApplicationEntity> findAll(final Set<String> names) {
+    final List<ApplicationEntity> applicationEntities = new ArrayList<>(names.size());
+    for (final String name : names) {
+      applicationEntities.add(this.find(name));
+    }
+    return applicationEntities;
+  }
 
-    final ResultSet resultSet =
-        this.cassandraSessionProvider.getAdminSession().execute(" SELECT * FROM applications ");
+  public synchronized List<ApplicationEntity> fetchAll() {
+    final Map<String, ApplicationEntity> loadedApplications = this.load();
+    this.applications = loadedApplications;
+    return new ArrayList<>(loadedApplications.values());
+  }
+
+  public void delete(final String name) {
+    synchronized (this) {
+      ApplicationEntity.deleteIfExists(this.lightweightTransactions, name);
+      this.catalogRemove(name);
+    }
+    this.applicationPermittablesCache.invalidate(name);
+    this.announceChange(name);
+    this.tenantApplicationService.removeApplication(name);
+  }
+
+  @Scheduled(
+      initialDelayString = "${provisioner.applications.reloadInterval:60000}",
+      fixedDelayString = "${provisioner.applications.reloadInterval:60000}")
+  public synchronized void reload() {
+    try {
+      this.applications = this.load();
+    } catch (final RuntimeException ex) {
+      this.logger.warn("Could not reload applications, keeping previous catalog.", ex);
+    }
+  }
+
+  public void reloadAfterChange(final String originNodeIdentifier, final String name) {
+    if (!this.nodeIdentifier.equals(originNodeIdentifier)) {
+      this.reload();
+      this.applicationPermittablesCache.invalidate(name);
+    }
+  }
 
+  private void announceChange(final String name) {
+    try {
+      this.jmsTemplate.convertAndSend(ProvisionerConstants.APPLICATION_CHANGE_DESTINATION, name, message -> {
+        message.setStringProperty(ProvisionerConstants.ORIGIN_NODE_HEADER, this.nodeIdentifier);
+        return message;
+      });
+    } catch (final JmsException ex) {
+      this.logger.warn("Could not announce change of application {} to other provisioner nodes.", name, ex);
+    }
+  }
+
+  private ApplicationEntity lookup(final String name) {
+    final ApplicationEntity applicationEntity = this.getApplications().get(name);
+    if (applicationEntity != null) {
+      return applicationEntity;
+    }
+
+    //The application might have been created on another node since the catalog was last loaded.
     final Mapper<ApplicationEntity> applicationEntityMapper =
         this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(ApplicationEntity.class);
+    synchronized (this) {
+      final ApplicationEntity storedApplicationEntity = applicationEntityMapper.get(name);
+      if (storedApplicationEntity != null) {
+        this.catalogPut(storedApplicationEntity);
+      }
+      return storedApplicationEntity;
+    }
+  }
 
-    if (resultSet != null) {
-      final Result<ApplicationEntity> mappedApplicationEntities = applicationEntityMapper.map(resultSet);
-      applicationEntities.addAll(mappedApplicationEntities.all());
+  private Map<String, ApplicationEntity> getApplications() {
+    if (this.applications == null) {
+      synchronized (this) {
+        if (this.applications == null) {
+          this.reload();
+        }
+      }
     }
+    final Map<String, ApplicationEntity> currentApplications = this.applications;
+    return currentApplications != null ? currentApplications : Collections.emptyMap();
+  }
 
-    return applicationEntities;
+  private synchronized void catalogPut(final ApplicationEntity applicationEntity) {
+    final Map<String, ApplicationEntity> changedApplications = new HashMap<>(this.getApplications());
+    changedApplications.put(applicationEntity.getName(), applicationEntity);
+    this.applications = Collections.unmodifiableMap(changedApplications);
   }
 
-  public void delete(final String name) {
+  private synchronized void catalogRemove(final String name) {
+    final Map<String, ApplicationEntity> changedApplications = new HashMap<>(this.getApplications());
+    changedApplications.remove(name);
+    this.applications = Collections.unmodifiableMap(changedApplications);
+  }
+
+  private Map<String, ApplicationEntity> load() {
+    final Map<String, ApplicationEntity> loadedApplications = new LinkedHashMap<>();
+
+    final ResultSet resultSet =
+        this.cassandraSessionProvider.getAdminSession().execute(" SELECT * FROM applications ");
+
     final Mapper<ApplicationEntity> applicationEntityMapper =
         this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(ApplicationEntity.class);
 
-    applicationEntityMapper.delete(name);
-    this.tenantApplicationService.removeApplication(name);
+    if (resultSet != null) {
+      final Result<ApplicationEntity> mappedApplicationEntities = applicationEntityMapper.map(resultSet);
+      for (final ApplicationEntity applicationEntity : mappedApplicationEntities) {
+        loadedApplications.put(applicationEntity.getName(), applicationEntity);
+      }
+    }
+
+    return Collections.unmodifiableMap(loadedApplications);
   }
 }
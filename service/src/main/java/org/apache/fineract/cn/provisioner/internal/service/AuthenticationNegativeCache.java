@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.util.NegativeCache;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers client ids which were looked up and not found, so that repeated authentication attempts with them
+ * are rejected without reading the clients table.  Client changes are announced to every node, which is why an
+ * entry can be forgotten when its client is created.  User names aren't cached, since users are created outside
+ * of the provisioner and no node would learn that a remembered name has become valid.
+ */
+@Component
+public class AuthenticationNegativeCache {
+
+  private final NegativeCache unknownClients;
+
+  @Autowired
+  public AuthenticationNegativeCache(final ProvisionerProperties provisionerProperties) {
+    super();
+    final ProvisionerProperties.NegativeCache negativeCache = provisionerProperties.getNegativeCache();
+    this.unknownClients = new NegativeCache(negativeCache.getTtl(), TimeUnit.SECONDS, negativeCache.getMaximumSize());
+  }
+
+  boolean isUnknownClient(final String clientId) {
+    return this.unknownClients.isKnownMissing(clientId);
+  }
+
+  void rememberUnknownClient(final String clientId) {
+    this.unknownClients.rememberMissing(clientId);
+  }
+
+  void forgetUnknownClient(final String clientId) {
+    this.unknownClients.forget(clientId);
+  }
+}
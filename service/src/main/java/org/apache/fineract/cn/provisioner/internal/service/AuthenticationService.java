@@ -30,16 +30,20 @@ import org.apache.fineract.cn.provisioner.api.v1.domain.AuthenticationResponse;
 import org.apache.fineract.cn.provisioner.api.v1.domain.PasswordPolicy;
 import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
 import org.apache.fineract.cn.provisioner.config.SystemProperties;
-import org.apache.fineract.cn.provisioner.internal.repository.ClientEntity;
 import org.apache.fineract.cn.provisioner.internal.repository.ConfigEntity;
 import org.apache.fineract.cn.provisioner.internal.repository.UserEntity;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.RefreshTokenSigner;
 import org.apache.fineract.cn.provisioner.internal.util.TokenProvider;
 import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nonnull;
 import org.apache.fineract.cn.anubis.token.TokenSerializationResult;
@@ -60,39 +64,48 @@ public class AuthenticationService {
   @Value("${spring.application.name}")
   private String applicationName;
   private final Integer ttl;
+  private final Integer refreshTtl;
   private final Logger logger;
   private final CassandraSessionProvider cassandraSessionProvider;
   private final HashGenerator hashGenerator;
   private final TokenProvider tokenProvider;
-
+  private final RefreshTokenSigner refreshTokenSigner;
+  private final ClientService clientService;
+  private final ProvisionerMetrics provisionerMetrics;
 
   @Autowired
   public AuthenticationService(@Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
                                final CassandraSessionProvider cassandraSessionProvider,
                                final HashGenerator hashGenerator,
                                final TokenProvider tokenProvider,
-                               final SystemProperties systemProperties) {
+                               final RefreshTokenSigner refreshTokenSigner,
+                               final SystemProperties systemProperties,
+                               final ClientService clientService,
+                               final ProvisionerMetrics provisionerMetrics) {
     super();
     this.ttl = systemProperties.getToken().getTtl();
+    this.refreshTtl = systemProperties.getToken().getRefreshTtl();
     this.logger = logger;
     this.cassandraSessionProvider = cassandraSessionProvider;
     this.hashGenerator = hashGenerator;
     this.tokenProvider = tokenProvider;
+    this.refreshTokenSigner = refreshTokenSigner;
+    this.clientService = clientService;
+    this.provisionerMetrics = provisionerMetrics;
   }
 
   public AuthenticationResponse authenticate(
       final @Nonnull String clientId,
       final @Nonnull String username,
       final @Nonnull String password) {
-    final Session session = this.cassandraSessionProvider.getAdminSession();
-    final MappingManager mappingManager = new MappingManager(session);
-
-    final Mapper<ClientEntity> clientEntityMapper = mappingManager.mapper(ClientEntity.class);
-    if (clientEntityMapper.get(clientId) == null) {
+    if (!this.clientService.exists(clientId)) {
       this.logger.warn("Authentication attempt with unknown client: " + clientId);
       throw ServiceException.notFound("Requested resource not found!");
     }
 
+    final Session session = this.cassandraSessionProvider.getAdminSession();
+    final MappingManager mappingManager = new MappingManager(session);
+
     final Mapper<UserEntity> userEntityMapper = mappingManager.mapper(UserEntity.class);
     final Statement userQuery = userEntityMapper.getQuery(username);
     final ResultSet userResult = session.execute(userQuery);
@@ -113,29 +126,82 @@ public class AuthenticationService {
     final Row configRow = configResult.one();
     final byte[] secret = Bytes.getArray(configRow.getBytes(1));
 
-    if (this.hashGenerator.isEqual(
-        storedPassword,
-        Base64Utils.decodeFromString(password),
-        secret,
-        salt,
-        iterationCount,
-        256)) {
-
-      if (expiresInDays > 0) {
-        final LocalDate ld = passwordResetOn.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-        final LocalDate expiresOn = ld.plusDays(expiresInDays);
-        if (LocalDate.now().isAfter(expiresOn)) {
-          throw ServiceException.badRequest("Password expired");
-        }
-      }
-
-      final TokenSerializationResult authToken = this.tokenProvider.createToken(username, this.applicationName, this.ttl, TimeUnit.MINUTES);
-      return new AuthenticationResponse(authToken.getToken(), dateTimeToString(authToken.getExpiration()));
+    final boolean passwordMatches = this.provisionerMetrics.timed("provisioner_password_hashing",
+        () -> this.hashGenerator.isEqual(
+            storedPassword,
+            Base64Utils.decodeFromString(password),
+            secret,
+            salt,
+            iterationCount,
+            256),
+        "operation", "verify");
+    if (passwordMatches) {
+      checkPasswordNotExpired(expiresInDays, passwordResetOn);
+
+      final Instant refreshTokenExpiration = Instant.now().plus(this.refreshTtl, ChronoUnit.MINUTES);
+      final String refreshToken = this.refreshTokenSigner.sign(
+          clientId, username, passwordVersion(passwordResetOn), refreshTokenExpiration);
+      return createResponse(username, refreshToken, refreshTokenExpiration);
     } else {
       throw ServiceException.notFound("Requested resource not found!");
     }
   }
 
+  public AuthenticationResponse refresh(
+      final @Nonnull String clientId,
+      final @Nonnull String refreshToken) {
+    //A deleted client can't refresh the tokens it was issued either.
+    if (!this.clientService.exists(clientId)) {
+      this.logger.warn("Authentication attempt with unknown client: " + clientId);
+      throw ServiceException.notFound("Requested resource not found!");
+    }
+    final Optional<RefreshTokenSigner.RefreshToken> verified = this.refreshTokenSigner.verify(refreshToken)
+        .filter(x -> x.getClientId().equals(clientId));
+    if (!verified.isPresent()) {
+      this.logger.warn("Authentication attempt with invalid refresh token for client: " + clientId);
+      throw ServiceException.notFound("Requested resource not found!");
+    }
+    final String username = verified.get().getSubject();
+
+    final Row userRow = this.findUserRow(username);
+    //A changed password invalidates refresh tokens issued for the old one.
+    if (userRow == null || passwordVersion(userRow.getTimestamp(5)) != verified.get().getPasswordVersion()) {
+      this.logger.warn("Authentication attempt with revoked refresh token for user: " + username);
+      throw ServiceException.notFound("Requested resource not found!");
+    }
+    checkPasswordNotExpired(userRow.getInt(4), userRow.getTimestamp(5));
+
+    return createResponse(username, refreshToken, verified.get().getExpiration());
+  }
+
+  Row findUserRow(final String username) {
+    final Session session = this.cassandraSessionProvider.getAdminSession();
+    final Mapper<UserEntity> userEntityMapper = new MappingManager(session).mapper(UserEntity.class);
+    return session.execute(userEntityMapper.getQuery(username)).one();
+  }
+
+  private static long passwordVersion(final Date passwordResetOn) {
+    return passwordResetOn == null ? 0L : passwordResetOn.getTime();
+  }
+
+  private void checkPasswordNotExpired(final int expiresInDays, final Date passwordResetOn) {
+    if (expiresInDays > 0) {
+      final LocalDate ld = passwordResetOn.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+      final LocalDate expiresOn = ld.plusDays(expiresInDays);
+      if (LocalDate.now().isAfter(expiresOn)) {
+        throw ServiceException.badRequest("Password expired");
+      }
+    }
+  }
+
+  private AuthenticationResponse createResponse(final String username,
+                                                final String refreshToken,
+                                                final Instant refreshTokenExpiration) {
+    final TokenSerializationResult authToken = this.tokenProvider.createToken(username, this.applicationName, this.ttl, TimeUnit.MINUTES);
+    return new AuthenticationResponse(authToken.getToken(), dateTimeToString(authToken.getExpiration()),
+        refreshToken, dateTimeToString(LocalDateTime.ofInstant(refreshTokenExpiration, ZoneId.of("UTC"))));
+  }
+
   private String dateTimeToString(final LocalDateTime dateTime) {
     return dateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
   }
@@ -162,7 +228,9 @@ public class AuthenticationService {
       final byte[] secret = Bytes.getArray(configRow.getBytes(1));
 
       if (passwordPolicy.getNewPassword() != null) {
-        final byte[] newPasswordHash = this.hashGenerator.hash(passwordPolicy.getNewPassword(), EncodingUtils.concatenate(salt, secret), iterationCount, ProvisionerConstants.HASH_LENGTH);
+        final byte[] newPasswordHash = this.provisionerMetrics.timed("provisioner_password_hashing",
+            () -> this.hashGenerator.hash(passwordPolicy.getNewPassword(), EncodingUtils.concatenate(salt, secret), iterationCount, ProvisionerConstants.HASH_LENGTH),
+            "operation", "hash");
         final BoundStatement updateStatement = session.prepare(
             "UPDATE users SET passwordWord = ?, password_reset_on = ? WHERE name = ?").bind();
         updateStatement.setBytes(0, ByteBuffer.wrap(newPasswordHash));
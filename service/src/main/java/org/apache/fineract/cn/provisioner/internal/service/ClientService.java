@@ -21,64 +21,162 @@ package org.apache.fineract.cn.provisioner.internal.service;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.mapping.Mapper;
 import com.datastax.driver.mapping.Result;
+import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
 import org.apache.fineract.cn.provisioner.internal.repository.ClientEntity;
+import org.apache.fineract.cn.provisioner.internal.repository.LightweightTransactions;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
 import org.apache.fineract.cn.lang.ServiceException;
+import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+/**
+ * Serves client lookups from an in-memory snapshot of the clients table.  The snapshot is replaced as a
+ * whole after every write, on a periodic reload, and when another provisioner node announces a change.
+ * Reloads and writes are serialized on this service, so a snapshot never reflects a state older than the
+ * last local write.
+ */
 @Service
 public class ClientService {
 
+  private final Logger logger;
   private final CassandraSessionProvider cassandraSessionProvider;
+  private final LightweightTransactions lightweightTransactions;
+  private final AuthenticationNegativeCache authenticationNegativeCache;
+  private final JmsTemplate jmsTemplate;
+  private final String nodeIdentifier = UUID.randomUUID().toString();
+  private volatile Map<String, ClientEntity> clients;
 
   @Autowired
-  public ClientService(final CassandraSessionProvider cassandraSessionProvider) {
+  public ClientService(@Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
+                       final CassandraSessionProvider cassandraSessionProvider,
+                       final LightweightTransactions lightweightTransactions,
+                       final AuthenticationNegativeCache authenticationNegativeCache,
+                       final JmsTemplate jmsTemplate) {
     super();
+    this.logger = logger;
     this.cassandraSessionProvider = cassandraSessionProvider;
+    this.lightweightTransactions = lightweightTransactions;
+    this.authenticationNegativeCache = authenticationNegativeCache;
+    this.jmsTemplate = jmsTemplate;
   }
 
   public List<ClientEntity> fetchAll() {
-    final ArrayList<ClientEntity> result = new ArrayList<>();
+    return new ArrayList<>(this.getClients().values());
+  }
 
-    final ResultSet clientResult =
-        this.cassandraSessionProvider.getAdminSession().execute("SELECT * FROM clients");
+  public void create(final ClientEntity clientEntity) {
+    synchronized (this) {
+      if (!clientEntity.insertIfNotExists(this.lightweightTransactions)) {
+        throw ServiceException.conflict("Client {0} already exists!", clientEntity.getName());
+      }
+      this.authenticationNegativeCache.forgetUnknownClient(clientEntity.getName());
+      this.reload();
+    }
+    this.announceChange(clientEntity.getName());
+  }
 
-    final Mapper<ClientEntity> clientEntityMapper =
-        this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(ClientEntity.class);
+  public void delete(final String name) {
+    synchronized (this) {
+      ClientEntity.deleteIfExists(this.lightweightTransactions, name);
+      this.reload();
+    }
+    this.announceChange(name);
+  }
 
-    final Result<ClientEntity> mappedClientEntities = clientEntityMapper.map(clientResult);
-    if (mappedClientEntities != null) {
-      result.addAll(mappedClientEntities.all());
+  public ClientEntity findByName(final String name) {
+    final ClientEntity clientEntity = this.lookup(name);
+    if (clientEntity == null) {
+      throw ServiceException.notFound("Client {0} not found!", name);
     }
+    return clientEntity;
+  }
 
-    return result;
+  public boolean exists(final String name) {
+    return this.lookup(name) != null;
   }
 
-  public void create(final ClientEntity clientEntity) {
-    final Mapper<ClientEntity> clientEntityMapper =
-        this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(ClientEntity.class);
-    if (clientEntityMapper.get(clientEntity.getName()) != null) {
-      throw ServiceException.conflict("Client {0} already exists!", clientEntity.getName());
+  @Scheduled(
+      initialDelayString = "${provisioner.clients.reloadInterval:60000}",
+      fixedDelayString = "${provisioner.clients.reloadInterval:60000}")
+  public synchronized void reload() {
+    try {
+      final ResultSet clientResult =
+          this.cassandraSessionProvider.getAdminSession().execute("SELECT * FROM clients");
+
+      final Mapper<ClientEntity> clientEntityMapper =
+          this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(ClientEntity.class);
+
+      final Map<String, ClientEntity> loadedClients = new LinkedHashMap<>();
+      final Result<ClientEntity> mappedClientEntities = clientEntityMapper.map(clientResult);
+      if (mappedClientEntities != null) {
+        for (final ClientEntity clientEntity : mappedClientEntities) {
+          loadedClients.put(clientEntity.getName(), clientEntity);
+        }
+      }
+      this.clients = Collections.unmodifiableMap(loadedClients);
+    } catch (final RuntimeException ex) {
+      this.logger.warn("Could not reload clients, keeping previous snapshot.", ex);
     }
-    clientEntityMapper.save(clientEntity);
   }
 
-  public void delete(final String name) {
-    final Mapper<ClientEntity> clientEntityMapper =
-        this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(ClientEntity.class);
-    clientEntityMapper.delete(name);
+  public void reloadAfterChange(final String originNodeIdentifier) {
+    if (!this.nodeIdentifier.equals(originNodeIdentifier)) {
+      this.reload();
+    }
   }
 
-  public ClientEntity findByName(final String name) {
+  private ClientEntity lookup(final String name) {
+    final ClientEntity clientEntity = this.getClients().get(name);
+    if (clientEntity != null) {
+      return clientEntity;
+    }
+
+    //The client might have been created on another node whose change announcement has not arrived yet.
+    if (this.authenticationNegativeCache.isUnknownClient(name)) {
+      return null;
+    }
     final Mapper<ClientEntity> clientEntityMapper =
         this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(ClientEntity.class);
-    final ClientEntity clientEntity = clientEntityMapper.get(name);
-    if (clientEntity == null) {
-      throw ServiceException.notFound("Client {0} not found!", name);
+    final ClientEntity storedClientEntity = clientEntityMapper.get(name);
+    if (storedClientEntity == null) {
+      this.authenticationNegativeCache.rememberUnknownClient(name);
+    } else {
+      this.reload();
+    }
+    return storedClientEntity;
+  }
+
+  private Map<String, ClientEntity> getClients() {
+    if (this.clients == null) {
+      synchronized (this) {
+        if (this.clients == null) {
+          this.reload();
+        }
+      }
+    }
+    final Map<String, ClientEntity> currentClients = this.clients;
+    return currentClients != null ? currentClients : Collections.emptyMap();
+  }
+
+  private void announceChange(final String name) {
+    try {
+      this.jmsTemplate.convertAndSend(ProvisionerConstants.CLIENT_CHANGE_DESTINATION, name, message -> {
+        message.setStringProperty(ProvisionerConstants.ORIGIN_NODE_HEADER, this.nodeIdentifier);
+        return message;
+      });
+    } catch (final JmsException ex) {
+      this.logger.warn("Could not announce change of client {} to other provisioner nodes.", name, ex);
     }
-    return clientEntity;
   }
 }
@@ -0,0 +1,226 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.repository.TemplateDatabaseDAO;
+import org.apache.fineract.cn.provisioner.internal.util.DataSourceUtils;
+import org.apache.fineract.cn.provisioner.internal.util.DataStoreOption;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Locale;
+import org.apache.fineract.cn.postgresql.util.PostgreSQLConstants;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps a copy of the pre-migrated source database as template for tenant databases, one per configured
+ * template version.  Tenant databases are then created with a file level copy of the template instead of
+ * being migrated from scratch by every tenant service.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+@Service
+public class TemplateDatabaseService {
+
+  private static final String META_DATABASE = PostgreSQLConstants.POSTGRESQL_DATABASE_NAME_DEFAULT;
+  //Arbitrary, but must be the same on all nodes, and differ from the key of the schema migrations.
+  private static final long ADVISORY_LOCK_KEY = 0x74656d706c617465L;
+  private static final int MAXIMUM_DATABASE_NAME_LENGTH = 63;
+
+  private final Logger logger;
+  private final Environment environment;
+  private final ProvisionerProperties provisionerProperties;
+  private final ProvisionerMetrics provisionerMetrics;
+  private volatile String currentTemplateDatabaseName;
+
+  @Autowired
+  public TemplateDatabaseService(@Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
+                                 final Environment environment,
+                                 final ProvisionerProperties provisionerProperties,
+                                 final ProvisionerMetrics provisionerMetrics) {
+    super();
+    this.logger = logger;
+    this.environment = environment;
+    this.provisionerProperties = provisionerProperties;
+    this.provisionerMetrics = provisionerMetrics;
+  }
+
+  /**
+   * Creates the database as a copy of the current template, or empty if there is no template yet or copying fails.
+   */
+  public void createDatabase(final Connection provisionerConnection, final String databaseName) throws SQLException {
+    final String templateDatabaseName = this.currentTemplateDatabaseName;
+    if (this.isEnabled() && templateDatabaseName != null) {
+      try (
+          final Statement statement = provisionerConnection.createStatement();
+          final ProvisionerMetrics.Timing ignored = this.timePostgreSQL("create_database_from_template")
+      ) {
+        statement.execute("CREATE DATABASE " + databaseName + " WITH TEMPLATE " + templateDatabaseName);
+        return;
+      } catch (final SQLException sqlex) {
+        this.logger.warn("Could not create database {} from template {}, creating it empty.",
+            databaseName, templateDatabaseName, sqlex);
+      }
+    }
+
+    try (
+        final Statement statement = provisionerConnection.createStatement();
+        final ProvisionerMetrics.Timing ignored = this.timePostgreSQL("create_database")
+    ) {
+      statement.execute("CREATE DATABASE " + databaseName);
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${provisioner.template.refreshInterval:300000}")
+  public void refresh() {
+    if (!this.isEnabled()) {
+      return;
+    }
+
+    final ProvisionerProperties.Template template = this.provisionerProperties.getTemplate();
+    if (template.getSourceDatabase().isEmpty()) {
+      this.logger.warn("Template databases are enabled, but no source database is configured.");
+      return;
+    }
+
+    final String templateDatabaseName = templateDatabaseName(template.getSourceDatabase(), template.getVersion());
+    try (final Connection connection = DataSourceUtils.createProvisionerConnection(this.environment, META_DATABASE)) {
+      if (this.isReady(connection, template.getVersion(), templateDatabaseName)) {
+        this.currentTemplateDatabaseName = templateDatabaseName;
+        return;
+      }
+
+      //Another node copying the template right now is picked up on the next refresh.
+      if (!this.tryLock(connection)) {
+        return;
+      }
+      try {
+        if (!this.isReady(connection, template.getVersion(), templateDatabaseName)) {
+          this.copyTemplate(connection, template, templateDatabaseName);
+        }
+        this.currentTemplateDatabaseName = templateDatabaseName;
+        this.dropStaleTemplates(connection, template.getVersion());
+      } finally {
+        this.unlock(connection);
+      }
+    } catch (final SQLException | RuntimeException ex) {
+      this.logger.warn("Could not refresh template database {}, keeping {}.",
+          templateDatabaseName, this.currentTemplateDatabaseName, ex);
+    }
+  }
+
+  static String templateDatabaseName(final String sourceDatabase, final String version) {
+    final String suffix = "_template_" + version;
+    final String prefix = sourceDatabase.length() + suffix.length() > MAXIMUM_DATABASE_NAME_LENGTH
+        ? sourceDatabase.substring(0, Math.max(0, MAXIMUM_DATABASE_NAME_LENGTH - suffix.length()))
+        : sourceDatabase;
+    return (prefix + suffix).toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "_");
+  }
+
+  private boolean isEnabled() {
+    return this.provisionerProperties.getTemplate().isEnabled()
+        && this.provisionerProperties.getDataStoreOption().isEnabled(DataStoreOption.RDBMS);
+  }
+
+  private boolean isReady(final Connection connection, final String version, final String templateDatabaseName)
+      throws SQLException {
+    final List<TemplateDatabaseDAO> templateDatabaseDAOs = TemplateDatabaseDAO.fetchAll(connection);
+    return templateDatabaseDAOs.stream()
+        .anyMatch(x -> x.getVersion().equals(version) && x.getDatabaseName().equals(templateDatabaseName))
+        && TemplateDatabaseDAO.databaseExists(connection, templateDatabaseName);
+  }
+
+  private void copyTemplate(final Connection connection,
+                            final ProvisionerProperties.Template template,
+                            final String templateDatabaseName) throws SQLException {
+    //Clean up after a copy which was interrupted before it was recorded.
+    TemplateDatabaseDAO.delete(connection, template.getVersion());
+    this.dropTemplateDatabase(connection, templateDatabaseName);
+
+    this.logger.info("Copy template database {} from {}.", templateDatabaseName, template.getSourceDatabase());
+    try (final Statement statement = connection.createStatement()) {
+      try (final ProvisionerMetrics.Timing ignored = this.timePostgreSQL("copy_template_database")) {
+        statement.execute("CREATE DATABASE " + templateDatabaseName + " WITH TEMPLATE " + template.getSourceDatabase());
+      }
+      //PostgreSQL refuses to copy a database somebody is connected to, so nobody may connect to the template.
+      statement.execute("ALTER DATABASE " + templateDatabaseName + " ALLOW_CONNECTIONS false");
+      statement.execute("ALTER DATABASE " + templateDatabaseName + " IS_TEMPLATE true");
+    }
+
+    final TemplateDatabaseDAO templateDatabaseDAO = new TemplateDatabaseDAO();
+    templateDatabaseDAO.setVersion(template.getVersion());
+    templateDatabaseDAO.setDatabaseName(templateDatabaseName);
+    templateDatabaseDAO.setSourceDatabaseName(template.getSourceDatabase());
+    templateDatabaseDAO.setCreatedOn(new Timestamp(System.currentTimeMillis()));
+    templateDatabaseDAO.insert(connection);
+  }
+
+  private void dropStaleTemplates(final Connection connection, final String version) throws SQLException {
+    for (final TemplateDatabaseDAO templateDatabaseDAO : TemplateDatabaseDAO.fetchAll(connection)) {
+      if (!templateDatabaseDAO.getVersion().equals(version)) {
+        this.logger.info("Drop template database {} of version {}.",
+            templateDatabaseDAO.getDatabaseName(), templateDatabaseDAO.getVersion());
+        this.dropTemplateDatabase(connection, templateDatabaseDAO.getDatabaseName());
+        TemplateDatabaseDAO.delete(connection, templateDatabaseDAO.getVersion());
+      }
+    }
+  }
+
+  private void dropTemplateDatabase(final Connection connection, final String templateDatabaseName)
+      throws SQLException {
+    if (TemplateDatabaseDAO.databaseExists(connection, templateDatabaseName)) {
+      try (final Statement statement = connection.createStatement()) {
+        //Template databases can't be dropped.
+        statement.execute("ALTER DATABASE " + templateDatabaseName + " IS_TEMPLATE false");
+        statement.execute("DROP DATABASE IF EXISTS " + templateDatabaseName);
+      }
+    }
+  }
+
+  private boolean tryLock(final Connection connection) throws SQLException {
+    try (final PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+      statement.setLong(1, ADVISORY_LOCK_KEY);
+      try (final ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() && resultSet.getBoolean(1);
+      }
+    }
+  }
+
+  private void unlock(final Connection connection) throws SQLException {
+    try (final PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+      statement.setLong(1, ADVISORY_LOCK_KEY);
+      statement.executeQuery().close();
+    }
+  }
+
+  private ProvisionerMetrics.Timing timePostgreSQL(final String operation) {
+    return this.provisionerMetrics.start("provisioner_store_operation", "store", "postgresql", "operation", operation);
+  }
+}
@@ -18,23 +18,32 @@
  */
 package org.apache.fineract.cn.provisioner.internal.service;
 
-import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
 import com.datastax.driver.mapping.Mapper;
-import com.datastax.driver.mapping.Result;
 import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
-import org.apache.fineract.cn.provisioner.internal.repository.ApplicationEntity;
+import org.apache.fineract.cn.provisioner.internal.listener.IdentityListener;
+import org.apache.fineract.cn.provisioner.internal.repository.IdentityArtifactRepository;
 import org.apache.fineract.cn.provisioner.internal.repository.TenantApplicationEntity;
 import org.apache.fineract.cn.provisioner.internal.repository.TenantCassandraRepository;
 import org.apache.fineract.cn.provisioner.internal.repository.TenantEntity;
 import org.apache.fineract.cn.provisioner.internal.service.applications.AnubisInitializer;
 import org.apache.fineract.cn.provisioner.internal.service.applications.IdentityServiceInitializer;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.annotation.Nonnull;
 import org.apache.fineract.cn.anubis.api.v1.domain.ApplicationSignatureSet;
 import org.apache.fineract.cn.anubis.config.TenantSignatureRepository;
@@ -57,7 +66,13 @@ public class TenantApplicationService {
   private final IdentityServiceInitializer identityServiceInitializer;
   private final TenantSignatureRepository tenantSignatureRepository;
   private final TenantCassandraRepository tenantCassandraRepository;
+  private final IdentityArtifactRepository identityArtifactRepository;
+  private final IdentityListener identityListener;
+  private final ProvisionerMetrics provisionerMetrics;
+  private final ProvisioningTracer provisioningTracer;
   private final Logger logger;
+  //Statements are prepared once against the admin session and reused.
+  private final Map<String, PreparedStatement> preparedStatements = new ConcurrentHashMap<>();
 
   @Autowired
   public TenantApplicationService(final CassandraSessionProvider cassandraSessionProvider,
@@ -65,6 +80,10 @@ public class TenantApplicationService {
                                   final IdentityServiceInitializer identityServiceInitializer,
                                   @SuppressWarnings("SpringJavaAutowiringInspection") final TenantSignatureRepository tenantSignatureRepository,
                                   final TenantCassandraRepository tenantCassandraRepository,
+                                  final IdentityArtifactRepository identityArtifactRepository,
+                                  final IdentityListener identityListener,
+                                  final ProvisionerMetrics provisionerMetrics,
+                                  final ProvisioningTracer provisioningTracer,
                                   @Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger) {
     super();
     this.cassandraSessionProvider = cassandraSessionProvider;
@@ -72,21 +91,40 @@ public class TenantApplicationService {
     this.identityServiceInitializer = identityServiceInitializer;
     this.tenantSignatureRepository = tenantSignatureRepository;
     this.tenantCassandraRepository = tenantCassandraRepository;
+    this.identityArtifactRepository = identityArtifactRepository;
+    this.identityListener = identityListener;
+    this.provisionerMetrics = provisionerMetrics;
+    this.provisioningTracer = provisioningTracer;
     this.logger = logger;
   }
 
+  /**
+   * @param appNameToUriMap the uris of the assigned applications, resolved by the caller through
+   *                        {@link ApplicationService#findAll}, which rejects unknown applications before the
+   *                        assignment is started.
+   * @return a future which completes once the applications are assigned, so that callers can tell when an
+   * assignment is no longer in flight.
+   */
   @Async
-  public void assign(final @Nonnull TenantApplicationEntity tenantApplicationEntity, final @Nonnull Map<String, String> appNameToUriMap) {
+  public CompletableFuture<Void> assign(final @Nonnull TenantApplicationEntity tenantApplicationEntity, final @Nonnull Map<String, String> appNameToUriMap) {
     Assert.notNull(tenantApplicationEntity);
     Assert.notNull(appNameToUriMap);
 
+    try (final ProvisioningTracer.Scope ignored =
+                 provisioningTracer.startTrace(tenantApplicationEntity.getTenantIdentifier(), "assign_applications")) {
+      assignTraced(tenantApplicationEntity, appNameToUriMap);
+    }
+    return CompletableFuture.completedFuture(null);
+  }
+
+  private void assignTraced(final @Nonnull TenantApplicationEntity tenantApplicationEntity, final @Nonnull Map<String, String> appNameToUriMap) {
     final TenantEntity tenantEntity = tenantCassandraRepository.get(tenantApplicationEntity.getTenantIdentifier())
             .orElseThrow(() -> ServiceException
                 .notFound("Tenant {0} not found.", tenantApplicationEntity.getTenantIdentifier()));
 
-    checkApplicationsExist(tenantApplicationEntity.getApplications());
-
-    saveTenantApplicationAssignment(tenantApplicationEntity);
+    try (final ProvisionerMetrics.Timing ignored = timeAssignPhase("save_assignment")) {
+      saveTenantApplicationAssignment(tenantApplicationEntity);
+    }
 
     final Set<ApplicationNameToUriPair> applicationNameToUriPairs =
             getApplicationNameToUriPairs(tenantApplicationEntity, appNameToUriMap);
@@ -118,37 +156,64 @@ public class TenantApplicationService {
     // X.initializeResources -> Y.requestCallback at X.address
     // Y.requestCallback -> Identity.requestPermission to call X.address
     // Therefore Identity must know of the permittable group for X.address before X.initializeResources is called.
-    final Stream<EventExpectation> eventExpectations = applicationNameToUriPairs.stream().flatMap(x ->
-            identityServiceInitializer.postApplicationPermittableGroups(
-                    tenantIdentifier,
-                    identityManagerApplicationName,
-                    identityManagerApplicationUri,
-                    x.uri).stream());
-    for (final EventExpectation eventExpectation : eventExpectations.collect(Collectors.toList())) {
-      if (!eventExpectation.waitForOccurrence(5, TimeUnit.SECONDS)) {
-        logger.warn("Expected action in identity didn't complete {}.", eventExpectation);
+    final List<IdentityServiceInitializer.PermittableGroupPosting> postings;
+    try (final ProvisionerMetrics.Timing ignored = timeAssignPhase("post_permittable_groups")) {
+      postings = applicationNameToUriPairs.stream().flatMap(x ->
+              identityServiceInitializer.postApplicationPermittableGroups(
+                      tenantIdentifier,
+                      identityManagerApplicationName,
+                      identityManagerApplicationUri,
+                      x.name,
+                      x.uri).stream())
+              .collect(Collectors.toList());
+    }
+    try (final ProvisionerMetrics.Timing ignored = timeAssignPhase("await_permittable_groups")) {
+      for (final IdentityServiceInitializer.PermittableGroupPosting posting : postings) {
+        final EventExpectation eventExpectation = posting.getEventExpectation();
+        if (eventExpectation.waitForOccurrence(5, TimeUnit.SECONDS)) {
+          posting.created();
+        } else {
+          identityListener.withdrawExpectation(eventExpectation);
+          logger.warn("Expected action in identity didn't complete {}.", eventExpectation);
+        }
       }
     }
 
 
     applicationNameToUriPairs.forEach(x -> {
-      final ApplicationSignatureSet applicationSignatureSet = anubisInitializer.createSignatureSet(tenantIdentifier, x.name, x.uri, identityManagerSignatureSet.getTimestamp(), identityManagerSignatureSet.getIdentityManagerSignature());
+      final ApplicationSignatureSet applicationSignatureSet;
+      try (final ProvisionerMetrics.Timing ignored = timeAssignPhase("create_signature_set", "application", x.name)) {
+        applicationSignatureSet = anubisInitializer.createSignatureSet(tenantIdentifier, x.name, x.uri, identityManagerSignatureSet.getTimestamp(), identityManagerSignatureSet.getIdentityManagerSignature());
+      }
 
-      identityServiceInitializer.postApplicationDetails(
-              tenantIdentifier,
-              identityManagerApplicationName,
-              identityManagerApplicationUri,
-              x.name,
-              x.uri,
-              applicationSignatureSet);
+      try (final ProvisionerMetrics.Timing ignored = timeAssignPhase("post_application_details", "application", x.name)) {
+        identityServiceInitializer.postApplicationDetails(
+                tenantIdentifier,
+                identityManagerApplicationName,
+                identityManagerApplicationUri,
+                x.name,
+                x.uri,
+                applicationSignatureSet);
+      }
 
       //InitializeResources on the service being added should occur last, for two reasons:
       // 1.) When the initialization event is put on the queue for this app/tenant combo, the app is fully ready for business.
       // 2.) If the app depends on the provisioning of identitypermissions in its initialization, those resources will be there.
-      anubisInitializer.initializeResources(tenantIdentifier, x.name, x.uri);
+      try (final ProvisionerMetrics.Timing ignored = timeAssignPhase("initialize_resources", "application", x.name)) {
+        anubisInitializer.initializeResources(tenantIdentifier, x.name, x.uri);
+      }
     });
   }
 
+  private ProvisionerMetrics.Timing timeAssignPhase(final String phase, final String... spanAttributes) {
+    final ProvisioningTracer.Scope span = provisioningTracer.startSpan(phase, spanAttributes);
+    final ProvisionerMetrics.Timing timing = provisionerMetrics.start("provisioner_assign_phase", "phase", phase);
+    return () -> {
+      timing.close();
+      span.close();
+    };
+  }
+
   private void saveTenantApplicationAssignment(final @Nonnull TenantApplicationEntity tenantApplicationEntity) {
     final Mapper<TenantApplicationEntity> tenantApplicationEntityMapper =
             this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(TenantApplicationEntity.class);
@@ -209,36 +274,44 @@ public class TenantApplicationService {
         this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(TenantApplicationEntity.class);
 
     tenantApplicationEntityMapper.delete(tenantIdentifier);
+    this.identityArtifactRepository.forgetAll(tenantIdentifier);
   }
 
   void removeApplication(final String name) {
-    final ResultSet tenantApplicationResultSet =
-        this.cassandraSessionProvider.getAdminSession().execute("SELECT * FROM tenant_applications");
+    final Session session = this.cassandraSessionProvider.getAdminSession();
+
+    final BoundStatement removeApplicationStatement =
+        this.prepare(session, "UPDATE tenant_applications SET assigned_applications = assigned_applications - ? WHERE tenant_identifier = ?").bind();
+    for (final String tenantIdentifier : findTenantsAssignedTo(session, name)) {
+      removeApplicationStatement.setSet(0, Collections.singleton(name));
+      removeApplicationStatement.setString(1, tenantIdentifier);
+      session.execute(removeApplicationStatement);
+    }
+  }
 
-    if (tenantApplicationResultSet != null) {
+  private List<String> findTenantsAssignedTo(final Session session, final String name) {
+    final List<String> tenantIdentifiers = new ArrayList<>();
+    try {
+      //Served by the reverse index on assigned_applications, so only the affected tenants are read.
+      final BoundStatement findTenantsStatement =
+          this.prepare(session, "SELECT tenant_identifier FROM tenant_applications WHERE assigned_applications CONTAINS ?").bind(name);
+      session.execute(findTenantsStatement).forEach(row -> tenantIdentifiers.add(row.getString("tenant_identifier")));
+    } catch (final InvalidQueryException ex) {
+      //The index is missing while a node with an older schema is still running.
+      logger.warn("Reverse application index not available, scanning all tenant applications.", ex);
       final Mapper<TenantApplicationEntity> tenantApplicationEntityMapper =
           this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(TenantApplicationEntity.class);
-
-      final Result<TenantApplicationEntity> mappedTenantApplications = tenantApplicationEntityMapper.map(tenantApplicationResultSet);
-
-      for (TenantApplicationEntity tenantApplicationEntity : mappedTenantApplications) {
-        if (tenantApplicationEntity.getApplications().contains(name)) {
-          tenantApplicationEntity.getApplications().remove(name);
-          tenantApplicationEntityMapper.save(tenantApplicationEntity);
+      tenantApplicationEntityMapper.map(session.execute("SELECT * FROM tenant_applications")).forEach(tenantApplicationEntity -> {
+        if (tenantApplicationEntity.getApplications() != null && tenantApplicationEntity.getApplications().contains(name)) {
+          tenantIdentifiers.add(tenantApplicationEntity.getTenantIdentifier());
         }
-      }
+      });
     }
+    return tenantIdentifiers;
   }
 
-  private void checkApplicationsExist(final Set<String> applications) {
-    final Mapper<ApplicationEntity> applicationEntityMapper =
-            this.cassandraSessionProvider.getAdminSessionMappingManager().mapper(ApplicationEntity.class);
-
-    for (final String name : applications) {
-      if (applicationEntityMapper.get(name) == null) {
-        throw ServiceException.badRequest("Application {0} not found!", name);
-      }
-    }
+  private PreparedStatement prepare(final Session session, final String cql) {
+    return this.preparedStatements.computeIfAbsent(cql, session::prepare);
   }
 
   private void checkTenant(final @Nonnull String tenantIdentifier) {
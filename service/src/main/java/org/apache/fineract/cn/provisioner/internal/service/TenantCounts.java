@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Tenants per placement candidate: those recorded in the store when they were last counted, plus those placed on
+ * this node since.  A placement stays counted on its own until a count started after its tenant was created has
+ * replaced the recorded counts, and is dropped right away if the tenant couldn't be created.  All changes are made
+ * under the lock of this object, so that a count replacing the recorded counts loses no placement.
+ */
+class TenantCounts {
+
+  private Map<String, Long> recorded;
+  private final List<Placement<?>> placements = new ArrayList<>();
+  private long generation;
+  private long recordedGeneration;
+
+  static class Placement<T> {
+    private final T candidate;
+    private final String key;
+    private long createdInGeneration = Long.MAX_VALUE;
+
+    private Placement(final T candidate, final String key) {
+      super();
+      this.candidate = candidate;
+      this.key = key;
+    }
+
+    T getCandidate() {
+      return this.candidate;
+    }
+  }
+
+  synchronized boolean isCounted() {
+    return this.recorded != null;
+  }
+
+  /**
+   * @return the generation of the count, to be passed to {@link #finishCount} with the tenants read afterwards.
+   */
+  synchronized long startCount() {
+    return ++this.generation;
+  }
+
+  synchronized void finishCount(final long countGeneration, final Map<String, Long> tenantsPerKey) {
+    //A count which started later has already been applied, and saw at least as many tenants.
+    if (countGeneration <= this.recordedGeneration) {
+      return;
+    }
+    this.recorded = new HashMap<>(tenantsPerKey);
+    this.recordedGeneration = countGeneration;
+    this.placements.removeIf(placement -> placement.createdInGeneration < countGeneration);
+  }
+
+  /**
+   * Chooses the least loaded candidate and counts the new tenant on it, in one step, so that concurrent placements
+   * see each other's tenants.
+   */
+  synchronized <T> Placement<T> place(final List<T> candidates,
+                                      final Function<T, String> key,
+                                      final ToIntFunction<T> weight) {
+    final T candidate = TenantPlacementService.leastLoaded(candidates, key, weight, this.tenantsPerKey());
+    final Placement<T> placement = new Placement<>(candidate, key.apply(candidate));
+    this.placements.add(placement);
+    return placement;
+  }
+
+  /**
+   * The tenant has been recorded in the store, so every count started from now on includes it.
+   */
+  synchronized void created(final Placement<?> placement) {
+    placement.createdInGeneration = this.generation;
+  }
+
+  synchronized void failed(final Placement<?> placement) {
+    this.placements.remove(placement);
+  }
+
+  synchronized Map<String, Long> tenantsPerKey() {
+    final Map<String, Long> tenantsPerKey = new HashMap<>(this.recorded != null ? this.recorded : Collections.emptyMap());
+    this.placements.forEach(placement -> tenantsPerKey.merge(placement.key, 1L, Long::sum));
+    return tenantsPerKey;
+  }
+}
@@ -0,0 +1,372 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import org.apache.fineract.cn.postgresql.util.PostgreSQLConstants;
+import org.apache.fineract.cn.provisioner.api.v1.domain.DatabaseConnectionInfo;
+import org.apache.fineract.cn.provisioner.api.v1.events.EventConstants;
+import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.repository.TenantDAO;
+import org.apache.fineract.cn.provisioner.internal.util.DataSourceUtils;
+import org.apache.fineract.cn.provisioner.internal.util.ProcessPipe;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.fineract.cn.lang.ServiceException;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.env.Environment;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Moves a tenant database to another PostgreSQL server.  The database is streamed from pg_dump on the old server
+ * into pg_restore on the new one, then the tenant's row is switched to the new location in one statement, and a
+ * tenant-relocated event tells the tenant services to reconnect.  The old database stays in place unless
+ * provisioner.relocation.drop-source is set.
+ *
+ * The dump is a snapshot, so writes to the old database during the copy would be lost.  Before copying, CONNECT on
+ * the old database is therefore revoked from PUBLIC and from the tenant's role, and its open sessions are ended, so
+ * that the tenant services can't write to it until they are told of the new location.  Databases are created,
+ * blocked, copied and dropped with the admin role of their server, see
+ * {@link TenantPlacementService#adminConnectionInfoOf}, which keeps its CONNECT privilege.  If the relocation fails,
+ * CONNECT is granted again and the copy is dropped.  After a successful relocation the old database stays blocked.
+ *
+ * Relocations run on an executor of their own, bounded by provisioner.relocation.concurrency and queue-capacity,
+ * since every relocation holds its thread for the whole copy.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+@Service
+public class TenantDatabaseRelocationService {
+
+  private static final String META_DATABASE = PostgreSQLConstants.POSTGRESQL_DATABASE_NAME_DEFAULT;
+
+  private final Logger logger;
+  private final Environment environment;
+  private final ProvisionerProperties provisionerProperties;
+  private final ProvisionerMetrics provisionerMetrics;
+  private final ProvisioningTracer provisioningTracer;
+  private final TenantPlacementService tenantPlacementService;
+  private final ExecutorService executor;
+  private final JmsTemplate jmsTemplate;
+  private final Map<String, AtomicLong> bytesCopiedPerTenant = new ConcurrentHashMap<>();
+
+  @Autowired
+  public TenantDatabaseRelocationService(@Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
+                                         final Environment environment,
+                                         final ProvisionerProperties provisionerProperties,
+                                         final ProvisionerMetrics provisionerMetrics,
+                                         final ProvisioningTracer provisioningTracer,
+                                         final TenantPlacementService tenantPlacementService,
+                                         @Qualifier(ProvisionerConstants.RELOCATION_EXECUTOR_NAME) final ExecutorService executor,
+                                         final JmsTemplate jmsTemplate) {
+    super();
+    this.logger = logger;
+    this.environment = environment;
+    this.provisionerProperties = provisionerProperties;
+    this.provisionerMetrics = provisionerMetrics;
+    this.provisioningTracer = provisioningTracer;
+    this.tenantPlacementService = tenantPlacementService;
+    this.executor = executor;
+    this.jmsTemplate = jmsTemplate;
+
+    this.provisionerMetrics.gauge("provisioner_database_relocations_running", this.bytesCopiedPerTenant::size);
+    this.provisionerMetrics.gauges("provisioner_database_relocation_copied_bytes", "tenant", () -> this.bytesCopiedPerTenant);
+  }
+
+  /**
+   * Starts moving the tenant's database to the server of the given connection info.  Fields left out of the
+   * connection info are kept from the current location, so that, for example, the database keeps its name.
+   */
+  public CompletableFuture<Void> relocate(final String tenantIdentifier, final DatabaseConnectionInfo target) {
+    final DatabaseConnectionInfo source = this.findTenantDatabase(tenantIdentifier)
+        .orElseThrow(() -> ServiceException.notFound("Tenant {0} not found!", tenantIdentifier));
+    final DatabaseConnectionInfo relocated = complete(target, source);
+    if (isSameDatabase(source, relocated)) {
+      throw ServiceException.badRequest("Tenant {0} database is already at {1}:{2}.",
+          tenantIdentifier, relocated.getHost(), relocated.getPort());
+    }
+    if (this.bytesCopiedPerTenant.putIfAbsent(tenantIdentifier, new AtomicLong()) != null) {
+      throw ServiceException.conflict("Tenant {0} database is already being relocated.", tenantIdentifier);
+    }
+
+    final long start = System.nanoTime();
+    try {
+      return CompletableFuture.runAsync(() -> this.relocate(tenantIdentifier, source, relocated), this.executor)
+          .whenComplete((ignored, failure) -> {
+            this.bytesCopiedPerTenant.remove(tenantIdentifier);
+            this.provisionerMetrics.record("provisioner_database_relocation", System.nanoTime() - start,
+                "outcome", failure == null ? "success" : "failure");
+          });
+    } catch (final RejectedExecutionException ex) {
+      this.bytesCopiedPerTenant.remove(tenantIdentifier);
+      throw ServiceException.conflict("Too many tenant databases are being relocated, try again later.");
+    } catch (final RuntimeException ex) {
+      this.bytesCopiedPerTenant.remove(tenantIdentifier);
+      throw ex;
+    }
+  }
+
+  void relocate(final String tenantIdentifier,
+                final DatabaseConnectionInfo source,
+                final DatabaseConnectionInfo relocated) {
+    try (final ProvisioningTracer.Scope ignored = this.provisioningTracer.startTrace(tenantIdentifier, "relocate_database")) {
+      try (final ProvisioningTracer.Scope ignoredSpan = this.provisioningTracer.startSpan("create_database")) {
+        this.execute(relocated, "CREATE DATABASE " + relocated.getDatabaseName() + " OWNER " + quoted(relocated.getUser()));
+      }
+      try {
+        try {
+          try (final ProvisioningTracer.Scope ignoredSpan = this.provisioningTracer.startSpan("block_writes")) {
+            this.blockWrites(source);
+          }
+
+          final long start = System.nanoTime();
+          final long bytes;
+          try (final ProvisioningTracer.Scope ignoredSpan = this.provisioningTracer.startSpan("copy_database")) {
+            bytes = this.copy(tenantIdentifier, source, relocated);
+          }
+          final double seconds = Math.max(1L, System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+          this.logger.info("Copied {} bytes of tenant {} database in {} seconds, {} bytes per second.",
+              bytes, tenantIdentifier, String.format("%.1f", seconds), Math.round(bytes / seconds));
+
+          try (final ProvisioningTracer.Scope ignoredSpan = this.provisioningTracer.startSpan("switch_tenant")) {
+            this.switchTenant(tenantIdentifier, source, relocated);
+          }
+        } catch (final RuntimeException ex) {
+          this.unblockWritesQuietly(source);
+          throw ex;
+        }
+      } catch (final RuntimeException ex) {
+        this.dropQuietly(relocated);
+        throw ex;
+      }
+    }
+
+    this.logger.info("Relocated tenant {} database from {}:{} to {}:{}.", tenantIdentifier,
+        source.getHost(), source.getPort(), relocated.getHost(), relocated.getPort());
+    this.announceRelocation(tenantIdentifier);
+    if (this.provisionerProperties.getRelocation().isDropSource()) {
+      this.dropQuietly(source);
+    }
+  }
+
+  long copy(final String tenantIdentifier,
+                    final DatabaseConnectionInfo source,
+                    final DatabaseConnectionInfo relocated) {
+    final ProvisionerProperties.Relocation relocation = this.provisionerProperties.getRelocation();
+    //The tenant's role can no longer connect to the source, so both ends run as the admin role, and the restored
+    //objects are owned by the tenant's role again.
+    final DatabaseConnectionInfo sourceAdmin = this.adminOf(source);
+    final DatabaseConnectionInfo relocatedAdmin = this.adminOf(relocated);
+    final ProcessBuilder dump = processFor(sourceAdmin, relocation.getPgDump(), "--format=custom", "--no-owner",
+        "--host", sourceAdmin.getHost(), "--port", sourceAdmin.getPort(), "--username", sourceAdmin.getUser(),
+        source.getDatabaseName().toLowerCase());
+    final ProcessBuilder restore = processFor(relocatedAdmin, relocation.getPgRestore(), "--no-owner", "--exit-on-error",
+        "--host", relocatedAdmin.getHost(), "--port", relocatedAdmin.getPort(), "--username", relocatedAdmin.getUser(),
+        "--role", relocated.getUser(), "--dbname", relocated.getDatabaseName().toLowerCase());
+
+    final AtomicLong bytesCopied = this.bytesCopiedPerTenant.computeIfAbsent(tenantIdentifier, x -> new AtomicLong());
+    try {
+      return ProcessPipe.run(dump, restore, bytes -> {
+        bytesCopied.addAndGet(bytes);
+        this.provisionerMetrics.increment("provisioner_database_relocation_bytes", bytes);
+      });
+    } catch (final IOException ex) {
+      throw new IllegalStateException("Could not copy database of tenant " + tenantIdentifier + "!", ex);
+    } catch (final InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted copying database of tenant " + tenantIdentifier + "!", ex);
+    }
+  }
+
+  private void switchTenant(final String tenantIdentifier,
+                            final DatabaseConnectionInfo source,
+                            final DatabaseConnectionInfo relocated) {
+    final boolean switched;
+    try (
+        final Connection connection = this.connectToProvisioner();
+        final ProvisionerMetrics.Timing ignored = this.provisionerMetrics.start("provisioner_store_operation",
+            "store", "postgresql", "operation", "relocate_tenant")
+    ) {
+      switched = TenantDAO.relocate(connection, tenantIdentifier, source, relocated);
+    } catch (final SQLException sqlex) {
+      this.logger.error(sqlex.getMessage(), sqlex);
+      throw new IllegalStateException("Could not switch tenant " + tenantIdentifier + " to its new database!", sqlex);
+    }
+    if (!switched) {
+      throw ServiceException.conflict("Tenant {0} database was changed during relocation.", tenantIdentifier);
+    }
+  }
+
+  private void announceRelocation(final String tenantIdentifier) {
+    try {
+      this.jmsTemplate.convertAndSend(EventConstants.DESTINATION, tenantIdentifier, message -> {
+        message.setStringProperty(EventConstants.OPERATION_HEADER, EventConstants.OPERATION_RELOCATE_TENANT_DATABASE);
+        message.setStringProperty(EventConstants.TENANT_HEADER, tenantIdentifier);
+        return message;
+      });
+    } catch (final JmsException ex) {
+      this.logger.warn("Could not announce relocation of tenant {} database.", tenantIdentifier, ex);
+    }
+  }
+
+  //No new sessions but the admin role's, and ending the open ones rolls back whatever they were writing.  Unlike a
+  //read only default, a session can't override a missing CONNECT privilege.
+  private void blockWrites(final DatabaseConnectionInfo databaseConnectionInfo) {
+    try (
+        final Connection connection = this.connect(this.adminOf(databaseConnectionInfo));
+        final Statement statement = connection.createStatement();
+        final PreparedStatement terminate = connection.prepareStatement(
+            "SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = ? AND pid <> pg_backend_pid()")
+    ) {
+      for (final String grantee : this.granteesOf(databaseConnectionInfo)) {
+        statement.execute("REVOKE CONNECT ON DATABASE " + databaseConnectionInfo.getDatabaseName() + " FROM " + grantee);
+      }
+      terminate.setString(1, databaseConnectionInfo.getDatabaseName().toLowerCase());
+      terminate.execute();
+    } catch (final SQLException sqlex) {
+      throw new IllegalStateException("Could not block writes to database " + databaseConnectionInfo.getDatabaseName() + "!", sqlex);
+    }
+  }
+
+  private void unblockWritesQuietly(final DatabaseConnectionInfo databaseConnectionInfo) {
+    try {
+      this.execute(databaseConnectionInfo, this.granteesOf(databaseConnectionInfo).stream()
+          .map(grantee -> "GRANT CONNECT ON DATABASE " + databaseConnectionInfo.getDatabaseName() + " TO " + grantee)
+          .toArray(String[]::new));
+    } catch (final RuntimeException ex) {
+      this.logger.error("Could not make database {} on {}:{} writable again.", databaseConnectionInfo.getDatabaseName(),
+          databaseConnectionInfo.getHost(), databaseConnectionInfo.getPort(), ex);
+    }
+  }
+
+  private void execute(final DatabaseConnectionInfo databaseConnectionInfo, final String... sqls) {
+    try (
+        final Connection connection = this.connect(this.adminOf(databaseConnectionInfo));
+        final Statement statement = connection.createStatement()
+    ) {
+      for (final String sql : sqls) {
+        statement.execute(sql);
+      }
+    } catch (final SQLException sqlex) {
+      throw new IllegalStateException(sqlex.getMessage(), sqlex);
+    }
+  }
+
+  //The tenant's role might connect through PUBLIC, or through its own grant as the owner of the database.
+  private List<String> granteesOf(final DatabaseConnectionInfo databaseConnectionInfo) {
+    final DatabaseConnectionInfo admin = this.adminOf(databaseConnectionInfo);
+    if (databaseConnectionInfo.getUser() == null || databaseConnectionInfo.getUser().equals(admin.getUser())) {
+      return Collections.singletonList("PUBLIC");
+    }
+    return Arrays.asList("PUBLIC", quoted(databaseConnectionInfo.getUser()));
+  }
+
+  private DatabaseConnectionInfo adminOf(final DatabaseConnectionInfo databaseConnectionInfo) {
+    return this.tenantPlacementService.adminConnectionInfoOf(databaseConnectionInfo);
+  }
+
+  private static String quoted(final String identifier) {
+    return "\"" + identifier.replace("\"", "\"\"") + "\"";
+  }
+
+  private void dropQuietly(final DatabaseConnectionInfo databaseConnectionInfo) {
+    try {
+      this.execute(databaseConnectionInfo, "DROP DATABASE IF EXISTS " + databaseConnectionInfo.getDatabaseName());
+    } catch (final RuntimeException ex) {
+      this.logger.warn("Could not drop database {} on {}:{}.", databaseConnectionInfo.getDatabaseName(),
+          databaseConnectionInfo.getHost(), databaseConnectionInfo.getPort(), ex);
+    }
+  }
+
+  Optional<DatabaseConnectionInfo> findTenantDatabase(final String tenantIdentifier) {
+    try (final Connection connection = this.connectToProvisioner()) {
+      return TenantDAO.find(connection, tenantIdentifier).map(TenantDAO::map);
+    } catch (final SQLException sqlex) {
+      this.logger.error(sqlex.getMessage(), sqlex);
+      throw new IllegalStateException("Could not load tenant " + tenantIdentifier + "!", sqlex);
+    }
+  }
+
+  Connection connect(final DatabaseConnectionInfo databaseConnectionInfo) {
+    return DataSourceUtils.create(databaseConnectionInfo);
+  }
+
+  Connection connectToProvisioner() {
+    return DataSourceUtils.createProvisionerConnection(this.environment, META_DATABASE);
+  }
+
+  private static ProcessBuilder processFor(final DatabaseConnectionInfo databaseConnectionInfo, final String... command) {
+    final ProcessBuilder processBuilder = new ProcessBuilder(Arrays.asList(command))
+        .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+        .redirectError(ProcessBuilder.Redirect.INHERIT);
+    //Keeps the password off the command line, where other users of the host could read it.
+    if (databaseConnectionInfo.getPassword() != null) {
+      processBuilder.environment().put("PGPASSWORD", databaseConnectionInfo.getPassword());
+    }
+    return processBuilder;
+  }
+
+  static DatabaseConnectionInfo complete(final DatabaseConnectionInfo target, final DatabaseConnectionInfo source) {
+    final DatabaseConnectionInfo ret = copyOf(source);
+    Optional.ofNullable(target.getDriverClass()).ifPresent(ret::setDriverClass);
+    Optional.ofNullable(target.getDatabaseName()).ifPresent(ret::setDatabaseName);
+    Optional.ofNullable(target.getHost()).ifPresent(ret::setHost);
+    Optional.ofNullable(target.getPort()).ifPresent(ret::setPort);
+    Optional.ofNullable(target.getUser()).ifPresent(ret::setUser);
+    Optional.ofNullable(target.getPassword()).ifPresent(ret::setPassword);
+    return ret;
+  }
+
+  static boolean isSameDatabase(final DatabaseConnectionInfo a, final DatabaseConnectionInfo b) {
+    return Objects.equals(a.getHost(), b.getHost())
+        && Objects.equals(a.getPort(), b.getPort())
+        && Objects.equals(a.getDatabaseName(), b.getDatabaseName());
+  }
+
+  private static DatabaseConnectionInfo copyOf(final DatabaseConnectionInfo databaseConnectionInfo) {
+    final DatabaseConnectionInfo ret = new DatabaseConnectionInfo();
+    ret.setDriverClass(databaseConnectionInfo.getDriverClass());
+    ret.setDatabaseName(databaseConnectionInfo.getDatabaseName());
+    ret.setHost(databaseConnectionInfo.getHost());
+    ret.setPort(databaseConnectionInfo.getPort());
+    ret.setUser(databaseConnectionInfo.getUser());
+    ret.setPassword(databaseConnectionInfo.getPassword());
+    return ret;
+  }
+}
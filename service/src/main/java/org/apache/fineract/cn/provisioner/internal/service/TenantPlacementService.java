@@ -0,0 +1,322 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import org.apache.fineract.cn.postgresql.util.PostgreSQLConstants;
+import org.apache.fineract.cn.provisioner.api.v1.domain.CassandraConnectionInfo;
+import org.apache.fineract.cn.provisioner.api.v1.domain.DatabaseConnectionInfo;
+import org.apache.fineract.cn.provisioner.api.v1.domain.Tenant;
+import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.repository.TenantCassandraRepository;
+import org.apache.fineract.cn.provisioner.internal.repository.TenantDAO;
+import org.apache.fineract.cn.provisioner.internal.util.DataSourceUtils;
+import org.apache.fineract.cn.provisioner.internal.util.DataStoreOption;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import javax.annotation.Nonnull;
+import org.apache.fineract.cn.lang.ServiceException;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Chooses where a tenant's database and keyspace live if the tenant is created without connection info.  The
+ * candidates are the PostgreSQL servers and Cassandra clusters configured in provisioner.placement, each with a
+ * weight.  The tenant goes to the candidate with the fewest tenants per weight.  Tenants are counted per candidate
+ * in memory: the counts are read from the tenants recorded in TenantDAO and TenantEntity on first use and
+ * periodically after that, to pick up deletions and placements of other provisioner nodes, and every placement
+ * counts its tenant right away, until the returned {@link Placement} reports whether the tenant was created.  The
+ * chosen connection info is filled into the tenant, so that it is recorded with the tenant as if the caller had
+ * given it.
+ */
+@Service
+public class TenantPlacementService {
+
+  private static final String META_DATABASE = PostgreSQLConstants.POSTGRESQL_DATABASE_NAME_DEFAULT;
+  private static final String MAINTENANCE_DATABASE = "postgres";
+
+  private final Logger logger;
+  private final Environment environment;
+  private final ProvisionerProperties provisionerProperties;
+  private final ProvisionerMetrics provisionerMetrics;
+  private final TenantCassandraRepository tenantCassandraRepository;
+  private final TenantCounts tenantsPerCluster = new TenantCounts();
+  private final TenantCounts tenantsPerServer = new TenantCounts();
+
+  @Autowired
+  public TenantPlacementService(@Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
+                                final Environment environment,
+                                final ProvisionerProperties provisionerProperties,
+                                final ProvisionerMetrics provisionerMetrics,
+                                final TenantCassandraRepository tenantCassandraRepository) {
+    super();
+    this.logger = logger;
+    this.environment = environment;
+    this.provisionerProperties = provisionerProperties;
+    this.provisionerMetrics = provisionerMetrics;
+    this.tenantCassandraRepository = tenantCassandraRepository;
+  }
+
+  /**
+   * The candidates a tenant was counted on.  The caller reports whether the tenant was created, so that a tenant
+   * which wasn't doesn't stay counted.
+   */
+  public class Placement {
+    private final TenantCounts.Placement<?> keyspacePlacement;
+    private final TenantCounts.Placement<?> databasePlacement;
+
+    private Placement(final TenantCounts.Placement<?> keyspacePlacement,
+                      final TenantCounts.Placement<?> databasePlacement) {
+      super();
+      this.keyspacePlacement = keyspacePlacement;
+      this.databasePlacement = databasePlacement;
+    }
+
+    public void created() {
+      if (this.keyspacePlacement != null) {
+        tenantsPerCluster.created(this.keyspacePlacement);
+      }
+      if (this.databasePlacement != null) {
+        tenantsPerServer.created(this.databasePlacement);
+      }
+    }
+
+    public void failed() {
+      if (this.keyspacePlacement != null) {
+        tenantsPerCluster.failed(this.keyspacePlacement);
+      }
+      if (this.databasePlacement != null) {
+        tenantsPerServer.failed(this.databasePlacement);
+      }
+    }
+  }
+
+  public Placement place(final @Nonnull Tenant tenant) {
+    final DataStoreOption dataStoreOption = this.provisionerProperties.getDataStoreOption();
+    final TenantCounts.Placement<?> keyspacePlacement
+        = dataStoreOption.isEnabled(DataStoreOption.CASSANDRA) && needsPlacement(tenant.getCassandraConnectionInfo())
+        ? this.placeKeyspace(tenant) : null;
+    try {
+      final TenantCounts.Placement<?> databasePlacement
+          = dataStoreOption.isEnabled(DataStoreOption.RDBMS) && needsPlacement(tenant.getDatabaseConnectionInfo())
+          ? this.placeDatabase(tenant) : null;
+      return new Placement(keyspacePlacement, databasePlacement);
+    } catch (final RuntimeException ex) {
+      if (keyspacePlacement != null) {
+        this.tenantsPerCluster.failed(keyspacePlacement);
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * @return the connection info of the admin role of a configured server, connected to its maintenance database,
+   * for creating and managing databases there.  The provisioner's own server is managed with the provisioner's role.
+   */
+  DatabaseConnectionInfo adminConnectionInfoOf(final DatabaseConnectionInfo databaseConnectionInfo) {
+    final String serverKey = serverKey(databaseConnectionInfo.getHost(), databaseConnectionInfo.getPort());
+    final Optional<ProvisionerProperties.Placement.DatabaseServer> configuredServer
+        = this.provisionerProperties.getPlacement().getDatabaseServers().stream()
+        .filter(x -> serverKey(x.getHost(), x.getPort()).equals(serverKey) && x.getAdminUser() != null)
+        .findFirst();
+    if (!configuredServer.isPresent()) {
+      if (!serverKey.equals(serverKey(this.environment.getProperty("postgresql.host"), this.environment.getProperty("postgresql.port")))) {
+        throw ServiceException.badRequest(
+            "Database server {0} has no admin user configured in provisioner.placement.database-servers.", serverKey);
+      }
+      final DatabaseConnectionInfo ret = new DatabaseConnectionInfo();
+      ret.setDriverClass(this.environment.getProperty("postgresql.driverClass"));
+      ret.setDatabaseName(MAINTENANCE_DATABASE);
+      ret.setHost(databaseConnectionInfo.getHost());
+      ret.setPort(databaseConnectionInfo.getPort());
+      ret.setUser(this.environment.getProperty("postgresql.user"));
+      ret.setPassword(this.environment.getProperty("postgresql.password"));
+      return ret;
+    }
+
+    final ProvisionerProperties.Placement.DatabaseServer server = configuredServer.get();
+    final DatabaseConnectionInfo ret = new DatabaseConnectionInfo();
+    ret.setDriverClass(server.getDriverClass());
+    ret.setDatabaseName(server.getMaintenanceDatabase());
+    ret.setHost(server.getHost());
+    ret.setPort(server.getPort());
+    ret.setUser(server.getAdminUser());
+    ret.setPassword(server.getAdminPassword());
+    return ret;
+  }
+
+  private TenantCounts.Placement<?> placeKeyspace(final Tenant tenant) {
+    final List<ProvisionerProperties.Placement.CassandraCluster> candidates
+        = this.provisionerProperties.getPlacement().getCassandraClusters();
+    if (candidates.isEmpty()) {
+      throw ServiceException.badRequest("Tenant {0} has no Cassandra connection info, and no clusters are configured to place it on.",
+          tenant.getIdentifier());
+    }
+
+    if (!this.tenantsPerCluster.isCounted()) {
+      this.countTenantsPerCluster();
+    }
+    final TenantCounts.Placement<ProvisionerProperties.Placement.CassandraCluster> placement = this.tenantsPerCluster.place(
+        candidates, x -> clusterKey(x.getContactPoints()), ProvisionerProperties.Placement.CassandraCluster::getWeight);
+    final ProvisionerProperties.Placement.CassandraCluster cluster = placement.getCandidate();
+
+    final CassandraConnectionInfo cassandraConnectionInfo = tenant.getCassandraConnectionInfo() != null
+        ? tenant.getCassandraConnectionInfo()
+        : new CassandraConnectionInfo();
+    if (cassandraConnectionInfo.getClusterName() == null) {
+      cassandraConnectionInfo.setClusterName(cluster.getClusterName());
+    }
+    cassandraConnectionInfo.setContactPoints(cluster.getContactPoints());
+    if (cassandraConnectionInfo.getKeyspace() == null) {
+      cassandraConnectionInfo.setKeyspace(tenant.getIdentifier());
+    }
+    if (cassandraConnectionInfo.getReplicationType() == null) {
+      cassandraConnectionInfo.setReplicationType(cluster.getReplicationType());
+    }
+    if (cassandraConnectionInfo.getReplicas() == null) {
+      cassandraConnectionInfo.setReplicas(cluster.getReplicas());
+    }
+    tenant.setCassandraConnectionInfo(cassandraConnectionInfo);
+
+    this.logger.info("Placing keyspace of tenant {} on cluster {}.", tenant.getIdentifier(), cluster.getContactPoints());
+    this.provisionerMetrics.increment("provisioner_tenant_placements", "store", "cassandra");
+    return placement;
+  }
+
+  private TenantCounts.Placement<?> placeDatabase(final Tenant tenant) {
+    final List<ProvisionerProperties.Placement.DatabaseServer> candidates
+        = this.provisionerProperties.getPlacement().getDatabaseServers();
+    if (candidates.isEmpty()) {
+      throw ServiceException.badRequest("Tenant {0} has no database connection info, and no servers are configured to place it on.",
+          tenant.getIdentifier());
+    }
+
+    if (!this.tenantsPerServer.isCounted()) {
+      this.countTenantsPerServer();
+    }
+    final TenantCounts.Placement<ProvisionerProperties.Placement.DatabaseServer> placement = this.tenantsPerServer.place(
+        candidates, x -> serverKey(x.getHost(), x.getPort()), ProvisionerProperties.Placement.DatabaseServer::getWeight);
+    final ProvisionerProperties.Placement.DatabaseServer server = placement.getCandidate();
+
+    final DatabaseConnectionInfo databaseConnectionInfo = tenant.getDatabaseConnectionInfo() != null
+        ? tenant.getDatabaseConnectionInfo()
+        : new DatabaseConnectionInfo();
+    databaseConnectionInfo.setDriverClass(server.getDriverClass());
+    if (databaseConnectionInfo.getDatabaseName() == null) {
+      databaseConnectionInfo.setDatabaseName(tenant.getIdentifier());
+    }
+    databaseConnectionInfo.setHost(server.getHost());
+    databaseConnectionInfo.setPort(server.getPort());
+    databaseConnectionInfo.setUser(server.getUser());
+    databaseConnectionInfo.setPassword(server.getPassword());
+    tenant.setDatabaseConnectionInfo(databaseConnectionInfo);
+
+    this.logger.info("Placing database of tenant {} on server {}.", tenant.getIdentifier(), serverKey(server.getHost(), server.getPort()));
+    this.provisionerMetrics.increment("provisioner_tenant_placements", "store", "postgresql");
+    return placement;
+  }
+
+  /**
+   * Recounts the tenants per candidate, once placement has been used on this node.
+   */
+  @Scheduled(fixedDelayString = "${provisioner.placement.recountInterval:300000}")
+  public void recount() {
+    try {
+      if (this.tenantsPerCluster.isCounted()) {
+        this.countTenantsPerCluster();
+      }
+      if (this.tenantsPerServer.isCounted()) {
+        this.countTenantsPerServer();
+      }
+    } catch (final RuntimeException ex) {
+      this.logger.warn("Could not recount tenants for placement, keeping the current counts.", ex);
+    }
+  }
+
+  private void countTenantsPerCluster() {
+    final long countGeneration = this.tenantsPerCluster.startCount();
+    this.tenantsPerCluster.finishCount(countGeneration, this.tenantCassandraRepository.fetchAll().stream()
+        .filter(x -> x.getContactPoints() != null)
+        .collect(Collectors.groupingBy(x -> clusterKey(x.getContactPoints()), Collectors.counting())));
+  }
+
+  private void countTenantsPerServer() {
+    final long countGeneration = this.tenantsPerServer.startCount();
+    try (final Connection connection = DataSourceUtils.createProvisionerConnection(this.environment, META_DATABASE)) {
+      this.tenantsPerServer.finishCount(countGeneration, TenantDAO.fetchAll(connection).stream()
+          .map(TenantDAO::map)
+          .collect(Collectors.groupingBy(x -> serverKey(x.getHost(), x.getPort()), Collectors.counting())));
+    } catch (final SQLException sqlex) {
+      this.logger.error(sqlex.getMessage(), sqlex);
+      throw new IllegalStateException("Could not count tenants per database server!", sqlex);
+    }
+  }
+
+  private static boolean needsPlacement(final CassandraConnectionInfo cassandraConnectionInfo) {
+    return cassandraConnectionInfo == null || cassandraConnectionInfo.getContactPoints() == null;
+  }
+
+  private static boolean needsPlacement(final DatabaseConnectionInfo databaseConnectionInfo) {
+    return databaseConnectionInfo == null || databaseConnectionInfo.getHost() == null;
+  }
+
+  /**
+   * @return the candidate with the fewest tenants per weight once the new tenant is added, the first one
+   * configured among equally loaded candidates.
+   */
+  static <T> T leastLoaded(final List<T> candidates,
+                           final Function<T, String> key,
+                           final ToIntFunction<T> weight,
+                           final Map<String, Long> tenantsPerKey) {
+    T result = null;
+    double resultLoad = Double.MAX_VALUE;
+    for (final T candidate : candidates) {
+      final double load = (tenantsPerKey.getOrDefault(key.apply(candidate), 0L) + 1) / (double) weight.applyAsInt(candidate);
+      if (load < resultLoad) {
+        result = candidate;
+        resultLoad = load;
+      }
+    }
+    return result;
+  }
+
+  static String clusterKey(final String contactPoints) {
+    return Arrays.stream(contactPoints.split(","))
+        .map(String::trim)
+        .filter(x -> !x.isEmpty())
+        .sorted()
+        .collect(Collectors.joining(","));
+  }
+
+  static String serverKey(final String host, final String port) {
+    return host + ":" + port;
+  }
+}
@@ -21,22 +21,34 @@ package org.apache.fineract.cn.provisioner.internal.service;
 import org.apache.fineract.cn.postgresql.util.PostgreSQLConstants;
 import org.apache.fineract.cn.provisioner.api.v1.domain.CassandraConnectionInfo;
 import org.apache.fineract.cn.provisioner.api.v1.domain.DatabaseConnectionInfo;
+import org.apache.fineract.cn.provisioner.api.v1.domain.TableOptions;
 import org.apache.fineract.cn.provisioner.api.v1.domain.Tenant;
+import org.apache.fineract.cn.provisioner.api.v1.domain.TenantDeletion;
 import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
 import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
 import org.apache.fineract.cn.provisioner.internal.repository.TenantCassandraRepository;
 import org.apache.fineract.cn.provisioner.internal.repository.TenantDAO;
 import org.apache.fineract.cn.provisioner.internal.repository.TenantEntity;
 import org.apache.fineract.cn.provisioner.internal.service.applications.IdentityServiceInitializer;
+import org.apache.fineract.cn.provisioner.internal.util.CompletableFutures;
 import org.apache.fineract.cn.provisioner.internal.util.DataSourceUtils;
 import org.apache.fineract.cn.provisioner.internal.util.DataStoreOption;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
 import org.apache.fineract.cn.anubis.api.v1.domain.ApplicationSignatureSet;
 import org.apache.fineract.cn.anubis.repository.TenantAuthorizationDataRepository;
@@ -60,7 +72,12 @@ public class TenantService {
   private final TenantCassandraRepository tenantCassandraRepository;
   private final IdentityServiceInitializer identityServiceInitializer;
   private final ProvisionerProperties provisionerProperties;
-
+  private final ProvisionerMetrics provisionerMetrics;
+  private final ProvisioningTracer provisioningTracer;
+  private final ExecutorService executor;
+  private final TemplateDatabaseService templateDatabaseService;
+  private final WarmPoolService warmPoolService;
+  private final TenantPlacementService tenantPlacementService;
 
   @Autowired
   public TenantService(@Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
@@ -69,7 +86,13 @@ public class TenantService {
                        @SuppressWarnings("SpringJavaAutowiringInspection") final TenantAuthorizationDataRepository tenantAuthorizationDataRepository,
                        final TenantCassandraRepository tenantCassandraRepository,
                        final IdentityServiceInitializer identityServiceInitializer,
-                       final ProvisionerProperties provisionerProperties) {
+                       final ProvisionerProperties provisionerProperties,
+                       final ProvisionerMetrics provisionerMetrics,
+                       final ProvisioningTracer provisioningTracer,
+                       @Qualifier(ProvisionerConstants.EXECUTOR_NAME) final ExecutorService executor,
+                       final TemplateDatabaseService templateDatabaseService,
+                       final WarmPoolService warmPoolService,
+                       final TenantPlacementService tenantPlacementService) {
     super();
     this.logger = logger;
     this.environment = environment;
@@ -78,11 +101,35 @@ public class TenantService {
     this.tenantCassandraRepository = tenantCassandraRepository;
     this.identityServiceInitializer = identityServiceInitializer;
     this.provisionerProperties = provisionerProperties;
+    this.provisionerMetrics = provisionerMetrics;
+    this.provisioningTracer = provisioningTracer;
+    this.executor = executor;
+    this.templateDatabaseService = templateDatabaseService;
+    this.warmPoolService = warmPoolService;
+    this.tenantPlacementService = tenantPlacementService;
   }
 
   public void create(final Tenant tenant) {
-    this.initializeKeyspace(tenant);
-    this.initializeDatabase(tenant);
+    try (final ProvisioningTracer.Scope ignored = this.provisioningTracer.startTrace(tenant.getIdentifier(), "create_tenant")) {
+      this.provisionerMetrics.timed("provisioner_tenant_create", () -> {
+        final TenantPlacementService.Placement placement;
+        try (final ProvisioningTracer.Scope ignoredSpan = this.provisioningTracer.startSpan("place_tenant")) {
+          placement = this.tenantPlacementService.place(tenant);
+        }
+        try {
+          try (final ProvisioningTracer.Scope ignoredSpan = this.provisioningTracer.startSpan("initialize_keyspace")) {
+            this.initializeKeyspace(tenant);
+          }
+          try (final ProvisioningTracer.Scope ignoredSpan = this.provisioningTracer.startSpan("initialize_database")) {
+            this.initializeDatabase(tenant);
+          }
+        } catch (final RuntimeException ex) {
+          placement.failed();
+          throw ex;
+        }
+        placement.created();
+      });
+    }
   }
 
   private void initializeKeyspace(final @Nonnull Tenant tenant) {
@@ -101,9 +148,53 @@ public class TenantService {
       tenantEntity.setDescription(tenant.getDescription());
       tenantEntity.setIdentityManagerApplicationName(null); //Identity manager can't be spun up till the org.apache.fineract.cn.provisioner.tenant is provisioned.
       tenantEntity.setIdentityManagerApplicationUri(null); //Identity manager can't be spun up till the org.apache.fineract.cn.provisioner.tenant is provisioned.
+      final TableOptions commandSourceTableOptions = cassandraConnectionInfo.getCommandSourceTableOptions();
+      tenantEntity.setKeyspaceMode(this.keyspaceModeOf(tenant.getIdentifier(), cassandraConnectionInfo));
+      if (commandSourceTableOptions != null) {
+        tenantEntity.setCommandSourceCompactionStrategy(commandSourceTableOptions.getCompactionStrategy());
+        tenantEntity.setCommandSourceCompactionWindowUnit(commandSourceTableOptions.getCompactionWindowUnit());
+        tenantEntity.setCommandSourceCompactionWindowSize(commandSourceTableOptions.getCompactionWindowSize());
+        tenantEntity.setCommandSourceDefaultTimeToLive(commandSourceTableOptions.getDefaultTimeToLive());
+        tenantEntity.setCommandSourceCompression(commandSourceTableOptions.getCompression());
+        tenantEntity.setCommandSourceCaching(commandSourceTableOptions.getCaching());
+      }
+
+      //A spare keyspace is only claimed for tenants which don't exist yet, so that no spare gets lost on a conflict.
+      final Optional<String> spareKeyspaceName = tenantEntity.isInSharedKeyspace()
+          || tenantCassandraRepository.get(tenant.getIdentifier()).isPresent()
+          ? Optional.empty()
+          : this.warmPoolService.claimKeyspace(cassandraConnectionInfo);
+      if (spareKeyspaceName.isPresent()) {
+        tenantEntity.setKeyspaceName(spareKeyspaceName.get());
+        try {
+          tenantCassandraRepository.bind(tenantEntity);
+        } catch (final RuntimeException ex) {
+          //E.g. the tenant was created concurrently; the spare is still untouched.
+          this.warmPoolService.releaseKeyspace(tenantEntity);
+          throw ex;
+        }
+      } else {
+        tenantCassandraRepository.create(tenantEntity);
+      }
+    }
+  }
 
-      tenantCassandraRepository.create(tenantEntity);
+  String keyspaceModeOf(final String tenantIdentifier, final CassandraConnectionInfo cassandraConnectionInfo) {
+    final String keyspaceMode = cassandraConnectionInfo.getKeyspaceMode();
+    if (keyspaceMode == null || keyspaceMode.equals(CassandraConnectionInfo.KEYSPACE_MODE_DEDICATED)) {
+      return keyspaceMode;
+    }
+    if (!keyspaceMode.equals(CassandraConnectionInfo.KEYSPACE_MODE_SHARED)) {
+      throw ServiceException.badRequest("Unknown keyspace mode {0} for tenant {1}.", keyspaceMode, tenantIdentifier);
     }
+    if (!this.provisionerProperties.getSharedKeyspaces().isEnabled()) {
+      throw ServiceException.badRequest("Shared keyspaces are not enabled, tenant {0} can't be created in one.", tenantIdentifier);
+    }
+    //A shared command source table can't have options of one tenant.
+    if (cassandraConnectionInfo.getCommandSourceTableOptions() != null) {
+      throw ServiceException.badRequest("Tenant {0} in a shared keyspace can't have command source table options.", tenantIdentifier);
+    }
+    return keyspaceMode;
   }
 
   public Optional<String> assignIdentityManager(
@@ -139,28 +230,95 @@ public class TenantService {
       List<TenantEntity> tenantEntities = tenantCassandraRepository.fetchAll();
 
       for (final TenantEntity tenantEntity : tenantEntities) {
-        final Tenant tenant = new Tenant();
-        tenants.add(tenant);
-        tenant.setIdentifier(tenantEntity.getIdentifier());
-        tenant.setName(tenantEntity.getName());
-        tenant.setDescription(tenantEntity.getDescription());
-
-        tenant.setCassandraConnectionInfo(getCassandraConnectionInfoFromTenantEntity(tenantEntity));
+        tenants.add(getTenantFromTenantEntity(tenantEntity));
       }
     }
   }
 
-  @SuppressWarnings("UnnecessaryLocalVariable")
   public Optional<Tenant> find(final @Nonnull String identifier) {
-    final Optional<Tenant> tenantInCassandra = this.findCassandra(identifier);
-    final Optional<Tenant> tenantInDatabase = tenantInCassandra.map(x -> this.findInDatabase(x, identifier));
+    final DataStoreOption dataStoreOption = provisionerProperties.getDataStoreOption();
+    final boolean cassandraEnabled = dataStoreOption.isEnabled(DataStoreOption.CASSANDRA);
+    final boolean databaseEnabled = dataStoreOption.isEnabled(DataStoreOption.RDBMS);
 
-    return tenantInDatabase;
+    if (cassandraEnabled && databaseEnabled) {
+      //Read both stores at the same time.  The tenant exists if Cassandra knows it, the database only adds to it.
+      final CompletableFuture<Optional<TenantEntity>> tenantEntityLookup =
+          CompletableFuture.supplyAsync(() -> tenantCassandraRepository.get(identifier), this.executor);
+      final Optional<TenantDAO> tenantDAO = this.findInDatabase(identifier);
+      return CompletableFutures.join(tenantEntityLookup).map(tenantEntity -> {
+        final Tenant tenant = getTenantFromTenantEntity(tenantEntity);
+        tenantDAO.ifPresent(x -> tenant.setDatabaseConnectionInfo(x.map()));
+        return tenant;
+      });
+    } else if (cassandraEnabled) {
+      return tenantCassandraRepository.get(identifier).map(TenantService::getTenantFromTenantEntity);
+    } else if (databaseEnabled) {
+      return this.findInDatabase(identifier).map(TenantService::getTenantFromTenantDAO);
+    }
+    return Optional.empty();
   }
 
   public void delete(final String identifier) {
-    this.deleteFromCassandra(identifier);
-    this.deleteDatabase(identifier);
+    CompletableFutures.join(this.deleteAsync(identifier));
+  }
+
+  /**
+   * @return the outcome of every deletion, in the order of the distinct identifiers.  A failed deletion doesn't
+   * stop the others.
+   */
+  public List<TenantDeletion> deleteAll(final Collection<String> identifiers) {
+    //Each Cassandra cluster gets a fixed number of lanes, so that no cluster drops more than parallelismPerCluster
+    //keyspaces at once.
+    final int parallelismPerCluster = this.provisionerProperties.getDeletion().getParallelismPerCluster();
+    final List<String> distinctIdentifiers = identifiers.stream().distinct().collect(Collectors.toList());
+    final Map<String, List<String>> identifiersByCluster = distinctIdentifiers.stream()
+        .collect(Collectors.groupingBy(this::findClusterKey, LinkedHashMap::new, Collectors.toList()));
+
+    final Map<String, CompletableFuture<Void>> deletions = new HashMap<>();
+    identifiersByCluster.values().forEach(clusterIdentifiers -> {
+      final List<CompletableFuture<Void>> clusterDeletions =
+          CompletableFutures.inLanes(clusterIdentifiers, parallelismPerCluster, this::deleteAsync);
+      for (int i = 0; i < clusterIdentifiers.size(); i++) {
+        deletions.put(clusterIdentifiers.get(i), clusterDeletions.get(i));
+      }
+    });
+
+    final List<CompletableFuture<TenantDeletion>> outcomes = distinctIdentifiers.stream()
+        .map(identifier -> deletions.get(identifier).handle((ignored, failure) -> {
+          if (failure == null) {
+            return new TenantDeletion(identifier, true, null);
+          }
+          final Throwable cause = CompletableFutures.unwrap(failure);
+          this.logger.warn("Deleting tenant '{}' failed.", identifier, cause);
+          return new TenantDeletion(identifier, false, cause.getMessage());
+        }))
+        .collect(Collectors.toList());
+    return outcomes.stream().map(CompletableFuture::join).collect(Collectors.toList());
+  }
+
+  private CompletableFuture<Void> deleteAsync(final String identifier) {
+    //Dropping the keyspace is slow because Cassandra snapshots it first, so drop the database meanwhile.
+    final long start = System.nanoTime();
+    return CompletableFutures.allOf(Arrays.asList(
+        CompletableFuture.runAsync(() -> this.deleteFromCassandra(identifier), this.executor),
+        CompletableFuture.runAsync(() -> this.deleteDatabase(identifier), this.executor)))
+        .whenComplete((ignored, failure) -> {
+          this.provisionerMetrics.record("provisioner_tenant_delete",
+              System.nanoTime() - start, "outcome", failure == null ? "success" : "failure");
+          if (failure == null) {
+            this.provisioningTracer.forget(identifier);
+          }
+        });
+  }
+
+  private String findClusterKey(final String identifier) {
+    final DataStoreOption dataStoreOption = provisionerProperties.getDataStoreOption();
+    if (dataStoreOption.isEnabled(DataStoreOption.CASSANDRA)) {
+      return tenantCassandraRepository.get(identifier)
+          .map(x -> x.getClusterName() + "/" + x.getContactPoints())
+          .orElse("");
+    }
+    return "";
   }
 
   private void fetchAllDatabase(final ArrayList<Tenant> tenants) {
@@ -180,10 +338,7 @@ public class TenantService {
         try (final Connection connection = DataSourceUtils.createProvisionerConnection(this.environment, META_KEYSPACE)) {
           final List<TenantDAO> tenantDAOs = TenantDAO.fetchAll(connection);
           for (final TenantDAO tenantDAO : tenantDAOs) {
-            final Tenant tenant = new Tenant();
-            tenants.add(tenant);
-            tenant.setIdentifier(tenantDAO.getIdentifier());
-            tenant.setDatabaseConnectionInfo(tenantDAO.map());
+            tenants.add(getTenantFromTenantDAO(tenantDAO));
           }
         } catch (final SQLException sqlex) {
           this.logger.error(sqlex.getMessage(), sqlex);
@@ -193,77 +348,96 @@ public class TenantService {
     }
   }
 
-  private Optional<Tenant> findCassandra(final String identifier) {
-    final DataStoreOption dataStoreOption = provisionerProperties.getDataStoreOption();
-    if (dataStoreOption.isEnabled(DataStoreOption.CASSANDRA)) {
-      return tenantCassandraRepository.get(identifier).map(x -> {
-                final Tenant tenant = new Tenant();
-                tenant.setIdentifier(x.getIdentifier());
-                tenant.setName(x.getName());
-                tenant.setDescription(x.getDescription());
-                tenant.setCassandraConnectionInfo(getCassandraConnectionInfoFromTenantEntity(x));
-                return tenant;
-              }
-      );
+  private Optional<TenantDAO> findInDatabase(final @Nonnull String identifier) {
+    try (final Connection connection = DataSourceUtils.createProvisionerConnection(this.environment, META_KEYSPACE)) {
+      return TenantDAO.find(connection, identifier);
+    } catch (final SQLException sqlex) {
+      this.logger.error(sqlex.getMessage(), sqlex);
+      throw new IllegalStateException("Could not load org.apache.fineract.cn.provisioner.tenant data!");
     }
-    return Optional.empty();
   }
 
-  private Tenant findInDatabase(final @Nonnull Tenant tenant, final @Nonnull String identifier) {
+  private void initializeDatabase(final Tenant tenant) {
     final DataStoreOption dataStoreOption = provisionerProperties.getDataStoreOption();
     if (dataStoreOption.isEnabled(DataStoreOption.RDBMS)) {
-      try (final Connection connection = DataSourceUtils.createProvisionerConnection(this.environment, META_KEYSPACE)) {
-        final Optional<TenantDAO> optionalTenantDAO = TenantDAO.find(connection, identifier);
-        if (optionalTenantDAO.isPresent()) {
-          tenant.setDatabaseConnectionInfo(optionalTenantDAO.get().map());
-          return tenant;
-        }
-      } catch (final SQLException sqlex) {
+
+      try (final Connection provisionerConnection = DataSourceUtils.createProvisionerConnection(this.environment, META_KEYSPACE)) {
+        this.claimAndCreateDatabase(provisionerConnection, tenant);
+      } catch (SQLException sqlex) {
         this.logger.error(sqlex.getMessage(), sqlex);
-        throw new IllegalStateException("Could not load org.apache.fineract.cn.provisioner.tenant data!");
+        throw new IllegalStateException("Could not provision database for tenant {}" + tenant.getIdentifier(), sqlex);
       }
+    } else {
+      this.logger.warn("Datastore option not chosen, Tenant in PostgreSQL RDBMS not created");
     }
-    return tenant;
   }
 
-  private void initializeDatabase(final Tenant tenant) {
-    final DataStoreOption dataStoreOption = provisionerProperties.getDataStoreOption();
-    if (dataStoreOption.isEnabled(DataStoreOption.RDBMS)) {
+  void claimAndCreateDatabase(final Connection provisionerConnection, final Tenant tenant) throws SQLException {
+    final DatabaseConnectionInfo databaseConnectionInfo = tenant.getDatabaseConnectionInfo();
+    final TenantDAO tenantDAO = new TenantDAO();
+    tenantDAO.setIdentifier(tenant.getIdentifier());
+    tenantDAO.setDriverClass(databaseConnectionInfo.getDriverClass());
+    tenantDAO.setDatabaseName(databaseConnectionInfo.getDatabaseName());
+    tenantDAO.setHost(databaseConnectionInfo.getHost());
+    tenantDAO.setPort(databaseConnectionInfo.getPort());
+    tenantDAO.setUser(databaseConnectionInfo.getUser());
+    tenantDAO.setPassword(databaseConnectionInfo.getPassword());
+    tenantDAO.setName(tenant.getName());
+    tenantDAO.setDescription(tenant.getDescription());
+
+    //The row claims the identifier before the database is created, so that concurrent creators of the same
+    //tenant never both run CREATE DATABASE.
+    final boolean claimed;
+    try (final ProvisionerMetrics.Timing ignored = this.timePostgreSQL("insert_tenant")) {
+      claimed = tenantDAO.insertIfAbsent(provisionerConnection);
+    }
+    if (!claimed) {
+      this.logger.warn("Tenant {} already exists !", tenant.getIdentifier());
+      throw ServiceException.conflict("Tenant {0} already exists!", tenant.getIdentifier());
+    }
 
-      try (
-              final Connection provisionerConnection = DataSourceUtils.createProvisionerConnection(this.environment, META_KEYSPACE);
-              final Statement statement = provisionerConnection.createStatement()
-      ) {
-        final ResultSet resultSet = statement.executeQuery(
-            " SELECT * FROM tenants WHERE identifier = '" + tenant.getIdentifier() + "' ");
-        if (resultSet.next()) {
-          this.logger.warn("Tenant {} already exists !", tenant.getIdentifier());
-          throw ServiceException.conflict("Tenant {0} already exists!", tenant.getIdentifier());
+    this.logger.info("Create database for tenant {}", tenant.getIdentifier());
+    final String databaseName = databaseConnectionInfo.getDatabaseName().toLowerCase();
+    try {
+      if (this.isProvisionerServer(databaseConnectionInfo)) {
+        //Spare databases and the template only exist on the provisioner's own server.
+        if (!this.warmPoolService.claimDatabase(provisionerConnection, databaseName)) {
+          this.templateDatabaseService.createDatabase(provisionerConnection, databaseName);
         }
-        else {
-          final DatabaseConnectionInfo databaseConnectionInfo = tenant.getDatabaseConnectionInfo();
-          this.logger.info("Create database for tenant {}", tenant.getIdentifier());
-          statement.execute("CREATE DATABASE " + databaseConnectionInfo.getDatabaseName().toLowerCase());
-
-          final TenantDAO tenantDAO = new TenantDAO();
-          tenantDAO.setIdentifier(tenant.getIdentifier());
-          tenantDAO.setDriverClass(databaseConnectionInfo.getDriverClass());
-          tenantDAO.setDatabaseName(databaseConnectionInfo.getDatabaseName());
-          tenantDAO.setHost(databaseConnectionInfo.getHost());
-          tenantDAO.setPort(databaseConnectionInfo.getPort());
-          tenantDAO.setUser(databaseConnectionInfo.getUser());
-          tenantDAO.setPassword(databaseConnectionInfo.getPassword());
-          tenantDAO.insert(provisionerConnection);
+      } else {
+        //The tenant was placed on, or given, another server, so its database is created there.
+        try (
+            final Connection serverConnection = this.connectToServer(databaseConnectionInfo);
+            final Statement statement = serverConnection.createStatement();
+            final ProvisionerMetrics.Timing ignored = this.timePostgreSQL("create_database")
+        ) {
+          //Created by the admin role, so it's handed to the tenant's role, which is used by the tenant services.
+          statement.execute("CREATE DATABASE " + databaseName
+              + (databaseConnectionInfo.getUser() != null ? " OWNER \"" + databaseConnectionInfo.getUser() + "\"" : ""));
         }
-      } catch (SQLException sqlex) {
-        this.logger.error(sqlex.getMessage(), sqlex);
-        throw new IllegalStateException("Could not provision database for tenant {}" + tenant.getIdentifier(), sqlex);
       }
-    } else {
-      this.logger.warn("Datastore option not chosen, Tenant in PostgreSQL RDBMS not created");
+    } catch (final SQLException | RuntimeException ex) {
+      //A failing rollback must not hide why the database couldn't be created.
+      try {
+        TenantDAO.delete(provisionerConnection, tenant.getIdentifier());
+      } catch (final SQLException | RuntimeException rollbackEx) {
+        ex.addSuppressed(rollbackEx);
+      }
+      throw ex;
     }
   }
 
+  private boolean isProvisionerServer(final DatabaseConnectionInfo databaseConnectionInfo) {
+    return TenantPlacementService.serverKey(databaseConnectionInfo.getHost(), databaseConnectionInfo.getPort())
+        .equals(TenantPlacementService.serverKey(this.environment.getProperty("postgresql.host"),
+            this.environment.getProperty("postgresql.port")));
+  }
+
+  Connection connectToServer(final DatabaseConnectionInfo databaseConnectionInfo) {
+    //The tenant's own role can't be assumed to be allowed to create databases.
+    return DataSourceUtils.create(this.tenantPlacementService.adminConnectionInfoOf(databaseConnectionInfo));
+  }
+
   private void deleteFromCassandra(final @Nonnull String identifier) {
     final DataStoreOption dataStoreOption = provisionerProperties.getDataStoreOption();
     if (dataStoreOption.isEnabled(DataStoreOption.CASSANDRA)) {
@@ -287,9 +461,13 @@ public class TenantService {
               final Connection connection = DataSourceUtils.create(databaseConnectionInfo);
               final Statement dropStatement = connection.createStatement()
           ) {
-            dropStatement.execute("DROP DATABASE " + databaseConnectionInfo.getDatabaseName());
+            try (final ProvisionerMetrics.Timing ignored = this.timePostgreSQL("drop_database")) {
+              dropStatement.execute("DROP DATABASE " + databaseConnectionInfo.getDatabaseName());
+            }
+          }
+          try (final ProvisionerMetrics.Timing ignored = this.timePostgreSQL("delete_tenant")) {
+            TenantDAO.delete(provisionerConnection, identifier);
           }
-          TenantDAO.delete(provisionerConnection, identifier);
         }
       } catch (final SQLException sqlex) {
         this.logger.error(sqlex.getMessage(), sqlex);
@@ -300,6 +478,28 @@ public class TenantService {
     }
   }
 
+  private ProvisionerMetrics.Timing timePostgreSQL(final String operation) {
+    return this.provisionerMetrics.start("provisioner_store_operation", "store", "postgresql", "operation", operation);
+  }
+
+  private static Tenant getTenantFromTenantEntity(final TenantEntity tenantEntity) {
+    final Tenant tenant = new Tenant();
+    tenant.setIdentifier(tenantEntity.getIdentifier());
+    tenant.setName(tenantEntity.getName());
+    tenant.setDescription(tenantEntity.getDescription());
+    tenant.setCassandraConnectionInfo(getCassandraConnectionInfoFromTenantEntity(tenantEntity));
+    return tenant;
+  }
+
+  static Tenant getTenantFromTenantDAO(final TenantDAO tenantDAO) {
+    final Tenant tenant = new Tenant();
+    tenant.setIdentifier(tenantDAO.getIdentifier());
+    tenant.setName(tenantDAO.getName());
+    tenant.setDescription(tenantDAO.getDescription());
+    tenant.setDatabaseConnectionInfo(tenantDAO.map());
+    return tenant;
+  }
+
   private static CassandraConnectionInfo getCassandraConnectionInfoFromTenantEntity(final TenantEntity tenantEntity) {
     final CassandraConnectionInfo cassandraConnectionInfo = new CassandraConnectionInfo();
     cassandraConnectionInfo.setClusterName(tenantEntity.getClusterName());
@@ -307,6 +507,20 @@ public class TenantService {
     cassandraConnectionInfo.setKeyspace(tenantEntity.getKeyspaceName());
     cassandraConnectionInfo.setReplicationType(tenantEntity.getReplicationType());
     cassandraConnectionInfo.setReplicas(tenantEntity.getReplicas());
+    cassandraConnectionInfo.setCommandSourceTableOptions(getCommandSourceTableOptionsFromTenantEntity(tenantEntity));
+    cassandraConnectionInfo.setKeyspaceMode(tenantEntity.getKeyspaceMode());
     return cassandraConnectionInfo;
   }
+
+  private static TableOptions getCommandSourceTableOptionsFromTenantEntity(final TenantEntity tenantEntity) {
+    final TableOptions tableOptions = new TableOptions();
+    tableOptions.setCompactionStrategy(tenantEntity.getCommandSourceCompactionStrategy());
+    tableOptions.setCompactionWindowUnit(tenantEntity.getCommandSourceCompactionWindowUnit());
+    tableOptions.setCompactionWindowSize(tenantEntity.getCommandSourceCompactionWindowSize());
+    tableOptions.setDefaultTimeToLive(tenantEntity.getCommandSourceDefaultTimeToLive());
+    tableOptions.setCompression(tenantEntity.getCommandSourceCompression());
+    tableOptions.setCaching(tenantEntity.getCommandSourceCaching());
+    //Tenants created without options read back without options.
+    return tableOptions.equals(new TableOptions()) ? null : tableOptions;
+  }
 }
\ No newline at end of file
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import org.apache.fineract.cn.provisioner.api.v1.domain.CassandraConnectionInfo;
+import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.repository.SpareDatabaseDAO;
+import org.apache.fineract.cn.provisioner.internal.repository.SpareKeyspaceRepository;
+import org.apache.fineract.cn.provisioner.internal.repository.TenantEntity;
+import org.apache.fineract.cn.provisioner.internal.util.DataSourceUtils;
+import org.apache.fineract.cn.provisioner.internal.util.DataStoreOption;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Optional;
+import java.util.UUID;
+import org.apache.fineract.cn.postgresql.util.PostgreSQLConstants;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps spare tenant keyspaces and databases ready, so that creating a tenant doesn't wait for schema agreement
+ * or for a database to be copied.  A claimed spare database is renamed to the database of the tenant.  Keyspaces
+ * can't be renamed, so a tenant claiming a spare keyspace keeps the name of the spare.  A spare which could not
+ * be handed over to its tenant goes back into the pool.  Failures of the pool never fail tenant creation, which
+ * then creates its keyspace and database as without the pool.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+@Service
+public class WarmPoolService {
+
+  private static final String META_DATABASE = PostgreSQLConstants.POSTGRESQL_DATABASE_NAME_DEFAULT;
+  private static final String SPARE_DATABASE_NAME_PREFIX = "spare_";
+
+  private final Logger logger;
+  private final Environment environment;
+  private final ProvisionerProperties provisionerProperties;
+  private final ProvisionerMetrics provisionerMetrics;
+  private final SpareKeyspaceRepository spareKeyspaceRepository;
+  private final TemplateDatabaseService templateDatabaseService;
+  private volatile long spareKeyspaces;
+  private volatile long spareDatabases;
+
+  @Autowired
+  public WarmPoolService(@Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
+                         final Environment environment,
+                         final ProvisionerProperties provisionerProperties,
+                         final ProvisionerMetrics provisionerMetrics,
+                         final SpareKeyspaceRepository spareKeyspaceRepository,
+                         final TemplateDatabaseService templateDatabaseService) {
+    super();
+    this.logger = logger;
+    this.environment = environment;
+    this.provisionerProperties = provisionerProperties;
+    this.provisionerMetrics = provisionerMetrics;
+    this.spareKeyspaceRepository = spareKeyspaceRepository;
+    this.templateDatabaseService = templateDatabaseService;
+
+    this.provisionerMetrics.gauge("provisioner_warm_pool_size",
+        () -> this.provisionerProperties.getWarmPool().isEnabled() ? this.provisionerProperties.getWarmPool().getSize() : 0);
+    this.provisionerMetrics.gauge("provisioner_warm_pool_spares", () -> this.spareKeyspaces, "store", "cassandra");
+    this.provisionerMetrics.gauge("provisioner_warm_pool_spares", () -> this.spareDatabases, "store", "postgresql");
+  }
+
+  public Optional<String> claimKeyspace(final CassandraConnectionInfo cassandraConnectionInfo) {
+    if (!this.isEnabled(DataStoreOption.CASSANDRA) || !this.isServedByPool(cassandraConnectionInfo)) {
+      return Optional.empty();
+    }
+
+    try {
+      final Optional<String> spareKeyspaceName = this.spareKeyspaceRepository.claim(
+          cassandraConnectionInfo.getContactPoints(),
+          cassandraConnectionInfo.getReplicationType(),
+          cassandraConnectionInfo.getReplicas());
+      spareKeyspaceName.ifPresent(x -> this.spareKeyspaces = Math.max(0L, this.spareKeyspaces - 1));
+      this.countClaim("cassandra", spareKeyspaceName.isPresent());
+      return spareKeyspaceName;
+    } catch (final RuntimeException ex) {
+      this.logger.warn("Could not claim spare keyspace.", ex);
+      this.countClaim("cassandra", false);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Puts a claimed keyspace back into the pool, because the tenant it was claimed for could not be bound to it.
+   */
+  public void releaseKeyspace(final TenantEntity keyspace) {
+    try {
+      this.spareKeyspaceRepository.release(keyspace);
+      this.spareKeyspaces++;
+      this.provisionerMetrics.increment("provisioner_warm_pool_releases", "store", "cassandra");
+    } catch (final RuntimeException ex) {
+      this.logger.warn("Could not return spare keyspace {} to the pool.", keyspace.getKeyspaceName(), ex);
+    }
+  }
+
+  public boolean claimDatabase(final Connection provisionerConnection, final String databaseName) {
+    if (!this.isEnabled(DataStoreOption.RDBMS)) {
+      return false;
+    }
+
+    final Optional<String> spareDatabaseName;
+    try {
+      spareDatabaseName = SpareDatabaseDAO.claim(provisionerConnection);
+    } catch (final SQLException sqlex) {
+      this.logger.warn("Could not claim spare database.", sqlex);
+      this.countClaim("postgresql", false);
+      return false;
+    }
+    if (!spareDatabaseName.isPresent()) {
+      this.countClaim("postgresql", false);
+      return false;
+    }
+
+    this.spareDatabases = Math.max(0L, this.spareDatabases - 1);
+    try (
+        final Statement statement = provisionerConnection.createStatement();
+        final ProvisionerMetrics.Timing ignored = this.timePostgreSQL("rename_database")
+    ) {
+      statement.execute("ALTER DATABASE " + spareDatabaseName.get() + " RENAME TO " + databaseName);
+      this.countClaim("postgresql", true);
+      return true;
+    } catch (final SQLException sqlex) {
+      this.logger.warn("Could not rename spare database {} to {}.", spareDatabaseName.get(), databaseName, sqlex);
+      this.releaseDatabase(provisionerConnection, spareDatabaseName.get());
+      this.countClaim("postgresql", false);
+      return false;
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${provisioner.warmPool.refillInterval:10000}")
+  public void refill() {
+    if (this.isEnabled(DataStoreOption.CASSANDRA)) {
+      try {
+        this.refillKeyspaces();
+      } catch (final RuntimeException ex) {
+        this.logger.warn("Could not refill spare keyspaces.", ex);
+      }
+    }
+    if (this.isEnabled(DataStoreOption.RDBMS)) {
+      try (final Connection connection = DataSourceUtils.createProvisionerConnection(this.environment, META_DATABASE)) {
+        this.refillDatabases(connection);
+      } catch (final SQLException | RuntimeException ex) {
+        this.logger.warn("Could not refill spare databases.", ex);
+      }
+    }
+  }
+
+  private void refillKeyspaces() {
+    final ProvisionerProperties.WarmPool warmPool = this.provisionerProperties.getWarmPool();
+    long spares = this.spareKeyspaceRepository.count(
+        this.environment.getProperty("cassandra.contactPoints"), warmPool.getReplicationType(), warmPool.getReplicas());
+    this.spareKeyspaces = spares;
+    //Nodes refill side by side, which can overshoot the pool size by at most a batch per node.
+    for (int i = 0; i < warmPool.getRefillBatchSize() && spares < warmPool.getSize(); i++) {
+      this.spareKeyspaceRepository.create(
+          this.environment.getProperty("cassandra.clusterName"),
+          this.environment.getProperty("cassandra.contactPoints"),
+          warmPool.getReplicationType(),
+          warmPool.getReplicas());
+      this.spareKeyspaces = ++spares;
+      this.provisionerMetrics.increment("provisioner_warm_pool_refills", "store", "cassandra");
+    }
+  }
+
+  private void refillDatabases(final Connection connection) throws SQLException {
+    final ProvisionerProperties.WarmPool warmPool = this.provisionerProperties.getWarmPool();
+    long spares = SpareDatabaseDAO.count(connection);
+    this.spareDatabases = spares;
+    for (int i = 0; i < warmPool.getRefillBatchSize() && spares < warmPool.getSize(); i++) {
+      final String spareDatabaseName = SPARE_DATABASE_NAME_PREFIX + UUID.randomUUID().toString().replace("-", "");
+      //Spares are copied from the template database if there is one, so claiming them skips the migration too.
+      this.templateDatabaseService.createDatabase(connection, spareDatabaseName);
+      SpareDatabaseDAO.insert(connection, spareDatabaseName);
+      this.spareDatabases = ++spares;
+      this.provisionerMetrics.increment("provisioner_warm_pool_refills", "store", "postgresql");
+    }
+  }
+
+  private boolean isEnabled(final DataStoreOption dataStoreOption) {
+    return this.provisionerProperties.getWarmPool().isEnabled()
+        && this.provisionerProperties.getDataStoreOption().isEnabled(dataStoreOption);
+  }
+
+  private boolean isServedByPool(final CassandraConnectionInfo cassandraConnectionInfo) {
+    final ProvisionerProperties.WarmPool warmPool = this.provisionerProperties.getWarmPool();
+    //Spare keyspaces are created with the default command source table options.
+    return cassandraConnectionInfo.getCommandSourceTableOptions() == null
+        && cassandraConnectionInfo.getContactPoints().equals(this.environment.getProperty("cassandra.contactPoints"))
+        && cassandraConnectionInfo.getReplicationType().equalsIgnoreCase(warmPool.getReplicationType())
+        && cassandraConnectionInfo.getReplicas().equals(warmPool.getReplicas());
+  }
+
+  private void releaseDatabase(final Connection provisionerConnection, final String spareDatabaseName) {
+    //The rename failed, so the spare is still there under its own name.
+    try {
+      SpareDatabaseDAO.insert(provisionerConnection, spareDatabaseName);
+      this.spareDatabases++;
+      this.provisionerMetrics.increment("provisioner_warm_pool_releases", "store", "postgresql");
+    } catch (final SQLException sqlex) {
+      this.logger.warn("Could not return spare database {} to the pool.", spareDatabaseName, sqlex);
+    }
+  }
+
+  private void countClaim(final String store, final boolean claimed) {
+    this.provisionerMetrics.increment("provisioner_warm_pool_claims", "store", store, "outcome", claimed ? "hit" : "miss");
+  }
+
+  private ProvisionerMetrics.Timing timePostgreSQL(final String operation) {
+    return this.provisionerMetrics.start("provisioner_store_operation", "store", "postgresql", "operation", operation);
+  }
+}
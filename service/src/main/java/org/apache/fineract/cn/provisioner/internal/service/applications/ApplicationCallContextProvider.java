@@ -18,17 +18,24 @@
  */
 package org.apache.fineract.cn.provisioner.internal.service.applications;
 
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
 import org.apache.fineract.cn.provisioner.internal.util.TokenProvider;
 import org.apache.fineract.cn.anubis.api.v1.RoleConstants;
 import org.apache.fineract.cn.anubis.api.v1.TokenConstants;
 import org.apache.fineract.cn.api.context.AutoSeshat;
 import org.apache.fineract.cn.api.context.AutoUserContext;
+import org.apache.fineract.cn.api.context.UserContextHolder;
 import org.apache.fineract.cn.api.util.ApiFactory;
 import org.apache.fineract.cn.lang.AutoTenantContext;
+import org.apache.fineract.cn.lang.TenantContextHolder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @SuppressWarnings("WeakerAccess")
 @Component
@@ -36,6 +43,8 @@ public class ApplicationCallContextProvider {
 
   private final ApiFactory apiFactory;
   private final TokenProvider tokenProvider;
+  private final ProvisionerMetrics provisionerMetrics;
+  private final ProvisioningTracer provisioningTracer;
 
   static private class ApplicationCallContext implements AutoCloseable
   {
@@ -57,10 +66,14 @@ public class ApplicationCallContextProvider {
 
   @Autowired
   public ApplicationCallContextProvider(final ApiFactory apiFactory,
-                                        final TokenProvider tokenProvider) {
+                                        final TokenProvider tokenProvider,
+                                        final ProvisionerMetrics provisionerMetrics,
+                                        final ProvisioningTracer provisioningTracer) {
     super();
     this.apiFactory = apiFactory;
     this.tokenProvider = tokenProvider;
+    this.provisionerMetrics = provisionerMetrics;
+    this.provisioningTracer = provisioningTracer;
   }
 
   public AutoCloseable getApplicationCallContext(final String tenantIdentifier, final String applicationName)
@@ -81,8 +94,55 @@ public class ApplicationCallContextProvider {
 
   }
 
+  /**
+   * Captures the tenant, user and trace context of the current thread, so that calls made by the returned action
+   * run in the same context, whichever thread it runs on.
+   */
+  public <T> Supplier<T> propagateCallContext(final Supplier<T> action)
+  {
+    final String tenantIdentifier = TenantContextHolder.checkedGetIdentifier();
+    final String user = UserContextHolder.checkedGetUser();
+    final String accessToken = UserContextHolder.checkedGetAccessToken();
+    final Supplier<T> tracedAction = this.provisioningTracer.propagate(action);
+
+    return () -> {
+      try (final ApplicationCallContext ignored = new ApplicationCallContext(
+          new AutoTenantContext(tenantIdentifier), new AutoUserContext(user, accessToken))) {
+        return tracedAction.get();
+      }
+    };
+  }
+
   public <T> T getApplication(final Class<T> clazz, final String applicationUri)
   {
-    return this.apiFactory.create(clazz, applicationUri);
+    final T application = this.apiFactory.create(clazz, applicationUri);
+    return clazz.cast(Proxy.newProxyInstance(clazz.getClassLoader(), new Class<?>[]{clazz},
+        (proxy, method, args) -> {
+          if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(application, args);
+          }
+
+          final long start = System.nanoTime();
+          String outcome = "failure";
+          try {
+            final Object result = method.invoke(application, args);
+            outcome = "success";
+            return result;
+          } catch (final InvocationTargetException ex) {
+            //Rethrow what the client threw, callers rely on the specific exceptions.
+            throw ex.getCause();
+          } finally {
+            final long duration = System.nanoTime() - start;
+            this.provisioningTracer.recordSpan(clazz.getSimpleName() + "." + method.getName(), start, duration,
+                "tenant", TenantContextHolder.identifier().orElse(""),
+                "application", applicationUri,
+                "outcome", outcome);
+            //Tenants and application URIs grow without bound, so they are only recorded in the span.
+            this.provisionerMetrics.record("provisioner_outbound_call", duration,
+                "client", clazz.getSimpleName(),
+                "operation", method.getName(),
+                "outcome", outcome);
+          }
+        }));
   }
 }
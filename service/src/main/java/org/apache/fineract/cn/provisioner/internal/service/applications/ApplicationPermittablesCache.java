@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service.applications;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.apache.finearct.cn.permittedfeignclient.api.v1.domain.ApplicationPermission;
+import org.apache.fineract.cn.identity.api.v1.domain.CallEndpointSet;
+import org.apache.fineract.cn.identity.api.v1.domain.PermittableGroup;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.SingleFlightCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the permittable groups and permission requirements of an application, so that assigning the same
+ * application to many tenants asks the application for them only once.  Applications are versioned by name
+ * (for example office-v1), so the name and uri of an application identify what it returns.  Entries are
+ * forgotten after a while, and when an application of the same name is created or deleted.
+ */
+@Component
+public class ApplicationPermittablesCache {
+
+  public static class PermissionRequirements {
+    private final List<ApplicationPermission> permissions;
+    private final List<CallEndpointSet> callEndpointSets;
+
+    PermissionRequirements(final List<ApplicationPermission> permissions,
+                           final List<CallEndpointSet> callEndpointSets) {
+      this.permissions = Collections.unmodifiableList(permissions);
+      this.callEndpointSets = Collections.unmodifiableList(callEndpointSets);
+    }
+
+    public List<ApplicationPermission> getPermissions() {
+      return permissions;
+    }
+
+    public List<CallEndpointSet> getCallEndpointSets() {
+      return callEndpointSets;
+    }
+  }
+
+  private static final class Key {
+    private final String applicationName;
+    private final String applicationUri;
+
+    private Key(final String applicationName, final String applicationUri) {
+      this.applicationName = applicationName;
+      this.applicationUri = applicationUri;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      final Key key = (Key) o;
+      return Objects.equals(applicationName, key.applicationName) &&
+          Objects.equals(applicationUri, key.applicationUri);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(applicationName, applicationUri);
+    }
+  }
+
+  private final ProvisionerMetrics provisionerMetrics;
+  private final SingleFlightCache<Key, List<PermittableGroup>> permittableGroups;
+  private final SingleFlightCache<Key, PermissionRequirements> permissionRequirements;
+
+  @Autowired
+  public ApplicationPermittablesCache(final ProvisionerProperties provisionerProperties,
+                                      final ProvisionerMetrics provisionerMetrics) {
+    super();
+    this.provisionerMetrics = provisionerMetrics;
+    final ProvisionerProperties.Permittables permittables = provisionerProperties.getPermittables();
+    this.permittableGroups =
+        new SingleFlightCache<>(permittables.getTtl(), TimeUnit.SECONDS, permittables.getMaximumSize());
+    this.permissionRequirements =
+        new SingleFlightCache<>(permittables.getTtl(), TimeUnit.SECONDS, permittables.getMaximumSize());
+  }
+
+  List<PermittableGroup> getPermittableGroups(final String applicationName,
+                                              final String applicationUri,
+                                              final Supplier<List<PermittableGroup>> loader) {
+    return this.get(this.permittableGroups, "permittable_groups", applicationName, applicationUri,
+        () -> Collections.unmodifiableList(loader.get()));
+  }
+
+  PermissionRequirements getPermissionRequirements(final String applicationName,
+                                                   final String applicationUri,
+                                                   final Supplier<PermissionRequirements> loader) {
+    return this.get(this.permissionRequirements, "permission_requirements", applicationName, applicationUri, loader);
+  }
+
+  public void invalidate(final String applicationName) {
+    this.permittableGroups.invalidate(key -> key.applicationName.equals(applicationName));
+    this.permissionRequirements.invalidate(key -> key.applicationName.equals(applicationName));
+  }
+
+  private <V> V get(final SingleFlightCache<Key, V> cache,
+                    final String kind,
+                    final String applicationName,
+                    final String applicationUri,
+                    final Supplier<V> loader) {
+    final AtomicBoolean loaded = new AtomicBoolean(false);
+    final V value = cache.get(new Key(applicationName, applicationUri), () -> {
+      loaded.set(true);
+      return loader.get();
+    });
+    this.provisionerMetrics.increment("provisioner_application_metadata_cache",
+        "kind", kind, "outcome", loaded.get() ? "miss" : "hit");
+    return value;
+  }
+}
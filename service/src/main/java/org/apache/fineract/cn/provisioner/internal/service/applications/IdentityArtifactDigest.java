@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service.applications;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+import java.util.stream.Stream;
+import javax.annotation.Nonnull;
+import org.apache.fineract.cn.anubis.api.v1.domain.PermittableEndpoint;
+import org.apache.fineract.cn.identity.api.v1.domain.CallEndpointSet;
+import org.apache.fineract.cn.identity.api.v1.domain.Permission;
+import org.apache.fineract.cn.identity.api.v1.domain.PermittableGroup;
+import org.springframework.util.Base64Utils;
+
+/**
+ * Keys and content hashes of the artifacts posted to the identity service.  The hashes ignore the order of
+ * the collections inside an artifact, the same way identity compares them.
+ */
+final class IdentityArtifactDigest {
+
+  private IdentityArtifactDigest() {
+    super();
+  }
+
+  static String permittableGroupKey(final @Nonnull PermittableGroup permittableGroup) {
+    return "permittable_group/" + permittableGroup.getIdentifier();
+  }
+
+  static String permittableGroupHash(final @Nonnull PermittableGroup permittableGroup) {
+    return hash(Stream.concat(
+        Stream.of(permittableGroup.getIdentifier()),
+        sorted(permittableGroup.getPermittables().stream().map(IdentityArtifactDigest::permittableEndpoint))));
+  }
+
+  static String applicationPermissionKey(final @Nonnull String applicationName, final @Nonnull Permission permission) {
+    return "application_permission/" + applicationName + "/" + permission.getPermittableEndpointGroupIdentifier();
+  }
+
+  static String applicationPermissionHash(final @Nonnull Permission permission) {
+    return hash(Stream.concat(
+        Stream.of(permission.getPermittableEndpointGroupIdentifier()),
+        sorted(permission.getAllowedOperations().stream().map(Enum::name))));
+  }
+
+  static String callEndpointSetKey(final @Nonnull String applicationName, final @Nonnull CallEndpointSet callEndpointSet) {
+    return "call_endpoint_set/" + applicationName + "/" + callEndpointSet.getIdentifier();
+  }
+
+  static String callEndpointSetHash(final @Nonnull CallEndpointSet callEndpointSet) {
+    return hash(Stream.concat(
+        Stream.of(callEndpointSet.getIdentifier()),
+        sorted(callEndpointSet.getPermittableEndpointGroupIdentifiers().stream())));
+  }
+
+  private static String permittableEndpoint(final PermittableEndpoint permittableEndpoint) {
+    return permittableEndpoint.getMethod() + " " + permittableEndpoint.getPath() + " " + permittableEndpoint.getGroupId();
+  }
+
+  private static Stream<String> sorted(final Stream<String> values) {
+    return values.map(Objects::toString).distinct().sorted();
+  }
+
+  private static String hash(final Stream<String> lines) {
+    final MessageDigest messageDigest;
+    try {
+      messageDigest = MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    lines.forEach(line -> {
+      messageDigest.update(line.getBytes(StandardCharsets.UTF_8));
+      messageDigest.update((byte) '\n');
+    });
+    return Base64Utils.encodeToString(messageDigest.digest());
+  }
+}
@@ -20,8 +20,11 @@ package org.apache.fineract.cn.provisioner.internal.service.applications;
 
 
 import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
 import org.apache.fineract.cn.provisioner.config.SystemProperties;
 import org.apache.fineract.cn.provisioner.internal.listener.IdentityListener;
+import org.apache.fineract.cn.provisioner.internal.repository.IdentityArtifactRepository;
+import org.apache.fineract.cn.provisioner.internal.util.CompletableFutures;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -31,6 +34,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -69,6 +77,11 @@ public class IdentityServiceInitializer {
   private final HashGenerator hashGenerator;
   private final Logger logger;
   private final SystemProperties systemProperties;
+  private final ApplicationPermittablesCache applicationPermittablesCache;
+  private final IdentityArtifactRepository identityArtifactRepository;
+  private final ProvisionerProperties provisionerProperties;
+  private final ExecutorService executor;
+  private final Map<String, Semaphore> identityPermits = new ConcurrentHashMap<>();
 
   public class IdentityServiceInitializationResult {
     private final ApplicationSignatureSet signatureSet;
@@ -89,18 +102,51 @@ public class IdentityServiceInitializer {
     }
   }
 
+  /**
+   * A permittable group posted to identity.  Identity creates the group asynchronously, so the group only counts as
+   * in place once the creation event arrived.
+   */
+  public static final class PermittableGroupPosting {
+    private final EventExpectation eventExpectation;
+    private final Runnable whenCreated;
+
+    private PermittableGroupPosting(final EventExpectation eventExpectation, final Runnable whenCreated) {
+      this.eventExpectation = eventExpectation;
+      this.whenCreated = whenCreated;
+    }
+
+    public EventExpectation getEventExpectation() {
+      return eventExpectation;
+    }
+
+    /**
+     * To be called once the creation event was received.
+     */
+    public void created() {
+      this.whenCreated.run();
+    }
+  }
+
   @Autowired
   public IdentityServiceInitializer(
       final IdentityListener identityListener,
       final ApplicationCallContextProvider applicationCallContextProvider,
       final HashGenerator hashGenerator,
       @Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
-      final SystemProperties systemProperties) {
+      final SystemProperties systemProperties,
+      final ApplicationPermittablesCache applicationPermittablesCache,
+      final IdentityArtifactRepository identityArtifactRepository,
+      final ProvisionerProperties provisionerProperties,
+      @Qualifier(ProvisionerConstants.EXECUTOR_NAME) final ExecutorService executor) {
     this.identityListener = identityListener;
     this.applicationCallContextProvider = applicationCallContextProvider;
     this.hashGenerator = hashGenerator;
     this.logger = logger;
     this.systemProperties = systemProperties;
+    this.applicationPermittablesCache = applicationPermittablesCache;
+    this.identityArtifactRepository = identityArtifactRepository;
+    this.provisionerProperties = provisionerProperties;
+    this.executor = executor;
   }
 
   public IdentityServiceInitializationResult initializeIsis(
@@ -126,6 +172,8 @@ public class IdentityServiceInitializer {
       final String encodedPasswordHash = Base64Utils.encodeToString(hash);
 
       final ApplicationSignatureSet signatureSet = identityService.initialize(encodedPasswordHash);
+      //A newly initialized identity service may have lost what was posted to it before.
+      identityArtifactRepository.forgetAll(tenantIdentifier);
       logger.info("Isis initialization for org.apache.fineract.cn.provisioner.tenant '{}' succeeded with signature set '{}'.", tenantIdentifier, signatureSet);
 
       return new IdentityServiceInitializationResult(signatureSet, encodedPasswordHash);
@@ -140,14 +188,15 @@ public class IdentityServiceInitializer {
     }
   }
 
-  public List<EventExpectation> postApplicationPermittableGroups(
+  public List<PermittableGroupPosting> postApplicationPermittableGroups(
           final @Nonnull String tenantIdentifier,
           final @Nonnull String identityManagerApplicationName,
           final @Nonnull String identityManagerApplicationUri,
+          final @Nonnull String applicationName,
           final @Nonnull String applicationUri) {
-    final List<PermittableEndpoint> permittables;
+    final List<PermittableGroup> permittableGroups;
     try (final AutoCloseable ignored = applicationCallContextProvider.getApplicationCallGuestContext(tenantIdentifier)) {
-      permittables = getPermittables(applicationUri);
+      permittableGroups = getCachedPermittableGroups(applicationName, applicationUri);
     } catch (final Exception e) {
       throw new IllegalStateException(e);
     }
@@ -156,12 +205,34 @@ public class IdentityServiceInitializer {
                  = applicationCallContextProvider.getApplicationCallContext(tenantIdentifier, identityManagerApplicationName)) {
       final IdentityManager identityService = applicationCallContextProvider.getApplication(IdentityManager.class, identityManagerApplicationUri);
 
-      final Stream<PermittableGroup> permittableGroups = getPermittableGroups(permittables);
-      //You might look at this and wonder: "Why isn't she returning a stream here? She's just turning it back into
-      //a stream on the other side..."
-      //The answer is that you need the createOrFindPermittableGroup to be executed in the proper tenant context. If you
-      //return the stream, the call to createOrFindPermittableGroup will be executed when the stream is iterated over.
-      return permittableGroups.map(x -> createOrFindPermittableGroup(identityService, x)).collect(Collectors.toList());
+      //The groups are posted concurrently on the shared executor, each in the tenant, user and trace context of this
+      //thread, and at most identity.concurrency at a time per identity instance.  All of them are posted before this
+      //returns, so that identity still knows of them before resource initialization begins.
+      final Map<String, String> postedHashes = identityArtifactRepository.findHashes(tenantIdentifier);
+      final Semaphore permits = identityPermits.computeIfAbsent(identityManagerApplicationUri,
+              uri -> new Semaphore(provisionerProperties.getIdentity().getConcurrency()));
+      final List<CompletableFuture<PermittableGroupPosting>> postings = new ArrayList<>();
+      for (final PermittableGroup permittableGroup : permittableGroups) {
+        final String artifactKey = IdentityArtifactDigest.permittableGroupKey(permittableGroup);
+        final String contentHash = IdentityArtifactDigest.permittableGroupHash(permittableGroup);
+        if (isInPlace(postedHashes, artifactKey, contentHash)) {
+          continue;
+        }
+
+        permits.acquire();
+        try {
+          postings.add(CompletableFuture.supplyAsync(applicationCallContextProvider.propagateCallContext(
+                  () -> createOrFindPermittableGroup(identityService, permittableGroup,
+                          () -> rememberInPlace(tenantIdentifier, artifactKey, contentHash))), executor)
+                  .whenComplete((ignoredResult, ignoredFailure) -> permits.release()));
+        } catch (final RejectedExecutionException e) {
+          permits.release();
+          throw e;
+        }
+      }
+
+      CompletableFutures.join(CompletableFutures.allOf(postings));
+      return postings.stream().map(CompletableFuture::join).collect(Collectors.toList());
     } catch (final Exception e) {
       throw new IllegalStateException(e);
     }
@@ -174,10 +245,10 @@ public class IdentityServiceInitializer {
           final @Nonnull String applicationName,
           final @Nonnull String applicationUri,
           final @Nonnull ApplicationSignatureSet applicationSignatureSet) {
-    final List<ApplicationPermission> applicationPermissionRequirements;
+    final ApplicationPermittablesCache.PermissionRequirements applicationPermissionRequirements;
     try (final AutoCloseable ignored = applicationCallContextProvider.getApplicationCallGuestContext(tenantIdentifier)) {
-      applicationPermissionRequirements = getApplicationPermissionRequirements(applicationName, applicationUri);
-      logger.info("Application permission requirements for {} contain {}.", applicationName, applicationPermissionRequirements);
+      applicationPermissionRequirements = getCachedPermissionRequirements(applicationName, applicationUri);
+      logger.info("Application permission requirements for {} contain {}.", applicationName, applicationPermissionRequirements.getPermissions());
 
     } catch (final Exception e) {
       throw new IllegalStateException(e);
@@ -190,13 +261,22 @@ public class IdentityServiceInitializer {
       final EventExpectation eventExpectation = identityListener.expectApplicationSignatureSet(tenantIdentifier, applicationName, applicationSignatureSet.getTimestamp());
       identityService.setApplicationSignature(applicationName, applicationSignatureSet.getTimestamp(), applicationSignatureSet.getApplicationSignature());
       if (!eventExpectation.waitForOccurrence(5, TimeUnit.SECONDS)) {
+        identityListener.withdrawExpectation(eventExpectation);
         logger.warn("Expected action in identity didn't complete {}.", eventExpectation);
       }
 
-      applicationPermissionRequirements.forEach(x -> createOrFindApplicationPermission(identityService, applicationName, x));
-
-      final Stream<CallEndpointSet> callEndpoints = getCallEndpointSets(applicationPermissionRequirements);
-      callEndpoints.forEach(x -> createOrFindApplicationCallEndpointSet(identityService, applicationName, x));
+      //Identity creates permissions and call endpoint sets asynchronously, without an event provisioning waits for.
+      //So they are only remembered once a later run finds them in place, see createOrFindApplicationPermission.
+      final Map<String, String> postedHashes = identityArtifactRepository.findHashes(tenantIdentifier);
+      applicationPermissionRequirements.getPermissions().stream().map(ApplicationPermission::getPermission)
+              .filter(x -> !isInPlace(postedHashes, IdentityArtifactDigest.applicationPermissionKey(applicationName, x), IdentityArtifactDigest.applicationPermissionHash(x)))
+              .forEach(x -> createOrFindApplicationPermission(identityService, applicationName, x,
+                      () -> rememberInPlace(tenantIdentifier, IdentityArtifactDigest.applicationPermissionKey(applicationName, x), IdentityArtifactDigest.applicationPermissionHash(x))));
+
+      applicationPermissionRequirements.getCallEndpointSets().stream()
+              .filter(x -> !isInPlace(postedHashes, IdentityArtifactDigest.callEndpointSetKey(applicationName, x), IdentityArtifactDigest.callEndpointSetHash(x)))
+              .forEach(x -> createOrFindApplicationCallEndpointSet(identityService, applicationName, x,
+                      () -> rememberInPlace(tenantIdentifier, IdentityArtifactDigest.callEndpointSetKey(applicationName, x), IdentityArtifactDigest.callEndpointSetHash(x))));
     } catch (final Exception e) {
       throw new IllegalStateException(e);
     }
@@ -205,8 +285,7 @@ public class IdentityServiceInitializer {
   List<PermittableEndpoint> getPermittables(final @Nonnull String applicationUri)
   {
     try {
-      final Anubis anubis = this.applicationCallContextProvider.getApplication(Anubis.class, applicationUri);
-      return anubis.getPermittableEndpoints();
+      return fetchPermittables(applicationUri);
     }
     catch (final RuntimeException unexpected)
     {
@@ -215,21 +294,52 @@ public class IdentityServiceInitializer {
     }
   }
 
-  private List<ApplicationPermission> getApplicationPermissionRequirements(final @Nonnull String applicationName,
-                                                                           final @Nonnull String applicationUri)
+  private List<PermittableGroup> getCachedPermittableGroups(final @Nonnull String applicationName,
+                                                            final @Nonnull String applicationUri)
   {
+    //Failures are not cached, so that the next tenant asks the application again.
     try {
-      final ApplicationPermissionRequirements anput
-              = this.applicationCallContextProvider.getApplication(ApplicationPermissionRequirements.class, applicationUri);
-      return anput.getRequiredPermissions();
+      return applicationPermittablesCache.getPermittableGroups(applicationName, applicationUri,
+              () -> getPermittableGroups(fetchPermittables(applicationUri)).collect(Collectors.toList()));
     }
     catch (final RuntimeException unexpected)
     {
-      logger.info("Get Required Permissions from application '{}' failed.", applicationName);
+      logger.error("Request for permittable endpoints to '{}' failed.", applicationUri, unexpected);
       return Collections.emptyList();
     }
   }
 
+  private ApplicationPermittablesCache.PermissionRequirements getCachedPermissionRequirements(
+          final @Nonnull String applicationName,
+          final @Nonnull String applicationUri)
+  {
+    try {
+      return applicationPermittablesCache.getPermissionRequirements(applicationName, applicationUri, () -> {
+        final List<ApplicationPermission> permissions = fetchApplicationPermissionRequirements(applicationUri);
+        return new ApplicationPermittablesCache.PermissionRequirements(
+                permissions, getCallEndpointSets(permissions).collect(Collectors.toList()));
+      });
+    }
+    catch (final RuntimeException unexpected)
+    {
+      logger.info("Get Required Permissions from application '{}' failed.", applicationName);
+      return new ApplicationPermittablesCache.PermissionRequirements(Collections.emptyList(), Collections.emptyList());
+    }
+  }
+
+  private List<PermittableEndpoint> fetchPermittables(final @Nonnull String applicationUri)
+  {
+    final Anubis anubis = this.applicationCallContextProvider.getApplication(Anubis.class, applicationUri);
+    return anubis.getPermittableEndpoints();
+  }
+
+  private List<ApplicationPermission> fetchApplicationPermissionRequirements(final @Nonnull String applicationUri)
+  {
+    final ApplicationPermissionRequirements anput
+            = this.applicationCallContextProvider.getApplication(ApplicationPermissionRequirements.class, applicationUri);
+    return anput.getRequiredPermissions();
+  }
+
   static Stream<PermittableGroup> getPermittableGroups(final @Nonnull List<PermittableEndpoint> permittables)
   {
     final Map<String, Set<PermittableEndpoint>> groupedPermittables = new HashMap<>();
@@ -255,13 +365,48 @@ public class IdentityServiceInitializer {
     });
   }
 
+  private boolean isInPlace(
+          final @Nonnull Map<String, String> postedHashes,
+          final @Nonnull String artifactKey,
+          final @Nonnull String contentHash) {
+    //Unchanged artifacts were already posted successfully, so neither post nor read them again.
+    final boolean inPlace = contentHash.equals(postedHashes.get(artifactKey));
+    if (inPlace) {
+      logger.debug("Identity artifact '{}' is unchanged, skipping it.", artifactKey);
+    }
+    return inPlace;
+  }
+
+  private void rememberInPlace(
+          final @Nonnull String tenantIdentifier,
+          final @Nonnull String artifactKey,
+          final @Nonnull String contentHash) {
+    try {
+      identityArtifactRepository.rememberHash(tenantIdentifier, artifactKey, contentHash);
+    }
+    catch (final RuntimeException unexpected)
+    {
+      //Only costs a repeated post on the next run.
+      logger.warn("Remembering identity artifact '{}' for tenant {} failed.", artifactKey, tenantIdentifier, unexpected);
+    }
+  }
+
   EventExpectation createOrFindPermittableGroup(
           final @Nonnull IdentityManager identityService,
           final @Nonnull PermittableGroup permittableGroup) {
+    return createOrFindPermittableGroup(identityService, permittableGroup, () -> {}).getEventExpectation();
+  }
+
+  private PermittableGroupPosting createOrFindPermittableGroup(
+          final @Nonnull IdentityManager identityService,
+          final @Nonnull PermittableGroup permittableGroup,
+          final @Nonnull Runnable whenInPlace) {
     final EventExpectation eventExpectation = identityListener.expectPermittableGroupCreation(TenantContextHolder.checkedGetIdentifier(), permittableGroup.getIdentifier());
     try {
       identityService.createPermittableGroup(permittableGroup);
       logger.info("Group '{}' creation successfully requested in identity service for tenant {}.", permittableGroup.getIdentifier(), TenantContextHolder.checkedGetIdentifier());
+      //Only requested so far: the group is remembered once its creation event arrives.
+      return new PermittableGroupPosting(eventExpectation, whenInPlace);
     }
     catch (final PermittableGroupAlreadyExistsException groupAlreadyExistsException)
     {
@@ -281,50 +426,58 @@ public class IdentityServiceInitializer {
             permittableGroup.getIdentifier(), TenantContextHolder.checkedGetIdentifier(),
             newGroupPermittables, existingGroupPermittables);
       }
+      else {
+        whenInPlace.run();
+      }
     }
     catch (final RuntimeException unexpected)
     {
       identityListener.withdrawExpectation(eventExpectation);
       logger.error("Creating group '{}' for tenant {} failed.", permittableGroup.getIdentifier(), TenantContextHolder.checkedGetIdentifier(), unexpected);
     }
-    return eventExpectation;
+    return new PermittableGroupPosting(eventExpectation, () -> {});
   }
 
   private void createOrFindApplicationPermission(
           final @Nonnull IdentityManager identityService,
           final @Nonnull String applicationName,
-          final @Nonnull ApplicationPermission applicationPermission) {
+          final @Nonnull Permission permission,
+          final @Nonnull Runnable whenInPlace) {
     try {
-      identityService.createApplicationPermission(applicationName, applicationPermission.getPermission());
+      identityService.createApplicationPermission(applicationName, permission);
       logger.info("Application permission '{}.{}' created.",
-              applicationName, applicationPermission.getPermission().getPermittableEndpointGroupIdentifier());
+              applicationName, permission.getPermittableEndpointGroupIdentifier());
     }
     catch (final ApplicationPermissionAlreadyExistsException alreadyExistsException)
     {
       //if exists, read out and compare.  If is the same, there is nothing left to do.
       final Permission existing = identityService.getApplicationPermission(
-              applicationName, applicationPermission.getPermission().getPermittableEndpointGroupIdentifier());
-      if (!existing.getPermittableEndpointGroupIdentifier().equals(applicationPermission.getPermission().getPermittableEndpointGroupIdentifier())) {
+              applicationName, permission.getPermittableEndpointGroupIdentifier());
+      if (!existing.getPermittableEndpointGroupIdentifier().equals(permission.getPermittableEndpointGroupIdentifier())) {
         logger.error("Application permission '{}' already exists, but has a different name {} (strange).",
-                applicationPermission.getPermission().getPermittableEndpointGroupIdentifier(), existing.getPermittableEndpointGroupIdentifier());
+                permission.getPermittableEndpointGroupIdentifier(), existing.getPermittableEndpointGroupIdentifier());
       }
 
       final Set<AllowedOperation> existingAllowedOperations = existing.getAllowedOperations();
-      final Set<AllowedOperation> newAllowedOperations = applicationPermission.getPermission().getAllowedOperations();
+      final Set<AllowedOperation> newAllowedOperations = permission.getAllowedOperations();
       if (!existingAllowedOperations.equals(newAllowedOperations)) {
-        logger.error("Permission '{}' already exists, but has different contents.", applicationPermission.getPermission().getPermittableEndpointGroupIdentifier());
+        logger.error("Permission '{}' already exists, but has different contents.", permission.getPermittableEndpointGroupIdentifier());
+      }
+      else {
+        whenInPlace.run();
       }
     }
     catch (final RuntimeException unexpected)
     {
-      logger.error("Creating permission '{}' failed.", applicationPermission.getPermission().getPermittableEndpointGroupIdentifier(), unexpected);
+      logger.error("Creating permission '{}' failed.", permission.getPermittableEndpointGroupIdentifier(), unexpected);
     }
   }
 
   private void createOrFindApplicationCallEndpointSet(
           final @Nonnull IdentityManager identityService,
           final @Nonnull String applicationName,
-          final @Nonnull CallEndpointSet callEndpointSet) {
+          final @Nonnull CallEndpointSet callEndpointSet,
+          final @Nonnull Runnable whenInPlace) {
     try {
       identityService.createApplicationCallEndpointSet(applicationName, callEndpointSet);
     }
@@ -344,6 +497,9 @@ public class IdentityServiceInitializer {
       if (!existingPermittableEndpoints.equals(newPermittableEndpoints)) {
         logger.error("Application call endpoint set '{}' already exists, but has different contents.", callEndpointSet.getIdentifier());
       }
+      else {
+        whenInPlace.run();
+      }
     }
     catch (final RuntimeException unexpected)
     {
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+public class CompletableFutures {
+
+  private CompletableFutures() {
+    super();
+  }
+
+  /**
+   * Unlike {@link CompletableFuture#allOf}, the returned future reports every failure: it completes exceptionally
+   * with the first failure, and all further failures attached as suppressed exceptions.
+   */
+  public static CompletableFuture<Void> allOf(final Collection<? extends CompletableFuture<?>> futures) {
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+        .handle((ignored, ignoredFailure) -> {
+          final List<Throwable> failures = new ArrayList<>();
+          futures.forEach(future -> future.handle((result, failure) -> {
+            if (failure != null) {
+              failures.add(unwrap(failure));
+            }
+            return null;
+          }).join());
+
+          if (failures.isEmpty()) {
+            return null;
+          }
+          final Throwable firstFailure = failures.get(0);
+          failures.stream().skip(1).filter(x -> x != firstFailure).forEach(firstFailure::addSuppressed);
+          throw new CompletionException(firstFailure);
+        });
+  }
+
+  /**
+   * Runs the action for every item, with at most {@code laneCount} actions in flight.  Items are dealt round robin
+   * to the lanes, and each action is chained behind the previous one of its lane instead of blocking a thread.  A
+   * failed action doesn't stop the actions queued behind it.
+   *
+   * @return the futures of the actions, in the order of the items.
+   */
+  public static <T, R> List<CompletableFuture<R>> inLanes(final List<T> items,
+                                                          final int laneCount,
+                                                          final Function<T, CompletableFuture<R>> action) {
+    final List<CompletableFuture<?>> lanes = new ArrayList<>(Collections.nCopies(
+        Math.max(1, Math.min(laneCount, items.size())), CompletableFuture.completedFuture(null)));
+    final List<CompletableFuture<R>> results = new ArrayList<>(items.size());
+    for (int i = 0; i < items.size(); i++) {
+      final T item = items.get(i);
+      final int lane = i % lanes.size();
+      final CompletableFuture<R> result = lanes.get(lane)
+          .handle((ignored, failure) -> (Void) null)
+          .thenCompose(ignored -> action.apply(item));
+      lanes.set(lane, result);
+      results.add(result);
+    }
+    return results;
+  }
+
+  /**
+   * Waits for the future, and rethrows a runtime exception it failed with as is, so that for example a
+   * {@link org.apache.fineract.cn.lang.ServiceException} still reaches the caller unwrapped.
+   */
+  public static <T> T join(final CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (final CompletionException ex) {
+      final Throwable cause = unwrap(ex);
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * @return the failure an action actually threw, without the wrappers added by the futures it passed through.
+   */
+  public static Throwable unwrap(final Throwable failure) {
+    Throwable cause = failure;
+    while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    return cause;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers keys which were looked up and not found, for a limited time.  The number of remembered keys
+ * is bounded, so that a flood of bogus lookups cannot exhaust memory.
+ */
+public class NegativeCache {
+  private final Map<String, Long> expirations = new ConcurrentHashMap<>();
+  private final long ttlNanos;
+  private final int maximumSize;
+  private final LongSupplier clock;
+
+  public NegativeCache(final long ttl, final TimeUnit timeUnit, final int maximumSize) {
+    this(ttl, timeUnit, maximumSize, System::nanoTime);
+  }
+
+  NegativeCache(final long ttl, final TimeUnit timeUnit, final int maximumSize, final LongSupplier clock) {
+    super();
+    this.ttlNanos = timeUnit.toNanos(ttl);
+    this.maximumSize = maximumSize;
+    this.clock = clock;
+  }
+
+  public boolean isKnownMissing(final String key) {
+    final Long expiration = this.expirations.get(key);
+    if (expiration == null) {
+      return false;
+    }
+    if (expiration - this.clock.getAsLong() > 0) {
+      return true;
+    }
+    this.expirations.remove(key, expiration);
+    return false;
+  }
+
+  public void rememberMissing(final String key) {
+    if (this.ttlNanos <= 0) {
+      return;
+    }
+    if (this.expirations.size() >= this.maximumSize) {
+      this.purgeExpired();
+      if (this.expirations.size() >= this.maximumSize) {
+        return;
+      }
+    }
+    this.expirations.put(key, this.clock.getAsLong() + this.ttlNanos);
+  }
+
+  public void forget(final String key) {
+    this.expirations.remove(key);
+  }
+
+  public void clear() {
+    this.expirations.clear();
+  }
+
+  int size() {
+    return this.expirations.size();
+  }
+
+  private void purgeExpired() {
+    final long now = this.clock.getAsLong();
+    this.expirations.entrySet().removeIf(entry -> entry.getValue() - now <= 0);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.LongConsumer;
+
+/**
+ * Streams the output of one process into the input of another, like a shell pipe, but counting the bytes on
+ * the way.  Nothing is buffered beyond one chunk, so arbitrarily large dumps pass through in constant memory.
+ */
+public class ProcessPipe {
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private ProcessPipe() {
+    super();
+  }
+
+  /**
+   * @param progress is called with the number of bytes of each chunk passed on.
+   * @return the number of bytes passed from source to sink.
+   * @throws IllegalStateException if either process exits with a non-zero status.
+   */
+  public static long run(final ProcessBuilder source, final ProcessBuilder sink, final LongConsumer progress)
+      throws IOException, InterruptedException {
+    final Process sinkProcess = sink.redirectInput(ProcessBuilder.Redirect.PIPE).start();
+    final Process sourceProcess;
+    try {
+      sourceProcess = source.redirectOutput(ProcessBuilder.Redirect.PIPE).start();
+    } catch (final IOException ex) {
+      sinkProcess.destroy();
+      throw ex;
+    }
+
+    long total = 0L;
+    try (
+        final InputStream in = sourceProcess.getInputStream();
+        final OutputStream out = sinkProcess.getOutputStream()
+    ) {
+      final byte[] chunk = new byte[CHUNK_SIZE];
+      int read;
+      while ((read = in.read(chunk)) != -1) {
+        out.write(chunk, 0, read);
+        total += read;
+        progress.accept(read);
+      }
+    } catch (final IOException ex) {
+      //Typically the sink died, in which case its exit status below explains more than the broken pipe.
+      sourceProcess.destroy();
+    }
+
+    final int sourceStatus = sourceProcess.waitFor();
+    final int sinkStatus = sinkProcess.waitFor();
+    if (sinkStatus != 0) {
+      throw new IllegalStateException(sink.command().get(0) + " exited with status " + sinkStatus + ".");
+    }
+    if (sourceStatus != 0) {
+      throw new IllegalStateException(source.command().get(0) + " exited with status " + sourceStatus + ".");
+    }
+    return total;
+  }
+}
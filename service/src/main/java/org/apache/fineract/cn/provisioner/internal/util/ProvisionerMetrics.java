@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A small in-process registry of counters, timers and gauges, rendered in the Prometheus text exposition format.
+ * Tags are given as alternating key and value strings.  Timer maxima are kept since the start of the process.
+ */
+public class ProvisionerMetrics {
+
+  public interface Timing extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static final class MeterId implements Comparable<MeterId> {
+    private final String name;
+    private final SortedMap<String, String> tags;
+
+    private MeterId(final String name, final String... tags) {
+      if (tags.length % 2 != 0) {
+        throw new IllegalArgumentException("Tags must be given as key value pairs: " + Arrays.toString(tags));
+      }
+      this.name = name;
+      final SortedMap<String, String> sortedTags = new TreeMap<>();
+      for (int i = 0; i < tags.length; i += 2) {
+        sortedTags.put(tags[i], tags[i + 1] == null ? "" : tags[i + 1]);
+      }
+      this.tags = Collections.unmodifiableSortedMap(sortedTags);
+    }
+
+    private String labels() {
+      if (this.tags.isEmpty()) {
+        return "";
+      }
+      final StringBuilder labels = new StringBuilder("{");
+      this.tags.forEach((key, value) -> {
+        if (labels.length() > 1) {
+          labels.append(',');
+        }
+        labels.append(key).append("=\"").append(escape(value)).append('"');
+      });
+      return labels.append('}').toString();
+    }
+
+    @Override
+    public int compareTo(final MeterId other) {
+      final int byName = this.name.compareTo(other.name);
+      return byName != 0 ? byName : this.labels().compareTo(other.labels());
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      final MeterId that = (MeterId) o;
+      return Objects.equals(name, that.name) &&
+          Objects.equals(tags, that.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(name, tags);
+    }
+  }
+
+  private static final class Timer {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    private void record(final long nanos) {
+      this.count.increment();
+      this.totalNanos.add(nanos);
+      this.maxNanos.accumulate(nanos);
+    }
+  }
+
+  private final Map<MeterId, LongAdder> counters = new ConcurrentHashMap<>();
+  private final Map<MeterId, Timer> timers = new ConcurrentHashMap<>();
+  private final Map<MeterId, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+  private final Map<MeterId, Supplier<? extends Map<String, ? extends Number>>> gaugeFamilies = new ConcurrentHashMap<>();
+  private final LongSupplier nanoClock;
+
+  public ProvisionerMetrics() {
+    this(System::nanoTime);
+  }
+
+  ProvisionerMetrics(final LongSupplier nanoClock) {
+    super();
+    this.nanoClock = nanoClock;
+  }
+
+  public void increment(final String name, final String... tags) {
+    this.increment(name, 1L, tags);
+  }
+
+  public void increment(final String name, final long amount, final String... tags) {
+    this.counters.computeIfAbsent(new MeterId(name, tags), id -> new LongAdder()).add(amount);
+  }
+
+  public void record(final String name, final long nanos, final String... tags) {
+    this.timers.computeIfAbsent(new MeterId(name, tags), id -> new Timer()).record(nanos);
+  }
+
+  public Timing start(final String name, final String... tags) {
+    final long start = this.nanoClock.getAsLong();
+    return () -> this.record(name, this.nanoClock.getAsLong() - start, tags);
+  }
+
+  /**
+   * Times the action, tagged with an additional outcome of either success or failure.
+   */
+  public <T> T timed(final String name, final Supplier<T> action, final String... tags) {
+    final long start = this.nanoClock.getAsLong();
+    String outcome = "failure";
+    try {
+      final T result = action.get();
+      outcome = "success";
+      return result;
+    } finally {
+      this.record(name, this.nanoClock.getAsLong() - start, withTag(tags, "outcome", outcome));
+    }
+  }
+
+  public void timed(final String name, final Runnable action, final String... tags) {
+    this.timed(name, () -> {
+      action.run();
+      return null;
+    }, tags);
+  }
+
+  public void gauge(final String name, final Supplier<? extends Number> value, final String... tags) {
+    this.gauges.put(new MeterId(name, tags), value);
+  }
+
+  /**
+   * Registers a gauge per key of the supplied map, for example one per tenant.  The map is read on every scrape, so
+   * keys which disappear from the map disappear from the output.
+   */
+  public void gauges(final String name, final String tagName, final Supplier<? extends Map<String, ? extends Number>> values) {
+    this.gaugeFamilies.put(new MeterId(name, tagName, ""), values);
+  }
+
+  public String scrape() {
+    final StringBuilder output = new StringBuilder();
+
+    final SortedMap<MeterId, Long> counterValues = new TreeMap<>();
+    this.counters.forEach((id, counter) -> counterValues.put(id, counter.sum()));
+    String family = null;
+    for (final Map.Entry<MeterId, Long> counter : counterValues.entrySet()) {
+      family = writeType(output, family, counter.getKey().name + "_total", "counter");
+      output.append(counter.getKey().name).append("_total").append(counter.getKey().labels())
+          .append(' ').append(counter.getValue()).append('\n');
+    }
+
+    final SortedMap<MeterId, Timer> timerValues = new TreeMap<>(this.timers);
+    family = null;
+    for (final Map.Entry<MeterId, Timer> timer : timerValues.entrySet()) {
+      final String name = timer.getKey().name + "_seconds";
+      final String labels = timer.getKey().labels();
+      family = writeType(output, family, name, "summary");
+      output.append(name).append("_count").append(labels).append(' ').append(timer.getValue().count.sum()).append('\n');
+      output.append(name).append("_sum").append(labels).append(' ').append(seconds(timer.getValue().totalNanos.sum())).append('\n');
+    }
+    family = null;
+    for (final Map.Entry<MeterId, Timer> timer : timerValues.entrySet()) {
+      final String name = timer.getKey().name + "_seconds_max";
+      family = writeType(output, family, name, "gauge");
+      output.append(name).append(timer.getKey().labels()).append(' ').append(seconds(timer.getValue().maxNanos.get())).append('\n');
+    }
+
+    final SortedMap<MeterId, Number> gaugeValues = new TreeMap<>();
+    this.gauges.forEach((id, value) -> {
+      final Number currentValue = safeGet(value);
+      if (currentValue != null) {
+        gaugeValues.put(id, currentValue);
+      }
+    });
+    this.gaugeFamilies.forEach((id, values) -> {
+      final String tagName = id.tags.firstKey();
+      final Map<String, ? extends Number> currentValues = safeGet(values);
+      if (currentValues != null) {
+        currentValues.forEach((tagValue, value) ->
+            gaugeValues.put(new MeterId(id.name, tagName, tagValue), value));
+      }
+    });
+    family = null;
+    for (final Map.Entry<MeterId, Number> gauge : gaugeValues.entrySet()) {
+      family = writeType(output, family, gauge.getKey().name, "gauge");
+      output.append(gauge.getKey().name).append(gauge.getKey().labels()).append(' ').append(gauge.getValue()).append('\n');
+    }
+
+    return output.toString();
+  }
+
+  private static String writeType(final StringBuilder output, final String currentFamily, final String family, final String type) {
+    if (!family.equals(currentFamily)) {
+      output.append("# TYPE ").append(family).append(' ').append(type).append('\n');
+    }
+    return family;
+  }
+
+  private static <T> T safeGet(final Supplier<T> supplier) {
+    try {
+      return supplier.get();
+    } catch (final RuntimeException ignored) {
+      //A broken gauge must not break the scrape of all other meters.
+      return null;
+    }
+  }
+
+  private static double seconds(final long nanos) {
+    return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+  }
+
+  private static String[] withTag(final String[] tags, final String key, final String value) {
+    final String[] extendedTags = Arrays.copyOf(tags, tags.length + 2);
+    extendedTags[tags.length] = key;
+    extendedTags[tags.length + 1] = value;
+    return extendedTags;
+  }
+
+  private static String escape(final String labelValue) {
+    return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
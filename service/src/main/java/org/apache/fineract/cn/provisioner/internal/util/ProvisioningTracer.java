@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+import org.slf4j.MDC;
+
+/**
+ * Records spans for the phases of a provisioning operation, and keeps the most recent traces of the most recently
+ * traced tenants in a bounded in-memory buffer.  The active trace is bound to the thread which started it, and its identifier is put in
+ * the logging context, so that log lines of outbound calls can be correlated with the trace.
+ */
+public class ProvisioningTracer {
+
+  public static final String TRACE_IDENTIFIER_MDC_KEY = "traceId";
+
+  public interface Scope extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static final Scope NO_OP = () -> { };
+
+  public static class SpanRecord {
+    private final String name;
+    private final Map<String, String> attributes;
+    private final long startOffsetNanos;
+    private final long durationNanos;
+
+    private SpanRecord(final String name, final Map<String, String> attributes,
+                       final long startOffsetNanos, final long durationNanos) {
+      this.name = name;
+      this.attributes = attributes;
+      this.startOffsetNanos = startOffsetNanos;
+      this.durationNanos = durationNanos;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Map<String, String> getAttributes() {
+      return attributes;
+    }
+
+    public long getStartOffsetNanos() {
+      return startOffsetNanos;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+  }
+
+  public static class TraceRecord {
+    private final String identifier;
+    private final String tenantIdentifier;
+    private final String operation;
+    private final long startedOnMillis;
+    private final long startNanos;
+    private final List<SpanRecord> spans = Collections.synchronizedList(new ArrayList<>());
+    private volatile long durationNanos;
+
+    private TraceRecord(final String tenantIdentifier, final String operation) {
+      this.identifier = UUID.randomUUID().toString();
+      this.tenantIdentifier = tenantIdentifier;
+      this.operation = operation;
+      this.startedOnMillis = System.currentTimeMillis();
+      this.startNanos = System.nanoTime();
+    }
+
+    public String getIdentifier() {
+      return identifier;
+    }
+
+    public String getTenantIdentifier() {
+      return tenantIdentifier;
+    }
+
+    public String getOperation() {
+      return operation;
+    }
+
+    public long getStartedOnMillis() {
+      return startedOnMillis;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    public List<SpanRecord> getSpans() {
+      synchronized (this.spans) {
+        return new ArrayList<>(this.spans);
+      }
+    }
+  }
+
+  private final ThreadLocal<TraceRecord> activeTrace = new ThreadLocal<>();
+  private final Map<String, Deque<TraceRecord>> tracesByTenant;
+  private final int capacityPerTenant;
+
+  public ProvisioningTracer(final int capacityPerTenant, final int tenantCapacity) {
+    super();
+    this.capacityPerTenant = capacityPerTenant;
+    //Access ordered, so that the tenant whose traces were neither recorded nor read for the longest time goes first.
+    this.tracesByTenant = new LinkedHashMap<String, Deque<TraceRecord>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, Deque<TraceRecord>> eldest) {
+        return this.size() > tenantCapacity;
+      }
+    };
+  }
+
+  /**
+   * Starts a trace on the current thread.  If a trace is already active, its spans simply continue in that trace.
+   */
+  public Scope startTrace(final String tenantIdentifier, final String operation) {
+    if (this.activeTrace.get() != null) {
+      return NO_OP;
+    }
+
+    final TraceRecord traceRecord = new TraceRecord(tenantIdentifier, operation);
+    this.activeTrace.set(traceRecord);
+    MDC.put(TRACE_IDENTIFIER_MDC_KEY, traceRecord.identifier);
+    return () -> {
+      traceRecord.durationNanos = System.nanoTime() - traceRecord.startNanos;
+      this.activeTrace.remove();
+      MDC.remove(TRACE_IDENTIFIER_MDC_KEY);
+      this.store(traceRecord);
+    };
+  }
+
+  /**
+   * Starts a span in the trace active on the current thread.  Does nothing if no trace is active.
+   */
+  public Scope startSpan(final String name, final String... attributes) {
+    final TraceRecord traceRecord = this.activeTrace.get();
+    if (traceRecord == null) {
+      return NO_OP;
+    }
+
+    final long start = System.nanoTime();
+    return () -> this.addSpan(traceRecord, name, start, System.nanoTime() - start, attributes);
+  }
+
+  public void recordSpan(final String name, final long startNanos, final long durationNanos, final String... attributes) {
+    final TraceRecord traceRecord = this.activeTrace.get();
+    if (traceRecord != null) {
+      this.addSpan(traceRecord, name, startNanos, durationNanos, attributes);
+    }
+  }
+
+  /**
+   * Binds the trace active on the current thread to the thread the returned action runs on, so that work handed
+   * to an executor records its spans in the same trace.
+   */
+  public <T> Supplier<T> propagate(final Supplier<T> action) {
+    final TraceRecord traceRecord = this.activeTrace.get();
+    if (traceRecord == null) {
+      return action;
+    }
+
+    return () -> {
+      final TraceRecord previousTraceRecord = this.activeTrace.get();
+      this.activeTrace.set(traceRecord);
+      MDC.put(TRACE_IDENTIFIER_MDC_KEY, traceRecord.identifier);
+      try {
+        return action.get();
+      } finally {
+        if (previousTraceRecord == null) {
+          this.activeTrace.remove();
+          MDC.remove(TRACE_IDENTIFIER_MDC_KEY);
+        } else {
+          this.activeTrace.set(previousTraceRecord);
+          MDC.put(TRACE_IDENTIFIER_MDC_KEY, previousTraceRecord.identifier);
+        }
+      }
+    };
+  }
+
+  public Optional<String> getActiveTraceIdentifier() {
+    return Optional.ofNullable(this.activeTrace.get()).map(TraceRecord::getIdentifier);
+  }
+
+  /**
+   * @return the completed traces of the tenant, most recent first.
+   */
+  public List<TraceRecord> findTraces(final String tenantIdentifier) {
+    synchronized (this.tracesByTenant) {
+      final Deque<TraceRecord> traces = this.tracesByTenant.get(tenantIdentifier);
+      return traces == null ? Collections.emptyList() : new ArrayList<>(traces);
+    }
+  }
+
+  /**
+   * Drops the traces of a tenant, e.g. because the tenant was deleted.
+   */
+  public void forget(final String tenantIdentifier) {
+    synchronized (this.tracesByTenant) {
+      this.tracesByTenant.remove(tenantIdentifier);
+    }
+  }
+
+  private void addSpan(final TraceRecord traceRecord, final String name,
+                       final long startNanos, final long durationNanos, final String... attributes) {
+    final Map<String, String> attributeMap = new LinkedHashMap<>();
+    for (int i = 0; i + 1 < attributes.length; i += 2) {
+      attributeMap.put(attributes[i], attributes[i + 1]);
+    }
+    traceRecord.spans.add(new SpanRecord(name, Collections.unmodifiableMap(attributeMap),
+        startNanos - traceRecord.startNanos, durationNanos));
+  }
+
+  private void store(final TraceRecord traceRecord) {
+    if (this.capacityPerTenant <= 0) {
+      return;
+    }
+    synchronized (this.tracesByTenant) {
+      final Deque<TraceRecord> traces = this.tracesByTenant
+          .computeIfAbsent(traceRecord.tenantIdentifier, tenant -> new ArrayDeque<>(this.capacityPerTenant));
+      traces.addFirst(traceRecord);
+      while (traces.size() > this.capacityPerTenant) {
+        traces.removeLast();
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Issues and verifies refresh tokens.  A refresh token names the client and user it was issued to, the version
+ * of the user's password it was issued for, and when it expires, and carries an HMAC over these.  Verifying one
+ * therefore costs a single HMAC computation rather than a password hash.  Changing the password changes its
+ * version and so invalidates refresh tokens issued for the old one.
+ */
+public class RefreshTokenSigner {
+
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final String SEPARATOR = ".";
+
+  public static class RefreshToken {
+    private final String clientId;
+    private final String subject;
+    private final long passwordVersion;
+    private final Instant expiration;
+
+    RefreshToken(final String clientId, final String subject, final long passwordVersion, final Instant expiration) {
+      super();
+      this.clientId = clientId;
+      this.subject = subject;
+      this.passwordVersion = passwordVersion;
+      this.expiration = expiration;
+    }
+
+    public String getClientId() {
+      return clientId;
+    }
+
+    public String getSubject() {
+      return subject;
+    }
+
+    public long getPasswordVersion() {
+      return passwordVersion;
+    }
+
+    public Instant getExpiration() {
+      return expiration;
+    }
+  }
+
+  private final SecretKeySpec key;
+  private final Clock clock;
+
+  public RefreshTokenSigner(final byte[] key) {
+    this(key, Clock.systemUTC());
+  }
+
+  RefreshTokenSigner(final byte[] key, final Clock clock) {
+    super();
+    this.key = new SecretKeySpec(key, ALGORITHM);
+    this.clock = clock;
+  }
+
+  public String sign(final String clientId, final String subject, final long passwordVersion, final Instant expiration) {
+    final String payload = encode(clientId) + SEPARATOR + encode(subject) + SEPARATOR
+        + passwordVersion + SEPARATOR + expiration.getEpochSecond();
+    return payload + SEPARATOR + Base64.getUrlEncoder().withoutPadding().encodeToString(mac(payload));
+  }
+
+  /**
+   * @return the contents of the token if its signature is intact and it has not expired, otherwise empty.
+   */
+  public Optional<RefreshToken> verify(final String token) {
+    if (token == null) {
+      return Optional.empty();
+    }
+    final int signatureStart = token.lastIndexOf(SEPARATOR);
+    if (signatureStart < 0) {
+      return Optional.empty();
+    }
+    final String payload = token.substring(0, signatureStart);
+    final String[] parts = payload.split("\\" + SEPARATOR, -1);
+    if (parts.length != 4) {
+      return Optional.empty();
+    }
+
+    try {
+      final byte[] signature = Base64.getUrlDecoder().decode(token.substring(signatureStart + 1));
+      if (!MessageDigest.isEqual(signature, mac(payload))) {
+        return Optional.empty();
+      }
+      final Instant expiration = Instant.ofEpochSecond(Long.parseLong(parts[3]));
+      if (!expiration.isAfter(this.clock.instant())) {
+        return Optional.empty();
+      }
+      return Optional.of(new RefreshToken(decode(parts[0]), decode(parts[1]), Long.parseLong(parts[2]), expiration));
+    } catch (final IllegalArgumentException e) {
+      return Optional.empty();
+    }
+  }
+
+  private byte[] mac(final String payload) {
+    try {
+      final Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(this.key);
+      return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    } catch (final GeneralSecurityException e) {
+      throw new IllegalStateException("Could not sign refresh token!", e);
+    }
+  }
+
+  private static String encode(final String value) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String decode(final String value) {
+    return new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Lets identical provisioning requests share one execution.  A request is identified by its operation and a
+ * fingerprint of its contents.  Requests arriving while an identical request is still executing wait for its
+ * result instead of executing again.  If the request carries an idempotency key, its successful result is also
+ * kept for a limited time, and repeated requests with the same key and contents receive that result.  Without a
+ * key, results are never kept, so that, for example, creating an existing tenant still fails once the first
+ * creation has completed.
+ */
+public class RequestCoalescer {
+
+  private final SingleFlightCache<String, Object> executions;
+  private final boolean retaining;
+  private final ProvisionerMetrics provisionerMetrics;
+
+  public RequestCoalescer(final long ttl, final TimeUnit timeUnit, final int maximumSize,
+                          final ProvisionerMetrics provisionerMetrics) {
+    this(ttl, timeUnit, maximumSize, provisionerMetrics, System::nanoTime);
+  }
+
+  RequestCoalescer(final long ttl, final TimeUnit timeUnit, final int maximumSize,
+                   final ProvisionerMetrics provisionerMetrics, final LongSupplier clock) {
+    super();
+    this.executions = new SingleFlightCache<>(ttl, timeUnit, maximumSize, clock);
+    this.retaining = ttl > 0;
+    this.provisionerMetrics = provisionerMetrics;
+  }
+
+  public static String fingerprint(final String... parts) {
+    try {
+      final MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+      for (final String part : parts) {
+        messageDigest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+        messageDigest.update((byte) 0);
+      }
+      return Base64.getEncoder().encodeToString(messageDigest.digest());
+    } catch (final NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Executes the action in the calling thread, unless an identical request is executing or, given an idempotency
+   * key, has recently completed.  Failures of the action are rethrown as is.
+   */
+  public <T> T execute(final String operation, final String idempotencyKey, final String fingerprint,
+                       final Supplier<T> action) {
+    return CompletableFutures.join(this.executeAsync(operation, idempotencyKey, fingerprint,
+        () -> CompletableFuture.completedFuture(action.get())));
+  }
+
+  /**
+   * Like {@link #execute}, but the result is only shared with identical requests arriving while it executes, and
+   * never kept, whatever the idempotency key.  For results which must not be replayed, such as credentials.
+   */
+  public <T> T executeUnretained(final String operation, final String fingerprint, final Supplier<T> action) {
+    return CompletableFutures.join(this.executeAsync(operation, null, fingerprint,
+        () -> CompletableFuture.completedFuture(action.get())));
+  }
+
+  /**
+   * Like {@link #execute}, for actions which complete later.  An identical request counts as executing until the
+   * future returned by the action completes.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> CompletableFuture<T> executeAsync(final String operation, final String idempotencyKey,
+                                               final String fingerprint,
+                                               final Supplier<CompletableFuture<T>> action) {
+    final boolean retained = this.retaining && idempotencyKey != null && !idempotencyKey.isEmpty();
+    final String key = operation + "/" + (retained ? idempotencyKey : "") + "/" + fingerprint;
+
+    final AtomicBoolean executed = new AtomicBoolean();
+    final CompletableFuture<Object> result = this.executions.getAsync(key, () -> {
+      executed.set(true);
+      return (CompletableFuture<Object>) action.get();
+    }, retained);
+    if (!executed.get()) {
+      this.provisionerMetrics.increment("provisioner_coalesced_requests", "operation", operation,
+          "outcome", result.isDone() ? "replayed" : "joined");
+    }
+    return (CompletableFuture<T>) result;
+  }
+
+  int size() {
+    return this.executions.size();
+  }
+}
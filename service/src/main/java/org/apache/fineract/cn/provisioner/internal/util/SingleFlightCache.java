@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Remembers loaded values for a limited time.  Callers asking for a key while its value is being loaded wait for
+ * that load instead of starting their own.  Failed loads are handed to the callers waiting for them, but are
+ * never remembered, so the next caller loads again.  The number of remembered keys is bounded; once it is
+ * reached, values are loaded without being remembered.
+ */
+public class SingleFlightCache<K, V> {
+  private static final class Entry<V> {
+    private final boolean retained;
+    private final CompletableFuture<V> value = new CompletableFuture<>();
+    private volatile long loadedOn;
+
+    private Entry(final boolean retained) {
+      this.retained = retained;
+    }
+  }
+
+  private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+  private final long ttlNanos;
+  private final int maximumSize;
+  private final LongSupplier clock;
+
+  public SingleFlightCache(final long ttl, final TimeUnit timeUnit, final int maximumSize) {
+    this(ttl, timeUnit, maximumSize, System::nanoTime);
+  }
+
+  SingleFlightCache(final long ttl, final TimeUnit timeUnit, final int maximumSize, final LongSupplier clock) {
+    super();
+    this.ttlNanos = timeUnit.toNanos(ttl);
+    this.maximumSize = maximumSize;
+    this.clock = clock;
+  }
+
+  public V get(final K key, final Supplier<V> loader) {
+    if (this.ttlNanos <= 0) {
+      return loader.get();
+    }
+
+    return CompletableFutures.join(this.getAsync(key, () -> CompletableFuture.completedFuture(loader.get()), true));
+  }
+
+  /**
+   * Like {@link #get}, for loads which complete later.  The key counts as loading until the future returned by the
+   * loader completes.  Unless retained, the value is only handed to the callers asking while it loads, and
+   * forgotten once loaded.  Failures of the loader are passed on through the returned future.
+   */
+  public CompletableFuture<V> getAsync(final K key, final Supplier<CompletableFuture<V>> loader,
+                                       final boolean retained) {
+    while (true) {
+      final Entry<V> existing = this.entries.get(key);
+      if (existing != null && !this.isExpired(existing)) {
+        return existing.value.thenApply(value -> value);
+      }
+
+      if (existing == null && this.entries.size() >= this.maximumSize) {
+        this.purgeExpired();
+        if (this.entries.size() >= this.maximumSize) {
+          return load(loader);
+        }
+      }
+
+      final Entry<V> loading = new Entry<>(retained && this.ttlNanos > 0);
+      final boolean claimed = existing == null
+          ? this.entries.putIfAbsent(key, loading) == null
+          : this.entries.replace(key, existing, loading);
+      if (!claimed) {
+        //Another caller started loading the key first, so wait for that load.
+        continue;
+      }
+
+      load(loader).whenComplete((value, failure) -> {
+        loading.loadedOn = this.clock.getAsLong();
+        if (failure != null || !loading.retained) {
+          this.entries.remove(key, loading);
+        }
+        if (failure != null) {
+          loading.value.completeExceptionally(failure);
+        } else {
+          loading.value.complete(value);
+        }
+      });
+      return loading.value.thenApply(value -> value);
+    }
+  }
+
+  public void invalidate(final Predicate<K> keys) {
+    this.entries.keySet().removeIf(keys);
+  }
+
+  public void clear() {
+    this.entries.clear();
+  }
+
+  int size() {
+    return this.entries.size();
+  }
+
+  private static <V> CompletableFuture<V> load(final Supplier<CompletableFuture<V>> loader) {
+    try {
+      return loader.get();
+    } catch (final RuntimeException | Error ex) {
+      final CompletableFuture<V> failed = new CompletableFuture<>();
+      failed.completeExceptionally(ex);
+      return failed;
+    }
+  }
+
+  private boolean isExpired(final Entry<V> entry) {
+    //A value still being loaded is never expired, so that slow loads aren't started over and over.
+    return entry.value.isDone() && this.clock.getAsLong() - entry.loadedOn >= this.ttlNanos;
+  }
+
+  private void purgeExpired() {
+    this.entries.values().removeIf(this::isExpired);
+  }
+}
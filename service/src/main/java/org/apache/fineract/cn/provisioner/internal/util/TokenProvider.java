@@ -31,14 +31,17 @@ public class TokenProvider {
   private final String keyTimestamp;
   private final PrivateKey privateKey;
   private final SystemAccessTokenSerializer tokenSerializer;
+  private final ProvisionerMetrics provisionerMetrics;
 
   public TokenProvider(
       final String keyTimestamp,
       final BigInteger privateKeyModulus,
       final BigInteger privateKeyExponent,
-      final SystemAccessTokenSerializer tokenSerializer) {
+      final SystemAccessTokenSerializer tokenSerializer,
+      final ProvisionerMetrics provisionerMetrics) {
     super();
     this.tokenSerializer = tokenSerializer;
+    this.provisionerMetrics = provisionerMetrics;
 
     try {
       this.keyTimestamp = keyTimestamp;
@@ -66,6 +69,7 @@ public class TokenProvider {
     specification.setRole(RoleConstants.SYSTEM_ADMIN_ROLE_IDENTIFIER);
     specification.setPrivateKey(privateKey);
 
-    return this.tokenSerializer.build(specification);
+    return this.provisionerMetrics.timed("provisioner_token_signing",
+        () -> this.tokenSerializer.build(specification), "audience", audience);
   }
 }
@@ -22,9 +22,12 @@ import org.apache.fineract.cn.provisioner.api.v1.domain.Application;
 import org.apache.fineract.cn.provisioner.api.v1.domain.AssignedApplication;
 import org.apache.fineract.cn.provisioner.api.v1.domain.AuthenticationResponse;
 import org.apache.fineract.cn.provisioner.api.v1.domain.Client;
+import org.apache.fineract.cn.provisioner.api.v1.domain.DatabaseConnectionInfo;
 import org.apache.fineract.cn.provisioner.api.v1.domain.IdentityManagerInitialization;
 import org.apache.fineract.cn.provisioner.api.v1.domain.PasswordPolicy;
+import org.apache.fineract.cn.provisioner.api.v1.domain.ProvisioningTrace;
 import org.apache.fineract.cn.provisioner.api.v1.domain.Tenant;
+import org.apache.fineract.cn.provisioner.api.v1.domain.TenantDeletion;
 import org.apache.fineract.cn.provisioner.config.ProvisionerConstants;
 import org.apache.fineract.cn.provisioner.internal.repository.ClientEntity;
 import org.apache.fineract.cn.provisioner.internal.repository.TenantApplicationEntity;
@@ -32,10 +35,16 @@ import org.apache.fineract.cn.provisioner.internal.service.ApplicationService;
 import org.apache.fineract.cn.provisioner.internal.service.AuthenticationService;
 import org.apache.fineract.cn.provisioner.internal.service.ClientService;
 import org.apache.fineract.cn.provisioner.internal.service.TenantApplicationService;
+import org.apache.fineract.cn.provisioner.internal.service.TenantDatabaseRelocationService;
 import org.apache.fineract.cn.provisioner.internal.service.TenantService;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
+import org.apache.fineract.cn.provisioner.internal.util.RequestCoalescer;
 import org.apache.fineract.cn.provisioner.rest.mapper.ApplicationMapper;
 import org.apache.fineract.cn.provisioner.rest.mapper.AssignedApplicationMapper;
 import org.apache.fineract.cn.provisioner.rest.mapper.ClientMapper;
+import org.apache.fineract.cn.provisioner.rest.mapper.ProvisioningTraceMapper;
+import com.google.gson.Gson;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -53,6 +62,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -68,23 +78,38 @@ public class ProvisionerRestController {
   private final AuthenticationService authenticationService;
   private final ClientService clientService;
   private final TenantService tenantService;
+  private final TenantDatabaseRelocationService tenantDatabaseRelocationService;
   private final ApplicationService applicationService;
   private final TenantApplicationService tenantApplicationService;
+  private final ProvisionerMetrics provisionerMetrics;
+  private final ProvisioningTracer provisioningTracer;
+  private final RequestCoalescer requestCoalescer;
+  private final Gson gson;
 
   @Autowired
   public ProvisionerRestController(@Qualifier(ProvisionerConstants.LOGGER_NAME) final Logger logger,
                                    final AuthenticationService authenticationService,
                                    final ClientService clientService,
                                    final TenantService tenantService,
+                                   final TenantDatabaseRelocationService tenantDatabaseRelocationService,
                                    final ApplicationService applicationService,
-                                   final TenantApplicationService tenantApplicationService) {
+                                   final TenantApplicationService tenantApplicationService,
+                                   final ProvisionerMetrics provisionerMetrics,
+                                   final ProvisioningTracer provisioningTracer,
+                                   final RequestCoalescer requestCoalescer,
+                                   final Gson gson) {
     super();
     this.logger = logger;
     this.authenticationService = authenticationService;
     this.clientService = clientService;
     this.tenantService = tenantService;
+    this.tenantDatabaseRelocationService = tenantDatabaseRelocationService;
     this.applicationService = applicationService;
     this.tenantApplicationService = tenantApplicationService;
+    this.provisionerMetrics = provisionerMetrics;
+    this.provisioningTracer = provisioningTracer;
+    this.requestCoalescer = requestCoalescer;
+    this.gson = gson;
   }
 
   @Permittable(AcceptedTokenType.GUEST)
@@ -98,14 +123,25 @@ public class ProvisionerRestController {
   @ResponseBody
   ResponseEntity<AuthenticationResponse> authenticate(@RequestParam("grant_type") final String grantType,
                                                       @RequestParam("client_id") final String clientId,
-                                                      @RequestParam("username") final String username,
-                                                      @RequestParam("password") final String password) {
-    if (!grantType.equals("password")) {
-      this.logger.info("Authentication attempt with unknown grant type: " + grantType);
-      throw ServiceException
-          .badRequest("Authentication attempt with unknown grant type: {0}", grantType);
+                                                      @RequestParam(value = "username", required = false) final String username,
+                                                      @RequestParam(value = "password", required = false) final String password,
+                                                      @RequestParam(value = "refresh_token", required = false) final String refreshToken) {
+    switch (grantType) {
+      case "password":
+        if (username == null || password == null) {
+          throw ServiceException.badRequest("Password grant requires username and password.");
+        }
+        return ResponseEntity.ok(this.authenticationService.authenticate(clientId, username, password));
+      case "refresh_token":
+        if (refreshToken == null) {
+          throw ServiceException.badRequest("Refresh token grant requires refresh_token.");
+        }
+        return ResponseEntity.ok(this.authenticationService.refresh(clientId, refreshToken));
+      default:
+        this.logger.info("Authentication attempt with unknown grant type: " + grantType);
+        throw ServiceException
+            .badRequest("Authentication attempt with unknown grant type: {0}", grantType);
     }
-    return ResponseEntity.ok(this.authenticationService.authenticate(clientId, username, password));
   }
 
   @Permittable(AcceptedTokenType.SYSTEM)
@@ -191,8 +227,13 @@ public class ProvisionerRestController {
   )
   public
   @ResponseBody
-  ResponseEntity<Void> createTenant(@RequestBody final Tenant tenant) {
-    this.tenantService.create(tenant);
+  ResponseEntity<Void> createTenant(@RequestHeader(value = ProvisionerConstants.IDEMPOTENCY_KEY_HEADER, required = false) final String idempotencyKey,
+                                    @RequestBody final Tenant tenant) {
+    this.requestCoalescer.execute("create_tenant", idempotencyKey, RequestCoalescer.fingerprint(this.gson.toJson(tenant)),
+        () -> {
+          this.tenantService.create(tenant);
+          return null;
+        });
     return ResponseEntity.accepted().build();
   }
 
@@ -242,6 +283,40 @@ public class ProvisionerRestController {
     return ResponseEntity.accepted().build();
   }
 
+  @Permittable(AcceptedTokenType.SYSTEM)
+  @RequestMapping(
+      value = "/tenants/{tenantidentifier}/database",
+      method = RequestMethod.PUT,
+      consumes = {MediaType.APPLICATION_JSON_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE}
+  )
+  public
+  @ResponseBody
+  ResponseEntity<Void> relocateTenantDatabase(@PathVariable("tenantidentifier") final String tenantIdentifier,
+                                              @RequestBody final DatabaseConnectionInfo databaseConnectionInfo) {
+    this.tenantDatabaseRelocationService.relocate(tenantIdentifier, databaseConnectionInfo)
+        .whenComplete((ignored, failure) -> {
+          if (failure != null) {
+            logger.warn("Relocating database of tenant '{}' failed.", tenantIdentifier, failure);
+          }
+        });
+    return ResponseEntity.accepted().build();
+  }
+
+  @Permittable(AcceptedTokenType.SYSTEM)
+  @RequestMapping(
+      value = "/tenants",
+      method = RequestMethod.DELETE,
+      consumes = {MediaType.ALL_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE}
+  )
+  public
+  @ResponseBody
+  ResponseEntity<List<TenantDeletion>> deleteTenants(@RequestParam("identifier") final List<String> tenantIdentifiers) {
+    //The deletions are finished when this returns, so report the outcome of each one instead of accepting them.
+    return ResponseEntity.ok(this.tenantService.deleteAll(tenantIdentifiers));
+  }
+
   @RequestMapping(
           value = "tenants/{tenantidentifier}/identityservice",
           method = RequestMethod.POST,
@@ -254,10 +329,14 @@ public class ProvisionerRestController {
     logger.info("Assigning identity manager for tenant '{}'.", tenantIdentifier);
     final String identityManagerUri = applicationService.find(assignedApplication.getName()).getHomepage();
 
-    final Optional<String> adminPassword = tenantService.assignIdentityManager(
+    //Gateways repeat this call, and every execution initializes identity anew.  The response carries the admin
+    //password, so it is shared only with repeated calls arriving during the execution, and never replayed later.
+    final Optional<String> adminPassword = requestCoalescer.executeUnretained("assign_identity_manager",
+        RequestCoalescer.fingerprint(tenantIdentifier, gson.toJson(assignedApplication)),
+        () -> tenantService.assignIdentityManager(
             tenantIdentifier,
             assignedApplication.getName(),
-            identityManagerUri);
+            identityManagerUri));
     final IdentityManagerInitialization ret = new IdentityManagerInitialization();
     ret.setAdminPassword(adminPassword.orElse(""));
     return ResponseEntity.ok(ret);
@@ -330,14 +409,23 @@ public class ProvisionerRestController {
   public
   @ResponseBody
   ResponseEntity<Void> assignApplications(@PathVariable("tenantidentifier") final String tenantIdentifier,
+                                          @RequestHeader(value = ProvisionerConstants.IDEMPOTENCY_KEY_HEADER, required = false) final String idempotencyKey,
                                           @RequestBody final List<AssignedApplication> assignedApplications) {
     final TenantApplicationEntity tenantApplicationEntity = AssignedApplicationMapper.map(tenantIdentifier, assignedApplications);
 
     final Map<String, String> appNameToUriMap = new HashMap<>();
-    tenantApplicationEntity.getApplications().forEach(
-            appName -> appNameToUriMap.put(appName, applicationService.find(appName).getHomepage()));
+    applicationService.findAll(tenantApplicationEntity.getApplications()).forEach(
+            applicationEntity -> appNameToUriMap.put(applicationEntity.getName(), applicationEntity.getHomepage()));
 
-    tenantApplicationService.assign(tenantApplicationEntity, appNameToUriMap);
+    //An identical assignment still in flight is joined rather than started a second time.
+    requestCoalescer.executeAsync("assign_applications", idempotencyKey,
+        RequestCoalescer.fingerprint(tenantIdentifier, gson.toJson(assignedApplications), gson.toJson(appNameToUriMap)),
+        () -> tenantApplicationService.assign(tenantApplicationEntity, appNameToUriMap)
+            .whenComplete((ignored, failure) -> {
+              if (failure != null) {
+                logger.warn("Assigning applications to tenant '{}' failed.", tenantIdentifier, failure);
+              }
+            }));
     return ResponseEntity.accepted().build();
   }
 
@@ -354,4 +442,32 @@ public class ProvisionerRestController {
     final TenantApplicationEntity tenantApplicationEntity = this.tenantApplicationService.find(tenantIdentifier);
     return ResponseEntity.ok(AssignedApplicationMapper.map(tenantApplicationEntity));
   }
+
+  @Permittable(AcceptedTokenType.SYSTEM)
+  @RequestMapping(
+      value = "tenants/{tenantidentifier}/provisioning-traces",
+      method = RequestMethod.GET,
+      consumes = {MediaType.ALL_VALUE},
+      produces = {MediaType.APPLICATION_JSON_VALUE}
+  )
+  public
+  @ResponseBody
+  ResponseEntity<List<ProvisioningTrace>> getProvisioningTraces(@PathVariable("tenantidentifier") final String tenantIdentifier) {
+    return ResponseEntity.ok(this.provisioningTracer.findTraces(tenantIdentifier).stream()
+        .map(ProvisioningTraceMapper::map)
+        .collect(Collectors.toList()));
+  }
+
+  @Permittable(AcceptedTokenType.SYSTEM)
+  @RequestMapping(
+      value = "/metrics",
+      method = RequestMethod.GET,
+      consumes = {MediaType.ALL_VALUE},
+      produces = {MediaType.TEXT_PLAIN_VALUE}
+  )
+  public
+  @ResponseBody
+  ResponseEntity<String> getMetrics() {
+    return ResponseEntity.ok(this.provisionerMetrics.scrape());
+  }
 }
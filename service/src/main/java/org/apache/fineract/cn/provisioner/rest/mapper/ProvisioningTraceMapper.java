@@ -0,0 +1,55 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.rest.mapper;
+
+import org.apache.fineract.cn.provisioner.api.v1.domain.ProvisioningSpan;
+import org.apache.fineract.cn.provisioner.api.v1.domain.ProvisioningTrace;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+public class ProvisioningTraceMapper {
+
+  private ProvisioningTraceMapper() {
+    super();
+  }
+
+  public static ProvisioningTrace map(final ProvisioningTracer.TraceRecord traceRecord) {
+    final ProvisioningTrace provisioningTrace = new ProvisioningTrace();
+    provisioningTrace.setIdentifier(traceRecord.getIdentifier());
+    provisioningTrace.setTenantIdentifier(traceRecord.getTenantIdentifier());
+    provisioningTrace.setOperation(traceRecord.getOperation());
+    provisioningTrace.setStartedOn(Instant.ofEpochMilli(traceRecord.getStartedOnMillis()).toString());
+    provisioningTrace.setDurationInMillis(TimeUnit.NANOSECONDS.toMillis(traceRecord.getDurationNanos()));
+    provisioningTrace.setSpans(traceRecord.getSpans().stream()
+        .map(ProvisioningTraceMapper::map)
+        .collect(Collectors.toList()));
+    return provisioningTrace;
+  }
+
+  private static ProvisioningSpan map(final ProvisioningTracer.SpanRecord spanRecord) {
+    final ProvisioningSpan provisioningSpan = new ProvisioningSpan();
+    provisioningSpan.setName(spanRecord.getName());
+    provisioningSpan.setStartOffsetInMillis(TimeUnit.NANOSECONDS.toMillis(spanRecord.getStartOffsetNanos()));
+    provisioningSpan.setDurationInMillis(TimeUnit.NANOSECONDS.toMillis(spanRecord.getDurationNanos()));
+    provisioningSpan.setAttributes(spanRecord.getAttributes());
+    return provisioningSpan;
+  }
+}
@@ -65,6 +65,9 @@ public class SystemPropertiesTest extends ValidationTest<SystemProperties> {
     ret.add(new ValidationTestCase<SystemProperties>("missing timestamp")
         .adjustment(x -> x.getPublicKey().setTimestamp(null))
         .valid(false));
+    ret.add(new ValidationTestCase<SystemProperties>("zero refresh ttl")
+        .adjustment(x -> x.getToken().setRefreshTtl(0))
+        .valid(false));
     return ret;
   }
 
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.listener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.fineract.cn.lang.listening.EventExpectation;
+import org.apache.fineract.cn.lang.listening.EventKey;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PendingEventExpectationsTest {
+
+  public PendingEventExpectationsTest() {
+    super();
+  }
+
+  @Test
+  public void shouldReapExpectationAfterDeadline() throws InterruptedException {
+    final AtomicLong clock = new AtomicLong();
+    final PendingEventExpectations pendingEventExpectations =
+        new PendingEventExpectations(TimeUnit.SECONDS.toNanos(60), clock::get);
+    final EventExpectation eventExpectation =
+        pendingEventExpectations.expect("tenant", new EventKey("tenant", "operation", "group"));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(59));
+    Assert.assertEquals(0, pendingEventExpectations.reap());
+    Assert.assertEquals(1, pendingEventExpectations.size());
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    Assert.assertEquals(1, pendingEventExpectations.reap());
+    Assert.assertEquals(0, pendingEventExpectations.size());
+    Assert.assertFalse(eventExpectation.waitForOccurrence(0, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void shouldReportPendingTimeOnNotify() throws InterruptedException {
+    final AtomicLong clock = new AtomicLong();
+    final PendingEventExpectations pendingEventExpectations =
+        new PendingEventExpectations(TimeUnit.SECONDS.toNanos(60), clock::get);
+    final EventKey eventKey = new EventKey("tenant", "operation", "group");
+    final EventExpectation eventExpectation = pendingEventExpectations.expect("tenant", eventKey);
+
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(20));
+    Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(20), pendingEventExpectations.notify(eventKey));
+    Assert.assertTrue(eventExpectation.waitForOccurrence(0, TimeUnit.MILLISECONDS));
+    Assert.assertEquals(PendingEventExpectations.NOT_EXPECTED, pendingEventExpectations.notify(eventKey));
+  }
+
+  @Test
+  public void shouldCountByTenantAndWithdraw() {
+    final PendingEventExpectations pendingEventExpectations = new PendingEventExpectations(TimeUnit.SECONDS.toNanos(60));
+    final EventExpectation eventExpectation =
+        pendingEventExpectations.expect("tenant1", new EventKey("tenant1", "operation", "group1"));
+    pendingEventExpectations.expect("tenant1", new EventKey("tenant1", "operation", "group2"));
+    pendingEventExpectations.expect("tenant2", new EventKey("tenant2", "operation", "group1"));
+    Assert.assertEquals(Long.valueOf(2), pendingEventExpectations.countByTenant().get("tenant1"));
+    Assert.assertEquals(Long.valueOf(1), pendingEventExpectations.countByTenant().get("tenant2"));
+
+    pendingEventExpectations.withdraw(eventExpectation);
+    Assert.assertEquals(2, pendingEventExpectations.size());
+    Assert.assertEquals(Long.valueOf(1), pendingEventExpectations.countByTenant().get("tenant1"));
+  }
+}
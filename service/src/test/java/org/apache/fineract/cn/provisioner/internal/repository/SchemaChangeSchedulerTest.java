@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.Session;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SchemaChangeSchedulerTest {
+
+  private final ProvisionerProperties provisionerProperties = new ProvisionerProperties();
+  private final Logger loggerMock = Mockito.mock(Logger.class);
+  private final Cluster clusterMock = Mockito.mock(Cluster.class);
+  private final Session sessionMock = Mockito.mock(Session.class);
+  private final Metadata metadataMock = Mockito.mock(Metadata.class);
+  private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+
+  public SchemaChangeSchedulerTest() {
+    super();
+    when(this.clusterMock.connect()).thenReturn(this.sessionMock);
+    when(this.clusterMock.getMetadata()).thenReturn(this.metadataMock);
+    when(this.sessionMock.execute(anyString())).thenAnswer(invocation -> {
+      this.executed.add((String) invocation.getArguments()[0]);
+      return null;
+    });
+  }
+
+  @Test
+  public void shouldAwaitAgreementOncePerStepOfQueuedChanges() throws Exception {
+    when(this.metadataMock.checkSchemaAgreement()).thenReturn(true);
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      blocked.countDown();
+      Assert.assertTrue(release.await(10, TimeUnit.SECONDS));
+      return null;
+    }).when(this.sessionMock).execute("block");
+    final SchemaChangeScheduler testSubject = this.createTestSubject();
+
+    final List<Thread> changes = new ArrayList<>();
+    changes.add(this.submit(testSubject, "first", "block"));
+    Assert.assertTrue(blocked.await(10, TimeUnit.SECONDS));
+    for (final String keyspaceName : new String[]{"second", "third", "fourth"}) {
+      changes.add(this.submit(testSubject, keyspaceName, "create " + keyspaceName, "table " + keyspaceName));
+    }
+    final long deadline = System.currentTimeMillis() + 10000;
+    while (testSubject.queuedChanges() < 3 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    release.countDown();
+    for (final Thread change : changes) {
+      change.join(10000);
+    }
+
+    //One wait for the blocking change, then one per step of the three changes queued behind it.
+    verify(this.metadataMock, times(3)).checkSchemaAgreement();
+    Assert.assertEquals(6, this.executed.size());
+    for (int i = 0; i < 3; i++) {
+      Assert.assertTrue(this.executed.get(i).startsWith("create "));
+      Assert.assertTrue(this.executed.get(i + 3).startsWith("table "));
+    }
+    testSubject.close();
+  }
+
+  @Test
+  public void shouldBackOffUntilAgreement() {
+    this.provisionerProperties.getSchemaChanges().setInitialBackoff(20);
+    this.provisionerProperties.getSchemaChanges().setMaximumBackoff(40);
+    when(this.metadataMock.checkSchemaAgreement()).thenReturn(false, false, false, true);
+    final SchemaChangeScheduler testSubject = this.createTestSubject();
+
+    final long start = System.nanoTime();
+    testSubject.execute(keyspace("first"), new SchemaChangeScheduler.SchemaStatement("create_keyspace", "create first"));
+    final long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    verify(this.metadataMock, times(4)).checkSchemaAgreement();
+    //Backoffs of 20, 40 and 40 milliseconds.
+    Assert.assertTrue(String.valueOf(waitedMillis), waitedMillis >= 100);
+    testSubject.close();
+  }
+
+  @Test
+  public void shouldGoOnWithoutAgreementAfterTimeout() {
+    this.provisionerProperties.getSchemaChanges().setInitialBackoff(10);
+    this.provisionerProperties.getSchemaChanges().setMaximumBackoff(10);
+    this.provisionerProperties.getSchemaChanges().setAgreementTimeout(50);
+    when(this.metadataMock.checkSchemaAgreement()).thenReturn(false);
+    final SchemaChangeScheduler testSubject = this.createTestSubject();
+
+    testSubject.execute(keyspace("first"), new SchemaChangeScheduler.SchemaStatement("create_keyspace", "create first"));
+
+    Assert.assertEquals(Collections.singletonList("create first"), this.executed);
+    verify(this.loggerMock).warn(anyString(), Mockito.<Object>any(), Mockito.<Object>any());
+    testSubject.close();
+  }
+
+  @Test
+  public void shouldConnectAgainAfterFailedConnect() {
+    when(this.metadataMock.checkSchemaAgreement()).thenReturn(true);
+    when(this.clusterMock.connect()).thenThrow(new IllegalStateException("unreachable")).thenReturn(this.sessionMock);
+    final SchemaChangeScheduler testSubject = this.createTestSubject();
+
+    try {
+      testSubject.getSession(keyspace("first"));
+      Assert.fail("Failed connect was not reported.");
+    } catch (final IllegalStateException ignored) {
+      //expected
+    }
+    Assert.assertSame(this.sessionMock, testSubject.getSession(keyspace("first")));
+    testSubject.close();
+  }
+
+  private Thread submit(final SchemaChangeScheduler testSubject, final String keyspaceName, final String... cql) {
+    final SchemaChangeScheduler.SchemaStatement[] statements = new SchemaChangeScheduler.SchemaStatement[cql.length];
+    for (int i = 0; i < cql.length; i++) {
+      statements[i] = new SchemaChangeScheduler.SchemaStatement("create_table", cql[i]);
+    }
+    final Thread thread = new Thread(() -> testSubject.execute(keyspace(keyspaceName), statements));
+    thread.start();
+    return thread;
+  }
+
+  private SchemaChangeScheduler createTestSubject() {
+    return new SchemaChangeScheduler(this.loggerMock, null, this.provisionerProperties, new ProvisionerMetrics(),
+        new ProvisioningTracer(1, 10)) {
+      @Override
+      Cluster buildCluster(final TenantEntity keyspace) {
+        return clusterMock;
+      }
+    };
+  }
+
+  private static TenantEntity keyspace(final String keyspaceName) {
+    final TenantEntity keyspace = new TenantEntity();
+    keyspace.setClusterName("cluster");
+    keyspace.setContactPoints("127.0.0.1:9042");
+    keyspace.setKeyspaceName(keyspaceName);
+    return keyspace;
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SchemaMigratorTest {
+
+  public SchemaMigratorTest() {
+    super();
+  }
+
+  @Test
+  public void shouldApplyOnlyPendingMigrationsInVersionOrder() throws Exception {
+    final InMemorySchemaVersionStore store = new InMemorySchemaVersionStore(1, 3);
+    final List<Integer> applied = new ArrayList<>();
+
+    final int count = SchemaMigrator.migrate(NOPLogger.NOP_LOGGER, store, Arrays.asList(
+        migration(4, applied), migration(1, applied), migration(2, applied), migration(3, applied)));
+
+    Assert.assertEquals(2, count);
+    Assert.assertEquals(Arrays.asList(2, 4), applied);
+    Assert.assertEquals(Arrays.asList(2, 4), store.recorded);
+    Assert.assertEquals(1, store.locks);
+    Assert.assertEquals(1, store.unlocks);
+  }
+
+  @Test
+  public void shouldNotLockWhenUpToDate() throws Exception {
+    final InMemorySchemaVersionStore store = new InMemorySchemaVersionStore(1, 2);
+    final List<Integer> applied = new ArrayList<>();
+
+    final int count = SchemaMigrator.migrate(NOPLogger.NOP_LOGGER, store,
+        Arrays.asList(migration(1, applied), migration(2, applied)));
+
+    Assert.assertEquals(0, count);
+    Assert.assertTrue(applied.isEmpty());
+    Assert.assertEquals(0, store.locks);
+  }
+
+  @Test
+  public void shouldSkipMigrationsAppliedByAnotherNodeWhileWaitingForTheLock() throws Exception {
+    final InMemorySchemaVersionStore store = new InMemorySchemaVersionStore(1);
+    store.appliedWhileLocking.add(2);
+    final List<Integer> applied = new ArrayList<>();
+
+    final int count = SchemaMigrator.migrate(NOPLogger.NOP_LOGGER, store,
+        Arrays.asList(migration(1, applied), migration(2, applied), migration(3, applied)));
+
+    Assert.assertEquals(1, count);
+    Assert.assertEquals(Collections.singletonList(3), applied);
+  }
+
+  @Test
+  public void shouldUnlockAndStopRecordingWhenMigrationFails() {
+    final InMemorySchemaVersionStore store = new InMemorySchemaVersionStore();
+    final List<Integer> applied = new ArrayList<>();
+
+    try {
+      SchemaMigrator.migrate(NOPLogger.NOP_LOGGER, store, Arrays.asList(
+          migration(1, applied),
+          new SchemaMigration(2, "fails", () -> {
+            throw new IllegalStateException("failed");
+          }),
+          migration(3, applied)));
+      Assert.fail("Failure of a migration was swallowed.");
+    } catch (final Exception ex) {
+      Assert.assertTrue(ex instanceof IllegalStateException);
+    }
+
+    Assert.assertEquals(Collections.singletonList(1), applied);
+    Assert.assertEquals(Collections.singletonList(1), store.recorded);
+    Assert.assertEquals(1, store.unlocks);
+  }
+
+  private static SchemaMigration migration(final int version, final List<Integer> applied) {
+    return new SchemaMigration(version, "migration " + version, () -> applied.add(version));
+  }
+
+  private static class InMemorySchemaVersionStore implements SchemaVersionStore {
+    private final Set<Integer> appliedVersions;
+    private final Set<Integer> appliedWhileLocking = new HashSet<>();
+    private final List<Integer> recorded = new ArrayList<>();
+    private int locks;
+    private int unlocks;
+
+    InMemorySchemaVersionStore(final Integer... appliedVersions) {
+      this.appliedVersions = new HashSet<>(Arrays.asList(appliedVersions));
+    }
+
+    @Override
+    public String getName() {
+      return "in memory";
+    }
+
+    @Override
+    public void initialize() {
+    }
+
+    @Override
+    public Set<Integer> getAppliedVersions() {
+      return new HashSet<>(this.appliedVersions);
+    }
+
+    @Override
+    public void lock() {
+      this.locks++;
+      this.appliedVersions.addAll(this.appliedWhileLocking);
+    }
+
+    @Override
+    public void unlock() {
+      this.unlocks++;
+    }
+
+    @Override
+    public void recordApplied(final SchemaMigration schemaMigration, final long durationInMillis) {
+      this.appliedVersions.add(schemaMigration.getVersion());
+      this.recorded.add(schemaMigration.getVersion());
+    }
+  }
+}
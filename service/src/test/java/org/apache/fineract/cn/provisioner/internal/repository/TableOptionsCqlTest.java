@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TableOptionsCqlTest {
+
+  public TableOptionsCqlTest() {
+    super();
+  }
+
+  @Test
+  public void shouldRenderNothingWithoutOptions() {
+    Assert.assertEquals("", TableOptionsCql.withClause(null, null, null, null, null, null));
+  }
+
+  @Test
+  public void shouldRenderAllOptions() {
+    Assert.assertEquals(" WITH compaction = {'class': 'TimeWindowCompactionStrategy', 'compaction_window_unit': 'DAYS', 'compaction_window_size': 1}"
+            + " AND default_time_to_live = 2592000"
+            + " AND compression = {'class': 'LZ4Compressor'}"
+            + " AND caching = {'keys': 'ALL', 'rows_per_partition': 'NONE'}",
+        TableOptionsCql.withClause("TimeWindow", "days", 1, 2592000, "LZ4", "KeysOnly"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectWindowWithoutTimeWindowCompaction() {
+    TableOptionsCql.withClause("Leveled", "DAYS", null, null, null, null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectUnknownCompression() {
+    TableOptionsCql.withClause(null, null, null, null, "zstd", null);
+  }
+}
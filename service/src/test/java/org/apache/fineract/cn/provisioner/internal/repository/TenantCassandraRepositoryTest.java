@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.repository;
+
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+
+public class TenantCassandraRepositoryTest {
+
+  public TenantCassandraRepositoryTest() {
+    super();
+  }
+
+  @Test
+  public void shouldDeleteClaimConditionallyWhenKeyspaceCreationFails() {
+    final SchemaChangeScheduler schemaChangeSchedulerMock = Mockito.mock(SchemaChangeScheduler.class);
+    doThrow(new IllegalStateException("no schema agreement")).when(schemaChangeSchedulerMock)
+        .execute(any(TenantEntity.class), anyVararg());
+    final LightweightTransactions lightweightTransactionsMock = Mockito.mock(LightweightTransactions.class);
+
+    final TenantCassandraRepository testSubject = new TenantCassandraRepository(
+        Mockito.mock(CassandraSessionProvider.class), schemaChangeSchedulerMock,
+        Mockito.mock(SharedKeyspaceRepository.class), lightweightTransactionsMock);
+
+    final TenantEntity tenant = new TenantEntity() {
+      @Override
+      public boolean insertIfNotExists(final LightweightTransactions lightweightTransactions) {
+        return true;
+      }
+    };
+    tenant.setIdentifier("blah");
+    tenant.setKeyspaceName("blah");
+    tenant.setReplicationType("Simple");
+    tenant.setReplicas("3");
+
+    try {
+      testSubject.create(tenant);
+      Assert.fail("The failure should be passed on.");
+    } catch (final IllegalStateException expected) {
+      Assert.assertEquals("no schema agreement", expected.getMessage());
+    }
+
+    verify(lightweightTransactionsMock).deleteIfExists(TenantEntity.TABLE_NAME, TenantEntity.IDENTIFIER_COLUMN, "blah");
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.mapping.Mapper;
+import com.datastax.driver.mapping.MappingManager;
+import com.datastax.driver.mapping.Result;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.apache.fineract.cn.lang.ServiceException;
+import org.apache.fineract.cn.provisioner.internal.repository.ApplicationEntity;
+import org.apache.fineract.cn.provisioner.internal.repository.LightweightTransactions;
+import org.apache.fineract.cn.provisioner.internal.service.applications.ApplicationPermittablesCache;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.springframework.jms.core.JmsTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+public class ApplicationServiceTest {
+
+  private final List<ApplicationEntity> table = new CopyOnWriteArrayList<>();
+  private final Map<ResultSet, List<ApplicationEntity>> reads = Collections.synchronizedMap(new IdentityHashMap<>());
+  private final CountDownLatch firstReadStarted = new CountDownLatch(1);
+  private final CountDownLatch releaseFirstRead = new CountDownLatch(1);
+  private final AtomicBoolean firstRead = new AtomicBoolean(true);
+
+  public ApplicationServiceTest() {
+    super();
+  }
+
+  @Test
+  public void shouldNotResurrectApplicationDeletedDuringReload() throws Exception {
+    this.table.add(application("deleted-v1"));
+    final ApplicationService testSubject = this.createTestSubject();
+
+    final Thread scheduledReload = new Thread(testSubject::reload);
+    scheduledReload.start();
+    Assert.assertTrue(this.firstReadStarted.await(10, TimeUnit.SECONDS));
+
+    final Thread deletion = new Thread(() -> testSubject.delete("deleted-v1"));
+    deletion.start();
+    //Give the deletion the chance to overtake the stalled reload if it isn't serialized.
+    deletion.join(200);
+    this.releaseFirstRead.countDown();
+    scheduledReload.join(10000);
+    deletion.join(10000);
+
+    Assert.assertTrue(this.table.isEmpty());
+    try {
+      testSubject.find("deleted-v1");
+      Assert.fail("Deleted application was found.");
+    } catch (final ServiceException ignored) {
+      //expected
+    }
+  }
+
+  @Test
+  public void shouldFindApplicationCreatedOnAnotherNode() {
+    this.releaseFirstRead.countDown();
+    final ApplicationService testSubject = this.createTestSubject();
+    Assert.assertTrue(testSubject.fetchAll().isEmpty());
+
+    this.table.add(application("created-v1"));
+
+    Assert.assertEquals("created-v1", testSubject.find("created-v1").getName());
+  }
+
+  @Test
+  public void shouldDropApplicationDeletedOnAnotherNode() {
+    this.releaseFirstRead.countDown();
+    this.table.add(application("deleted-v1"));
+    final ApplicationService testSubject = this.createTestSubject();
+    Assert.assertEquals("deleted-v1", testSubject.find("deleted-v1").getName());
+
+    this.table.clear();
+    testSubject.reloadAfterChange("other-node", "deleted-v1");
+
+    try {
+      testSubject.find("deleted-v1");
+      Assert.fail("Application deleted on another node was found.");
+    } catch (final ServiceException ignored) {
+      //expected
+    }
+  }
+
+  private ApplicationService createTestSubject() {
+    final Session sessionMock = Mockito.mock(Session.class);
+    final MappingManager mappingManagerMock = Mockito.mock(MappingManager.class);
+    //noinspection unchecked
+    final Mapper<ApplicationEntity> mapperMock = Mockito.mock(Mapper.class);
+    final CassandraSessionProvider cassandraSessionProviderMock = Mockito.mock(CassandraSessionProvider.class);
+    when(cassandraSessionProviderMock.getAdminSession()).thenReturn(sessionMock);
+    when(cassandraSessionProviderMock.getAdminSessionMappingManager()).thenReturn(mappingManagerMock);
+    when(mappingManagerMock.mapper(ApplicationEntity.class)).thenReturn(mapperMock);
+
+    when(sessionMock.execute(anyString())).thenAnswer(invocation -> {
+      final ResultSet resultSetMock = Mockito.mock(ResultSet.class);
+      this.reads.put(resultSetMock, new ArrayList<>(this.table));
+      if (this.firstRead.compareAndSet(true, false)) {
+        this.firstReadStarted.countDown();
+        Assert.assertTrue(this.releaseFirstRead.await(10, TimeUnit.SECONDS));
+      }
+      return resultSetMock;
+    });
+    when(mapperMock.map(any(ResultSet.class))).thenAnswer(invocation -> {
+      final List<ApplicationEntity> read = this.reads.get((ResultSet) invocation.getArguments()[0]);
+      //noinspection unchecked
+      final Result<ApplicationEntity> resultMock = Mockito.mock(Result.class);
+      when(resultMock.iterator()).thenAnswer(ignored -> read.iterator());
+      return resultMock;
+    });
+    when(mapperMock.get(any())).thenAnswer(invocation -> this.table.stream()
+        .filter(applicationEntity -> applicationEntity.getName().equals(invocation.getArguments()[0]))
+        .findAny().orElse(null));
+    final LightweightTransactions lightweightTransactionsMock = Mockito.mock(LightweightTransactions.class);
+    doAnswer(invocation -> {
+      final String name = (String) invocation.getArguments()[2];
+      return this.table.removeIf(applicationEntity -> applicationEntity.getName().equals(name));
+    }).when(lightweightTransactionsMock).deleteIfExists(anyString(), anyString(), any());
+
+    return new ApplicationService(
+        Mockito.mock(Logger.class),
+        cassandraSessionProviderMock,
+        lightweightTransactionsMock,
+        Mockito.mock(TenantApplicationService.class),
+        Mockito.mock(ApplicationPermittablesCache.class),
+        Mockito.mock(JmsTemplate.class));
+  }
+
+  private static ApplicationEntity application(final String name) {
+    final ApplicationEntity applicationEntity = new ApplicationEntity();
+    applicationEntity.setName(name);
+    return applicationEntity;
+  }
+}
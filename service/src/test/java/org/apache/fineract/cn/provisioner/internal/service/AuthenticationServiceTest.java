@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import com.datastax.driver.core.Row;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.apache.fineract.cn.lang.ServiceException;
+import org.apache.fineract.cn.provisioner.config.SystemProperties;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.RefreshTokenSigner;
+import org.apache.fineract.cn.provisioner.internal.util.TokenProvider;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuthenticationServiceTest {
+
+  private final RefreshTokenSigner refreshTokenSigner = new RefreshTokenSigner("0123456789abcdef".getBytes());
+  private final ClientService clientServiceMock = Mockito.mock(ClientService.class);
+  private final TokenProvider tokenProviderMock = Mockito.mock(TokenProvider.class);
+  private final AtomicInteger userReads = new AtomicInteger();
+
+  public AuthenticationServiceTest() {
+    super();
+  }
+
+  @Test
+  public void shouldRejectRefreshWithTokenOfRevokedPasswordVersion() {
+    when(this.clientServiceMock.exists("web")).thenReturn(true);
+    final Row userRow = Mockito.mock(Row.class);
+    //The password was reset after the refresh token was issued.
+    when(userRow.getTimestamp(5)).thenReturn(new Date(2000L));
+    final String refreshToken = this.refreshTokenSigner.sign("web", "wepemnefret", 1000L,
+        Instant.now().plus(1, ChronoUnit.HOURS));
+
+    try {
+      this.createTestSubject(userRow).refresh("web", refreshToken);
+      Assert.fail("A refresh token of a replaced password should be rejected.");
+    } catch (final ServiceException ignored) {
+    }
+
+    Assert.assertEquals(1, this.userReads.get());
+    verify(this.tokenProviderMock, never()).createToken(Mockito.anyString(), Mockito.anyString(), Mockito.anyLong(), Mockito.any());
+  }
+
+  @Test
+  public void shouldRejectRefreshForDeletedClient() {
+    when(this.clientServiceMock.exists("web")).thenReturn(false);
+    final Row userRow = Mockito.mock(Row.class);
+    final String refreshToken = this.refreshTokenSigner.sign("web", "wepemnefret", 0L,
+        Instant.now().plus(1, ChronoUnit.HOURS));
+
+    try {
+      this.createTestSubject(userRow).refresh("web", refreshToken);
+      Assert.fail("A refresh token of a deleted client should be rejected.");
+    } catch (final ServiceException ignored) {
+    }
+
+    Assert.assertEquals(0, this.userReads.get());
+    verify(this.tokenProviderMock, never()).createToken(Mockito.anyString(), Mockito.anyString(), Mockito.anyLong(), Mockito.any());
+  }
+
+  private AuthenticationService createTestSubject(final Row userRow) {
+    return new AuthenticationService(
+        Mockito.mock(Logger.class),
+        Mockito.mock(CassandraSessionProvider.class),
+        null,
+        this.tokenProviderMock,
+        this.refreshTokenSigner,
+        new SystemProperties(),
+        this.clientServiceMock,
+        new ProvisionerMetrics()) {
+      @Override
+      Row findUserRow(final String username) {
+        userReads.incrementAndGet();
+        return userRow;
+      }
+    };
+  }
+}
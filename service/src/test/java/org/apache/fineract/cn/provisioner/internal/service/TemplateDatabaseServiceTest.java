@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TemplateDatabaseServiceTest {
+
+  public TemplateDatabaseServiceTest() {
+    super();
+  }
+
+  @Test
+  public void shouldNameTemplateAfterSourceAndVersion() {
+    Assert.assertEquals("reference_template_2018_3",
+        TemplateDatabaseService.templateDatabaseName("Reference", "2018.3"));
+  }
+
+  @Test
+  public void shouldKeepVersionWhenShorteningLongNames() {
+    final String templateDatabaseName = TemplateDatabaseService.templateDatabaseName(
+        "a_very_long_source_database_name_which_does_not_fit_into_postgresql_identifiers", "12");
+
+    Assert.assertEquals(63, templateDatabaseName.length());
+    Assert.assertTrue(templateDatabaseName.endsWith("_template_12"));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import com.datastax.driver.mapping.Mapper;
+import com.datastax.driver.mapping.MappingManager;
+import org.apache.fineract.cn.anubis.api.v1.domain.ApplicationSignatureSet;
+import org.apache.fineract.cn.anubis.config.TenantSignatureRepository;
+import org.apache.fineract.cn.cassandra.core.CassandraSessionProvider;
+import org.apache.fineract.cn.provisioner.internal.listener.IdentityListener;
+import org.apache.fineract.cn.provisioner.internal.repository.TenantApplicationEntity;
+import org.apache.fineract.cn.provisioner.internal.repository.TenantCassandraRepository;
+import org.apache.fineract.cn.provisioner.internal.repository.TenantEntity;
+import org.apache.fineract.cn.provisioner.internal.service.applications.AnubisInitializer;
+import org.apache.fineract.cn.provisioner.internal.service.applications.IdentityServiceInitializer;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+
+public class TenantApplicationServiceTest {
+
+  public TenantApplicationServiceTest() {
+    super();
+  }
+
+  @Test
+  public void shouldPostPermittableGroupsBeforeInitializingResources() throws Exception {
+    final TenantEntity tenantEntity = new TenantEntity();
+    tenantEntity.setIdentifier("blah");
+    tenantEntity.setIdentityManagerApplicationName("identity-v1");
+    tenantEntity.setIdentityManagerApplicationUri("http://identity");
+    final TenantCassandraRepository tenantCassandraRepositoryMock = Mockito.mock(TenantCassandraRepository.class);
+    doReturn(Optional.of(tenantEntity)).when(tenantCassandraRepositoryMock).get("blah");
+
+    final CassandraSessionProvider cassandraSessionProviderMock = Mockito.mock(CassandraSessionProvider.class);
+    final MappingManager mappingManagerMock = Mockito.mock(MappingManager.class);
+    doReturn(mappingManagerMock).when(cassandraSessionProviderMock).getAdminSessionMappingManager();
+    doReturn(Mockito.mock(Mapper.class)).when(mappingManagerMock).mapper(TenantApplicationEntity.class);
+
+    final TenantSignatureRepository tenantSignatureRepositoryMock = Mockito.mock(TenantSignatureRepository.class);
+    doReturn(Optional.of(new ApplicationSignatureSet())).when(tenantSignatureRepositoryMock).getLatestSignatureSet();
+
+    final AnubisInitializer anubisInitializerMock = Mockito.mock(AnubisInitializer.class);
+    final IdentityServiceInitializer identityServiceInitializerMock = Mockito.mock(IdentityServiceInitializer.class);
+    doReturn(Collections.emptyList()).when(identityServiceInitializerMock)
+        .postApplicationPermittableGroups(anyString(), anyString(), anyString(), anyString(), anyString());
+
+    final TenantApplicationService testSubject = new TenantApplicationService(cassandraSessionProviderMock,
+        anubisInitializerMock, identityServiceInitializerMock, tenantSignatureRepositoryMock,
+        tenantCassandraRepositoryMock, null, Mockito.mock(IdentityListener.class), new ProvisionerMetrics(),
+        new ProvisioningTracer(1, 10), Mockito.mock(Logger.class));
+
+    final TenantApplicationEntity tenantApplicationEntity = new TenantApplicationEntity();
+    tenantApplicationEntity.setTenantIdentifier("blah");
+    tenantApplicationEntity.setApplications(Collections.singleton("office-v1"));
+    testSubject.assign(tenantApplicationEntity, Collections.singletonMap("office-v1", "http://office")).join();
+
+    final InOrder inOrder = inOrder(identityServiceInitializerMock, anubisInitializerMock);
+    inOrder.verify(identityServiceInitializerMock).postApplicationPermittableGroups(
+        "blah", "identity-v1", "http://identity", "office-v1", "http://office");
+    inOrder.verify(identityServiceInitializerMock).postApplicationDetails(
+        eq("blah"), eq("identity-v1"), eq("http://identity"), eq("office-v1"), eq("http://office"), any());
+    inOrder.verify(anubisInitializerMock).initializeResources("blah", "office-v1", "http://office");
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TenantCountsTest {
+
+  private static final List<String> CANDIDATES = Arrays.asList("a", "b");
+
+  public TenantCountsTest() {
+    super();
+  }
+
+  @Test
+  public void shouldCountEachPlacementSoConcurrentPlacementsSpread() throws Exception {
+    final TenantCounts testSubject = counted(Collections.singletonMap("a", 1L));
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<TenantCounts.Placement<String>>> placements = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        placements.add(executor.submit(() -> testSubject.place(CANDIDATES, x -> x, x -> 1)));
+      }
+      for (final Future<TenantCounts.Placement<String>> placement : placements) {
+        placement.get(5, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(Long.valueOf(3L), testSubject.tenantsPerKey().get("a"));
+    Assert.assertEquals(Long.valueOf(3L), testSubject.tenantsPerKey().get("b"));
+  }
+
+  @Test
+  public void shouldKeepPlacementCreatedWhileCounting() {
+    final TenantCounts testSubject = counted(Collections.emptyMap());
+    final TenantCounts.Placement<String> placement = testSubject.place(CANDIDATES, x -> x, x -> 1);
+
+    //The count read the tenants before this tenant was recorded.
+    final long countGeneration = testSubject.startCount();
+    testSubject.created(placement);
+    testSubject.finishCount(countGeneration, Collections.emptyMap());
+    Assert.assertEquals(Long.valueOf(1L), testSubject.tenantsPerKey().get("a"));
+
+    //A count started afterwards sees the recorded tenant, which mustn't be counted twice.
+    testSubject.finishCount(testSubject.startCount(), Collections.singletonMap("a", 1L));
+    Assert.assertEquals(Long.valueOf(1L), testSubject.tenantsPerKey().get("a"));
+  }
+
+  @Test
+  public void shouldKeepPlacementWhoseTenantIsStillBeingCreated() {
+    final TenantCounts testSubject = counted(Collections.emptyMap());
+    testSubject.place(CANDIDATES, x -> x, x -> 1);
+
+    testSubject.finishCount(testSubject.startCount(), Collections.emptyMap());
+
+    Assert.assertEquals(Long.valueOf(1L), testSubject.tenantsPerKey().get("a"));
+  }
+
+  @Test
+  public void shouldReleasePlacementWhoseTenantWasNotCreated() {
+    final TenantCounts testSubject = counted(Collections.emptyMap());
+    final TenantCounts.Placement<String> placement = testSubject.place(CANDIDATES, x -> x, x -> 1);
+
+    testSubject.failed(placement);
+
+    Assert.assertTrue(testSubject.tenantsPerKey().isEmpty());
+    Assert.assertEquals("a", testSubject.place(CANDIDATES, x -> x, x -> 1).getCandidate());
+  }
+
+  @Test
+  public void shouldIgnoreCountOvertakenByLaterCount() {
+    final TenantCounts testSubject = new TenantCounts();
+    final long earlierCount = testSubject.startCount();
+    final long laterCount = testSubject.startCount();
+
+    testSubject.finishCount(laterCount, Collections.singletonMap("b", 2L));
+    testSubject.finishCount(earlierCount, Collections.singletonMap("b", 1L));
+
+    Assert.assertEquals(Long.valueOf(2L), testSubject.tenantsPerKey().get("b"));
+  }
+
+  private static TenantCounts counted(final Map<String, Long> tenantsPerKey) {
+    final TenantCounts testSubject = new TenantCounts();
+    testSubject.finishCount(testSubject.startCount(), new HashMap<>(tenantsPerKey));
+    return testSubject;
+  }
+}
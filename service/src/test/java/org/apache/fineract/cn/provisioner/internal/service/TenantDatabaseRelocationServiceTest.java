@@ -0,0 +1,239 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import org.apache.fineract.cn.lang.ServiceException;
+import org.apache.fineract.cn.provisioner.api.v1.domain.DatabaseConnectionInfo;
+import org.apache.fineract.cn.provisioner.api.v1.events.EventConstants;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.core.MessagePostProcessor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TenantDatabaseRelocationServiceTest {
+
+  public TenantDatabaseRelocationServiceTest() {
+    super();
+  }
+
+  @Test
+  public void shouldKeepFieldsLeftOutOfTarget() {
+    final DatabaseConnectionInfo target = new DatabaseConnectionInfo();
+    target.setHost("db-2");
+
+    final DatabaseConnectionInfo relocated = TenantDatabaseRelocationService.complete(target, source());
+
+    Assert.assertEquals("db-2", relocated.getHost());
+    Assert.assertEquals("5432", relocated.getPort());
+    Assert.assertEquals("tenant_a", relocated.getDatabaseName());
+    Assert.assertEquals("postgres", relocated.getUser());
+    Assert.assertFalse(TenantDatabaseRelocationService.isSameDatabase(source(), relocated));
+  }
+
+  @Test
+  public void shouldRecognizeCurrentLocation() {
+    final DatabaseConnectionInfo target = new DatabaseConnectionInfo();
+    target.setUser("other");
+
+    Assert.assertTrue(TenantDatabaseRelocationService.isSameDatabase(source(),
+        TenantDatabaseRelocationService.complete(target, source())));
+  }
+
+  @Test
+  public void shouldBlockWritesOnSourceBeforeCopyingAndFlipTenant() {
+    final List<String> executed = new ArrayList<>();
+    final JmsTemplate jmsTemplateMock = Mockito.mock(JmsTemplate.class);
+    final TenantDatabaseRelocationService testSubject = testSubject(executed, jmsTemplateMock, () -> {
+      executed.add("copy");
+      return 1024L;
+    });
+
+    testSubject.relocate("tenant_a", source(), target());
+
+    Assert.assertEquals(Arrays.asList(
+        "db-2: CREATE DATABASE tenant_a OWNER \"postgres\"",
+        "db-1: REVOKE CONNECT ON DATABASE tenant_a FROM PUBLIC",
+        "db-1: REVOKE CONNECT ON DATABASE tenant_a FROM \"postgres\"",
+        "db-1: SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = ? AND pid <> pg_backend_pid()",
+        "copy",
+        "provisioner: relocate tenant_a"), executed);
+    verify(jmsTemplateMock).convertAndSend(eq(EventConstants.DESTINATION), eq("tenant_a"), any(MessagePostProcessor.class));
+  }
+
+  @Test
+  public void shouldUnblockSourceAndDropCopyWhenCopyFails() {
+    final List<String> executed = new ArrayList<>();
+    final JmsTemplate jmsTemplateMock = Mockito.mock(JmsTemplate.class);
+    final TenantDatabaseRelocationService testSubject = testSubject(executed, jmsTemplateMock, () -> {
+      throw new IllegalStateException("pg_restore failed");
+    });
+
+    try {
+      testSubject.relocate("tenant_a", source(), target());
+      Assert.fail("The failure should be passed on.");
+    } catch (final IllegalStateException expected) {
+      Assert.assertEquals("pg_restore failed", expected.getMessage());
+    }
+
+    Assert.assertEquals(Arrays.asList(
+        "db-2: CREATE DATABASE tenant_a OWNER \"postgres\"",
+        "db-1: REVOKE CONNECT ON DATABASE tenant_a FROM PUBLIC",
+        "db-1: REVOKE CONNECT ON DATABASE tenant_a FROM \"postgres\"",
+        "db-1: SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE datname = ? AND pid <> pg_backend_pid()",
+        "db-1: GRANT CONNECT ON DATABASE tenant_a TO PUBLIC",
+        "db-1: GRANT CONNECT ON DATABASE tenant_a TO \"postgres\"",
+        "db-2: DROP DATABASE IF EXISTS tenant_a"), executed);
+    verify(jmsTemplateMock, never()).convertAndSend(anyString(), any(Object.class), any(MessagePostProcessor.class));
+  }
+
+  @Test
+  public void shouldRejectRelocationWhenExecutorIsFull() {
+    final List<String> executed = new ArrayList<>();
+    final ExecutorService fullExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+    fullExecutor.shutdown();
+    final TenantDatabaseRelocationService testSubject
+        = testSubject(executed, Mockito.mock(JmsTemplate.class), fullExecutor, () -> 1024L);
+
+    try {
+      testSubject.relocate("tenant_a", target());
+      Assert.fail("A relocation that can't be run should be rejected rather than queued.");
+    } catch (final ServiceException expected) {
+      Assert.assertTrue(executed.isEmpty());
+    }
+  }
+
+  private static TenantDatabaseRelocationService testSubject(final List<String> executed,
+                                                             final JmsTemplate jmsTemplate,
+                                                             final LongSupplier copy) {
+    return testSubject(executed, jmsTemplate, null, copy);
+  }
+
+  private static TenantDatabaseRelocationService testSubject(final List<String> executed,
+                                                             final JmsTemplate jmsTemplate,
+                                                             final ExecutorService executor,
+                                                             final LongSupplier copy) {
+    final ProvisionerProperties provisionerProperties = new ProvisionerProperties();
+    provisionerProperties.getPlacement().getDatabaseServers().add(server("db-1"));
+    provisionerProperties.getPlacement().getDatabaseServers().add(server("db-2"));
+    return new TenantDatabaseRelocationService(Mockito.mock(Logger.class), null, provisionerProperties,
+        new ProvisionerMetrics(), new ProvisioningTracer(1, 10),
+        new TenantPlacementService(null, null, provisionerProperties, null, null), executor, jmsTemplate) {
+      @Override
+      Connection connect(final DatabaseConnectionInfo databaseConnectionInfo) {
+        Assert.assertEquals("postgres", databaseConnectionInfo.getDatabaseName());
+        Assert.assertEquals("admin", databaseConnectionInfo.getUser());
+        return recordingConnection(databaseConnectionInfo.getHost(), executed);
+      }
+
+      @Override
+      Optional<DatabaseConnectionInfo> findTenantDatabase(final String tenantIdentifier) {
+        return Optional.of(source());
+      }
+
+      @Override
+      Connection connectToProvisioner() {
+        return recordingConnection("provisioner", executed);
+      }
+
+      @Override
+      long copy(final String tenantIdentifier,
+                final DatabaseConnectionInfo source,
+                final DatabaseConnectionInfo relocated) {
+        return copy.getAsLong();
+      }
+    };
+  }
+
+  private static Connection recordingConnection(final String server, final List<String> executed) {
+    try {
+      final Connection connectionMock = Mockito.mock(Connection.class);
+      final Statement statementMock = Mockito.mock(Statement.class);
+      when(connectionMock.createStatement()).thenReturn(statementMock);
+      when(statementMock.execute(anyString())).thenAnswer(invocation -> {
+        executed.add(server + ": " + invocation.getArguments()[0]);
+        return false;
+      });
+      when(connectionMock.prepareStatement(anyString())).thenAnswer(invocation -> {
+        final String sql = (String) invocation.getArguments()[0];
+        final PreparedStatement preparedStatementMock = Mockito.mock(PreparedStatement.class);
+        when(preparedStatementMock.execute()).thenAnswer(ignored -> executed.add(server + ": " + sql));
+        //Only the switch of the tenant row is an update.
+        when(preparedStatementMock.executeUpdate()).thenAnswer(ignored -> {
+          executed.add(server + ": relocate tenant_a");
+          return 1;
+        });
+        return preparedStatementMock;
+      });
+      return connectionMock;
+    } catch (final SQLException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static ProvisionerProperties.Placement.DatabaseServer server(final String host) {
+    final ProvisionerProperties.Placement.DatabaseServer ret = new ProvisionerProperties.Placement.DatabaseServer();
+    ret.setHost(host);
+    ret.setAdminUser("admin");
+    ret.setAdminPassword("admin");
+    return ret;
+  }
+
+  private static DatabaseConnectionInfo target() {
+    final DatabaseConnectionInfo target = new DatabaseConnectionInfo();
+    target.setHost("db-2");
+    return TenantDatabaseRelocationService.complete(target, source());
+  }
+
+  private static DatabaseConnectionInfo source() {
+    final DatabaseConnectionInfo ret = new DatabaseConnectionInfo();
+    ret.setDriverClass("org.postgresql.Driver");
+    ret.setDatabaseName("tenant_a");
+    ret.setHost("db-1");
+    ret.setPort("5432");
+    ret.setUser("postgres");
+    ret.setPassword("postgres");
+    return ret;
+  }
+}
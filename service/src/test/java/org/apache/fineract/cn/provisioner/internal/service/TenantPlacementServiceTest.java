@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.fineract.cn.lang.ServiceException;
+import org.apache.fineract.cn.provisioner.api.v1.domain.DatabaseConnectionInfo;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.core.env.Environment;
+
+import static org.mockito.Mockito.when;
+
+public class TenantPlacementServiceTest {
+
+  public TenantPlacementServiceTest() {
+    super();
+  }
+
+  @Test
+  public void shouldPlaceOnCandidateWithFewestTenants() {
+    final List<String> candidates = Arrays.asList("a", "b", "c");
+    final Map<String, Long> tenants = new HashMap<>();
+    tenants.put("a", 3L);
+    tenants.put("b", 1L);
+
+    Assert.assertEquals("c", TenantPlacementService.leastLoaded(candidates, x -> x, x -> 1, tenants));
+  }
+
+  @Test
+  public void shouldPlaceByWeight() {
+    final List<String> candidates = Arrays.asList("small", "large");
+    final Map<String, Long> tenants = new HashMap<>();
+    tenants.put("small", 1L);
+    tenants.put("large", 2L);
+
+    //Two more tenants per weight fit on large: (2 + 1) / 4 < (1 + 1) / 1.
+    Assert.assertEquals("large", TenantPlacementService.leastLoaded(candidates, x -> x,
+        x -> x.equals("large") ? 4 : 1, tenants));
+  }
+
+  @Test
+  public void shouldPreferFirstConfiguredOnTie() {
+    final List<String> candidates = Arrays.asList("a", "b");
+    Assert.assertEquals("a", TenantPlacementService.leastLoaded(candidates, x -> x, x -> 1, new HashMap<>()));
+  }
+
+  @Test
+  public void shouldIdentifyClusterIndependentOfContactPointOrder() {
+    Assert.assertEquals(TenantPlacementService.clusterKey("10.0.0.2:9042, 10.0.0.1:9042"),
+        TenantPlacementService.clusterKey("10.0.0.1:9042,10.0.0.2:9042"));
+  }
+
+  @Test
+  public void shouldCreateDatabasesWithAdminRoleOfServer() {
+    final ProvisionerProperties.Placement.DatabaseServer server = new ProvisionerProperties.Placement.DatabaseServer();
+    server.setHost("db2");
+    server.setUser("tenant");
+    server.setPassword("tenant-secret");
+    server.setAdminUser("admin");
+    server.setAdminPassword("admin-secret");
+    final ProvisionerProperties provisionerProperties = new ProvisionerProperties();
+    provisionerProperties.getPlacement().getDatabaseServers().add(server);
+    final Environment environmentMock = Mockito.mock(Environment.class);
+    when(environmentMock.getProperty("postgresql.host")).thenReturn("localhost");
+    when(environmentMock.getProperty("postgresql.port")).thenReturn("5432");
+    when(environmentMock.getProperty("postgresql.user")).thenReturn("provisioner");
+    final TenantPlacementService testSubject = new TenantPlacementService(null, environmentMock, provisionerProperties, null, null);
+
+    final DatabaseConnectionInfo tenantDatabase = new DatabaseConnectionInfo();
+    tenantDatabase.setDatabaseName("comp_test");
+    tenantDatabase.setHost("db2");
+    tenantDatabase.setPort("5432");
+    tenantDatabase.setUser("tenant");
+    final DatabaseConnectionInfo adminConnectionInfo = testSubject.adminConnectionInfoOf(tenantDatabase);
+
+    Assert.assertEquals("postgres", adminConnectionInfo.getDatabaseName());
+    Assert.assertEquals("db2", adminConnectionInfo.getHost());
+    Assert.assertEquals("admin", adminConnectionInfo.getUser());
+    Assert.assertEquals("admin-secret", adminConnectionInfo.getPassword());
+
+    tenantDatabase.setHost("localhost");
+    Assert.assertEquals("provisioner", testSubject.adminConnectionInfoOf(tenantDatabase).getUser());
+
+    tenantDatabase.setHost("db3");
+    try {
+      testSubject.adminConnectionInfoOf(tenantDatabase);
+      Assert.fail("A server which isn't configured has no admin role to create databases with.");
+    } catch (final ServiceException ignored) {
+    }
+  }
+}
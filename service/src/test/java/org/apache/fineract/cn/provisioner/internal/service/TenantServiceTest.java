@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import org.apache.fineract.cn.lang.ServiceException;
+import org.apache.fineract.cn.provisioner.api.v1.domain.CassandraConnectionInfo;
+import org.apache.fineract.cn.provisioner.api.v1.domain.DatabaseConnectionInfo;
+import org.apache.fineract.cn.provisioner.api.v1.domain.Tenant;
+import org.apache.fineract.cn.provisioner.api.v1.domain.TenantDeletion;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.repository.TenantCassandraRepository;
+import org.apache.fineract.cn.provisioner.internal.repository.TenantDAO;
+import org.apache.fineract.cn.provisioner.internal.repository.TenantEntity;
+import org.apache.fineract.cn.provisioner.internal.util.DataStoreOption;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisioningTracer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.springframework.core.env.Environment;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TenantServiceTest {
+
+  public TenantServiceTest() {
+    super();
+  }
+
+  @Test
+  public void shouldDeleteInLanesAndReportEveryOutcome() throws Exception {
+    final ProvisionerProperties provisionerProperties = new ProvisionerProperties();
+    provisionerProperties.setDataStoreOption(DataStoreOption.CASSANDRA);
+    provisionerProperties.getDeletion().setParallelismPerCluster(2);
+
+    final TenantCassandraRepository tenantCassandraRepositoryMock = Mockito.mock(TenantCassandraRepository.class);
+    when(tenantCassandraRepositoryMock.get(anyString())).thenAnswer(invocation -> {
+      final TenantEntity tenantEntity = new TenantEntity();
+      tenantEntity.setIdentifier((String) invocation.getArguments()[0]);
+      tenantEntity.setClusterName("cluster");
+      tenantEntity.setContactPoints("localhost:9042");
+      return Optional.of(tenantEntity);
+    });
+
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    doAnswer(invocation -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(50);
+        if ("broken".equals(invocation.getArguments()[0])) {
+          throw new IllegalStateException("Keyspace of broken could not be dropped.");
+        }
+        return null;
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    }).when(tenantCassandraRepositoryMock).delete(anyString());
+
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final TenantService testSubject = new TenantService(
+          Mockito.mock(Logger.class), null, Mockito.mock(TenantApplicationService.class), null,
+          tenantCassandraRepositoryMock, null, provisionerProperties, new ProvisionerMetrics(),
+          new ProvisioningTracer(1, 10), executor, null, null, null);
+
+      final List<TenantDeletion> deletions =
+          testSubject.deleteAll(Arrays.asList("first", "broken", "third", "fourth", "first", "fifth"));
+
+      Assert.assertEquals(5, deletions.size());
+      Assert.assertTrue(maxInFlight.get() <= 2);
+      Assert.assertEquals("first", deletions.get(0).getIdentifier());
+      Assert.assertTrue(deletions.get(0).getDeleted());
+      Assert.assertEquals("broken", deletions.get(1).getIdentifier());
+      Assert.assertFalse(deletions.get(1).getDeleted());
+      Assert.assertEquals("Keyspace of broken could not be dropped.", deletions.get(1).getFailure());
+      for (final TenantDeletion deletion : deletions.subList(2, deletions.size())) {
+        Assert.assertTrue(deletion.getIdentifier(), deletion.getDeleted());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldMapTenantKeptOnlyInDatabase() {
+    final TenantDAO tenantDAO = new TenantDAO();
+    tenantDAO.setIdentifier("comp_test");
+    tenantDAO.setName("Component Test");
+    tenantDAO.setDescription("Tenant of the component tests");
+    tenantDAO.setDriverClass("org.postgresql.Driver");
+    tenantDAO.setDatabaseName("comp_test");
+    tenantDAO.setHost("localhost");
+    tenantDAO.setPort("5432");
+    tenantDAO.setUser("postgres");
+    tenantDAO.setPassword("postgres");
+
+    final Tenant tenant = TenantService.getTenantFromTenantDAO(tenantDAO);
+
+    Assert.assertEquals("comp_test", tenant.getIdentifier());
+    Assert.assertEquals("Component Test", tenant.getName());
+    Assert.assertEquals("Tenant of the component tests", tenant.getDescription());
+    Assert.assertNull(tenant.getCassandraConnectionInfo());
+    Assert.assertEquals("comp_test", tenant.getDatabaseConnectionInfo().getDatabaseName());
+    Assert.assertEquals("5432", tenant.getDatabaseConnectionInfo().getPort());
+  }
+
+  @Test
+  public void shouldRefuseSharedKeyspaceUnlessEnabled() {
+    final CassandraConnectionInfo cassandraConnectionInfo = new CassandraConnectionInfo();
+    cassandraConnectionInfo.setKeyspaceMode(CassandraConnectionInfo.KEYSPACE_MODE_SHARED);
+
+    final ProvisionerProperties provisionerProperties = new ProvisionerProperties();
+    try {
+      keyspaceModeTestSubject(provisionerProperties).keyspaceModeOf("small", cassandraConnectionInfo);
+      Assert.fail("Shared keyspaces should be refused while they aren't enabled.");
+    } catch (final ServiceException ignored) {
+    }
+
+    provisionerProperties.getSharedKeyspaces().setEnabled(true);
+    Assert.assertEquals(CassandraConnectionInfo.KEYSPACE_MODE_SHARED,
+        keyspaceModeTestSubject(provisionerProperties).keyspaceModeOf("small", cassandraConnectionInfo));
+  }
+
+  private static TenantService keyspaceModeTestSubject(final ProvisionerProperties provisionerProperties) {
+    return new TenantService(
+        Mockito.mock(Logger.class), null, null, null, null, null, provisionerProperties,
+        new ProvisionerMetrics(), new ProvisioningTracer(1, 10), null, null, null, null);
+  }
+
+  @Test
+  public void shouldRejectTenantWhoseRowExistsWithoutCreatingDatabase() throws Exception {
+    final Connection provisionerConnectionMock = provisionerConnection(false, new HashMap<>());
+    final TemplateDatabaseService templateDatabaseServiceMock = Mockito.mock(TemplateDatabaseService.class);
+    final WarmPoolService warmPoolServiceMock = Mockito.mock(WarmPoolService.class);
+
+    try {
+      databaseTestSubject(templateDatabaseServiceMock, warmPoolServiceMock)
+          .claimAndCreateDatabase(provisionerConnectionMock, databaseTenant());
+      Assert.fail("The existing tenant should be reported as a conflict.");
+    } catch (final ServiceException ignored) {
+    }
+
+    verify(warmPoolServiceMock, never()).claimDatabase(any(Connection.class), anyString());
+    verify(templateDatabaseServiceMock, never()).createDatabase(any(Connection.class), anyString());
+    verify(provisionerConnectionMock, never()).prepareStatement(contains("DELETE"));
+  }
+
+  @Test
+  public void shouldDeleteClaimedRowWhenDatabaseCreationFails() throws Exception {
+    final Map<String, PreparedStatement> preparedStatements = new HashMap<>();
+    final Connection provisionerConnectionMock = provisionerConnection(true, preparedStatements);
+    final TemplateDatabaseService templateDatabaseServiceMock = Mockito.mock(TemplateDatabaseService.class);
+    doThrow(new SQLException("database \"comp_test\" already exists")).when(templateDatabaseServiceMock)
+        .createDatabase(provisionerConnectionMock, "comp_test");
+
+    try {
+      databaseTestSubject(templateDatabaseServiceMock, Mockito.mock(WarmPoolService.class))
+          .claimAndCreateDatabase(provisionerConnectionMock, databaseTenant());
+      Assert.fail("The failure should be passed on.");
+    } catch (final SQLException expected) {
+      Assert.assertEquals("database \"comp_test\" already exists", expected.getMessage());
+    }
+
+    final PreparedStatement deleteStatement = preparedStatements.entrySet().stream()
+        .filter(preparedStatement -> preparedStatement.getKey().contains("DELETE FROM tenants"))
+        .map(Map.Entry::getValue)
+        .findAny().orElseThrow(() -> new AssertionError("The claimed row wasn't deleted."));
+    verify(deleteStatement).setString(1, "comp_test");
+    verify(deleteStatement).execute();
+  }
+
+  @Test
+  public void shouldKeepCreationFailureWhenDeletingClaimedRowFails() throws Exception {
+    final Connection provisionerConnectionMock = provisionerConnection(true, new HashMap<>());
+    when(provisionerConnectionMock.prepareStatement(contains("DELETE FROM tenants")))
+        .thenThrow(new SQLException("connection lost"));
+    final TemplateDatabaseService templateDatabaseServiceMock = Mockito.mock(TemplateDatabaseService.class);
+    doThrow(new SQLException("database \"comp_test\" already exists")).when(templateDatabaseServiceMock)
+        .createDatabase(provisionerConnectionMock, "comp_test");
+
+    try {
+      databaseTestSubject(templateDatabaseServiceMock, Mockito.mock(WarmPoolService.class))
+          .claimAndCreateDatabase(provisionerConnectionMock, databaseTenant());
+      Assert.fail("The failure should be passed on.");
+    } catch (final SQLException expected) {
+      Assert.assertEquals("database \"comp_test\" already exists", expected.getMessage());
+      Assert.assertEquals(1, expected.getSuppressed().length);
+      Assert.assertEquals("connection lost", expected.getSuppressed()[0].getMessage());
+    }
+  }
+
+  @Test
+  public void shouldCreateDatabaseOnServerTenantWasPlacedOn() throws Exception {
+    final Connection provisionerConnectionMock = provisionerConnection(true, new HashMap<>());
+    final Connection serverConnectionMock = Mockito.mock(Connection.class);
+    final Statement statementMock = Mockito.mock(Statement.class);
+    when(serverConnectionMock.createStatement()).thenReturn(statementMock);
+    final TemplateDatabaseService templateDatabaseServiceMock = Mockito.mock(TemplateDatabaseService.class);
+    final WarmPoolService warmPoolServiceMock = Mockito.mock(WarmPoolService.class);
+    final Tenant tenant = databaseTenant();
+    tenant.getDatabaseConnectionInfo().setHost("db2");
+
+    final List<DatabaseConnectionInfo> connectedTo = new ArrayList<>();
+    new TenantService(
+        Mockito.mock(Logger.class), provisionerEnvironment(), null, null, null, null, new ProvisionerProperties(),
+        new ProvisionerMetrics(), new ProvisioningTracer(1, 10), null, templateDatabaseServiceMock, warmPoolServiceMock, null) {
+      @Override
+      Connection connectToServer(final DatabaseConnectionInfo databaseConnectionInfo) {
+        connectedTo.add(databaseConnectionInfo);
+        return serverConnectionMock;
+      }
+    }.claimAndCreateDatabase(provisionerConnectionMock, tenant);
+
+    Assert.assertEquals(1, connectedTo.size());
+    Assert.assertEquals("db2", connectedTo.get(0).getHost());
+    verify(statementMock).execute("CREATE DATABASE comp_test OWNER \"postgres\"");
+    verify(serverConnectionMock).close();
+    verify(warmPoolServiceMock, never()).claimDatabase(any(Connection.class), anyString());
+    verify(templateDatabaseServiceMock, never()).createDatabase(any(Connection.class), anyString());
+  }
+
+  private static Connection provisionerConnection(final boolean insertApplies,
+                                                  final Map<String, PreparedStatement> preparedStatements)
+      throws SQLException {
+    final Connection provisionerConnectionMock = Mockito.mock(Connection.class);
+    when(provisionerConnectionMock.prepareStatement(anyString())).thenAnswer(invocation ->
+        preparedStatements.computeIfAbsent((String) invocation.getArguments()[0], sql -> {
+          final PreparedStatement preparedStatementMock = Mockito.mock(PreparedStatement.class);
+          final ResultSet resultSetMock = Mockito.mock(ResultSet.class);
+          try {
+            when(resultSetMock.next()).thenReturn(insertApplies);
+            when(preparedStatementMock.executeQuery()).thenReturn(resultSetMock);
+          } catch (final SQLException e) {
+            throw new IllegalStateException(e);
+          }
+          return preparedStatementMock;
+        }));
+    return provisionerConnectionMock;
+  }
+
+  private static TenantService databaseTestSubject(final TemplateDatabaseService templateDatabaseService,
+                                                   final WarmPoolService warmPoolService) {
+    return new TenantService(
+        Mockito.mock(Logger.class), provisionerEnvironment(), null, null, null, null, new ProvisionerProperties(),
+        new ProvisionerMetrics(), new ProvisioningTracer(1, 10), null, templateDatabaseService, warmPoolService, null);
+  }
+
+  private static Environment provisionerEnvironment() {
+    final Environment environmentMock = Mockito.mock(Environment.class);
+    when(environmentMock.getProperty("postgresql.host")).thenReturn("localhost");
+    when(environmentMock.getProperty("postgresql.port")).thenReturn("5432");
+    return environmentMock;
+  }
+
+  private static Tenant databaseTenant() {
+    final DatabaseConnectionInfo databaseConnectionInfo = new DatabaseConnectionInfo();
+    databaseConnectionInfo.setDriverClass("org.postgresql.Driver");
+    databaseConnectionInfo.setDatabaseName("comp_test");
+    databaseConnectionInfo.setHost("localhost");
+    databaseConnectionInfo.setPort("5432");
+    databaseConnectionInfo.setUser("postgres");
+    databaseConnectionInfo.setPassword("postgres");
+
+    final Tenant tenant = new Tenant();
+    tenant.setIdentifier("comp_test");
+    tenant.setDatabaseConnectionInfo(databaseConnectionInfo);
+    return tenant;
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service;
+
+import org.apache.fineract.cn.provisioner.api.v1.domain.CassandraConnectionInfo;
+import org.apache.fineract.cn.provisioner.api.v1.domain.TableOptions;
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
+import org.apache.fineract.cn.provisioner.internal.repository.SpareKeyspaceRepository;
+import org.apache.fineract.cn.provisioner.internal.repository.TenantEntity;
+import org.apache.fineract.cn.provisioner.internal.util.DataStoreOption;
+import org.apache.fineract.cn.provisioner.internal.util.ProvisionerMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.springframework.core.env.Environment;
+
+import java.util.Optional;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WarmPoolServiceTest {
+
+  private static final String CONTACT_POINTS = "127.0.0.1:9042";
+
+  private final SpareKeyspaceRepository spareKeyspaceRepositoryMock = Mockito.mock(SpareKeyspaceRepository.class);
+  private final ProvisionerProperties provisionerProperties = new ProvisionerProperties();
+
+  public WarmPoolServiceTest() {
+    super();
+    this.provisionerProperties.setDataStoreOption(DataStoreOption.CASSANDRA);
+    this.provisionerProperties.getWarmPool().setEnabled(true);
+    this.provisionerProperties.getWarmPool().setSize(3);
+    this.provisionerProperties.getWarmPool().setRefillBatchSize(2);
+    this.provisionerProperties.getWarmPool().setReplicationType("Simple");
+    this.provisionerProperties.getWarmPool().setReplicas("1");
+  }
+
+  @Test
+  public void refillShouldCreateAtMostOneBatchOfMissingSpares() {
+    when(this.spareKeyspaceRepositoryMock.count(CONTACT_POINTS, "Simple", "1")).thenReturn(0L);
+
+    this.createTestSubject().refill();
+
+    verify(this.spareKeyspaceRepositoryMock, times(2)).create("Test Cluster", CONTACT_POINTS, "Simple", "1");
+  }
+
+  @Test
+  public void refillShouldStopAtPoolSize() {
+    when(this.spareKeyspaceRepositoryMock.count(CONTACT_POINTS, "Simple", "1")).thenReturn(2L);
+
+    this.createTestSubject().refill();
+
+    verify(this.spareKeyspaceRepositoryMock, times(1)).create("Test Cluster", CONTACT_POINTS, "Simple", "1");
+  }
+
+  @Test
+  public void claimShouldHandOutSpareOfMatchingPool() {
+    when(this.spareKeyspaceRepositoryMock.claim(CONTACT_POINTS, "simple", "1")).thenReturn(Optional.of("spare_1"));
+
+    Assert.assertEquals(Optional.of("spare_1"), this.createTestSubject().claimKeyspace(connectionInfo("simple")));
+  }
+
+  @Test
+  public void claimShouldSkipTenantsWithTableOptions() {
+    final CassandraConnectionInfo cassandraConnectionInfo = connectionInfo("Simple");
+    cassandraConnectionInfo.setCommandSourceTableOptions(new TableOptions());
+
+    Assert.assertFalse(this.createTestSubject().claimKeyspace(cassandraConnectionInfo).isPresent());
+    verify(this.spareKeyspaceRepositoryMock, never()).claim(anyString(), anyString(), anyString());
+  }
+
+  @Test
+  public void claimShouldNotFailWhenPoolFails() {
+    when(this.spareKeyspaceRepositoryMock.claim(CONTACT_POINTS, "Simple", "1")).thenThrow(new IllegalStateException());
+
+    Assert.assertFalse(this.createTestSubject().claimKeyspace(connectionInfo("Simple")).isPresent());
+  }
+
+  @Test
+  public void releaseShouldReturnSpareToPool() {
+    final TenantEntity keyspace = new TenantEntity();
+    keyspace.setKeyspaceName("spare_1");
+
+    this.createTestSubject().releaseKeyspace(keyspace);
+
+    verify(this.spareKeyspaceRepositoryMock).release(keyspace);
+  }
+
+  private WarmPoolService createTestSubject() {
+    final Environment environmentMock = Mockito.mock(Environment.class);
+    when(environmentMock.getProperty("cassandra.contactPoints")).thenReturn(CONTACT_POINTS);
+    when(environmentMock.getProperty("cassandra.clusterName")).thenReturn("Test Cluster");
+    return new WarmPoolService(Mockito.mock(Logger.class), environmentMock, this.provisionerProperties,
+        new ProvisionerMetrics(), this.spareKeyspaceRepositoryMock, null);
+  }
+
+  private static CassandraConnectionInfo connectionInfo(final String replicationType) {
+    final CassandraConnectionInfo cassandraConnectionInfo = new CassandraConnectionInfo();
+    cassandraConnectionInfo.setContactPoints(CONTACT_POINTS);
+    cassandraConnectionInfo.setReplicationType(replicationType);
+    cassandraConnectionInfo.setReplicas("1");
+    return cassandraConnectionInfo;
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.service.applications;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import org.apache.fineract.cn.anubis.api.v1.domain.AllowedOperation;
+import org.apache.fineract.cn.anubis.api.v1.domain.PermittableEndpoint;
+import org.apache.fineract.cn.identity.api.v1.domain.CallEndpointSet;
+import org.apache.fineract.cn.identity.api.v1.domain.Permission;
+import org.apache.fineract.cn.identity.api.v1.domain.PermittableGroup;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdentityArtifactDigestTest {
+
+  private final PermittableEndpoint abcPost1 = new PermittableEndpoint("/a/b/c", "POST", "1");
+  private final PermittableEndpoint abcGet1 = new PermittableEndpoint("/a/b/c", "GET", "1");
+  private final PermittableEndpoint defGet1 = new PermittableEndpoint("/d/e/f", "POST", "1");
+
+  @Test
+  public void permittableGroupHashShouldIgnoreOrder() {
+    final PermittableGroup group = new PermittableGroup("1", Arrays.asList(abcPost1, abcGet1, defGet1));
+    final PermittableGroup reorderedGroup = new PermittableGroup("1", Arrays.asList(defGet1, abcGet1, abcPost1));
+    final PermittableGroup changedGroup = new PermittableGroup("1", Arrays.asList(abcPost1, defGet1));
+
+    Assert.assertEquals(IdentityArtifactDigest.permittableGroupHash(group), IdentityArtifactDigest.permittableGroupHash(reorderedGroup));
+    Assert.assertNotEquals(IdentityArtifactDigest.permittableGroupHash(group), IdentityArtifactDigest.permittableGroupHash(changedGroup));
+  }
+
+  @Test
+  public void applicationPermissionHashShouldChangeWithAllowedOperations() {
+    final Permission readPermission = new Permission("x", Collections.singleton(AllowedOperation.READ));
+    final Permission readChangePermission = new Permission("x", new HashSet<>(Arrays.asList(AllowedOperation.CHANGE, AllowedOperation.READ)));
+    final Permission changeReadPermission = new Permission("x", new HashSet<>(Arrays.asList(AllowedOperation.READ, AllowedOperation.CHANGE)));
+
+    Assert.assertEquals(IdentityArtifactDigest.applicationPermissionHash(readChangePermission), IdentityArtifactDigest.applicationPermissionHash(changeReadPermission));
+    Assert.assertNotEquals(IdentityArtifactDigest.applicationPermissionHash(readPermission), IdentityArtifactDigest.applicationPermissionHash(readChangePermission));
+  }
+
+  @Test
+  public void callEndpointSetHashShouldIgnoreOrder() {
+    final CallEndpointSet callEndpointSet = callEndpointSet("forPurposeFoo", "x", "m");
+    final CallEndpointSet reorderedCallEndpointSet = callEndpointSet("forPurposeFoo", "m", "x");
+    final CallEndpointSet renamedCallEndpointSet = callEndpointSet("forPurposeBar", "x", "m");
+
+    Assert.assertEquals(IdentityArtifactDigest.callEndpointSetHash(callEndpointSet), IdentityArtifactDigest.callEndpointSetHash(reorderedCallEndpointSet));
+    Assert.assertNotEquals(IdentityArtifactDigest.callEndpointSetHash(callEndpointSet), IdentityArtifactDigest.callEndpointSetHash(renamedCallEndpointSet));
+  }
+
+  @Test
+  public void keysShouldBeScopedByApplication() {
+    final Permission permission = new Permission("x", Collections.singleton(AllowedOperation.READ));
+
+    Assert.assertNotEquals(IdentityArtifactDigest.applicationPermissionKey("office-v1", permission),
+        IdentityArtifactDigest.applicationPermissionKey("customer-v1", permission));
+  }
+
+  private static CallEndpointSet callEndpointSet(final String identifier, final String... permittableEndpointGroupIdentifiers) {
+    final CallEndpointSet ret = new CallEndpointSet();
+    ret.setIdentifier(identifier);
+    ret.setPermittableEndpointGroupIdentifiers(Arrays.asList(permittableEndpointGroupIdentifiers));
+    return ret;
+  }
+}
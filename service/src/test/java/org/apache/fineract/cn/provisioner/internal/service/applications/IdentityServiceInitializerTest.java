@@ -18,8 +18,10 @@
  */
 package org.apache.fineract.cn.provisioner.internal.service.applications;
 
+import org.apache.fineract.cn.provisioner.config.ProvisionerProperties;
 import org.apache.fineract.cn.provisioner.config.SystemProperties;
 import org.apache.fineract.cn.provisioner.internal.listener.IdentityListener;
+import org.apache.fineract.cn.provisioner.internal.repository.IdentityArtifactRepository;
 import org.apache.fineract.cn.anubis.api.v1.client.Anubis;
 import org.apache.fineract.cn.anubis.api.v1.domain.PermittableEndpoint;
 import org.apache.fineract.cn.identity.api.v1.client.IdentityManager;
@@ -34,9 +36,20 @@ import org.slf4j.Logger;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.*;
 
@@ -72,7 +85,7 @@ public class IdentityServiceInitializerTest {
     when(anubisMock.getPermittableEndpoints()).thenThrow(IllegalStateException.class);
 
     final SystemProperties systemProperties = new SystemProperties();
-    final List<PermittableEndpoint> ret = new IdentityServiceInitializer(identityListenerMock, applicationCallContextProviderMock, null, loggerMock, systemProperties)
+    final List<PermittableEndpoint> ret = new IdentityServiceInitializer(identityListenerMock, applicationCallContextProviderMock, null, loggerMock, systemProperties, null, null, null, null)
             .getPermittables("blah");
 
     Assert.assertEquals(ret, Collections.emptyList());
@@ -106,7 +119,7 @@ public class IdentityServiceInitializerTest {
 
     try (final AutoTenantContext ignored = new AutoTenantContext("blah")) {
       final SystemProperties systemProperties = new SystemProperties();
-      new IdentityServiceInitializer(identityListenerMock, null, null, loggerMock, systemProperties)
+      new IdentityServiceInitializer(identityListenerMock, null, null, loggerMock, systemProperties, null, null, null, null)
           .createOrFindPermittableGroup(identityServiceMock, group1);
     }
   }
@@ -122,7 +135,7 @@ public class IdentityServiceInitializerTest {
 
     try (final AutoTenantContext ignored = new AutoTenantContext("blah")) {
       final SystemProperties systemProperties = new SystemProperties();
-      new IdentityServiceInitializer(identityListenerMock, null, null, loggerMock, systemProperties)
+      new IdentityServiceInitializer(identityListenerMock, null, null, loggerMock, systemProperties, null, null, null, null)
           .createOrFindPermittableGroup(identityServiceMock, group1);
     }
 
@@ -140,12 +153,113 @@ public class IdentityServiceInitializerTest {
 
     try (final AutoTenantContext ignored = new AutoTenantContext("blah")) {
       final SystemProperties systemProperties = new SystemProperties();
-      new IdentityServiceInitializer(identityListenerMock, null, null, loggerMock, systemProperties)
+      new IdentityServiceInitializer(identityListenerMock, null, null, loggerMock, systemProperties, null, null, null, null)
           .createOrFindPermittableGroup(identityServiceMock, group1);
     }
 
     verify(loggerMock).error(anyString(), anyString(), anyString(), isA(IllegalStateException.class));
   }
 
+  @Test
+  public void postedPermittableGroupIsRememberedOnlyOnceCreated() throws Exception {
+    final IdentityListener identityListenerMock = Mockito.mock(IdentityListener.class);
+    final IdentityArtifactRepository identityArtifactRepositoryMock = Mockito.mock(IdentityArtifactRepository.class);
+    doReturn(Collections.emptyMap()).when(identityArtifactRepositoryMock).findHashes("blah");
+    final IdentityManager identityServiceMock = Mockito.mock(IdentityManager.class);
+
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final List<IdentityServiceInitializer.PermittableGroupPosting> postings =
+          identityServiceInitializer(identityListenerMock, identityServiceMock, identityArtifactRepositoryMock,
+              Collections.singletonList(group1), new ProvisionerProperties(), executor)
+              .postApplicationPermittableGroups("blah", "identity-v1", "http://identity", "office-v1", "http://office");
+
+      verify(identityServiceMock).createPermittableGroup(group1);
+      Assert.assertEquals(1, postings.size());
+      verify(identityArtifactRepositoryMock, never()).rememberHash(anyString(), anyString(), anyString());
+
+      postings.get(0).created();
+      verify(identityArtifactRepositoryMock).rememberHash("blah",
+          IdentityArtifactDigest.permittableGroupKey(group1), IdentityArtifactDigest.permittableGroupHash(group1));
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void permittableGroupsArePostedConcurrentlyUpToTheCapAndAllBeforeReturning() throws Exception {
+    final ProvisionerProperties provisionerProperties = new ProvisionerProperties();
+    provisionerProperties.getIdentity().setConcurrency(2);
+    final List<PermittableGroup> permittableGroups = IntStream.range(0, 6)
+        .mapToObj(i -> new PermittableGroup("group" + i, Collections.singletonList(abcPost1)))
+        .collect(Collectors.toList());
+
+    final IdentityArtifactRepository identityArtifactRepositoryMock = Mockito.mock(IdentityArtifactRepository.class);
+    doReturn(Collections.emptyMap()).when(identityArtifactRepositoryMock).findHashes("blah");
 
+    final CountDownLatch bothPermitsTaken = new CountDownLatch(2);
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    final Set<String> posted = ConcurrentHashMap.newKeySet();
+    final IdentityManager identityServiceMock = Mockito.mock(IdentityManager.class);
+    doAnswer(invocation -> {
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        //The first two posts wait for each other, so that both permits are certainly held at the same time.
+        bothPermitsTaken.countDown();
+        bothPermitsTaken.await(5, TimeUnit.SECONDS);
+        Thread.sleep(20);
+        posted.add(((PermittableGroup) invocation.getArguments()[0]).getIdentifier());
+        return null;
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    }).when(identityServiceMock).createPermittableGroup(any(PermittableGroup.class));
+
+    final ExecutorService executor = Executors.newFixedThreadPool(6);
+    try {
+      final List<IdentityServiceInitializer.PermittableGroupPosting> postings =
+          identityServiceInitializer(Mockito.mock(IdentityListener.class), identityServiceMock,
+              identityArtifactRepositoryMock, permittableGroups, provisionerProperties, executor)
+              .postApplicationPermittableGroups("blah", "identity-v1", "http://identity", "office-v1", "http://office");
+
+      Assert.assertEquals(6, postings.size());
+      //Resource initialization only starts once this returned, so every group must be in identity by now.
+      Assert.assertEquals(permittableGroups.stream().map(PermittableGroup::getIdentifier).collect(Collectors.toSet()), posted);
+      Assert.assertEquals(2, maxInFlight.get());
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private IdentityServiceInitializer identityServiceInitializer(
+      final IdentityListener identityListenerMock,
+      final IdentityManager identityServiceMock,
+      final IdentityArtifactRepository identityArtifactRepositoryMock,
+      final List<PermittableGroup> permittableGroups,
+      final ProvisionerProperties provisionerProperties,
+      final ExecutorService executor) throws Exception {
+    final ApplicationCallContextProvider applicationCallContextProviderMock = Mockito.mock(ApplicationCallContextProvider.class);
+    doReturn(Mockito.mock(AutoCloseable.class)).when(applicationCallContextProviderMock).getApplicationCallGuestContext(anyString());
+    doReturn(Mockito.mock(AutoCloseable.class)).when(applicationCallContextProviderMock).getApplicationCallContext(anyString(), anyString());
+    doReturn(identityServiceMock).when(applicationCallContextProviderMock).getApplication(IdentityManager.class, "http://identity");
+    //Stands in for the propagation of the tenant context to the executor's threads.
+    doAnswer(invocation -> {
+      final Supplier<?> action = (Supplier<?>) invocation.getArguments()[0];
+      return (Supplier<?>) () -> {
+        try (final AutoTenantContext ignored = new AutoTenantContext("blah")) {
+          return action.get();
+        }
+      };
+    }).when(applicationCallContextProviderMock).propagateCallContext(any());
+
+    final ApplicationPermittablesCache applicationPermittablesCacheMock = Mockito.mock(ApplicationPermittablesCache.class);
+    doReturn(permittableGroups).when(applicationPermittablesCacheMock).getPermittableGroups(eq("office-v1"), eq("http://office"), any());
+
+    return new IdentityServiceInitializer(identityListenerMock, applicationCallContextProviderMock, null,
+        Mockito.mock(Logger.class), new SystemProperties(), applicationPermittablesCacheMock,
+        identityArtifactRepositoryMock, provisionerProperties, executor);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompletableFuturesTest {
+
+  public CompletableFuturesTest() {
+    super();
+  }
+
+  @Test
+  public void shouldCompleteWhenAllSucceed() {
+    CompletableFutures.join(CompletableFutures.allOf(Arrays.asList(
+        CompletableFuture.completedFuture("a"),
+        CompletableFuture.runAsync(() -> { }))));
+  }
+
+  @Test
+  public void shouldAggregateAllFailures() {
+    final IllegalStateException keyspaceFailure = new IllegalStateException("keyspace");
+    final IllegalArgumentException databaseFailure = new IllegalArgumentException("database");
+    final CompletableFuture<Void> keyspaceDeletion = CompletableFuture.runAsync(() -> {
+      throw keyspaceFailure;
+    });
+    final CompletableFuture<Void> databaseDeletion = CompletableFuture.runAsync(() -> {
+      throw databaseFailure;
+    });
+
+    try {
+      CompletableFutures.join(CompletableFutures.allOf(Arrays.asList(keyspaceDeletion, databaseDeletion)));
+      Assert.fail();
+    } catch (final IllegalStateException ex) {
+      Assert.assertSame(keyspaceFailure, ex);
+      Assert.assertEquals(1, ex.getSuppressed().length);
+      Assert.assertSame(databaseFailure, ex.getSuppressed()[0]);
+    }
+  }
+
+  @Test
+  public void shouldWaitForAllBeforeFailing() {
+    final CompletableFuture<Void> slow = new CompletableFuture<>();
+    final CompletableFuture<Void> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IllegalStateException());
+    final CompletableFuture<Void> all = CompletableFutures.allOf(Arrays.asList(failed, slow));
+    Assert.assertFalse(all.isDone());
+    slow.complete(null);
+    Assert.assertTrue(all.isCompletedExceptionally());
+  }
+
+  @Test
+  public void shouldRunAtMostLaneCountActionsAtOnce() {
+    final List<CompletableFuture<String>> started = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+
+    final List<CompletableFuture<String>> results = CompletableFutures.inLanes(
+        Arrays.asList("a", "b", "c", "d", "e"), 2, item -> {
+          maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          final CompletableFuture<String> action = new CompletableFuture<>();
+          started.add(action);
+          return action.whenComplete((ignored, failure) -> inFlight.decrementAndGet());
+        });
+
+    Assert.assertEquals(5, results.size());
+    Assert.assertEquals(2, started.size());
+    for (int i = 0; i < 5; i++) {
+      started.get(i).complete("done " + i);
+    }
+
+    Assert.assertEquals(2, maxInFlight.get());
+    Assert.assertEquals("done 0", results.get(0).join());
+    Assert.assertEquals("done 4", results.get(4).join());
+  }
+
+  @Test
+  public void shouldContinueLaneAfterFailure() {
+    final List<CompletableFuture<String>> results = CompletableFutures.inLanes(
+        Arrays.asList("a", "b", "c"), 1, item -> {
+          final CompletableFuture<String> action = new CompletableFuture<>();
+          if (item.equals("b")) {
+            action.completeExceptionally(new IllegalStateException(item));
+          } else {
+            action.complete(item);
+          }
+          return action;
+        });
+
+    Assert.assertEquals("a", results.get(0).join());
+    Assert.assertTrue(results.get(1).isCompletedExceptionally());
+    Assert.assertEquals("c", results.get(2).join());
+  }
+
+  @Test
+  public void shouldRunInOneLaneWhenLaneCountIsNotPositive() {
+    final List<CompletableFuture<String>> results = CompletableFutures.inLanes(
+        Arrays.asList("a", "b"), 0, CompletableFuture::completedFuture);
+
+    Assert.assertEquals("b", results.get(1).join());
+  }
+
+  @Test
+  public void shouldUnwrapCompletionFailures() {
+    final IllegalStateException failure = new IllegalStateException();
+    final CompletableFuture<Void> failed = CompletableFuture.runAsync(() -> {
+      throw failure;
+    });
+
+    try {
+      failed.join();
+      Assert.fail();
+    } catch (final RuntimeException ex) {
+      Assert.assertSame(failure, CompletableFutures.unwrap(ex));
+    }
+  }
+}
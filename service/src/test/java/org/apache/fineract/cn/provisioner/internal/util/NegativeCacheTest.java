@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NegativeCacheTest {
+
+  public NegativeCacheTest() {
+    super();
+  }
+
+  @Test
+  public void shouldRememberMissingKeyUntilExpired() {
+    final AtomicLong clock = new AtomicLong();
+    final NegativeCache negativeCache = new NegativeCache(30, TimeUnit.SECONDS, 10, clock::get);
+
+    Assert.assertFalse(negativeCache.isKnownMissing("unknown"));
+    negativeCache.rememberMissing("unknown");
+    Assert.assertTrue(negativeCache.isKnownMissing("unknown"));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(31));
+    Assert.assertFalse(negativeCache.isKnownMissing("unknown"));
+    Assert.assertEquals(0, negativeCache.size());
+  }
+
+  @Test
+  public void shouldForgetKey() {
+    final NegativeCache negativeCache = new NegativeCache(30, TimeUnit.SECONDS, 10);
+    negativeCache.rememberMissing("created");
+    negativeCache.forget("created");
+    Assert.assertFalse(negativeCache.isKnownMissing("created"));
+  }
+
+  @Test
+  public void shouldNotGrowBeyondMaximumSize() {
+    final AtomicLong clock = new AtomicLong();
+    final NegativeCache negativeCache = new NegativeCache(30, TimeUnit.SECONDS, 2, clock::get);
+    negativeCache.rememberMissing("a");
+    negativeCache.rememberMissing("b");
+    negativeCache.rememberMissing("c");
+    Assert.assertEquals(2, negativeCache.size());
+    Assert.assertFalse(negativeCache.isKnownMissing("c"));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(31));
+    negativeCache.rememberMissing("c");
+    Assert.assertTrue(negativeCache.isKnownMissing("c"));
+    Assert.assertEquals(1, negativeCache.size());
+  }
+
+  @Test
+  public void shouldNotRememberWithZeroTtl() {
+    final NegativeCache negativeCache = new NegativeCache(0, TimeUnit.SECONDS, 10);
+    negativeCache.rememberMissing("unknown");
+    Assert.assertFalse(negativeCache.isKnownMissing("unknown"));
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProcessPipeTest {
+
+  public ProcessPipeTest() {
+    super();
+  }
+
+  @Test
+  public void shouldPassOutputOfSourceToSink() throws Exception {
+    final File target = File.createTempFile("process-pipe", ".txt");
+    target.deleteOnExit();
+    final AtomicLong progress = new AtomicLong();
+
+    final long total = ProcessPipe.run(
+        new ProcessBuilder("printf", "tenant data"),
+        new ProcessBuilder("cat").redirectOutput(target),
+        progress::addAndGet);
+
+    Assert.assertEquals(11L, total);
+    Assert.assertEquals(11L, progress.get());
+    Assert.assertEquals("tenant data", new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldFailIfSourceFails() throws Exception {
+    ProcessPipe.run(new ProcessBuilder("false"), new ProcessBuilder("cat"), x -> { });
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldFailIfSinkFails() throws Exception {
+    ProcessPipe.run(new ProcessBuilder("printf", "tenant data"), new ProcessBuilder("false"), x -> { });
+  }
+}
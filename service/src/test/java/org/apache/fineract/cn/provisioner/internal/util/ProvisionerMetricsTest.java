@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProvisionerMetricsTest {
+
+  public ProvisionerMetricsTest() {
+    super();
+  }
+
+  @Test
+  public void shouldRenderCountersPerTagCombination() {
+    final ProvisionerMetrics metrics = new ProvisionerMetrics();
+    metrics.increment("provisioner_calls", "tenant", "t1");
+    metrics.increment("provisioner_calls", "tenant", "t1");
+    metrics.increment("provisioner_calls", "tenant", "t2");
+
+    final String scrape = metrics.scrape();
+    Assert.assertTrue(scrape, scrape.contains("# TYPE provisioner_calls_total counter\n"));
+    Assert.assertTrue(scrape, scrape.contains("provisioner_calls_total{tenant=\"t1\"} 2\n"));
+    Assert.assertTrue(scrape, scrape.contains("provisioner_calls_total{tenant=\"t2\"} 1\n"));
+  }
+
+  @Test
+  public void shouldRecordTimingsWithOutcome() {
+    final AtomicLong clock = new AtomicLong();
+    final ProvisionerMetrics metrics = new ProvisionerMetrics(clock::get);
+
+    metrics.timed("provisioner_step", () -> clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500)), "step", "a");
+    try {
+      metrics.timed("provisioner_step", () -> {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        throw new IllegalStateException();
+      }, "step", "a");
+      Assert.fail();
+    } catch (final IllegalStateException expected) {
+      //expected
+    }
+    try (final ProvisionerMetrics.Timing ignored = metrics.start("provisioner_block")) {
+      clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+    }
+
+    final String scrape = metrics.scrape();
+    Assert.assertTrue(scrape, scrape.contains("provisioner_step_seconds_count{outcome=\"success\",step=\"a\"} 1\n"));
+    Assert.assertTrue(scrape, scrape.contains("provisioner_step_seconds_sum{outcome=\"success\",step=\"a\"} 1.5\n"));
+    Assert.assertTrue(scrape, scrape.contains("provisioner_step_seconds_count{outcome=\"failure\",step=\"a\"} 1\n"));
+    Assert.assertTrue(scrape, scrape.contains("provisioner_block_seconds_max 2.0\n"));
+  }
+
+  @Test
+  public void shouldReadGaugesOnScrape() {
+    final ProvisionerMetrics metrics = new ProvisionerMetrics();
+    final Map<String, Integer> perTenant = new HashMap<>();
+    final AtomicLong total = new AtomicLong(3);
+    metrics.gauge("provisioner_pending", total::get);
+    metrics.gauges("provisioner_pending_by_tenant", "tenant", () -> perTenant);
+    metrics.gauge("provisioner_broken", () -> {
+      throw new IllegalStateException();
+    });
+
+    perTenant.put("t1", 3);
+    String scrape = metrics.scrape();
+    Assert.assertTrue(scrape, scrape.contains("provisioner_pending 3\n"));
+    Assert.assertTrue(scrape, scrape.contains("provisioner_pending_by_tenant{tenant=\"t1\"} 3\n"));
+    Assert.assertFalse(scrape, scrape.contains("provisioner_broken"));
+
+    perTenant.clear();
+    scrape = metrics.scrape();
+    Assert.assertFalse(scrape, scrape.contains("provisioner_pending_by_tenant{"));
+  }
+
+  @Test
+  public void shouldEscapeLabelValues() {
+    final ProvisionerMetrics metrics = new ProvisionerMetrics();
+    metrics.increment("provisioner_calls", "uri", "http://x/\"y\"");
+    Assert.assertTrue(metrics.scrape().contains("provisioner_calls_total{uri=\"http://x/\\\"y\\\"\"} 1\n"));
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProvisioningTracerTest {
+
+  public ProvisioningTracerTest() {
+    super();
+  }
+
+  @Test
+  public void shouldRecordSpansOfActiveTrace() {
+    final ProvisioningTracer provisioningTracer = new ProvisioningTracer(5, 10);
+    try (final ProvisioningTracer.Scope ignored = provisioningTracer.startTrace("tenant", "assign_applications")) {
+      Assert.assertTrue(provisioningTracer.getActiveTraceIdentifier().isPresent());
+      try (final ProvisioningTracer.Scope ignoredSpan = provisioningTracer.startSpan("post_permittable_groups", "application", "office")) {
+        //nested traces continue the active trace
+        try (final ProvisioningTracer.Scope ignoredNested = provisioningTracer.startTrace("tenant", "nested")) {
+          provisioningTracer.recordSpan("IdentityManager.createPermittableGroup", System.nanoTime(), 10L);
+        }
+      }
+    }
+
+    Assert.assertFalse(provisioningTracer.getActiveTraceIdentifier().isPresent());
+
+    final List<ProvisioningTracer.TraceRecord> traces = provisioningTracer.findTraces("tenant");
+    Assert.assertEquals(1, traces.size());
+    Assert.assertEquals("assign_applications", traces.get(0).getOperation());
+    final List<ProvisioningTracer.SpanRecord> spans = traces.get(0).getSpans();
+    Assert.assertEquals(2, spans.size());
+    Assert.assertEquals("IdentityManager.createPermittableGroup", spans.get(0).getName());
+    Assert.assertEquals("post_permittable_groups", spans.get(1).getName());
+    Assert.assertEquals("office", spans.get(1).getAttributes().get("application"));
+  }
+
+  @Test
+  public void shouldRecordSpansOfPropagatedTrace() throws Exception {
+    final ProvisioningTracer provisioningTracer = new ProvisioningTracer(5, 10);
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      try (final ProvisioningTracer.Scope ignored = provisioningTracer.startTrace("tenant", "assign_applications")) {
+        final String traceIdentifier = provisioningTracer.getActiveTraceIdentifier().orElse(null);
+        final Supplier<String> propagated = provisioningTracer.propagate(() -> {
+          provisioningTracer.recordSpan("IdentityManager.createPermittableGroup", System.nanoTime(), 10L);
+          return provisioningTracer.getActiveTraceIdentifier().orElse(null);
+        });
+        Assert.assertEquals(traceIdentifier, CompletableFuture.supplyAsync(propagated, executor).get());
+      }
+
+      Assert.assertFalse(CompletableFuture.supplyAsync(provisioningTracer::getActiveTraceIdentifier, executor).get().isPresent());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    final List<ProvisioningTracer.TraceRecord> traces = provisioningTracer.findTraces("tenant");
+    Assert.assertEquals(1, traces.size());
+    Assert.assertEquals(1, traces.get(0).getSpans().size());
+  }
+
+  @Test
+  public void shouldIgnoreSpansWithoutTrace() {
+    final ProvisioningTracer provisioningTracer = new ProvisioningTracer(5, 10);
+    provisioningTracer.startSpan("orphan").close();
+    Assert.assertTrue(provisioningTracer.findTraces("tenant").isEmpty());
+  }
+
+  @Test
+  public void shouldKeepMostRecentTracesPerTenant() {
+    final ProvisioningTracer provisioningTracer = new ProvisioningTracer(2, 10);
+    provisioningTracer.startTrace("tenant", "first").close();
+    provisioningTracer.startTrace("tenant", "second").close();
+    provisioningTracer.startTrace("tenant", "third").close();
+    provisioningTracer.startTrace("other", "first").close();
+
+    final List<ProvisioningTracer.TraceRecord> traces = provisioningTracer.findTraces("tenant");
+    Assert.assertEquals(2, traces.size());
+    Assert.assertEquals("third", traces.get(0).getOperation());
+    Assert.assertEquals("second", traces.get(1).getOperation());
+    Assert.assertEquals(1, provisioningTracer.findTraces("other").size());
+  }
+
+  @Test
+  public void shouldDropLeastRecentlyTracedTenant() {
+    final ProvisioningTracer provisioningTracer = new ProvisioningTracer(2, 2);
+    provisioningTracer.startTrace("first", "create").close();
+    provisioningTracer.startTrace("second", "create").close();
+    provisioningTracer.startTrace("first", "assign_applications").close();
+    provisioningTracer.startTrace("third", "create").close();
+
+    Assert.assertEquals(2, provisioningTracer.findTraces("first").size());
+    Assert.assertTrue(provisioningTracer.findTraces("second").isEmpty());
+    Assert.assertEquals(1, provisioningTracer.findTraces("third").size());
+  }
+
+  @Test
+  public void shouldForgetTracesOfTenant() {
+    final ProvisioningTracer provisioningTracer = new ProvisioningTracer(2, 10);
+    provisioningTracer.startTrace("tenant", "create").close();
+
+    provisioningTracer.forget("tenant");
+
+    Assert.assertTrue(provisioningTracer.findTraces("tenant").isEmpty());
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RefreshTokenSignerTest {
+
+  private static final Instant NOW = Instant.parse("2017-03-01T10:00:00Z");
+  private static final byte[] KEY = "refresh-key".getBytes(StandardCharsets.UTF_8);
+
+  public RefreshTokenSignerTest() {
+    super();
+  }
+
+  @Test
+  public void shouldVerifySignedToken() {
+    final RefreshTokenSigner signer = new RefreshTokenSigner(KEY, Clock.fixed(NOW, ZoneOffset.UTC));
+    final String token = signer.sign("client.a.b", "wep.admin", 42L, NOW.plusSeconds(60));
+
+    final Optional<RefreshTokenSigner.RefreshToken> verified = signer.verify(token);
+    Assert.assertTrue(verified.isPresent());
+    Assert.assertEquals("client.a.b", verified.get().getClientId());
+    Assert.assertEquals("wep.admin", verified.get().getSubject());
+    Assert.assertEquals(42L, verified.get().getPasswordVersion());
+    Assert.assertEquals(NOW.plusSeconds(60), verified.get().getExpiration());
+  }
+
+  @Test
+  public void shouldRejectExpiredToken() {
+    final RefreshTokenSigner signer = new RefreshTokenSigner(KEY, Clock.fixed(NOW, ZoneOffset.UTC));
+    final String token = signer.sign("client", "wep.admin", 42L, NOW);
+
+    Assert.assertFalse(signer.verify(token).isPresent());
+  }
+
+  @Test
+  public void shouldRejectTamperedToken() {
+    final RefreshTokenSigner signer = new RefreshTokenSigner(KEY, Clock.fixed(NOW, ZoneOffset.UTC));
+    final String token = signer.sign("client", "wep.admin", 42L, NOW.plusSeconds(60));
+    final String[] parts = token.split("\\.");
+    final String tampered = parts[0] + "." + parts[1] + ".43." + parts[3] + "." + parts[4];
+
+    Assert.assertFalse(signer.verify(tampered).isPresent());
+    Assert.assertFalse(signer.verify("garbage").isPresent());
+    Assert.assertFalse(signer.verify(null).isPresent());
+  }
+
+  @Test
+  public void shouldRejectTokenSignedWithOtherKey() {
+    final RefreshTokenSigner signer = new RefreshTokenSigner(KEY, Clock.fixed(NOW, ZoneOffset.UTC));
+    final RefreshTokenSigner otherSigner
+        = new RefreshTokenSigner("other-key".getBytes(StandardCharsets.UTF_8), Clock.fixed(NOW, ZoneOffset.UTC));
+
+    Assert.assertFalse(signer.verify(otherSigner.sign("client", "wep.admin", 42L, NOW.plusSeconds(60))).isPresent());
+  }
+}
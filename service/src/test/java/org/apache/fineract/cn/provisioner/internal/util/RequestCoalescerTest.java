@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RequestCoalescerTest {
+
+  public RequestCoalescerTest() {
+    super();
+  }
+
+  @Test
+  public void shouldExecuteAgainWithoutIdempotencyKey() {
+    final RequestCoalescer requestCoalescer = new RequestCoalescer(60, TimeUnit.SECONDS, 10, new ProvisionerMetrics());
+    final AtomicInteger executions = new AtomicInteger();
+
+    Assert.assertEquals(Integer.valueOf(1), requestCoalescer.execute("create_tenant", null, "a", executions::incrementAndGet));
+    Assert.assertEquals(Integer.valueOf(2), requestCoalescer.execute("create_tenant", null, "a", executions::incrementAndGet));
+  }
+
+  @Test
+  public void shouldReplayResultWithIdempotencyKeyUntilExpired() {
+    final AtomicLong clock = new AtomicLong();
+    final RequestCoalescer requestCoalescer = new RequestCoalescer(60, TimeUnit.SECONDS, 10, new ProvisionerMetrics(), clock::get);
+    final AtomicInteger executions = new AtomicInteger();
+
+    Assert.assertEquals(Integer.valueOf(1), requestCoalescer.execute("create_tenant", "key", "a", executions::incrementAndGet));
+    Assert.assertEquals(Integer.valueOf(1), requestCoalescer.execute("create_tenant", "key", "a", executions::incrementAndGet));
+    //Same key with different contents is a different request.
+    Assert.assertEquals(Integer.valueOf(2), requestCoalescer.execute("create_tenant", "key", "b", executions::incrementAndGet));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(61));
+    Assert.assertEquals(Integer.valueOf(3), requestCoalescer.execute("create_tenant", "key", "a", executions::incrementAndGet));
+  }
+
+  @Test
+  public void shouldNeverReplayUnretainedResult() {
+    final RequestCoalescer requestCoalescer = new RequestCoalescer(60, TimeUnit.SECONDS, 10, new ProvisionerMetrics());
+    final AtomicInteger executions = new AtomicInteger();
+
+    Assert.assertEquals(Integer.valueOf(1),
+        requestCoalescer.executeUnretained("assign_identity_manager", "a", executions::incrementAndGet));
+    Assert.assertEquals(Integer.valueOf(2),
+        requestCoalescer.executeUnretained("assign_identity_manager", "a", executions::incrementAndGet));
+    Assert.assertEquals(0, requestCoalescer.size());
+  }
+
+  @Test
+  public void fingerprintShouldSeparateParts() {
+    Assert.assertEquals(RequestCoalescer.fingerprint("a", "b"), RequestCoalescer.fingerprint("a", "b"));
+    Assert.assertNotEquals(RequestCoalescer.fingerprint("ab", ""), RequestCoalescer.fingerprint("a", "b"));
+  }
+}
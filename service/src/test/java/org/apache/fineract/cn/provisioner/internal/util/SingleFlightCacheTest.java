@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.fineract.cn.provisioner.internal.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SingleFlightCacheTest {
+
+  public SingleFlightCacheTest() {
+    super();
+  }
+
+  @Test
+  public void shouldLoadOnceUntilExpired() {
+    final AtomicLong clock = new AtomicLong();
+    final AtomicInteger loads = new AtomicInteger();
+    final SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(30, TimeUnit.SECONDS, 10, clock::get);
+
+    Assert.assertEquals(Integer.valueOf(1), cache.get("a", loads::incrementAndGet));
+    Assert.assertEquals(Integer.valueOf(1), cache.get("a", loads::incrementAndGet));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(31));
+    Assert.assertEquals(Integer.valueOf(2), cache.get("a", loads::incrementAndGet));
+  }
+
+  @Test
+  public void shouldNotRememberFailures() {
+    final SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(30, TimeUnit.SECONDS, 10);
+
+    try {
+      cache.get("a", () -> {
+        throw new IllegalStateException("unavailable");
+      });
+      Assert.fail("The failure should be passed on.");
+    } catch (final IllegalStateException expected) {
+      Assert.assertEquals("unavailable", expected.getMessage());
+    }
+
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals(Integer.valueOf(1), cache.get("a", () -> 1));
+  }
+
+  @Test
+  public void shouldShareConcurrentLoad() throws Exception {
+    final SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(30, TimeUnit.SECONDS, 10);
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch loadStarted = new CountDownLatch(1);
+    final CountDownLatch finishLoad = new CountDownLatch(1);
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final Future<Integer> first = executor.submit(() -> cache.get("a", () -> {
+        loadStarted.countDown();
+        await(finishLoad);
+        return loads.incrementAndGet();
+      }));
+      Assert.assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+      final Future<Integer> second = executor.submit(() -> cache.get("a", loads::incrementAndGet));
+
+      finishLoad.countDown();
+      Assert.assertEquals(Integer.valueOf(1), first.get(5, TimeUnit.SECONDS));
+      Assert.assertEquals(Integer.valueOf(1), second.get(5, TimeUnit.SECONDS));
+      Assert.assertEquals(1, loads.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldShareUnretainedLoadOnlyUntilItCompletes() {
+    final SingleFlightCache<String, String> cache = new SingleFlightCache<>(30, TimeUnit.SECONDS, 10);
+    final AtomicInteger loads = new AtomicInteger();
+    final CompletableFuture<String> pending = new CompletableFuture<>();
+
+    final CompletableFuture<String> first = cache.getAsync("a", () -> {
+      loads.incrementAndGet();
+      return pending;
+    }, false);
+    final CompletableFuture<String> second = cache.getAsync("a", () -> {
+      loads.incrementAndGet();
+      return CompletableFuture.completedFuture("second");
+    }, false);
+    Assert.assertFalse(second.isDone());
+
+    pending.complete("first");
+    Assert.assertEquals("first", first.join());
+    Assert.assertEquals("first", second.join());
+    Assert.assertEquals(1, loads.get());
+    Assert.assertEquals(0, cache.size());
+    Assert.assertEquals("third", cache.getAsync("a", () -> CompletableFuture.completedFuture("third"), false).join());
+  }
+
+  @Test
+  public void shouldNotGrowBeyondMaximumSize() {
+    final SingleFlightCache<String, Integer> cache = new SingleFlightCache<>(30, TimeUnit.SECONDS, 1);
+    cache.get("a", () -> 1);
+    Assert.assertEquals(Integer.valueOf(2), cache.get("b", () -> 2));
+    Assert.assertEquals(1, cache.size());
+
+    cache.invalidate("a"::equals);
+    Assert.assertEquals(0, cache.size());
+  }
+
+  private static void await(final CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}